@@ -28,14 +28,18 @@
 
 package org.opennms.core.ipc.sink.common;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.RejectedExecutionHandler;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.joda.time.Duration;
 import org.opennms.core.concurrent.LogPreservingThreadFactory;
@@ -51,10 +55,31 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.swrve.ratelimitedlogger.RateLimitedLog;
 
+/**
+ * Queues the messages and hands them off to the synchronous dispatcher
+ * from a fixed set of threads.
+ *
+ * Messages are queued along with their future in an array backed queue
+ * which is allocated up front, so that no task, queue node or intermediate
+ * future needs to be created for every message.
+ *
+ * As with a thread pool, up to <code>queueSize + numThreads</code> messages
+ * can be accepted at any given time: one being dispatched by every thread,
+ * and the others waiting in the queue.
+ *
+ * Once closed, new messages are rejected and the messages that were already
+ * accepted are dispatched before the synchronous dispatcher is closed.
+ */
 public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implements AsyncDispatcher<S>  {
 
     private static final Logger LOG = LoggerFactory.getLogger(AsyncDispatcherImpl.class);
 
+    /**
+     * How long the dispatching threads wait for a message before
+     * checking whether or not the dispatcher was closed.
+     */
+    private static final long POLL_TIMEOUT_MS = 1000L;
+
     private final SyncDispatcher<S> syncDispatcher;
 
     final RateLimitedLog rateLimittedLogger = RateLimitedLog
@@ -62,34 +87,35 @@ public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implem
             .maxRate(5).every(Duration.standardSeconds(30))
             .build();
 
-    final LinkedBlockingQueue<Runnable> queue;
-    final ExecutorService executor;
+    final BlockingQueue<QueuedMessage<S>> queue;
+    final List<Thread> threads;
+
+    /**
+     * Limits the number of messages that are either queued or being dispatched.
+     */
+    private final Semaphore capacity;
+
+    private final boolean blockWhenFull;
+    private final Counter droppedCounter;
+    private volatile boolean closed = false;
+
+    /**
+     * Messages are queued while holding the read lock, and the dispatcher
+     * is closed while holding the write lock, so that no message can be
+     * queued once the dispatcher is closed.
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
 
     public AsyncDispatcherImpl(DispatcherState<W,S,T> state, AsyncPolicy asyncPolicy, SyncDispatcher<S> syncDispatcher) {
         Objects.requireNonNull(state);
         Objects.requireNonNull(asyncPolicy);
         this.syncDispatcher = Objects.requireNonNull(syncDispatcher);
 
-        final RejectedExecutionHandler rejectedExecutionHandler;
-        if (asyncPolicy.isBlockWhenFull()) {
-            // This queue ensures that calling thread is blocked when the queue is full
-            // See the implementation of OfferBlockingQueue for details
-            queue = new OfferBlockingQueue<>(asyncPolicy.getQueueSize());
-            rejectedExecutionHandler = new ThreadPoolExecutor.AbortPolicy();
-        } else {
-            queue = new LinkedBlockingQueue<Runnable>(asyncPolicy.getQueueSize());
-            // Reject and increase the dropped counter when the queue is full
-            final Counter droppedCounter = state.getMetrics().counter(MetricRegistry.name(state.getModule().getId(), "dropped"));
-            rejectedExecutionHandler = new RejectedExecutionHandler() {
-                @Override
-                public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
-                    droppedCounter.inc();
-                    throw new RejectedExecutionException("Task " + r.toString() +
-                            " rejected from " +
-                            e.toString());
-                }
-            };
-        }
+        capacity = new Semaphore(asyncPolicy.getQueueSize() + asyncPolicy.getNumThreads());
+        queue = new ArrayBlockingQueue<>(asyncPolicy.getQueueSize() + asyncPolicy.getNumThreads());
+        blockWhenFull = asyncPolicy.isBlockWhenFull();
+        // Only used when we're not blocking, increased when the queue is full
+        droppedCounter = blockWhenFull ? null : state.getMetrics().counter(MetricRegistry.name(state.getModule().getId(), "dropped"));
 
         state.getMetrics().register(MetricRegistry.name(state.getModule().getId(), "queue-size"), new Gauge<Integer>() {
             @Override
@@ -98,67 +124,93 @@ public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implem
             }
         });
 
-        executor = new ThreadPoolExecutor(
-                asyncPolicy.getNumThreads(),
-                asyncPolicy.getNumThreads(),
-                1000L,
-                TimeUnit.MILLISECONDS,
-                queue,
-                new LogPreservingThreadFactory("OpenNMS.Sink.AsyncDispatcher." + state.getModule().getId(), Integer.MAX_VALUE),
-                rejectedExecutionHandler
-            );
+        final ThreadFactory threadFactory = new LogPreservingThreadFactory("OpenNMS.Sink.AsyncDispatcher." + state.getModule().getId(), Integer.MAX_VALUE);
+        threads = new ArrayList<>(asyncPolicy.getNumThreads());
+        for (int i = 0; i < asyncPolicy.getNumThreads(); i++) {
+            final Thread thread = threadFactory.newThread(this::dispatchQueuedMessages);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
     }
 
     /**
-     * When used in a ThreadPoolExecutor, this queue will block calls to
-     * {@link ThreadPoolExecutor#execute(Runnable)} when the queue is full.
-     * This is done by overriding calls to {@link LinkedBlockingQueue#offer(Object)}
-     * with calls to {@link LinkedBlockingQueue#put(Object)}, but comes with the caveat
-     * that executor must be built with <code>corePoolSize == maxPoolSize</code>.
-     * In the context of the {@link AsyncDispatcherImpl}, this is an acceptable caveat,
-     * since we enforce the matching pool sizes.
-     *
-     * There are alternative ways of solving this problem, for example we could use a
-     * {@link RejectedExecutionHandler} to achieve similar behavior, and allow
-     * for <code>corePoolSize < maxPoolSize</code>, but not for <code>corePoolSize==0</code>.
-     *
-     * For further discussions on this topic see:
-     *   http://stackoverflow.com/a/3518588
-     *   http://stackoverflow.com/a/32123535
-     *
-     * If the implementation is changed, make sure that that executor is built accordingly.
+     * A message waiting to be dispatched, which doubles as the
+     * future returned to the caller.
      */
-    private static class OfferBlockingQueue<E> extends LinkedBlockingQueue<E> {
-        private static final long serialVersionUID = 1L;
+    private static class QueuedMessage<S> extends CompletableFuture<S> {
+        private final S message;
 
-        public OfferBlockingQueue(int capacity) {
-            super(capacity);
+        private QueuedMessage(S message) {
+            this.message = message;
         }
+    }
 
-        @Override
-        public boolean offer(E e) {
+    private void dispatchQueuedMessages() {
+        while (true) {
+            final QueuedMessage<S> queuedMessage;
             try {
-                put(e);
-                return true;
-            } catch(InterruptedException ie) {
+                queuedMessage = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (queuedMessage == null) {
+                if (closed && queue.isEmpty()) {
+                    // The queue was drained after the dispatcher was closed
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                syncDispatcher.send(queuedMessage.message);
+                queuedMessage.complete(queuedMessage.message);
+            } catch (Throwable t) {
+                queuedMessage.completeExceptionally(t);
+            } finally {
+                capacity.release();
             }
-            return false;
         }
     }
 
     @Override
     public CompletableFuture<S> send(S message) {
+        final QueuedMessage<S> queuedMessage = new QueuedMessage<>(message);
+        if (blockWhenFull) {
+            // Block the calling thread until there is room in the queue
+            try {
+                while (!capacity.tryAcquire(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        queuedMessage.completeExceptionally(new RejectedExecutionException("Message rejected, the dispatcher is closed."));
+                        return queuedMessage;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queuedMessage.completeExceptionally(new RejectedExecutionException("Interrupted while waiting to queue the message.", e));
+                return queuedMessage;
+            }
+        } else if (!capacity.tryAcquire()) {
+            // Reject and increase the dropped counter when the queue is full
+            droppedCounter.inc();
+            queuedMessage.completeExceptionally(new RejectedExecutionException("Message rejected, the queue is full."));
+            return queuedMessage;
+        }
+
+        closeLock.readLock().lock();
         try {
-            return CompletableFuture.supplyAsync(() -> {
-                syncDispatcher.send(message);
-                return message;
-            }, executor);
-        } catch (RejectedExecutionException ree) {
-            final CompletableFuture<S> future = new CompletableFuture<>();
-            future.completeExceptionally(ree);
-            return future;
+            if (closed) {
+                capacity.release();
+                queuedMessage.completeExceptionally(new RejectedExecutionException("Message rejected, the dispatcher is closed."));
+            } else {
+                queue.add(queuedMessage);
+            }
+        } finally {
+            closeLock.readLock().unlock();
         }
+        return queuedMessage;
     }
 
     @Override
@@ -168,7 +220,32 @@ public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implem
 
     @Override
     public void close() throws Exception {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+
+        // The dispatching threads exit on their own once the queue is drained
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            threads.forEach(Thread::interrupt);
+        }
         syncDispatcher.close();
-        executor.shutdown();
+
+        // Fail the messages that were left behind by interrupted threads
+        QueuedMessage<S> queuedMessage;
+        while ((queuedMessage = queue.poll()) != null) {
+            queuedMessage.completeExceptionally(new RejectedExecutionException("Message rejected, the dispatcher was closed before it could be dispatched."));
+            capacity.release();
+        }
     }
 }
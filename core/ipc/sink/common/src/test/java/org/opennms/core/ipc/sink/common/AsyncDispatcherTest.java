@@ -33,15 +33,18 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
@@ -52,6 +55,7 @@ import org.opennms.core.ipc.sink.api.AsyncDispatcher;
 import org.opennms.core.ipc.sink.api.AsyncPolicy;
 import org.opennms.core.ipc.sink.api.Message;
 import org.opennms.core.ipc.sink.api.SinkModule;
+import org.opennms.core.ipc.sink.api.SyncDispatcher;
 
 @RunWith(MockitoJUnitRunner.class)
 public class AsyncDispatcherTest {
@@ -202,4 +206,105 @@ public class AsyncDispatcherTest {
 
         asyncDispatcher.close();
     }
+
+    @Test(timeout=3*60*1000)
+    public void testCloseDispatchesQueuedMessages() throws Exception {
+        final RecordingSyncDispatcher syncDispatcher = new RecordingSyncDispatcher();
+        final AsyncDispatcherImpl<Void, MyMessage, MyMessage> asyncDispatcher = createAsyncDispatcher(10, 2, syncDispatcher);
+
+        final List<CompletableFuture<MyMessage>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(asyncDispatcher.send(new MyMessage()));
+        }
+        asyncDispatcher.close();
+
+        // Every message was dispatched before the synchronous dispatcher was closed
+        for (CompletableFuture<MyMessage> future : futures) {
+            assertTrue(future.isDone());
+            assertFalse(future.isCompletedExceptionally());
+        }
+        assertEquals(100, syncDispatcher.numSent.get());
+        assertTrue(syncDispatcher.closed.get());
+        assertFalse(syncDispatcher.sentAfterClose.get());
+
+        // Messages sent after closing are rejected
+        assertTrue(asyncDispatcher.send(new MyMessage()).isCompletedExceptionally());
+    }
+
+    @Test(timeout=3*60*1000)
+    public void testSendConcurrentlyWithClose() throws Exception {
+        final RecordingSyncDispatcher syncDispatcher = new RecordingSyncDispatcher();
+        final AsyncDispatcherImpl<Void, MyMessage, MyMessage> asyncDispatcher = createAsyncDispatcher(10, 2, syncDispatcher);
+
+        // Send until the messages are rejected
+        final List<CompletableFuture<MyMessage>> futures = Collections.synchronizedList(new ArrayList<>());
+        final List<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final Thread sender = new Thread(() -> {
+                CompletableFuture<MyMessage> future;
+                do {
+                    future = asyncDispatcher.send(new MyMessage());
+                    futures.add(future);
+                } while (!future.isCompletedExceptionally());
+            });
+            senders.add(sender);
+            sender.start();
+        }
+
+        await().atMost(1, MINUTES).until(() -> syncDispatcher.numSent.get(), greaterThan(100));
+        asyncDispatcher.close();
+        for (Thread sender : senders) {
+            sender.join();
+        }
+
+        // No future was left incomplete, and none of them were dispatched after closing
+        int numDispatched = 0;
+        for (CompletableFuture<MyMessage> future : futures) {
+            assertTrue(future.isDone());
+            if (!future.isCompletedExceptionally()) {
+                numDispatched++;
+            }
+        }
+        assertEquals(syncDispatcher.numSent.get(), numDispatched);
+        assertFalse(syncDispatcher.sentAfterClose.get());
+    }
+
+    private AsyncDispatcherImpl<Void, MyMessage, MyMessage> createAsyncDispatcher(int queueSize, int numThreads, SyncDispatcher<MyMessage> syncDispatcher) {
+        final AsyncPolicy asyncPolicy = new AsyncPolicy() {
+            @Override
+            public int getQueueSize() {
+                return queueSize;
+            }
+
+            @Override
+            public int getNumThreads() {
+                return numThreads;
+            }
+
+            @Override
+            public boolean isBlockWhenFull() {
+                return true;
+            }
+        };
+        return new AsyncDispatcherImpl<>(new DispatcherState<>(threadLockingDispatcherFactory, module), asyncPolicy, syncDispatcher);
+    }
+
+    private static class RecordingSyncDispatcher implements SyncDispatcher<MyMessage> {
+        private final AtomicInteger numSent = new AtomicInteger(0);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private final AtomicBoolean sentAfterClose = new AtomicBoolean(false);
+
+        @Override
+        public void send(MyMessage message) {
+            if (closed.get()) {
+                sentAfterClose.set(true);
+            }
+            numSent.incrementAndGet();
+        }
+
+        @Override
+        public void close() throws Exception {
+            closed.set(true);
+        }
+    }
 }
@@ -28,7 +28,13 @@
 
 package org.opennms.core.ipc.sink.xml;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Objects;
 
 import org.opennms.core.ipc.sink.api.SinkModule;
@@ -41,8 +47,36 @@ public abstract class AbstractXmlSinkModule<S extends Message, T extends Message
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractXmlSinkModule.class);
 
+    /**
+     * System property used to select the wire format of the messages sent by
+     * a module, formatted with the module's id, i.e.
+     * <code>org.opennms.core.ipc.sink.Syslog.format</code>.
+     *
+     * Set to <code>binary</code> to use the module's {@link BinaryCodec}, if
+     * it has one, instead of XML. Both formats are always accepted when
+     * unmarshalling, so consumers must be upgraded before producers are
+     * switched over.
+     */
+    public static final String WIRE_FORMAT_SYS_PROP_FORMAT = "org.opennms.core.ipc.sink.%s.format";
+
+    public static final String BINARY_WIRE_FORMAT = "binary";
+
+    /**
+     * Leading byte of binary messages. XML documents never start
+     * with a NUL character, so both formats can be told apart.
+     */
+    private static final byte BINARY_MARKER = 0x00;
+
+    private static final byte BINARY_VERSION = 0x01;
+
+    private static final int BINARY_HEADER_LENGTH = 2;
+
     private final Class<T> messageClazz;
 
+    private final BinaryCodec<T> binaryCodec;
+
+    private Boolean binaryFormatEnabled;
+
     /**
      * Store a thread-local reference to the {@link XmlHandler} because 
      * Unmarshalers are not thread-safe.
@@ -50,19 +84,72 @@ public abstract class AbstractXmlSinkModule<S extends Message, T extends Message
     private final ThreadLocal<XmlHandler<T>> messageXmlHandler = new ThreadLocal<>();
 
     public AbstractXmlSinkModule(Class<T> messageClazz) {
+        this(messageClazz, null);
+    }
+
+    public AbstractXmlSinkModule(Class<T> messageClazz, BinaryCodec<T> binaryCodec) {
         this.messageClazz = Objects.requireNonNull(messageClazz);
+        this.binaryCodec = binaryCodec;
     }
 
     @Override
     public byte[] marshal(T message) {
+        if (isBinaryFormatEnabled()) {
+            return marshalBinary(message);
+        }
         return getXmlHandler().marshal(message).getBytes(StandardCharsets.UTF_8);
     }
 
     @Override
     public T unmarshal(byte[] bytes) {
+        if (binaryCodec != null && bytes.length >= BINARY_HEADER_LENGTH && bytes[0] == BINARY_MARKER) {
+            return unmarshalBinary(bytes);
+        }
         return getXmlHandler().unmarshal(new String(bytes, StandardCharsets.UTF_8));
     }
 
+    /**
+     * Whether or not messages are marshalled with the module's {@link BinaryCodec}.
+     */
+    public boolean isBinaryFormatEnabled() {
+        if (binaryFormatEnabled == null) {
+            // The id is only resolved on first use, since sub-classes may not be fully constructed before then
+            binaryFormatEnabled = binaryCodec != null
+                    && BINARY_WIRE_FORMAT.equalsIgnoreCase(System.getProperty(String.format(WIRE_FORMAT_SYS_PROP_FORMAT, getId())));
+        }
+        return binaryFormatEnabled;
+    }
+
+    public void setBinaryFormatEnabled(boolean binaryFormatEnabled) {
+        if (binaryFormatEnabled && binaryCodec == null) {
+            throw new IllegalStateException("Module " + getId() + " does not support the binary wire format.");
+        }
+        this.binaryFormatEnabled = binaryFormatEnabled;
+    }
+
+    private byte[] marshalBinary(T message) {
+        final PreSizedByteArrayOutputStream bytes = new PreSizedByteArrayOutputStream(BINARY_HEADER_LENGTH + binaryCodec.getSizeHint(message));
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(BINARY_MARKER);
+            out.writeByte(BINARY_VERSION);
+            binaryCodec.encode(message, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to marshal message for module " + getId(), e);
+        }
+        return bytes.getBytes();
+    }
+
+    private T unmarshalBinary(byte[] bytes) {
+        if (bytes[1] != BINARY_VERSION) {
+            throw new IllegalArgumentException("Unsupported binary message version " + bytes[1] + " for module " + getId());
+        }
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, BINARY_HEADER_LENGTH, bytes.length - BINARY_HEADER_LENGTH))) {
+            return binaryCodec.decode(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to unmarshal message for module " + getId(), e);
+        }
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(getId());
@@ -75,6 +162,19 @@ public abstract class AbstractXmlSinkModule<S extends Message, T extends Message
         return getClass() == obj.getClass();
     }
 
+    /**
+     * Avoids copying the buffer when the size hint was exact.
+     */
+    private static class PreSizedByteArrayOutputStream extends ByteArrayOutputStream {
+        public PreSizedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        public byte[] getBytes() {
+            return count == buf.length ? buf : Arrays.copyOf(buf, count);
+        }
+    }
+
     private XmlHandler<T> getXmlHandler() {
         XmlHandler<T> xmlHandler = messageXmlHandler.get();
         if (xmlHandler == null) {
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+
+/**
+ * Shares SNMP sessions, and their sockets, between requests instead of
+ * opening a new session for every get, walk or set.
+ *
+ * The sessions are grouped by the security parameters that are bound to the
+ * session: all v1 and v2c agents share the same group of sessions since the
+ * community is carried by the target, while a group is created for every
+ * distinct set of v3 credentials since the user is bound to the USM of the
+ * session. Within a group, an agent is always mapped to the same session so
+ * that the engine id that was discovered for it, along with the keys that
+ * were localized for it, are reused by the following requests.
+ *
+ * SNMP4J matches the responses to the pending requests by request id, so
+ * many requests can be in flight on the same session.
+ */
+public class Snmp4JSessionPool implements Snmp4JSessionPoolMBean {
+    private static final Logger LOG = LoggerFactory.getLogger(Snmp4JSessionPool.class);
+
+    public static final String OBJECT_NAME = "org.opennms.netmgt.snmp:type=Snmp4JSessionPool";
+
+    private final int m_sessionsPerGroup;
+
+    private final Map<SessionKey, Snmp[]> m_sessions = new ConcurrentHashMap<>();
+
+    private final Set<Snmp> m_pooledSessions = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong m_requestsInFlight = new AtomicLong(0);
+
+    private final AtomicLong m_requestsSent = new AtomicLong(0);
+
+    private final AtomicLong m_timeouts = new AtomicLong(0);
+
+    private final AtomicLong m_errors = new AtomicLong(0);
+
+    /**
+     * @param sessionsPerGroup the number of sessions opened for every group of security parameters
+     */
+    public Snmp4JSessionPool(int sessionsPerGroup) {
+        m_sessionsPerGroup = Math.max(sessionsPerGroup, 1);
+    }
+
+    /**
+     * Registers the pool with the platform MBean server, ignoring any error.
+     */
+    public void registerMBean() {
+        try {
+            final ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            }
+        } catch (final Exception e) {
+            LOG.warn("Failed to register the SNMP session pool MBean.", e);
+        }
+    }
+
+    /**
+     * Retrieves the session that is used for the given agent, opening the
+     * sessions of its group if necessary. The session is already listening
+     * for responses and must not be closed by the caller.
+     */
+    public Snmp getSession(Snmp4JAgentConfig agentConfig) throws IOException {
+        final SessionKey key = new SessionKey(agentConfig);
+        Snmp[] sessions = m_sessions.get(key);
+        if (sessions == null) {
+            synchronized (m_sessions) {
+                sessions = m_sessions.get(key);
+                if (sessions == null) {
+                    sessions = openSessions(agentConfig);
+                    m_sessions.put(key, sessions);
+                }
+            }
+        }
+        return sessions[Math.floorMod(Objects.hashCode(agentConfig.getInetAddress()), sessions.length)];
+    }
+
+    private Snmp[] openSessions(Snmp4JAgentConfig agentConfig) throws IOException {
+        final Snmp[] sessions = new Snmp[m_sessionsPerGroup];
+        try {
+            for (int i = 0; i < sessions.length; i++) {
+                sessions[i] = agentConfig.createSnmpSession();
+                sessions[i].listen();
+            }
+        } catch (final IOException e) {
+            for (Snmp session : sessions) {
+                closeQuietly(session);
+            }
+            throw e;
+        }
+        for (Snmp session : sessions) {
+            m_pooledSessions.add(session);
+        }
+        LOG.debug("Opened {} shared SNMP sessions for {}", sessions.length, agentConfig.isSnmpV3() ? "SNMPv3 user " + agentConfig.getSecurityName() : "SNMPv1/v2c");
+        return sessions;
+    }
+
+    public boolean isPooled(Snmp session) {
+        return session != null && m_pooledSessions.contains(session);
+    }
+
+    /**
+     * Sends the request on the given session, keeping track of it until the
+     * response, or the timeout, is received.
+     */
+    public void send(final Snmp session, final PDU pdu, final Target target, final ResponseListener listener) throws IOException {
+        m_requestsSent.incrementAndGet();
+        m_requestsInFlight.incrementAndGet();
+        try {
+            session.send(pdu, target, null, new ResponseListener() {
+                private final AtomicBoolean m_done = new AtomicBoolean(false);
+
+                @Override
+                public void onResponse(ResponseEvent responseEvent) {
+                    // Release the request, the session stays open
+                    session.cancel(responseEvent.getRequest(), this);
+                    if (m_done.compareAndSet(false, true)) {
+                        m_requestsInFlight.decrementAndGet();
+                        if (responseEvent.getError() != null) {
+                            m_errors.incrementAndGet();
+                        } else if (responseEvent.getResponse() == null) {
+                            m_timeouts.incrementAndGet();
+                        }
+                    }
+                    listener.onResponse(responseEvent);
+                }
+            });
+        } catch (final IOException|RuntimeException e) {
+            m_requestsInFlight.decrementAndGet();
+            m_errors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all of the sessions. Requests that are in flight are answered with an error.
+     */
+    public void close() {
+        synchronized (m_sessions) {
+            for (Snmp[] sessions : m_sessions.values()) {
+                for (Snmp session : sessions) {
+                    m_pooledSessions.remove(session);
+                    closeQuietly(session);
+                }
+            }
+            m_sessions.clear();
+        }
+    }
+
+    private static void closeQuietly(Snmp session) {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.close();
+        } catch (IOException e) {
+            LOG.error("error closing SNMP connection", e);
+        }
+    }
+
+    @Override
+    public int getSessionCount() {
+        return m_pooledSessions.size();
+    }
+
+    @Override
+    public long getRequestsInFlight() {
+        return m_requestsInFlight.get();
+    }
+
+    @Override
+    public long getRequestsSent() {
+        return m_requestsSent.get();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return m_timeouts.get();
+    }
+
+    @Override
+    public long getErrors() {
+        return m_errors.get();
+    }
+
+    /**
+     * The parameters that are bound to a session, rather than to a target.
+     */
+    private static class SessionKey {
+        private final boolean m_v3;
+        private final OctetString m_securityName;
+        private final OID m_authProtocol;
+        private final OctetString m_authPassPhrase;
+        private final OID m_privProtocol;
+        private final OctetString m_privPassPhrase;
+
+        private SessionKey(Snmp4JAgentConfig agentConfig) {
+            m_v3 = agentConfig.isSnmpV3();
+            if (m_v3) {
+                m_securityName = agentConfig.getSecurityName();
+                m_authProtocol = agentConfig.getAuthProtocol();
+                m_authPassPhrase = agentConfig.getAuthPassPhrase();
+                m_privProtocol = agentConfig.getPrivProtocol();
+                m_privPassPhrase = agentConfig.getPrivPassPhrase();
+            } else {
+                m_securityName = null;
+                m_authProtocol = null;
+                m_authPassPhrase = null;
+                m_privProtocol = null;
+                m_privPassPhrase = null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof SessionKey)) {
+                return false;
+            }
+            final SessionKey that = (SessionKey) obj;
+            return m_v3 == that.m_v3
+                    && Objects.equals(m_securityName, that.m_securityName)
+                    && Objects.equals(m_authProtocol, that.m_authProtocol)
+                    && Objects.equals(m_authPassPhrase, that.m_authPassPhrase)
+                    && Objects.equals(m_privProtocol, that.m_privProtocol)
+                    && Objects.equals(m_privPassPhrase, that.m_privPassPhrase);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(m_v3, m_securityName, m_authProtocol, m_authPassPhrase, m_privProtocol, m_privPassPhrase);
+        }
+    }
+}
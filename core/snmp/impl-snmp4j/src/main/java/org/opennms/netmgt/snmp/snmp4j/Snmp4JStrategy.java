@@ -73,6 +73,7 @@ import org.snmp4j.PDUv1;
 import org.snmp4j.SNMP4JSettings;
 import org.snmp4j.ScopedPDU;
 import org.snmp4j.Snmp;
+import org.snmp4j.Target;
 import org.snmp4j.TransportMapping;
 import org.snmp4j.event.ResponseEvent;
 import org.snmp4j.event.ResponseListener;
@@ -116,6 +117,13 @@ public class Snmp4JStrategy implements SnmpStrategy {
     private static long s_trackSummaryDelay = Long.getLong("org.opennms.core.snmp.trackSummaryDelay", 60);
     private static long s_trackSummaryLimit = Long.getLong("org.opennms.core.snmp.trackSummaryLimit", 10);
 
+    /**
+     * Share the sessions, and their sockets, between requests instead of opening a session per request.
+     */
+    private static boolean s_shareSessions = Boolean.getBoolean("org.opennms.snmp.snmp4j.sharedSessions");
+    private static int s_sharedSessionsPerGroup = Integer.getInteger("org.opennms.snmp.snmp4j.sharedSessions.size", 4);
+    private static Snmp4JSessionPool s_sessionPool;
+
     /**
      * Initialize for v3 communications
      */
@@ -146,6 +154,11 @@ public class Snmp4JStrategy implements SnmpStrategy {
         // so we perform it only once during initialization
         SecurityProtocols.getInstance().addDefaultProtocols();
 
+        if (s_shareSessions) {
+            s_sessionPool = new Snmp4JSessionPool(s_sharedSessionsPerGroup);
+            s_sessionPool.registerMBean();
+        }
+
         s_initialized = true;
     }
     
@@ -305,28 +318,40 @@ public class Snmp4JStrategy implements SnmpStrategy {
     private void send(Snmp4JAgentConfig agentConfig, PDU pdu, boolean expectResponse, CompletableFuture<SnmpValue[]> future) {
         Snmp session;
 
-        try {
-            session = agentConfig.createSnmpSession();
-            Snmp4JStrategy.trackSession(session);
-        } catch (final Exception e) {
-            LOG.error("send: Could not create SNMP session for agent {}", agentConfig, e);
-            future.completeExceptionally(new SnmpException("Could not create SNMP session for agent", e));
-            return;
-        }
-
-        if (expectResponse) {
+        if (s_sessionPool != null) {
             try {
-                session.listen();
+                session = s_sessionPool.getSession(agentConfig);
             } catch (final Exception e) {
-                closeQuietly(session);
-                LOG.error("send: error setting up listener for SNMP responses", e);
-                future.completeExceptionally(new SnmpException("error setting up listener for SNMP responses", e));
+                LOG.error("send: Could not create SNMP session for agent {}", agentConfig, e);
+                future.completeExceptionally(new SnmpException("Could not create SNMP session for agent", e));
+                return;
+            }
+        } else {
+            try {
+                session = agentConfig.createSnmpSession();
+                Snmp4JStrategy.trackSession(session);
+            } catch (final Exception e) {
+                LOG.error("send: Could not create SNMP session for agent {}", agentConfig, e);
+                future.completeExceptionally(new SnmpException("Could not create SNMP session for agent", e));
                 return;
             }
 
+            if (expectResponse) {
+                try {
+                    session.listen();
+                } catch (final Exception e) {
+                    closeQuietly(session);
+                    LOG.error("send: error setting up listener for SNMP responses", e);
+                    future.completeExceptionally(new SnmpException("error setting up listener for SNMP responses", e));
+                    return;
+                }
+            }
+        }
+
+        if (expectResponse) {
             try {
                 final Snmp mySession = session;
-                mySession.send(pdu, agentConfig.getTarget(), null, new ResponseListener() {
+                send(mySession, pdu, agentConfig.getTarget(), new ResponseListener() {
                     @Override
                     public void onResponse(final ResponseEvent responseEvent) {
                         try {
@@ -334,22 +359,24 @@ public class Snmp4JStrategy implements SnmpStrategy {
                         } catch (final Exception e) {
                             future.completeExceptionally(new SnmpException(e));
                         } finally {
-                            // Close the tracker using a separate thread
-                            // This allows the SnmpWalker to clean up properly instead
-                            // of interrupting execution as it's executing the callback
-                            REAPER_EXECUTOR.submit(new Runnable() {
-                                @Override
-                                public void run() {
-                                    closeQuietly(mySession);
-                                }
-                            });
+                            if (!isSharedSession(mySession)) {
+                                // Close the tracker using a separate thread
+                                // This allows the SnmpWalker to clean up properly instead
+                                // of interrupting execution as it's executing the callback
+                                REAPER_EXECUTOR.submit(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        closeQuietly(mySession);
+                                    }
+                                });
+                            }
                         }
                     }
                 });
             } catch (final Exception e) {
                 // The ResponseListener will not be called since an exception occurred in the send,
                 // so we make sure to close the session here
-                closeQuietly(session);
+                closeSession(session);
                 LOG.error("send: error during SNMP operation", e);
                 future.completeExceptionally(e);
             }
@@ -361,12 +388,56 @@ public class Snmp4JStrategy implements SnmpStrategy {
                 LOG.error("send: error during SNMP operation", e);
                 future.completeExceptionally(new SnmpException(e));
             } finally {
-                closeQuietly(session);
-                Snmp4JStrategy.reapSession(session);
+                closeSession(session);
             }
         }
     }
 
+    /**
+     * Opens a session for the given agent, or retrieves the shared one if
+     * sessions are shared. The session is listening for responses and must
+     * be released with {@link #closeSession(Snmp)}.
+     */
+    static Snmp openSession(final Snmp4JAgentConfig agentConfig) throws IOException {
+        if (s_sessionPool != null) {
+            return s_sessionPool.getSession(agentConfig);
+        }
+        final Snmp session = agentConfig.createSnmpSession();
+        Snmp4JStrategy.trackSession(session);
+        try {
+            session.listen();
+        } catch (final IOException e) {
+            closeQuietly(session);
+            throw e;
+        }
+        return session;
+    }
+
+    /**
+     * Sends the given request, the listener is responsible for cancelling
+     * the request once the response is processed.
+     */
+    static void send(final Snmp session, final PDU pdu, final Target target, final ResponseListener listener) throws IOException {
+        if (isSharedSession(session)) {
+            s_sessionPool.send(session, pdu, target, listener);
+        } else {
+            session.send(pdu, target, null, listener);
+        }
+    }
+
+    /**
+     * Closes the session, unless it is shared.
+     */
+    static void closeSession(final Snmp session) {
+        if (!isSharedSession(session)) {
+            closeQuietly(session);
+        }
+    }
+
+    private static boolean isSharedSession(final Snmp session) {
+        return s_sessionPool != null && s_sessionPool.isPooled(session);
+    }
+
     protected PDU buildPdu(Snmp4JAgentConfig agentConfig, int pduType, SnmpObjId[] oids, SnmpValue[] values) {
         PDU pdu = agentConfig.createPdu(pduType);
         
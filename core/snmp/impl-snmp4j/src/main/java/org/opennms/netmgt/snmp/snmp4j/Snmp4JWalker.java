@@ -162,8 +162,14 @@ public class Snmp4JWalker extends SnmpWalker {
 
         @Override
         public void onResponse(ResponseEvent responseEvent) {
+            final Snmp session = m_session;
+            if (session == null) {
+                // The walker was closed while the request was pending on a shared session
+                LOG.debug("Ignoring response for closed walker {}", getName());
+                return;
+            }
             // need to cancel the request here otherwise SNMP4J Keeps it around forever... go figure
-            m_session.cancel(responseEvent.getRequest(), this);
+            session.cancel(responseEvent.getRequest(), this);
 
             // Check to see if we got an interrupted exception
             if (responseEvent.getError() instanceof InterruptedException) {
@@ -222,9 +228,7 @@ public class Snmp4JWalker extends SnmpWalker {
         Snmp4JPduBuilder snmp4JPduBuilder = (Snmp4JPduBuilder)pduBuilder;
         try {
             if (m_session == null) {
-                m_session = m_agentConfig.createSnmpSession();
-                Snmp4JStrategy.trackSession(m_session);
-                m_session.listen();
+                m_session = Snmp4JStrategy.openSession(m_agentConfig);
             }
         } catch (final IOException e) {
             close();
@@ -233,7 +237,7 @@ public class Snmp4JWalker extends SnmpWalker {
 
         LOG.debug("Sending tracker pdu of size {}", snmp4JPduBuilder.getPdu().size());
         try {
-            m_session.send(snmp4JPduBuilder.getPdu(), m_tgt, null, m_listener);
+            Snmp4JStrategy.send(m_session, snmp4JPduBuilder.getPdu(), m_tgt, m_listener);
         } catch (final IOException e) {
             LOG.debug("Failed to send pdu of size {}", snmp4JPduBuilder.getPdu().size(), e);
             close();
@@ -248,13 +252,7 @@ public class Snmp4JWalker extends SnmpWalker {
     @Override
     public void close() {
         if (m_session != null) {
-            try {
-                m_session.close();
-            } catch (IOException e) {
-                LOG.error("{}: Unexpected Error occured closing SNMP session for: {}", getName(), m_agentConfig, e);
-            } finally {
-                Snmp4JStrategy.reapSession(m_session);
-            }
+            Snmp4JStrategy.closeSession(m_session);
             m_session = null;
         }
     }
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.netmgt.snmp.SnmpAgentConfig;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * Tests for the {@link Snmp4JSessionPool}.
+ */
+public class Snmp4JSessionPoolIT extends MockSnmpAgentITCase {
+
+    private final Snmp4JSessionPool m_pool = new Snmp4JSessionPool(2);
+
+    @Override
+    protected boolean usingMockStrategy() {
+        return false;
+    }
+
+    @After
+    public void closePool() {
+        m_pool.close();
+    }
+
+    @Test
+    public void testSessionsAreSharedByGroup() throws Exception {
+        final Snmp4JAgentConfig agentConfig = new Snmp4JAgentConfig(getAgentConfig());
+        final Snmp session = m_pool.getSession(agentConfig);
+        assertSame(session, m_pool.getSession(new Snmp4JAgentConfig(getAgentConfig())));
+        assertTrue(m_pool.isPooled(session));
+        assertEquals(2, m_pool.getSessionCount());
+
+        // v3 users are bound to the session, and get their own group
+        final SnmpAgentConfig v3Config = getAgentConfig();
+        v3Config.setVersion(SnmpAgentConfig.VERSION3);
+        v3Config.setSecurityName("opennmsUser");
+        v3Config.setAuthPassPhrase("0p3nNMSv3");
+        assertNotSame(session, m_pool.getSession(new Snmp4JAgentConfig(v3Config)));
+        assertEquals(4, m_pool.getSessionCount());
+    }
+
+    @Test
+    public void testConcurrentRequestsOnASharedSession() throws Exception {
+        final Snmp4JAgentConfig agentConfig = new Snmp4JAgentConfig(getAgentConfig());
+        final Snmp session = m_pool.getSession(agentConfig);
+
+        final List<CompletableFuture<ResponseEvent>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final PDU pdu = agentConfig.createPdu(PDU.GET);
+            pdu.add(new VariableBinding(new OID(".1.3.5.1.1.3.0")));
+            final CompletableFuture<ResponseEvent> future = new CompletableFuture<>();
+            m_pool.send(session, pdu, agentConfig.getTarget(), future::complete);
+            futures.add(future);
+        }
+
+        for (CompletableFuture<ResponseEvent> future : futures) {
+            final ResponseEvent responseEvent = future.get(30, TimeUnit.SECONDS);
+            assertNotNull("response should not be null", responseEvent.getResponse());
+            assertEquals(42, responseEvent.getResponse().get(0).getVariable().toInt());
+        }
+
+        assertEquals(20, m_pool.getRequestsSent());
+        assertEquals(0, m_pool.getRequestsInFlight());
+        assertEquals(0, m_pool.getTimeouts());
+        assertEquals(0, m_pool.getErrors());
+    }
+}
@@ -176,6 +176,28 @@ public interface CollectionInstrumentation {
      * @param svcName a {@link java.lang.String} object.
      */
     void endPersistingServiceData(String packageName, int nodeId, String ipAddress, String svcName);
+    /**
+     * <p>beginThresholding</p>
+     *
+     * @param packageName a {@link java.lang.String} object.
+     * @param nodeId a int.
+     * @param ipAddress a {@link java.lang.String} object.
+     * @param svcName a {@link java.lang.String} object.
+     */
+    void beginThresholding(String packageName, int nodeId, String ipAddress, String svcName);
+    /**
+     * <p>endThresholding</p>
+     *
+     * The thresholds may be applied by a different thread than the one that
+     * collected the data, in which case this is called by that thread.
+     *
+     * @param packageName a {@link java.lang.String} object.
+     * @param nodeId a int.
+     * @param ipAddress a {@link java.lang.String} object.
+     * @param svcName a {@link java.lang.String} object.
+     * @param elapsedMillis time elapsed since the call to {@link #beginThresholding(String, int, String, String)}, in milliseconds.
+     */
+    void endThresholding(String packageName, int nodeId, String ipAddress, String svcName, long elapsedMillis);
     /**
      * <p>reportCollectionException</p>
      *
@@ -31,11 +31,11 @@ package org.opennms.netmgt.discovery;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -58,6 +58,14 @@ public class DiscoveryTaskExecutorImpl implements DiscoveryTaskExecutor {
     
     private static final Logger LOG = LoggerFactory.getLogger(DiscoveryTaskExecutorImpl.class);
 
+    /**
+     * When enabled, the ranges are sent to the locations as compact ranges, instead of being
+     * expanded into individual addresses and filtered up front, and the jobs are generated as
+     * the previous ones complete. The {@link IpAddressFilter} is applied to the addresses that
+     * respond instead.
+     */
+    private static final boolean DEFAULT_STREAMING = Boolean.getBoolean("org.opennms.netmgt.discovery.streaming");
+
     @Autowired
     private RangeChunker rangeChunker;
 
@@ -69,10 +77,22 @@ public class DiscoveryTaskExecutorImpl implements DiscoveryTaskExecutor {
 
     private final AtomicInteger taskIdTracker = new AtomicInteger();
 
+    private boolean streaming = DEFAULT_STREAMING;
+
     @Override
     public CompletableFuture<Void> handleDiscoveryTask(DiscoveryConfiguration config) {
         // Use the range chunker to generate a series of jobs, keyed by location
-        final Map<String, List<DiscoveryJob>> jobsByLocation = rangeChunker.chunk(config);
+        final Map<String, Iterator<DiscoveryJob>> jobsByLocation;
+        final Map<String, Integer> numberOfJobsByLocation = new LinkedHashMap<>();
+        if (streaming) {
+            jobsByLocation = rangeChunker.stream(config);
+        } else {
+            jobsByLocation = new LinkedHashMap<>();
+            for (Entry<String, List<DiscoveryJob>> entry : rangeChunker.chunk(config).entrySet()) {
+                jobsByLocation.put(entry.getKey(), entry.getValue().iterator());
+                numberOfJobsByLocation.put(entry.getKey(), entry.getValue().size());
+            }
+        }
 
         // Avoid any further processing if there are no ranges to scan
         if (jobsByLocation.size() == 0) {
@@ -94,7 +114,7 @@ public class DiscoveryTaskExecutorImpl implements DiscoveryTaskExecutor {
             @Override
             public void run() {
                 jobsByLocation.entrySet().stream()
-                    .map(e -> triggerJobsAsync(e.getKey(), e.getValue(), taskId))
+                    .map(e -> triggerJobsAsync(e.getKey(), e.getValue(), numberOfJobsByLocation.get(e.getKey()), taskId))
                     .forEach(f -> futures.add(f));
             }
         });
@@ -102,26 +122,27 @@ public class DiscoveryTaskExecutorImpl implements DiscoveryTaskExecutor {
         return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
     }
 
-    private CompletableFuture<Void> triggerJobsAsync(String location, List<DiscoveryJob> jobs, int taskId) {
-        LOG.debug("Processing {} jobs at location {} (on task #{}).", jobs.size(), location, taskId);
+    private CompletableFuture<Void> triggerJobsAsync(String location, Iterator<DiscoveryJob> jobs, Integer numberOfJobs, int taskId) {
+        // The number of jobs is not known in advance when they are streamed
+        final String totalNumberOfJobs = numberOfJobs != null ? numberOfJobs.toString() : "?";
+        LOG.debug("Processing {} jobs at location {} (on task #{}).", totalNumberOfJobs, location, taskId);
 
         // Track the jobs
-        final Queue<DiscoveryJob> queue = new LinkedList<>(jobs);
         final AtomicInteger jobIndexTracker = new AtomicInteger();
         final CompletableFuture<Void> future = new CompletableFuture<>();
 
         // Trigger the first job, which will automatically trigger the next job when complete
-        triggerNextJobAsync(location, queue, jobIndexTracker, jobs.size(), taskId, future);
+        triggerNextJobAsync(location, jobs, jobIndexTracker, totalNumberOfJobs, taskId, future);
 
         return future;
     }
 
-    private void triggerNextJobAsync(String location, Queue<DiscoveryJob> jobs, AtomicInteger jobIndexTracker, int totalNumberOfJobs, int taskId, CompletableFuture<Void> future) {
-        final DiscoveryJob job = jobs.poll();
-        if (job == null) {
+    private void triggerNextJobAsync(String location, Iterator<DiscoveryJob> jobs, AtomicInteger jobIndexTracker, String totalNumberOfJobs, int taskId, CompletableFuture<Void> future) {
+        if (!jobs.hasNext()) {
             future.complete(null);
             return;
         }
+        final DiscoveryJob job = jobs.next();
 
         // Build the request
         final PingSweepRequestBuilder builder = locationAwarePingClient.sweep()
@@ -149,10 +170,10 @@ public class DiscoveryTaskExecutorImpl implements DiscoveryTaskExecutor {
                                 jobIndex, totalNumberOfJobs, location, taskId);
                         // Generate an event log containing a newSuspect event for every host
                         // that responded to our pings
-                        final Log eventLog = toNewSuspectEvents(job, summary);
+                        final Log eventLog = toNewSuspectEvents(job, summary, streaming ? rangeChunker.getIpAddressFilter() : null);
                         // Avoid forwarding an empty log
                         if (eventLog.getEvents() != null && eventLog.getEvents().getEventCount() >= 1) {
-                            eventForwarder.sendNow(toNewSuspectEvents(job, summary));
+                            eventForwarder.sendNow(eventLog);
                         }
                     } else {
                         LOG.error("An error occurred while processing job {} of {} at location {} (on task #{})."
@@ -166,9 +187,16 @@ public class DiscoveryTaskExecutorImpl implements DiscoveryTaskExecutor {
         });
     }
 
-    protected static Log toNewSuspectEvents(DiscoveryJob job, PingSweepSummary summary) {
+    /**
+     * Generates the newSuspect events for the addresses that responded, skipping the
+     * addresses that are not matched by the given filter, if any.
+     */
+    protected static Log toNewSuspectEvents(DiscoveryJob job, PingSweepSummary summary, IpAddressFilter filter) {
         final Log eventLog = new Log();
         for (Entry<InetAddress, Double> entry : summary.getResponses().entrySet()) {
+            if (filter != null && !filter.matches(job.getLocation(), entry.getKey())) {
+                continue;
+            }
             EventBuilder eb = new EventBuilder(EventConstants.NEW_SUSPECT_INTERFACE_EVENT_UEI, Discovery.DAEMON_NAME);
             eb.setInterface(entry.getKey());
             eb.addParam("RTT", entry.getValue());
@@ -183,6 +211,10 @@ public class DiscoveryTaskExecutorImpl implements DiscoveryTaskExecutor {
         return eventLog;
     }
 
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     public void setRangeChunker(RangeChunker rangeChunker) {
         this.rangeChunker = rangeChunker;
     }
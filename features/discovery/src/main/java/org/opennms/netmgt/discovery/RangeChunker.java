@@ -29,21 +29,32 @@
 package org.opennms.netmgt.discovery;
 
 import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import org.opennms.core.network.IPAddress;
+import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.config.DiscoveryConfigFactory;
 import org.opennms.netmgt.config.discovery.DiscoveryConfiguration;
+import org.opennms.netmgt.config.discovery.ExcludeRange;
 import org.opennms.netmgt.dao.api.MonitoringLocationDao;
+import org.opennms.netmgt.model.discovery.IPPollAddress;
 import org.opennms.netmgt.model.discovery.IPPollRange;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 
 /**
@@ -68,24 +79,8 @@ public class RangeChunker {
 
         final int chunkSize = config.getChunkSize().orElse(DiscoveryConfigFactory.DEFAULT_CHUNK_SIZE);
         final double packetsPerSecond = config.getPacketsPerSecond().orElse(DiscoveryConfigFactory.DEFAULT_PACKETS_PER_SECOND);
-
-        // If the foreign source for the discovery config is not set than use 
-        // a value of null so that non-requisitioned nodes are created.
-        //
-        // TODO: Use the "default" foreign source instead so that we can move
-        // away from using non-requisitioned nodes.
-        //
-        final String foreignSourceFromConfig = config.getForeignSource().isPresent()? config.getForeignSource().get().trim() : null;
-
-        // If the monitoring location for the discovery config is not set than use 
-        // the default localhost location
-        final String locationFromConfig = config.getLocation().map(l -> {
-            final String trimmed = l.trim();
-            if ("".equals(trimmed)) {
-                return null;
-            }
-            return trimmed;
-        }).orElse(MonitoringLocationDao.DEFAULT_MONITORING_LOCATION_ID);
+        final String foreignSourceFromConfig = getForeignSource(config);
+        final String locationFromConfig = getLocation(config);
 
         final DiscoveryConfigFactory configFactory = new DiscoveryConfigFactory(config);
 
@@ -158,6 +153,204 @@ public class RangeChunker {
                     LinkedHashMap::new, Collectors.toList()));
     }
 
+    /**
+     * <p>Generates the same jobs as {@link #chunk(DiscoveryConfiguration)}, without
+     * expanding the configured ranges into individual addresses.</p>
+     *
+     * <p>The include ranges are split around the exclude ranges, and the jobs are
+     * generated lazily, as the iterators are consumed, by slicing the resulting ranges
+     * into chunks of addresses. The memory used is therefore proportional to the number
+     * of configured ranges rather than to the number of addresses they contain.</p>
+     *
+     * <p>Since the addresses are no longer visited here, the {@link IpAddressFilter}
+     * is not applied to the jobs and must instead be applied to the addresses that
+     * respond, see {@link #getIpAddressFilter()}.</p>
+     */
+    public Map<String, Iterator<DiscoveryJob>> stream(final DiscoveryConfiguration config) {
+
+        final int chunkSize = config.getChunkSize().orElse(DiscoveryConfigFactory.DEFAULT_CHUNK_SIZE);
+        final double packetsPerSecond = config.getPacketsPerSecond().orElse(DiscoveryConfigFactory.DEFAULT_PACKETS_PER_SECOND);
+        final String foreignSourceFromConfig = getForeignSource(config);
+        final String locationFromConfig = getLocation(config);
+
+        final DiscoveryConfigFactory configFactory = new DiscoveryConfigFactory(config);
+
+        final List<IPPollRange> ranges = new ArrayList<>();
+        for (IPPollAddress address : Iterables.concat(configFactory.getSpecifics(), configFactory.getURLSpecifics())) {
+            ranges.add(new IPPollRange(address.getForeignSource(), address.getLocation(),
+                    address.getAddress(), address.getAddress(), address.getTimeout(), address.getRetries()));
+        }
+        for (IPPollRange range : configFactory.getRanges()) {
+            ranges.addAll(exclude(range, config.getExcludeRanges()));
+        }
+
+        // Group the ranges by foreign source and location, so that jobs never mix them
+        final Map<ForeignSourceLocationKey, List<IPPollRange>> rangesByKey = ranges.stream()
+            .collect(Collectors.groupingBy(range -> new ForeignSourceLocationKey(
+                    range.getForeignSource() == null ? foreignSourceFromConfig : range.getForeignSource(),
+                    range.getLocation() == null ? locationFromConfig : range.getLocation()
+                ), LinkedHashMap::new, Collectors.toList()));
+
+        // Chain the job iterators of each location. Stream.flatMap() is avoided on purpose,
+        // since its iterator buffers all of the elements of the inner stream (JDK-8075939).
+        final Map<String, List<Iterator<DiscoveryJob>>> iteratorsByLocation = new LinkedHashMap<>();
+        for (Map.Entry<ForeignSourceLocationKey, List<IPPollRange>> entry : rangesByKey.entrySet()) {
+            iteratorsByLocation.computeIfAbsent(entry.getKey().getLocation(), location -> new ArrayList<>())
+                .add(new JobIterator(entry.getValue(), entry.getKey(), chunkSize, packetsPerSecond));
+        }
+
+        final Map<String, Iterator<DiscoveryJob>> jobsByLocation = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Iterator<DiscoveryJob>>> entry : iteratorsByLocation.entrySet()) {
+            jobsByLocation.put(entry.getKey(), Iterators.concat(entry.getValue().iterator()));
+        }
+        return jobsByLocation;
+    }
+
+    public IpAddressFilter getIpAddressFilter() {
+        return ipAddressFilter;
+    }
+
+    /**
+     * Splits the given range into the ranges that are not covered by any of the exclude ranges.
+     */
+    protected static List<IPPollRange> exclude(IPPollRange range, List<ExcludeRange> excludeRanges) {
+        final int length = range.getAddressRange().getBegin().length;
+        final List<BigInteger[]> excludes = new ArrayList<>();
+        for (ExcludeRange excludeRange : excludeRanges) {
+            final byte[] begin;
+            final byte[] end;
+            try {
+                begin = InetAddressUtils.toIpAddrBytes(excludeRange.getBegin());
+                end = InetAddressUtils.toIpAddrBytes(excludeRange.getEnd());
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            // Exclude ranges only apply to addresses of the same family
+            if (begin.length == length && end.length == length) {
+                excludes.add(new BigInteger[] { new BigInteger(1, begin), new BigInteger(1, end) });
+            }
+        }
+        excludes.sort(Comparator.comparing(exclude -> exclude[0]));
+
+        final List<IPPollRange> ranges = new ArrayList<>();
+        BigInteger begin = new BigInteger(1, range.getAddressRange().getBegin());
+        final BigInteger end = new BigInteger(1, range.getAddressRange().getEnd());
+        for (BigInteger[] exclude : excludes) {
+            if (begin.compareTo(end) > 0) {
+                break;
+            }
+            if (exclude[1].compareTo(begin) < 0 || exclude[0].compareTo(end) > 0) {
+                continue;
+            }
+            if (exclude[0].compareTo(begin) > 0) {
+                ranges.add(subrange(range, begin, exclude[0].subtract(BigInteger.ONE)));
+            }
+            begin = begin.max(exclude[1].add(BigInteger.ONE));
+        }
+        if (begin.compareTo(end) <= 0) {
+            ranges.add(subrange(range, begin, end));
+        }
+        return ranges;
+    }
+
+    private static IPPollRange subrange(IPPollRange range, BigInteger begin, BigInteger end) {
+        final int length = range.getAddressRange().getBegin().length;
+        return new IPPollRange(range.getForeignSource(), range.getLocation(), toInetAddress(begin, length), toInetAddress(end, length),
+                range.getTimeout(), range.getRetries());
+    }
+
+    private static InetAddress toInetAddress(BigInteger value, int length) {
+        final byte[] bytes = value.toByteArray();
+        final byte[] address = new byte[length];
+        // Drop the sign byte, and pad with zeros
+        final int n = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - n, address, length - n, n);
+        try {
+            return InetAddress.getByAddress(address);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static String getForeignSource(DiscoveryConfiguration config) {
+        // If the foreign source for the discovery config is not set than use 
+        // a value of null so that non-requisitioned nodes are created.
+        //
+        // TODO: Use the "default" foreign source instead so that we can move
+        // away from using non-requisitioned nodes.
+        //
+        return config.getForeignSource().isPresent()? config.getForeignSource().get().trim() : null;
+    }
+
+    private static String getLocation(DiscoveryConfiguration config) {
+        // If the monitoring location for the discovery config is not set than use 
+        // the default localhost location
+        return config.getLocation().map(l -> {
+            final String trimmed = l.trim();
+            if ("".equals(trimmed)) {
+                return null;
+            }
+            return trimmed;
+        }).orElse(MonitoringLocationDao.DEFAULT_MONITORING_LOCATION_ID);
+    }
+
+    /**
+     * Lazily slices the given ranges into jobs that contain at most chunkSize addresses.
+     */
+    private static class JobIterator implements Iterator<DiscoveryJob> {
+        private final Iterator<IPPollRange> m_ranges;
+        private final ForeignSourceLocationKey m_key;
+        private final BigInteger m_chunkSize;
+        private final double m_packetsPerSecond;
+
+        private IPPollRange m_range;
+        private BigInteger m_next;
+        private BigInteger m_end;
+
+        private JobIterator(List<IPPollRange> ranges, ForeignSourceLocationKey key, int chunkSize, double packetsPerSecond) {
+            m_ranges = ranges.iterator();
+            m_key = key;
+            m_chunkSize = BigInteger.valueOf(Math.max(1, chunkSize));
+            m_packetsPerSecond = packetsPerSecond;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return m_range != null || m_ranges.hasNext();
+        }
+
+        @Override
+        public DiscoveryJob next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final List<IPPollRange> ranges = new ArrayList<>();
+            BigInteger remaining = m_chunkSize;
+            while (remaining.signum() > 0 && hasNext()) {
+                if (m_range == null) {
+                    m_range = m_ranges.next();
+                    m_next = new BigInteger(1, m_range.getAddressRange().getBegin());
+                    m_end = new BigInteger(1, m_range.getAddressRange().getEnd());
+                }
+
+                final BigInteger last = m_end.min(m_next.add(remaining).subtract(BigInteger.ONE));
+                final int length = m_range.getAddressRange().getBegin().length;
+                ranges.add(new IPPollRange(m_key.getForeignSource(), m_key.getLocation(),
+                        toInetAddress(m_next, length), toInetAddress(last, length),
+                        m_range.getTimeout(), m_range.getRetries()));
+                remaining = remaining.subtract(last.subtract(m_next).add(BigInteger.ONE));
+
+                if (last.equals(m_end)) {
+                    m_range = null;
+                } else {
+                    m_next = last.add(BigInteger.ONE);
+                }
+            }
+            return new DiscoveryJob(ranges, m_key.getForeignSource(), m_key.getLocation(), m_packetsPerSecond);
+        }
+    }
+
     protected static boolean isConsecutive(IPPollRange range, IPPollRange address) {
         Preconditions.checkState(BigInteger.ONE.equals(address.getAddressRange().size()));
         return range != null && 
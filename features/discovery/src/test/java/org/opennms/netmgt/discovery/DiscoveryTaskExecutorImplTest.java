@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.discovery;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.config.discovery.DiscoveryConfiguration;
+import org.opennms.netmgt.config.discovery.IncludeRange;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventForwarder;
+import org.opennms.netmgt.icmp.proxy.LocationAwarePingClient;
+import org.opennms.netmgt.icmp.proxy.PingSweepRequestBuilder;
+import org.opennms.netmgt.icmp.proxy.PingSweepSummary;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Log;
+
+public class DiscoveryTaskExecutorImplTest {
+
+    private final InetAddress m_included = InetAddressUtils.addr("10.0.0.1");
+
+    private final InetAddress m_excluded = InetAddressUtils.addr("10.0.0.2");
+
+    private final EventForwarder m_eventForwarder = mock(EventForwarder.class);
+
+    private final DiscoveryTaskExecutorImpl m_executor = new DiscoveryTaskExecutorImpl();
+
+    @Before
+    public void setUp() {
+        final PingSweepSummary summary = new PingSweepSummary();
+        summary.getResponses().put(m_included, 1.0);
+        summary.getResponses().put(m_excluded, 2.0);
+
+        final PingSweepRequestBuilder builder = mock(PingSweepRequestBuilder.class);
+        when(builder.withLocation(any())).thenReturn(builder);
+        when(builder.withPacketsPerSecond(anyDouble())).thenReturn(builder);
+        when(builder.withRange(any(), any(), anyInt(), anyLong(), any())).thenReturn(builder);
+        when(builder.execute()).thenReturn(CompletableFuture.completedFuture(summary));
+
+        final LocationAwarePingClient pingClient = mock(LocationAwarePingClient.class);
+        when(pingClient.sweep()).thenReturn(builder);
+
+        // Only the first address is matched by the filter
+        final IpAddressFilter filter = mock(IpAddressFilter.class);
+        when(filter.matches(any(), any(InetAddress.class))).thenAnswer(inv -> m_included.equals(inv.getArguments()[1]));
+
+        m_executor.setRangeChunker(new RangeChunker(filter));
+        m_executor.setLocationAwarePingClient(pingClient);
+        m_executor.setEventForwarder(m_eventForwarder);
+    }
+
+    /**
+     * When the jobs are streamed, the ranges are not filtered up front, so the
+     * filter must be applied to the addresses that respond.
+     */
+    @Test
+    public void testFilterIsAppliedToResponsesWhenStreaming() throws Exception {
+        m_executor.setStreaming(true);
+
+        final DiscoveryConfiguration config = new DiscoveryConfiguration();
+        final IncludeRange range = new IncludeRange();
+        range.setBegin("10.0.0.1");
+        range.setEnd("10.0.0.2");
+        config.addIncludeRange(range);
+
+        m_executor.handleDiscoveryTask(config).get(10, TimeUnit.SECONDS);
+
+        final ArgumentCaptor<Log> log = ArgumentCaptor.forClass(Log.class);
+        verify(m_eventForwarder).sendNow(log.capture());
+        assertEquals(1, log.getValue().getEvents().getEventCount());
+        final Event event = log.getValue().getEvents().getEvent(0);
+        assertEquals(EventConstants.NEW_SUSPECT_INTERFACE_EVENT_UEI, event.getUei());
+        assertEquals(InetAddressUtils.str(m_included), event.getInterface());
+    }
+}
@@ -29,9 +29,11 @@
 package org.opennms.netmgt.discovery;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 import java.net.InetAddress;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -47,6 +49,9 @@ import org.opennms.netmgt.config.discovery.IncludeUrl;
 import org.opennms.netmgt.config.discovery.Specific;
 import org.opennms.netmgt.model.discovery.IPPollRange;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
 public class RangeChunkerTest {
 
     private IpAddressFilter ipAddressFilter;
@@ -224,6 +229,85 @@ public class RangeChunkerTest {
 		assertEquals(5, jobs.get("123").get(0).getRanges().size());
 	}
 
+	@Test
+	public void testStreamExcludesAndSlicesRanges() {
+		DiscoveryConfiguration config = new DiscoveryConfiguration();
+
+		IncludeRange range = new IncludeRange();
+		range.setBegin("10.0.0.1");
+		range.setEnd("10.0.0.250");
+		range.setForeignSource("ABC");
+		range.setLocation("123");
+		config.addIncludeRange(range);
+
+		ExcludeRange excludes = new ExcludeRange();
+		excludes.setBegin("10.0.0.100");
+		excludes.setEnd("10.0.0.149");
+		config.addExcludeRange(excludes);
+
+		config.setChunkSize(100);
+
+		RangeChunker chunker = new RangeChunker(ipAddressFilter);
+		Map<String, Iterator<DiscoveryJob>> streamed = chunker.stream(config);
+		assertEquals(1, streamed.size());
+		List<DiscoveryJob> jobs = Lists.newArrayList(streamed.get("123"));
+		printJobs(jobs);
+
+		// The first job spans the excluded range
+		assertEquals(2, jobs.size());
+		assertEquals(2, jobs.get(0).getRanges().size());
+		assertEquals("10.0.0.1", new IPAddress(jobs.get(0).getRanges().get(0).getAddressRange().getBegin()).toString());
+		assertEquals("10.0.0.99", new IPAddress(jobs.get(0).getRanges().get(0).getAddressRange().getEnd()).toString());
+		assertEquals("10.0.0.150", new IPAddress(jobs.get(0).getRanges().get(1).getAddressRange().getBegin()).toString());
+		assertEquals("10.0.0.150", new IPAddress(jobs.get(0).getRanges().get(1).getAddressRange().getEnd()).toString());
+		assertEquals(1, jobs.get(1).getRanges().size());
+		assertEquals("10.0.0.151", new IPAddress(jobs.get(1).getRanges().get(0).getAddressRange().getBegin()).toString());
+		assertEquals("10.0.0.250", new IPAddress(jobs.get(1).getRanges().get(0).getAddressRange().getEnd()).toString());
+
+		// The same addresses are scanned as when the ranges are expanded
+		assertEquals(countAddresses(chunker.chunk(config).get("123")), countAddresses(jobs));
+	}
+
+	/**
+	 * The jobs must be generated one at a time: a range of 2^64 addresses
+	 * can never be sliced into jobs up front.
+	 */
+	@Test(timeout=10000)
+	public void testStreamGeneratesJobsLazily() {
+		DiscoveryConfiguration config = new DiscoveryConfiguration();
+
+		IncludeRange range = new IncludeRange();
+		range.setBegin("2001:db8::");
+		range.setEnd("2001:db8::ffff:ffff:ffff:ffff");
+		range.setForeignSource("ABC");
+		range.setLocation("123");
+		config.addIncludeRange(range);
+
+		range = new IncludeRange();
+		range.setBegin("2001:db9::");
+		range.setEnd("2001:db9::ffff:ffff:ffff:ffff");
+		range.setForeignSource("DEF");
+		range.setLocation("123");
+		config.addIncludeRange(range);
+
+		config.setChunkSize(1);
+
+		RangeChunker chunker = new RangeChunker(ipAddressFilter);
+		Iterator<DiscoveryJob> jobs = chunker.stream(config).get("123");
+
+		for (int i = 0; i < 3; i++) {
+			DiscoveryJob job = jobs.next();
+			assertEquals("ABC", job.getForeignSource());
+			assertEquals(1, job.getRanges().size());
+			assertEquals(new IPAddress("2001:db8::" + i), new IPAddress(job.getRanges().get(0).getAddressRange().getBegin()));
+		}
+		assertTrue(jobs.hasNext());
+	}
+
+	private static int countAddresses(List<DiscoveryJob> jobs) {
+		return jobs.stream().mapToInt(job -> Iterables.size(job.getAddresses())).sum();
+	}
+
 	private static void printJobs(Map<String, List<DiscoveryJob>> jobs) {
 	    jobs.entrySet().stream()
 	        .forEach(j -> {
@@ -32,12 +32,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -62,7 +65,9 @@ import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 
 /**
  * An implementation of the EventIpcManager interface that can be used to
@@ -114,6 +119,12 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
      */
     private Map<String, EventListenerExecutor> m_listenerThreads = new HashMap<String, EventListenerExecutor>();
 
+    /**
+     * Routing table used to broadcast events, rebuilt whenever the listeners
+     * or their subscriptions change.
+     */
+    private volatile DispatchTable m_dispatchTable = new DispatchTable(Collections.emptyList(), Collections.emptyMap());
+
     /**
      * The thread pool handling the events
      */
@@ -125,30 +136,114 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
     
     private Integer m_handlerQueueLength;
 
+    private int m_listenerBatchSize = 0;
+
     private final MetricRegistry m_registry;
 
     /**
-     * A thread dedicated to each listener. The events meant for each listener
-     * is added to an execution queue when the 'sendNow()' is called. The
-     * ListenerThread reads events off of this queue and sends them to the
-     * appropriate listener.
+     * The maximum number of events held for a single listener when the
+     * listeners are dispatched in batches.
      */
-    private static class EventListenerExecutor {
+    public static final int MAX_LISTENER_QUEUE_LENGTH = 65536;
+
+    /**
+     * Delivers the events to a single listener, on a thread dedicated to
+     * that listener, and keeps track of the listener's queue depth, discarded
+     * events and latency.
+     */
+    private static abstract class EventListenerExecutor {
         /**
          * Listener to which this thread is dedicated
          */
-        private final EventListener m_listener;
+        protected final EventListener m_listener;
+
+        private final MetricRegistry m_registry;
+
+        private final Meter m_dropped;
+
+        private final Timer m_latency;
+
+        protected EventListenerExecutor(EventListener listener, MetricRegistry registry) {
+            m_listener = listener;
+            m_registry = registry;
+            removeMetrics();
+            m_registry.register(getMetricName("queued"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return getQueueSize();
+                }
+            });
+            m_dropped = m_registry.meter(getMetricName("dropped"));
+            m_latency = m_registry.timer(getMetricName("latency"));
+        }
+
+        /**
+         * Queues the event to the listener.
+         *
+         * @param event the event
+         * @param synchronous when true, the returned future completes once the listener has handled the event
+         * @return a future, or null if the delivery is not synchronous
+         */
+        public abstract CompletableFuture<Void> addEvent(Event event, boolean synchronous);
+
+        protected abstract int getQueueSize();
 
+        /**
+         * Stops the execution of this listener.
+         */
+        public void stop() {
+            removeMetrics();
+        }
+
+        protected void onEvent(final Event event, final long enqueuedAt) {
+            try {
+                 if (LOG.isDebugEnabled()) LOG.debug("run: calling onEvent on {} for event {}", m_listener.getName(), event.toStringSimple());
+
+                // Make sure we restore our log4j logging prefix after onEvent is called
+                Map<String,String> mdc = Logging.getCopyOfContextMap();
+                try {
+                    m_listener.onEvent(event);
+                } finally {
+                    Logging.setContextMap(mdc);
+                }
+            } catch (Throwable t) {
+                LOG.warn("run: an unexpected error occured during ListenerThread {}", m_listener.getName(), t);
+            } finally {
+                m_latency.update(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        protected void onEventDiscarded() {
+            LOG.warn("Listener {}'s event queue is full, discarding event", m_listener.getName());
+            m_dropped.mark();
+        }
+
+        private String getMetricName(String name) {
+            return MetricRegistry.name("listeners", m_listener.getName(), name);
+        }
+
+        private void removeMetrics() {
+            m_registry.remove(getMetricName("queued"));
+            m_registry.remove(getMetricName("dropped"));
+            m_registry.remove(getMetricName("latency"));
+        }
+    }
+
+    /**
+     * Hands every event to the listener as a separate task on a single
+     * threaded executor.
+     */
+    private static class ThreadPoolEventListenerExecutor extends EventListenerExecutor {
         /**
          * The thread that is running this runnable.
          */
-        private final ExecutorService m_delegateThread;
+        private final ThreadPoolExecutor m_delegateThread;
 
         /**
          * Constructor
          */
-        EventListenerExecutor(EventListener listener, Integer handlerQueueLength) {
-            m_listener = listener;
+        ThreadPoolEventListenerExecutor(EventListener listener, Integer handlerQueueLength, MetricRegistry registry) {
+            super(listener, registry);
             // You could also do Executors.newSingleThreadExecutor() here
             m_delegateThread = new ThreadPoolExecutor(
                     1,
@@ -164,38 +259,195 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
                     new RejectedExecutionHandler() {
                         @Override
                         public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-                            LOG.warn("Listener {}'s event queue is full, discarding event", m_listener.getName());
+                            onEventDiscarded();
                         }
                     }
             );
         }
 
-        public CompletableFuture<Void> addEvent(final Event event) {
+        @Override
+        public CompletableFuture<Void> addEvent(final Event event, final boolean synchronous) {
+            final long enqueuedAt = System.nanoTime();
             return CompletableFuture.runAsync(new Runnable() {
                 @Override
                 public void run() {
-                    try {
-                         if (LOG.isDebugEnabled()) LOG.debug("run: calling onEvent on {} for event {}", m_listener.getName(), event.toStringSimple());
-
-                        // Make sure we restore our log4j logging prefix after onEvent is called
-                        Map<String,String> mdc = Logging.getCopyOfContextMap();
-                        try {
-                            m_listener.onEvent(event);
-                        } finally {
-                            Logging.setContextMap(mdc);
-                        }
-                    } catch (Throwable t) {
-                        LOG.warn("run: an unexpected error occured during ListenerThread {}", m_listener.getName(), t);
-                    }
+                    onEvent(event, enqueuedAt);
                 }
             }, m_delegateThread);
         }
 
-        /**
-         * Stops the execution of this listener.
-         */
+        @Override
+        protected int getQueueSize() {
+            return m_delegateThread.getQueue().size();
+        }
+
+        @Override
         public void stop() {
             m_delegateThread.shutdown();
+            super.stop();
+        }
+    }
+
+    /**
+     * Queues the events to a bounded, array backed ring buffer which is drained
+     * in batches by the listener's thread, avoiding the allocation of a task
+     * per event.
+     */
+    private static class BatchingEventListenerExecutor extends EventListenerExecutor {
+
+        private static class QueuedEvent {
+            private final Event m_event;
+            private final long m_enqueuedAt;
+            private final CompletableFuture<Void> m_future;
+
+            private QueuedEvent(Event event, CompletableFuture<Void> future) {
+                m_event = event;
+                m_enqueuedAt = System.nanoTime();
+                m_future = future;
+            }
+        }
+
+        private final BlockingQueue<QueuedEvent> m_queue;
+
+        private final int m_batchSize;
+
+        private final Thread m_thread;
+
+        private volatile boolean m_running = true;
+
+        BatchingEventListenerExecutor(EventListener listener, int queueLength, int batchSize, MetricRegistry registry) {
+            super(listener, registry);
+            m_queue = new ArrayBlockingQueue<>(queueLength);
+            m_batchSize = batchSize;
+            // See ThreadPoolEventListenerExecutor for why the log prefix is preserved
+            m_thread = new LogPreservingThreadFactory(m_listener.getName(), 1).newThread(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+            m_thread.start();
+        }
+
+        @Override
+        public CompletableFuture<Void> addEvent(final Event event, final boolean synchronous) {
+            final QueuedEvent queuedEvent = new QueuedEvent(event, synchronous ? new CompletableFuture<Void>() : null);
+            if (!m_queue.offer(queuedEvent)) {
+                onEventDiscarded();
+                if (queuedEvent.m_future != null) {
+                    // Don't leave synchronous callers waiting for an event that will never be handled
+                    queuedEvent.m_future.complete(null);
+                }
+            }
+            return queuedEvent.m_future;
+        }
+
+        private void drain() {
+            final List<QueuedEvent> batch = new ArrayList<>(m_batchSize);
+            // Like the executor's shutdown(), deliver the events that were queued before stop() was called
+            while (m_running || !m_queue.isEmpty()) {
+                try {
+                    final QueuedEvent first = m_queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    m_queue.drainTo(batch, m_batchSize - 1);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+
+                for (QueuedEvent queuedEvent : batch) {
+                    onEvent(queuedEvent.m_event, queuedEvent.m_enqueuedAt);
+                    if (queuedEvent.m_future != null) {
+                        queuedEvent.m_future.complete(null);
+                    }
+                }
+                batch.clear();
+            }
+        }
+
+        @Override
+        protected int getQueueSize() {
+            return m_queue.size();
+        }
+
+        @Override
+        public void stop() {
+            m_running = false;
+            super.stop();
+        }
+    }
+
+    /**
+     * An immutable view of the listener subscriptions. The listeners of every UEI
+     * that is broadcast are resolved once, by walking through the UEI's prefixes,
+     * and remembered for subsequent broadcasts.
+     */
+    private static class DispatchTable {
+        /**
+         * Limits the number of UEIs for which the resolved listeners are remembered.
+         */
+        private static final int MAX_RESOLVED_UEIS = 10000;
+
+        private final List<EventListenerExecutor> m_matchAll;
+
+        private final Map<String, List<EventListenerExecutor>> m_ueiListeners;
+
+        private final Map<String, List<EventListenerExecutor>> m_resolved = new ConcurrentHashMap<>();
+
+        private DispatchTable(List<EventListenerExecutor> matchAll, Map<String, List<EventListenerExecutor>> ueiListeners) {
+            m_matchAll = matchAll;
+            m_ueiListeners = ueiListeners;
+        }
+
+        public boolean hasMatchAllListeners() {
+            return !m_matchAll.isEmpty();
+        }
+
+        public List<EventListenerExecutor> getMatchAllListeners() {
+            return m_matchAll;
+        }
+
+        /**
+         * Returns the listeners interested in all events, followed by the
+         * listeners interested in the given UEI.
+         */
+        public List<EventListenerExecutor> getListeners(String uei) {
+            List<EventListenerExecutor> listeners = m_resolved.get(uei);
+            if (listeners == null) {
+                listeners = resolve(uei);
+                if (m_resolved.size() < MAX_RESOLVED_UEIS) {
+                    m_resolved.put(uei, listeners);
+                }
+            }
+            return listeners;
+        }
+
+        private List<EventListenerExecutor> resolve(String eventUei) {
+            final Set<EventListenerExecutor> listeners = new LinkedHashSet<>(m_matchAll);
+
+            /*
+             * Add the listeners who are interested in this event UEI.
+             * Loop to attempt partial wild card "directory" matches.
+             */
+            for (String uei = eventUei; uei.length() > 0; ) {
+                final List<EventListenerExecutor> ueiListeners = m_ueiListeners.get(uei);
+                if (ueiListeners != null) {
+                    listeners.addAll(ueiListeners);
+                }
+
+                // Try wild cards: Find / before last character
+                int i = uei.lastIndexOf("/", uei.length() - 2);
+                if (i > 0) {
+                    // Split at "/", including the /
+                    uei = uei.substring (0, i + 1);
+                } else {
+                    // No more wild cards to match
+                    break;
+                }
+            }
+            return Collections.unmodifiableList(new ArrayList<>(listeners));
         }
     }
 
@@ -290,65 +542,38 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
             LOG.debug("Event ID {} to be broadcasted: {}", event.getDbid(), event.getUei());
         }
 
-        if (LOG.isDebugEnabled() && m_listeners.isEmpty()) {
+        final DispatchTable dispatchTable = m_dispatchTable;
+        if (LOG.isDebugEnabled() && !dispatchTable.hasMatchAllListeners()) {
             LOG.debug("No listeners interested in all events");
         }
 
-        List<CompletableFuture<Void>> listenerFutures = new ArrayList<>();
-
-        // Send to listeners interested in receiving all events
-        for (EventListener listener : m_listeners) {
-            listenerFutures.add(queueEventToListener(event, listener));
-        }
-
+        final List<EventListenerExecutor> listeners;
         if (event.getUei() == null) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Event ID {} does not have a UEI, so skipping UEI matching", event.getDbid());
             }
-            return;
-        }
-
-        /*
-         * Send to listeners who are interested in this event UEI.
-         * Loop to attempt partial wild card "directory" matches.
-         */
-        Set<EventListener> sentToListeners = new HashSet<EventListener>();
-        for (String uei = event.getUei(); uei.length() > 0; ) {
-            if (m_ueiListeners.containsKey(uei)) {
-                for (EventListener listener : m_ueiListeners.get(uei)) {
-                    if (!sentToListeners.contains(listener)) {
-                        listenerFutures.add(queueEventToListener(event, listener));
-                        sentToListeners.add(listener);
-                    }
-                }
-            }
-            
-            // Try wild cards: Find / before last character
-            int i = uei.lastIndexOf("/", uei.length() - 2);
-            if (i > 0) {
-                // Split at "/", including the /
-                uei = uei.substring (0, i + 1);
-            } else {
-                // No more wild cards to match
-                break;
-            }
-        }
-        
-        if (sentToListeners.isEmpty()) {
-            if (LOG.isDebugEnabled()) {
+            // Only send to listeners interested in receiving all events
+            listeners = dispatchTable.getMatchAllListeners();
+        } else {
+            listeners = dispatchTable.getListeners(event.getUei());
+            if (LOG.isDebugEnabled() && listeners.size() == dispatchTable.getMatchAllListeners().size()) {
                 LOG.debug("No listener interested in event ID {}: {}", event.getDbid(), event.getUei());
             }
         }
 
-        // If synchronous...
-        if (synchronous) {
-            // Wait for all of the listeners to complete before returning
-            CompletableFuture.allOf(listenerFutures.toArray(new CompletableFuture[0])).join();
+        if (!synchronous) {
+            for (EventListenerExecutor listener : listeners) {
+                listener.addEvent(event, false);
+            }
+            return;
         }
-    }
 
-    private CompletableFuture<Void> queueEventToListener(Event event, EventListener listener) {
-        return m_listenerThreads.get(listener.getName()).addEvent(event);
+        // Wait for all of the listeners to complete before returning
+        final List<CompletableFuture<Void>> listenerFutures = new ArrayList<>(listeners.size());
+        for (EventListenerExecutor listener : listeners) {
+            listenerFutures.add(listener.addEvent(event, true));
+        }
+        CompletableFuture.allOf(listenerFutures.toArray(new CompletableFuture[0])).join();
     }
 
     /**
@@ -369,6 +594,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         for (String uei : m_ueiListeners.keySet()) {
             removeUeiForListener(uei, listener);
         }
+
+        updateDispatchTable();
     }
 
     /**
@@ -398,6 +625,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
 
         // Since we have a UEI-specific listener, remove the match-all listener
         removeMatchAllForListener(listener);
+
+        updateDispatchTable();
     }
 
     /**
@@ -432,6 +661,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         for (String uei : ueis) {
             removeUeiForListener(uei, listener);
         }
+
+        updateDispatchTable();
     }
 
     /**
@@ -451,6 +682,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         Assert.notNull(uei, "uei argument cannot be null");
 
         removeUeiForListener(uei, listener);
+
+        updateDispatchTable();
     }
 
     /**
@@ -477,6 +710,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
 
             m_listenerThreads.remove(listener.getName());
         }
+
+        updateDispatchTable();
     }
 
     /**
@@ -488,10 +723,41 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
             return;
         }
         
-        EventListenerExecutor listenerThread = new EventListenerExecutor(listener, m_handlerQueueLength);
+        final EventListenerExecutor listenerThread;
+        if (m_listenerBatchSize > 0) {
+            final int queueLength = m_handlerQueueLength == null ? MAX_LISTENER_QUEUE_LENGTH : Math.min(m_handlerQueueLength, MAX_LISTENER_QUEUE_LENGTH);
+            listenerThread = new BatchingEventListenerExecutor(listener, queueLength, m_listenerBatchSize, m_registry);
+        } else {
+            listenerThread = new ThreadPoolEventListenerExecutor(listener, m_handlerQueueLength, m_registry);
+        }
         m_listenerThreads.put(listener.getName(), listenerThread);
     }
 
+    /**
+     * Rebuilds the routing table used by {@link #broadcastNow(Event, boolean)}
+     * from the current subscriptions. Must be called while holding the lock.
+     */
+    private void updateDispatchTable() {
+        final List<EventListenerExecutor> matchAll = new ArrayList<>(m_listeners.size());
+        for (EventListener listener : m_listeners) {
+            matchAll.add(m_listenerThreads.get(listener.getName()));
+        }
+
+        final Map<String, List<EventListenerExecutor>> ueiListeners = new HashMap<>();
+        for (Map.Entry<String, List<EventListener>> entry : m_ueiListeners.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            final List<EventListenerExecutor> executors = new ArrayList<>(entry.getValue().size());
+            for (EventListener listener : entry.getValue()) {
+                executors.add(m_listenerThreads.get(listener.getName()));
+            }
+            ueiListeners.put(entry.getKey(), executors);
+        }
+
+        m_dispatchTable = new DispatchTable(Collections.unmodifiableList(matchAll), ueiListeners);
+    }
+
     /**
      * Add to uei listeners.
      */
@@ -609,6 +875,27 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         m_handlerPoolSize = handlerPoolSize;
     }
 
+    /**
+     * <p>getListenerBatchSize</p>
+     *
+     * @return a int.
+     */
+    public int getListenerBatchSize() {
+        return m_listenerBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of events handed to a listener in a single
+     * batch. When greater than 0, the events are queued to a bounded ring
+     * buffer per listener instead of a task per event and listener.
+     *
+     * @param listenerBatchSize a int.
+     */
+    public synchronized void setListenerBatchSize(int listenerBatchSize) {
+        Assert.state(m_listenerThreads.isEmpty(), "listenerBatchSize property cannot be set after listeners have been added");
+        m_listenerBatchSize = listenerBatchSize;
+    }
+
     /**
      * <p>getHandlerQueueLength</p>
      *
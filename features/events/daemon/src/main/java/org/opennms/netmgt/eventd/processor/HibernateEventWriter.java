@@ -28,18 +28,35 @@
 
 package org.opennms.netmgt.eventd.processor;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
+import org.hibernate.Session;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.dao.api.DistPollerDao;
 import org.opennms.netmgt.dao.api.EventDao;
 import org.opennms.netmgt.dao.api.MonitoringSystemDao;
 import org.opennms.netmgt.dao.api.NodeDao;
 import org.opennms.netmgt.dao.api.ServiceTypeDao;
+import org.opennms.netmgt.dao.api.SessionFactoryWrapper;
 import org.opennms.netmgt.dao.util.AutoAction;
 import org.opennms.netmgt.dao.util.Correlation;
 import org.opennms.netmgt.dao.util.Forward;
@@ -49,6 +66,7 @@ import org.opennms.netmgt.eventd.EventUtil;
 import org.opennms.netmgt.events.api.EventDatabaseConstants;
 import org.opennms.netmgt.events.api.EventProcessorException;
 import org.opennms.netmgt.model.OnmsEvent;
+import org.opennms.netmgt.model.OnmsEventParameter;
 import org.opennms.netmgt.model.OnmsSeverity;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xml.event.Header;
@@ -56,6 +74,8 @@ import org.opennms.netmgt.xml.event.Log;
 import org.opennms.netmgt.xml.event.Operaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DeadlockLoserDataAccessException;
 import org.springframework.transaction.TransactionStatus;
@@ -63,6 +83,7 @@ import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.util.Assert;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.codahale.metrics.Timer.Context;
@@ -81,6 +102,13 @@ import com.codahale.metrics.Timer.Context;
  *
  * Values for the ' <parms>' block are loaded with each parm name and parm value
  * delimited with the NAME_VAL_DELIM.
+ *
+ * If the batch size is greater than 1, the events of several incoming logs are
+ * collected by a single writer thread and inserted using JDBC batch statements,
+ * one transaction per batch. A batch is written as soon as it holds batchSize
+ * events or the oldest log has waited batchInterval milliseconds. The calling
+ * thread blocks until its events have been written so that the database IDs are
+ * set on the events before they are handed to the next processor.
  * 
  * @see org.opennms.netmgt.events.api.EventDatabaseConstants#MULTIPLE_VAL_DELIM
  * @see org.opennms.netmgt.events.api.EventDatabaseConstants#DB_ATTRIB_DELIM
@@ -89,7 +117,7 @@ import com.codahale.metrics.Timer.Context;
  * @author <A HREF="mailto:sowmya@opennms.org">Sowmya Nataraj </A>
  * @author <A HREF="http://www.opennms.org">OpenNMS.org </A>
  */
-public class HibernateEventWriter implements EventWriter {
+public class HibernateEventWriter implements EventWriter, InitializingBean, DisposableBean {
     private static final Logger LOG = LoggerFactory.getLogger(HibernateEventWriter.class);
 
     public static final String LOG_MSG_DEST_DO_NOT_PERSIST = "donotpersist";
@@ -97,6 +125,16 @@ public class HibernateEventWriter implements EventWriter {
     public static final String LOG_MSG_DEST_LOG_AND_DISPLAY = "logndisplay";
     public static final String LOG_MSG_DEST_LOG_ONLY = "logonly";
     public static final String LOG_MSG_DEST_DISPLAY_ONLY = "displayonly";
+
+    private static final String INSERT_EVENT_SQL = "INSERT INTO events (" +
+            "eventId, eventUei, nodeId, eventTime, eventHost, eventSource, ipAddr, systemId, eventSnmpHost, serviceId, " +
+            "eventSnmp, eventCreateTime, eventDescr, eventLogGroup, eventLogMsg, eventSeverity, eventPathOutage, " +
+            "eventCorrelation, eventSuppressedCount, eventOperInstruct, eventAutoAction, eventOperAction, " +
+            "eventOperActionMenuText, eventNotification, eventTTicket, eventTTicketState, eventForward, " +
+            "eventMouseOverText, eventLog, eventDisplay, eventAckUser, eventAckTime, ifIndex) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_EVENT_PARAMETER_SQL = "INSERT INTO event_parameters (eventId, name, value, type) VALUES (?, ?, ?, ?)";
     
     @Autowired
     private TransactionOperations m_transactionManager;
@@ -119,10 +157,48 @@ public class HibernateEventWriter implements EventWriter {
     @Autowired
     private EventUtil eventUtil;
 
+    @Autowired
+    private SessionFactoryWrapper sessionFactoryWrapper;
+
     private final Timer writeTimer;
 
+    private final Histogram batchSizes;
+
+    private int m_batchSize = 1;
+
+    private long m_batchInterval = 250;
+
+    private final BlockingQueue<PendingLog> m_pendingLogs = new LinkedBlockingQueue<>();
+
+    private Thread m_batchWriter;
+
     public HibernateEventWriter(MetricRegistry registry) {
         writeTimer = Objects.requireNonNull(registry).timer("eventlogs.process.write");
+        batchSizes = registry.histogram("eventlogs.process.write.batches");
+    }
+
+    /**
+     * Starts the batch writer thread if batching is enabled.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        Assert.isTrue(m_batchSize > 0, "batchSize must be greater than 0");
+        Assert.isTrue(m_batchInterval > 0, "batchInterval must be greater than 0");
+        if (m_batchSize > 1 && m_batchWriter == null) {
+            LOG.info("Persisting events in batches of up to {} events, waiting at most {}ms.", m_batchSize, m_batchInterval);
+            m_batchWriter = new Thread(this::runBatchWriter, "Eventd-BatchWriter");
+            m_batchWriter.setDaemon(true);
+            m_batchWriter.start();
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (m_batchWriter != null) {
+            m_batchWriter.interrupt();
+            m_batchWriter.join();
+            m_batchWriter = null;
+        }
     }
 
     /**
@@ -179,6 +255,11 @@ public class HibernateEventWriter implements EventWriter {
                 return;
             }
 
+            if (m_batchWriter != null) {
+                processBatched(eventLog.getHeader(), eventsToPersist);
+                return;
+            }
+
             // Time the transaction and insertions
             try (Context context = writeTimer.time()) {
                 final AtomicReference<EventProcessorException> exception = new AtomicReference<>();
@@ -204,6 +285,212 @@ public class HibernateEventWriter implements EventWriter {
         }
     }
 
+    /**
+     * Hands the events over to the batch writer thread and waits until
+     * they have been written.
+     */
+    private void processBatched(final Header eventHeader, final List<Event> eventsToPersist) throws EventProcessorException {
+        final PendingLog pendingLog = new PendingLog(eventHeader, eventsToPersist);
+        m_pendingLogs.add(pendingLog);
+        try {
+            pendingLog.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EventProcessorException("Interrupted while waiting for events to be stored", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof EventProcessorException) {
+                throw (EventProcessorException)e.getCause();
+            }
+            throw new EventProcessorException("Unexpected exception while storing events", e.getCause());
+        }
+    }
+
+    private void runBatchWriter() {
+        final List<PendingLog> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final PendingLog first = m_pendingLogs.take();
+                batch.add(first);
+                int eventCount = first.events.size();
+
+                // Collect more logs until the batch is full or the oldest log has waited long enough
+                final long deadline = first.enqueuedAt + TimeUnit.MILLISECONDS.toNanos(m_batchInterval);
+                while (eventCount < m_batchSize) {
+                    final PendingLog next = m_pendingLogs.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    eventCount += next.events.size();
+                }
+
+                writeBatch(batch, eventCount);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("Batch writer interrupted; stopping.");
+        } finally {
+            // Don't leave any callers waiting
+            final EventProcessorException e = new EventProcessorException("Event writer was stopped before the events could be stored");
+            batch.forEach(p -> p.future.completeExceptionally(e));
+            final List<PendingLog> remaining = new ArrayList<>();
+            m_pendingLogs.drainTo(remaining);
+            remaining.forEach(p -> p.future.completeExceptionally(e));
+        }
+    }
+
+    private void writeBatch(final List<PendingLog> batch, final int eventCount) {
+        LOG.debug("HibernateEventWriter: storing batch of {} events from {} logs", eventCount, batch.size());
+        batchSizes.update(eventCount);
+        final Throwable failure = write(batch);
+        if (failure == null) {
+            batch.forEach(p -> p.future.complete(null));
+            return;
+        }
+        if (failure instanceof DeadlockLoserDataAccessException || batch.size() == 1) {
+            fail(batch, eventCount, failure);
+            return;
+        }
+
+        // Retry the logs one at a time so that a bad event only fails its own log
+        LOG.warn("HibernateEventWriter: failed to store batch of {} events from {} logs; retrying the logs individually.", eventCount, batch.size(), failure);
+        for (final PendingLog pendingLog : batch) {
+            final List<PendingLog> single = Collections.singletonList(pendingLog);
+            final Throwable e = write(single);
+            if (e == null) {
+                pendingLog.future.complete(null);
+            } else {
+                fail(single, pendingLog.events.size(), e);
+            }
+        }
+    }
+
+    /**
+     * Writes the logs in a single transaction.
+     *
+     * @return the exception that caused the transaction to fail, or null if
+     * the logs were written
+     */
+    private Throwable write(final List<PendingLog> logs) {
+        try (Context context = writeTimer.time()) {
+            m_transactionManager.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    insertBatch(logs);
+                }
+            });
+            return null;
+        } catch (Throwable e) {
+            return e;
+        }
+    }
+
+    private static void fail(final List<PendingLog> logs, final int eventCount, final Throwable e) {
+        final EventProcessorException ex;
+        if (e instanceof DeadlockLoserDataAccessException) {
+            ex = new EventProcessorException("Encountered deadlock when inserting batch of " + eventCount + " events", e);
+        } else {
+            ex = new EventProcessorException("Unexpected exception while storing batch of " + eventCount + " events", e);
+        }
+        logs.forEach(p -> p.future.completeExceptionally(ex));
+    }
+
+    /**
+     * Inserts all of the events in the batch using JDBC batch statements on the
+     * connection of the current transaction. The IDs are taken from the same
+     * generator that Hibernate uses for {@link OnmsEvent}.
+     */
+    private void insertBatch(final List<PendingLog> batch) {
+        final Session session = sessionFactoryWrapper.getSessionFactory().getCurrentSession();
+        final IdentifierGenerator idGenerator = ((SessionFactoryImplementor)session.getSessionFactory()).getIdentifierGenerator(OnmsEvent.class.getName());
+
+        final List<Event> events = new ArrayList<>();
+        final List<OnmsEvent> ovents = new ArrayList<>();
+        for (final PendingLog pendingLog : batch) {
+            for (final Event event : pendingLog.events) {
+                LOG.debug("HibernateEventWriter: processing {}, nodeid: {}, ipaddr: {}, serviceid: {}, time: {}", event.getUei(), event.getNodeid(), event.getInterface(), event.getService(), event.getTime());
+                final OnmsEvent ovent = createOnmsEvent(pendingLog.header, event);
+                ovent.setId((Integer)idGenerator.generate((SessionImplementor)session, ovent));
+                events.add(event);
+                ovents.add(ovent);
+            }
+        }
+
+        session.doWork(connection -> insertEvents(connection, ovents));
+
+        // Update the events with the database IDs of the events stored in the database
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setDbid(ovents.get(i).getId());
+        }
+    }
+
+    private static void insertEvents(final Connection connection, final List<OnmsEvent> ovents) throws SQLException {
+        try (final PreparedStatement stmt = connection.prepareStatement(INSERT_EVENT_SQL)) {
+            for (final OnmsEvent ovent : ovents) {
+                int i = 1;
+                stmt.setInt(i++, ovent.getId());
+                stmt.setString(i++, ovent.getEventUei());
+                stmt.setObject(i++, ovent.getNode() == null ? null : ovent.getNode().getId(), Types.INTEGER);
+                stmt.setTimestamp(i++, toTimestamp(ovent.getEventTime()));
+                stmt.setString(i++, ovent.getEventHost());
+                stmt.setString(i++, ovent.getEventSource());
+                stmt.setString(i++, ovent.getIpAddr() == null ? null : InetAddressUtils.str(ovent.getIpAddr()));
+                stmt.setString(i++, ovent.getDistPoller().getId());
+                stmt.setString(i++, ovent.getEventSnmpHost());
+                stmt.setObject(i++, ovent.getServiceType() == null ? null : ovent.getServiceType().getId(), Types.INTEGER);
+                stmt.setString(i++, ovent.getEventSnmp());
+                stmt.setTimestamp(i++, toTimestamp(ovent.getEventCreateTime()));
+                stmt.setString(i++, ovent.getEventDescr());
+                stmt.setString(i++, ovent.getEventLogGroup());
+                stmt.setString(i++, ovent.getEventLogMsg());
+                stmt.setObject(i++, ovent.getEventSeverity(), Types.INTEGER);
+                stmt.setString(i++, ovent.getEventPathOutage());
+                stmt.setString(i++, ovent.getEventCorrelation());
+                stmt.setObject(i++, ovent.getEventSuppressedCount(), Types.INTEGER);
+                stmt.setString(i++, ovent.getEventOperInstruct());
+                stmt.setString(i++, ovent.getEventAutoAction());
+                stmt.setString(i++, ovent.getEventOperAction());
+                stmt.setString(i++, ovent.getEventOperActionMenuText());
+                stmt.setString(i++, ovent.getEventNotification());
+                stmt.setString(i++, ovent.getEventTTicket());
+                stmt.setObject(i++, ovent.getEventTTicketState(), Types.INTEGER);
+                stmt.setString(i++, ovent.getEventForward());
+                stmt.setString(i++, ovent.getEventMouseOverText());
+                stmt.setString(i++, ovent.getEventLog());
+                stmt.setString(i++, ovent.getEventDisplay());
+                stmt.setString(i++, ovent.getEventAckUser());
+                stmt.setTimestamp(i++, toTimestamp(ovent.getEventAckTime()));
+                stmt.setObject(i++, ovent.getIfIndex(), Types.INTEGER);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        try (final PreparedStatement stmt = connection.prepareStatement(INSERT_EVENT_PARAMETER_SQL)) {
+            boolean hasParameters = false;
+            for (final OnmsEvent ovent : ovents) {
+                if (ovent.getEventParameters() == null) {
+                    continue;
+                }
+                for (final OnmsEventParameter parameter : ovent.getEventParameters()) {
+                    stmt.setInt(1, ovent.getId());
+                    stmt.setString(2, parameter.getName());
+                    stmt.setString(3, parameter.getValue());
+                    stmt.setString(4, parameter.getType());
+                    stmt.addBatch();
+                    hasParameters = true;
+                }
+            }
+            if (hasParameters) {
+                stmt.executeBatch();
+            }
+        }
+    }
+
+    private static Timestamp toTimestamp(final Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -405,4 +692,60 @@ public class HibernateEventWriter implements EventWriter {
     public void setTransactionManager(TransactionOperations transactionManager) {
         m_transactionManager = transactionManager;
     }
+
+    public void setDistPollerDao(DistPollerDao distPollerDao) {
+        this.distPollerDao = distPollerDao;
+    }
+
+    public void setMonitoringSystemDao(MonitoringSystemDao monitoringSystemDao) {
+        this.monitoringSystemDao = monitoringSystemDao;
+    }
+
+    public void setServiceTypeDao(ServiceTypeDao serviceTypeDao) {
+        this.serviceTypeDao = serviceTypeDao;
+    }
+
+    public void setEventUtil(EventUtil eventUtil) {
+        this.eventUtil = eventUtil;
+    }
+
+    public void setSessionFactoryWrapper(SessionFactoryWrapper sessionFactoryWrapper) {
+        this.sessionFactoryWrapper = sessionFactoryWrapper;
+    }
+
+    public int getBatchSize() {
+        return m_batchSize;
+    }
+
+    /**
+     * The maximum number of events that are persisted in a single
+     * transaction. A value of 1 disables batching.
+     */
+    public void setBatchSize(int batchSize) {
+        m_batchSize = batchSize;
+    }
+
+    public long getBatchInterval() {
+        return m_batchInterval;
+    }
+
+    /**
+     * The maximum number of milliseconds a log waits for the batch
+     * to fill up before it is written.
+     */
+    public void setBatchInterval(long batchInterval) {
+        m_batchInterval = batchInterval;
+    }
+
+    private static final class PendingLog {
+        private final Header header;
+        private final List<Event> events;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingLog(final Header header, final List<Event> events) {
+            this.header = header;
+            this.events = events;
+        }
+    }
 }
@@ -618,6 +618,60 @@ public class EventIpcManagerDefaultImplTest extends TestCase {
         await().pollInterval(1, TimeUnit.SECONDS).untilAtomic(counter, is(equalTo(6)));
     }
 
+    public void testSlowEventListenerWithBatchedDispatch() throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger();
+        CountDownLatch handlingFirstEvent = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        EventListener slowListener = new EventListener() {
+            @Override
+            public String getName() {
+                return "testSlowEventListenerWithBatchedDispatch";
+            }
+
+            @Override
+            public void onEvent(Event event) {
+                handlingFirstEvent.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+                counter.incrementAndGet();
+            }
+        };
+
+        EventIpcManagerDefaultImpl manager = new EventIpcManagerDefaultImpl(m_registry);
+        manager.setHandlerPoolSize(1);
+        manager.setHandlerQueueLength(5);
+        manager.setListenerBatchSize(10);
+        DefaultEventHandlerImpl handler = new DefaultEventHandlerImpl(m_registry);
+        manager.setEventHandler(handler);
+        manager.afterPropertiesSet();
+
+        manager.addEventListener(slowListener);
+
+        // Send 10 events. The first one is being handled by the listener while
+        // the next 5 fill up the listener's queue, and the last 4 are discarded.
+        //
+        manager.broadcastNow(new EventBuilder("uei.opennms.org/foo/0", "testSlowEventListenerWithBatchedDispatch").getEvent(), false);
+        assertTrue(handlingFirstEvent.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < 10; i++) {
+            EventBuilder bldr = new EventBuilder("uei.opennms.org/foo/" + i, "testSlowEventListenerWithBatchedDispatch");
+            Event e = bldr.getEvent();
+            manager.broadcastNow(e, false);
+        }
+        assertEquals(5, m_registry.getGauges().get("listeners.testSlowEventListenerWithBatchedDispatch.queued").getValue());
+        assertEquals(4, m_registry.meter("listeners.testSlowEventListenerWithBatchedDispatch.dropped").getCount());
+        release.countDown();
+
+        await().pollInterval(1, TimeUnit.SECONDS).untilAtomic(counter, is(equalTo(6)));
+
+        // Synchronous broadcasts return once the listener has handled the event
+        manager.broadcastNow(new EventBuilder("uei.opennms.org/foo/10", "testSlowEventListenerWithBatchedDispatch").getEvent(), true);
+        assertEquals(7, counter.get());
+        assertEquals(7, m_registry.timer("listeners.testSlowEventListenerWithBatchedDispatch.latency").getCount());
+    }
+
     /**
      * This test creates two event listeners that both create events as they
      * handle events. This test can be used to detect deadlocks between the
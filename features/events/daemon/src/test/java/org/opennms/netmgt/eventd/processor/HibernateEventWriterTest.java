@@ -28,20 +28,55 @@
 
 package org.opennms.netmgt.eventd.processor;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.Session;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.jdbc.Work;
 import org.junit.Before;
 import org.junit.Test;
+import org.opennms.netmgt.dao.api.DistPollerDao;
+import org.opennms.netmgt.dao.api.MonitoringSystemDao;
+import org.opennms.netmgt.dao.api.ServiceTypeDao;
+import org.opennms.netmgt.dao.api.SessionFactoryWrapper;
+import org.opennms.netmgt.eventd.EventUtil;
 import org.opennms.netmgt.events.api.EventProcessorException;
+import org.opennms.netmgt.model.OnmsDistPoller;
+import org.opennms.netmgt.model.OnmsEvent;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xml.event.Events;
 import org.opennms.netmgt.xml.event.Log;
+import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionOperations;
 
 import com.codahale.metrics.MetricRegistry;
@@ -116,4 +151,141 @@ public class HibernateEventWriterTest {
         eventWriter.process(log);
         verify(transactionManager, times(1)).execute(any());
     }
+
+    /**
+     * Verifies that the events from several logs are written in
+     * a single transaction when batching is enabled.
+     */
+    @Test
+    public void testLogsAreBatched() throws Exception {
+        final PreparedStatement stmt = mockBatchedWrites(mock(EventUtil.class));
+        eventWriter.setBatchSize(3);
+        eventWriter.setBatchInterval(60000);
+        eventWriter.afterPropertiesSet();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            final List<Event> events = new ArrayList<>();
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                final EventBuilder bldr = new EventBuilder("testUei", "testSource");
+                bldr.setLogDest(HibernateEventWriter.LOG_MSG_DEST_LOG_AND_DISPLAY);
+                final Log log = bldr.getLog();
+                events.add(log.getEvents().getEvent(0));
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    eventWriter.process(log);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            verify(transactionManager, times(1)).execute(any());
+            verify(stmt, times(3)).addBatch();
+
+            // Every event has its own database ID
+            final Set<Integer> dbids = new HashSet<>();
+            for (Event event : events) {
+                assertNotNull(event.getDbid());
+                dbids.add(event.getDbid());
+            }
+            assertEquals(3, dbids.size());
+        } finally {
+            executor.shutdown();
+            eventWriter.destroy();
+        }
+    }
+
+    /**
+     * Verifies that the logs of a failed batch are retried one at a
+     * time, so that only the log with the bad event fails.
+     */
+    @Test
+    public void testFailedBatchIsRetriedPerLog() throws Exception {
+        final EventUtil eventUtil = mock(EventUtil.class);
+        when(eventUtil.getEventHost(any(Event.class))).thenAnswer(inv -> {
+            if ("badUei".equals(((Event)inv.getArguments()[0]).getUei())) {
+                throw new IllegalStateException("bad event");
+            }
+            return null;
+        });
+        mockBatchedWrites(eventUtil);
+        eventWriter.setBatchSize(3);
+        eventWriter.setBatchInterval(60000);
+        eventWriter.afterPropertiesSet();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            final List<Event> events = new ArrayList<>();
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (String uei : new String[] { "testUei", "badUei", "testUei" }) {
+                final EventBuilder bldr = new EventBuilder(uei, "testSource");
+                bldr.setLogDest(HibernateEventWriter.LOG_MSG_DEST_LOG_AND_DISPLAY);
+                final Log log = bldr.getLog();
+                events.add(log.getEvents().getEvent(0));
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    eventWriter.process(log);
+                    return null;
+                }));
+            }
+
+            futures.get(0).get();
+            try {
+                futures.get(1).get();
+                fail("Storing the bad event should fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof EventProcessorException);
+            }
+            futures.get(2).get();
+
+            // One transaction for the batch and one for each of the logs
+            verify(transactionManager, times(4)).execute(any());
+            assertNotNull(events.get(0).getDbid());
+            assertNotNull(events.get(2).getDbid());
+        } finally {
+            executor.shutdown();
+            eventWriter.destroy();
+        }
+    }
+
+    /**
+     * Runs the transaction callbacks against mocked Hibernate and JDBC
+     * objects so that the batched inserts are exercised.
+     *
+     * @return the statement the events are inserted with
+     */
+    private PreparedStatement mockBatchedWrites(final EventUtil eventUtil) throws Exception {
+        when(transactionManager.execute(any())).thenAnswer(inv -> ((TransactionCallback<?>)inv.getArguments()[0]).doInTransaction(null));
+
+        final PreparedStatement stmt = mock(PreparedStatement.class);
+        final Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(stmt);
+
+        final AtomicInteger ids = new AtomicInteger();
+        final IdentifierGenerator idGenerator = mock(IdentifierGenerator.class);
+        when(idGenerator.generate(any(SessionImplementor.class), any())).thenAnswer(inv -> ids.incrementAndGet());
+
+        final SessionFactoryImplementor sessionFactory = mock(SessionFactoryImplementor.class);
+        final Session session = mock(Session.class, withSettings().extraInterfaces(SessionImplementor.class));
+        when(sessionFactory.getCurrentSession()).thenReturn(session);
+        when(sessionFactory.getIdentifierGenerator(eq(OnmsEvent.class.getName()))).thenReturn(idGenerator);
+        when(session.getSessionFactory()).thenReturn(sessionFactory);
+        doAnswer(inv -> {
+            ((Work)inv.getArguments()[0]).execute(connection);
+            return null;
+        }).when(session).doWork(any(Work.class));
+
+        final SessionFactoryWrapper sessionFactoryWrapper = mock(SessionFactoryWrapper.class);
+        when(sessionFactoryWrapper.getSessionFactory()).thenReturn(sessionFactory);
+
+        final DistPollerDao distPollerDao = mock(DistPollerDao.class);
+        when(distPollerDao.whoami()).thenReturn(new OnmsDistPoller("00000000-0000-0000-0000-000000000000"));
+
+        eventWriter.setSessionFactoryWrapper(sessionFactoryWrapper);
+        eventWriter.setDistPollerDao(distPollerDao);
+        eventWriter.setMonitoringSystemDao(mock(MonitoringSystemDao.class));
+        eventWriter.setServiceTypeDao(mock(ServiceTypeDao.class));
+        eventWriter.setEventUtil(eventUtil);
+        return stmt;
+    }
 }
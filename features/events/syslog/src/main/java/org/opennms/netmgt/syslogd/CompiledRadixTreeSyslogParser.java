@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.nio.ByteBuffer;
+
+import org.opennms.netmgt.config.SyslogdConfig;
+
+/**
+ * This parser uses the same grok patterns as the {@link RadixTreeSyslogParser}
+ * and produces the same messages, but it parses them with a compiled copy of
+ * the parser tree on the calling thread instead of building a tree of futures
+ * for every message.
+ * 
+ * @see RadixTreeParser#parseCompiled(ByteBuffer)
+ */
+public class CompiledRadixTreeSyslogParser extends RadixTreeSyslogParser {
+
+	public CompiledRadixTreeSyslogParser(SyslogdConfig config, ByteBuffer syslogString) {
+		super(config, syslogString);
+	}
+
+	@Override
+	protected SyslogMessage parse(RadixTreeParser parser, ByteBuffer text) {
+		return parser.parseCompiled(text);
+	}
+}
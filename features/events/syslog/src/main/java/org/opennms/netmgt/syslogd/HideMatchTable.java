@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.opennms.netmgt.config.syslogd.HideMatch;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * The {@link HideMatch} entries of the Syslogd configuration, compiled so
+ * that all of the substring matches are evaluated in a single pass.
+ *
+ * Tables are cached by the identity of the list of {@link HideMatch} entries,
+ * so that a new table is built when the configuration is reloaded.
+ */
+final class HideMatchTable {
+
+    private static final LoadingCache<List<HideMatch>,HideMatchTable> TABLES = CacheBuilder.newBuilder().weakKeys().build(
+        new CacheLoader<List<HideMatch>,HideMatchTable>() {
+            public HideMatchTable load(List<HideMatch> hideMatches) {
+                return new HideMatchTable(hideMatches);
+            }
+        }
+    );
+
+    private final int m_size;
+    private final SubstringMatcher m_substrings;
+    private final Pattern[] m_regexes;
+
+    /**
+     * @return the table for the given list of {@link HideMatch} entries
+     */
+    static HideMatchTable forHideMatches(final List<HideMatch> hideMatches) {
+        HideMatchTable table = TABLES.getUnchecked(hideMatches);
+        if (table.m_size != hideMatches.size()) {
+            // The list was modified after the table was built
+            TABLES.invalidate(hideMatches);
+            table = TABLES.getUnchecked(hideMatches);
+        }
+        return table;
+    }
+
+    private HideMatchTable(final List<HideMatch> hideMatches) {
+        m_size = hideMatches.size();
+
+        final List<String> substrings = new ArrayList<>();
+        final List<Pattern> regexes = new ArrayList<>();
+        for (final HideMatch hide : hideMatches) {
+            if (hide.getMatch().getType().equals("substr")) {
+                substrings.add(hide.getMatch().getExpression());
+            } else if (hide.getMatch().getType().equals("regex")) {
+                final Pattern pattern = ConvertToEvent.getPattern(hide.getMatch().getExpression());
+                if (pattern != null) {
+                    regexes.add(pattern);
+                }
+            }
+        }
+        m_substrings = new SubstringMatcher(substrings);
+        m_regexes = regexes.toArray(new Pattern[0]);
+    }
+
+    /**
+     * @return true if there are no {@link HideMatch} entries
+     */
+    boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    /**
+     * @return true if the message should be hidden
+     */
+    boolean matches(final String fullText) {
+        if (m_substrings.size() > 0 && m_substrings.containsAny(fullText)) {
+            return true;
+        }
+        for (final Pattern regex : m_regexes) {
+            if (regex.matcher(fullText).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -77,4 +77,14 @@ public interface ParserStage {
 	 * that the next stage can continue processing.
 	 */
 	ParserState apply(ParserState state);
+
+	/**
+	 * Process the state for this stage like {@link #apply(ParserState)}, but
+	 * update the message of the given state instead of a copy of it. The
+	 * caller is responsible for copying the state when it is shared with
+	 * other parse branches.
+	 */
+	default ParserState applyInPlace(ParserState state) {
+		return apply(state);
+	}
 }
\ No newline at end of file
@@ -37,7 +37,6 @@ import java.util.EmptyStackException;
 import java.util.List;
 import java.util.Objects;
 import java.util.Stack;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
@@ -70,7 +69,7 @@ public class ParserStageSequenceBuilder {
 		public final ByteBuffer buffer;
 
 		private StringBuilder accumulatedValue = null;
-		private AtomicInteger accumulatedSize = null;
+		private int accumulatedSize = 0;
 
 		// Only used by MatchMonth
 		public RadixTreeNode<CharacterWithValue> currentNode = null; 
@@ -81,11 +80,11 @@ public class ParserStageSequenceBuilder {
 
 		public void accumulate(char c) {
 			accessAccumulatedValue().append(c);
-			accessAccumulatedSize().incrementAndGet();
+			accumulatedSize++;
 		}
 
 		public int getAccumulatedSize() {
-			return accessAccumulatedSize().get();
+			return accumulatedSize;
 		}
 
 		private final StringBuilder accessAccumulatedValue() {
@@ -95,18 +94,11 @@ public class ParserStageSequenceBuilder {
 			return accumulatedValue;
 		}
 
-		private final AtomicInteger accessAccumulatedSize() {
-			if (accumulatedSize == null) {
-				accumulatedSize = new AtomicInteger();
-			}
-			return accumulatedSize;
-		}
-
 		@Override
 		public String toString() {
 			return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
 				.append("accumulatedValue", accumulatedValue == null ? "null" : accumulatedValue.toString())
-				.append("accumulatedSize", accumulatedSize == null ? 0 : accumulatedSize.get())
+				.append("accumulatedSize", accumulatedSize)
 				.toString();
 		}
 	}
@@ -259,15 +251,29 @@ public class ParserStageSequenceBuilder {
 
 		public abstract AcceptResult acceptChar(ParserStageState state, char c);
 
+		@Override
 		public final ParserState apply(final ParserState incomingState) {
 			if (incomingState == null) {
 				return null;
 			} else {
-				LOG.trace("Starting stage: " + this);
+				LOG.trace("Starting stage: {}", this);
 			}
 
-			ParserState state = incomingState.clone();
+			return applyToState(incomingState.clone());
+		}
+
+		@Override
+		public final ParserState applyInPlace(final ParserState incomingState) {
+			if (incomingState == null) {
+				return null;
+			} else {
+				LOG.trace("Starting stage: {}", this);
+			}
+
+			return applyToState(incomingState);
+		}
 
+		private ParserState applyToState(final ParserState state) {
 			// Create a new state for the current ParserStage.
 			// Use ByteBuffer.duplicate() to create a buffer with marks
 			// and positions that only this stage will use.
@@ -303,7 +309,7 @@ public class ParserStageSequenceBuilder {
 						return new ParserState(stageState.buffer, state.message);
 					} else {
 						// Reached end of buffer, match failed
-						LOG.trace("Parse failed due to buffer underflow: " + this);
+						LOG.trace("Parse failed due to buffer underflow: {}", this);
 						return null;
 					}
 				}
@@ -52,6 +52,12 @@ import org.slf4j.LoggerFactory;
  * <p>You can teach the parser new {@link ParserStage} sequences by using the 
  * {@link #teach(ParserStage[])} method. This will add the stages to the {@link RadixTree}.</p>
  * 
+ * <p>Alternatively, {@link #parseCompiled(ByteBuffer)} walks a compiled copy of the
+ * tree depth-first on the calling thread and stops at the first complete parse. The
+ * branches are tried in the same order so the result is the same, but no futures
+ * are created and the state is only copied where the tree branches instead of in
+ * every stage.</p>
+ * 
  * <p>TODO: Make the parser tree construction phased or asynchronous so that tree 
  * nodes are added as-needed to complete the parse. In many cases, the first
  * several branches of the tree will result in a complete parse, making it unnecessary
@@ -74,6 +80,11 @@ public class RadixTreeParser implements ByteBufferParser<SyslogMessage> {
 
 	final RadixTree<ParserStage> tree = new RadixTreeImpl<>();
 
+	/**
+	 * Compiled copy of the tree, reset whenever the tree changes.
+	 */
+	private volatile CompiledNode compiled = null;
+
 //	private static final ThreadPoolExecutor m_executor = new ThreadPoolExecutor(
 //		1,
 //		1,
@@ -110,12 +121,71 @@ public class RadixTreeParser implements ByteBufferParser<SyslogMessage> {
 	 */
 	public void teach(ParserStage[] stages) {
 		tree.addChildren(stages);
+		compiled = null;
 	}
 
 	public void performEdgeCompression() {
 		for (RadixTreeNode<ParserStage> child : tree.getChildren()) {
 			compressNode(child);
 		}
+		compiled = null;
+	}
+
+	/**
+	 * A node of the compiled tree: the stages that are applied in sequence
+	 * and the branches that are tried, in order, after them.
+	 */
+	private static class CompiledNode {
+		private final ParserStage[] stages;
+		private final CompiledNode[] children;
+
+		private CompiledNode(ParserStage[] stages, CompiledNode[] children) {
+			this.stages = stages;
+			this.children = children;
+		}
+	}
+
+	/**
+	 * Compile the tree, merging chains of nodes with a single child and
+	 * flattening {@link CompositeParserStage} stages.
+	 */
+	private static CompiledNode compile(RadixTreeNode<ParserStage> node) {
+		final List<ParserStage> stages = new ArrayList<>();
+		RadixTreeNode<ParserStage> current = node;
+		while (true) {
+			addStages(stages, current.getContent());
+			if (current.getChildren() == null || current.getChildren().size() != 1) {
+				break;
+			}
+			current = current.getChildren().iterator().next();
+		}
+
+		final List<CompiledNode> children = new ArrayList<>();
+		if (current.getChildren() != null) {
+			for (RadixTreeNode<ParserStage> child : current.getChildren()) {
+				children.add(compile(child));
+			}
+		}
+		return new CompiledNode(stages.toArray(new ParserStage[0]), children.toArray(new CompiledNode[0]));
+	}
+
+	private static void addStages(List<ParserStage> stages, ParserStage stage) {
+		if (stage instanceof CompositeParserStage) {
+			for (ParserStage member : ((CompositeParserStage)stage).members) {
+				addStages(stages, member);
+			}
+		} else if (stage != null) {
+			stages.add(stage);
+		}
+	}
+
+	private CompiledNode getCompiled() {
+		CompiledNode retval = compiled;
+		if (retval == null) {
+			retval = compile(tree);
+			compiled = retval;
+		}
+		return retval;
 	}
 
 	public static void compressNode(RadixTreeNode<ParserStage> node) {
@@ -160,6 +230,15 @@ public class RadixTreeParser implements ByteBufferParser<SyslogMessage> {
 			return currentState;
 		}
 
+		@Override
+		public ParserState applyInPlace(ParserState state) {
+			ParserState currentState = state;
+			for (ParserStage member : members) {
+				currentState = member.applyInPlace(currentState);
+			}
+			return currentState;
+		}
+
 		@Override
 		public void setOptional(boolean optional) {
 			throw new UnsupportedOperationException();
@@ -205,6 +284,51 @@ public class RadixTreeParser implements ByteBufferParser<SyslogMessage> {
 		});
 	}
 
+	/**
+	 * Parse the message on the calling thread by walking the compiled tree
+	 * depth-first, returning the first complete parse.
+	 * 
+	 * @return The parsed message or null if none of the branches matched
+	 */
+	public SyslogMessage parseCompiled(ByteBuffer incoming) {
+		final ParserState state = parseCompiled(getCompiled(), new ParserState(incoming), false);
+		return state == null ? null : state.message;
+	}
+
+	/**
+	 * @param shared true if the state is used by a sibling branch and must be copied before being updated
+	 */
+	private static ParserState parseCompiled(CompiledNode node, ParserState state, boolean shared) {
+		ParserState current = state;
+		if (node.stages.length > 0) {
+			current = shared ? current.clone() : current;
+			try {
+				for (ParserStage stage : node.stages) {
+					current = stage.applyInPlace(current);
+					if (current == null) {
+						return null;
+					}
+				}
+			} catch (RuntimeException e) {
+				// Treat the exception as a failed match, like a future that completes exceptionally
+				LOG.trace("Parse failed with exception", e);
+				return null;
+			}
+		}
+
+		if (node.children.length == 0) {
+			return current;
+		}
+		for (int i = 0; i < node.children.length; i++) {
+			// The last branch can update the state since no other branch will use it
+			final ParserState result = parseCompiled(node.children[i], current, i < node.children.length - 1 || shared && node.stages.length == 0);
+			if (result != null) {
+				return result;
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * TODO: Use a visitor pattern instead?
 	 */
@@ -118,7 +118,7 @@ public class RadixTreeSyslogParser extends SyslogParser {
 
 	@Override
 	public SyslogMessage parse() {
-		SyslogMessage retval = radixParser.parse(getText()).join();
+		SyslogMessage retval = parse(radixParser, getText());
 
 		// Trim off the RFC 5424 structured data to emulate the behavior of the legacy parser (for now)
 		if (retval != null) {
@@ -134,4 +134,11 @@ public class RadixTreeSyslogParser extends SyslogParser {
 
 		return retval;
 	}
+
+	/**
+	 * Parse the message with the parser tree built from the grok patterns.
+	 */
+	protected SyslogMessage parse(RadixTreeParser parser, ByteBuffer text) {
+		return parser.parse(text).join();
+	}
 }
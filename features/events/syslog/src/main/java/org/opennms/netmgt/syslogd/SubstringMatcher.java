@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton that finds which of a fixed set of substrings
+ * occur in a text with a single pass over the text, regardless of the
+ * number of substrings.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+final class SubstringMatcher {
+
+    private static final int[] NONE = new int[0];
+
+    /** Sorted transition characters of each state */
+    private final char[][] m_keys;
+    /** Target states of each transition in {@link #m_keys} */
+    private final int[][] m_targets;
+    /** Failure transition of each state */
+    private final int[] m_fail;
+    /** Indexes of the substrings that end in each state, including those of its failure states */
+    private final int[][] m_output;
+
+    private final int m_size;
+
+    SubstringMatcher(final List<String> substrings) {
+        m_size = substrings.size();
+
+        // Build the trie
+        final List<TreeMap<Character,Integer>> transitions = new ArrayList<>();
+        final List<List<Integer>> outputs = new ArrayList<>();
+        transitions.add(new TreeMap<>());
+        outputs.add(new ArrayList<>());
+        for (int i = 0; i < substrings.size(); i++) {
+            int state = 0;
+            for (final char c : substrings.get(i).toCharArray()) {
+                Integer next = transitions.get(state).get(c);
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.get(state).put(c, next);
+                    transitions.add(new TreeMap<>());
+                    outputs.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            outputs.get(state).add(i);
+        }
+
+        final int states = transitions.size();
+        m_keys = new char[states][];
+        m_targets = new int[states][];
+        m_fail = new int[states];
+        m_output = new int[states][];
+        for (int state = 0; state < states; state++) {
+            final Map<Character,Integer> transition = transitions.get(state);
+            m_keys[state] = new char[transition.size()];
+            m_targets[state] = new int[transition.size()];
+            int k = 0;
+            for (final Map.Entry<Character,Integer> entry : transition.entrySet()) {
+                m_keys[state][k] = entry.getKey();
+                m_targets[state][k] = entry.getValue();
+                k++;
+            }
+        }
+
+        // Compute the failure transitions breadth-first so that the failure
+        // state of a state, which is always shallower, is complete before
+        // the state itself
+        m_output[0] = toArray(outputs.get(0));
+        final Queue<Integer> queue = new ArrayDeque<>();
+        for (final int child : m_targets[0]) {
+            m_fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            m_output[state] = merge(toArray(outputs.get(state)), m_output[m_fail[state]]);
+            for (int k = 0; k < m_keys[state].length; k++) {
+                final char c = m_keys[state][k];
+                int fail = m_fail[state];
+                int target;
+                while ((target = next(fail, c)) < 0 && fail != 0) {
+                    fail = m_fail[fail];
+                }
+                m_fail[m_targets[state][k]] = target < 0 ? 0 : target;
+                queue.add(m_targets[state][k]);
+            }
+        }
+    }
+
+    /**
+     * @return the number of substrings
+     */
+    int size() {
+        return m_size;
+    }
+
+    /**
+     * @return the indexes of all of the substrings that occur in the text
+     */
+    BitSet matches(final CharSequence text) {
+        final BitSet matches = new BitSet(m_size);
+        set(matches, m_output[0]);
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            set(matches, m_output[state]);
+        }
+        return matches;
+    }
+
+    /**
+     * @return true if at least one of the substrings occurs in the text
+     */
+    boolean containsAny(final CharSequence text) {
+        if (m_output[0].length > 0) {
+            return true;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            if (m_output[state].length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int step(int state, final char c) {
+        int target;
+        while ((target = next(state, c)) < 0 && state != 0) {
+            state = m_fail[state];
+        }
+        return target < 0 ? 0 : target;
+    }
+
+    private int next(final int state, final char c) {
+        final int k = Arrays.binarySearch(m_keys[state], c);
+        return k < 0 ? -1 : m_targets[state][k];
+    }
+
+    private static void set(final BitSet bits, final int[] indexes) {
+        for (final int index : indexes) {
+            bits.set(index);
+        }
+    }
+
+    private static int[] toArray(final List<Integer> values) {
+        if (values.isEmpty()) {
+            return NONE;
+        }
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] merge(final int[] a, final int[] b) {
+        if (a.length == 0) {
+            return b;
+        } else if (b.length == 0) {
+            return a;
+        }
+        final int[] merged = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, merged, a.length, b.length);
+        return merged;
+    }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.opennms.core.ipc.sink.xml.BinaryCodec;
+import org.opennms.netmgt.syslogd.api.SyslogMessageDTO;
+import org.opennms.netmgt.syslogd.api.SyslogMessageLogDTO;
+
+/**
+ * Binary encoding of the {@link SyslogMessageLogDTO}.
+ *
+ * The message log is written as its location, system id, source address and
+ * port followed by the number of messages, and each message as its
+ * timestamp followed by its length prefixed payload. Strings are
+ * written in modified UTF-8, and null values are flagged with a leading
+ * boolean.
+ */
+public class SyslogMessageLogCodec implements BinaryCodec<SyslogMessageLogDTO> {
+
+    /**
+     * Overhead of the fixed length fields of the message log, assuming short strings.
+     */
+    private static final int LOG_OVERHEAD = 64;
+
+    /**
+     * Timestamp and length of each message.
+     */
+    private static final int MESSAGE_OVERHEAD = 8 + 4;
+
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    @Override
+    public int getSizeHint(SyslogMessageLogDTO messageLog) {
+        int size = LOG_OVERHEAD;
+        for (SyslogMessageDTO message : messageLog.getMessages()) {
+            size += MESSAGE_OVERHEAD + (message.getBytes() == null ? 0 : message.getBytes().remaining());
+        }
+        return size;
+    }
+
+    @Override
+    public void encode(SyslogMessageLogDTO messageLog, DataOutput out) throws IOException {
+        writeString(out, messageLog.getLocation());
+        writeString(out, messageLog.getSystemId());
+        writeBytes(out, messageLog.getSourceAddress() == null ? null : messageLog.getSourceAddress().getAddress());
+        out.writeInt(messageLog.getSourcePort());
+
+        final List<SyslogMessageDTO> messages = messageLog.getMessages();
+        out.writeInt(messages.size());
+        for (SyslogMessageDTO message : messages) {
+            out.writeLong(message.getTimestamp() == null ? NO_TIMESTAMP : message.getTimestamp().getTime());
+            final ByteBuffer bytes = message.getBytes();
+            if (bytes == null) {
+                out.writeInt(-1);
+            } else if (bytes.hasArray()) {
+                out.writeInt(bytes.remaining());
+                out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            } else {
+                // Leave the position of the buffer untouched
+                final byte[] copy = new byte[bytes.remaining()];
+                bytes.duplicate().get(copy);
+                writeBytes(out, copy);
+            }
+        }
+    }
+
+    @Override
+    public SyslogMessageLogDTO decode(DataInput in) throws IOException {
+        final SyslogMessageLogDTO messageLog = new SyslogMessageLogDTO();
+        messageLog.setLocation(readString(in));
+        messageLog.setSystemId(readString(in));
+        final byte[] address = readBytes(in);
+        messageLog.setSourceAddress(address == null ? null : InetAddress.getByAddress(address));
+        messageLog.setSourcePort(in.readInt());
+
+        final int numMessages = in.readInt();
+        final List<SyslogMessageDTO> messages = new ArrayList<>(numMessages);
+        for (int i = 0; i < numMessages; i++) {
+            final SyslogMessageDTO message = new SyslogMessageDTO();
+            final long timestamp = in.readLong();
+            message.setTimestamp(timestamp == NO_TIMESTAMP ? null : new Date(timestamp));
+            final byte[] bytes = readBytes(in);
+            message.setBytes(bytes == null ? null : ByteBuffer.wrap(bytes));
+            messages.add(message);
+        }
+        messageLog.setMessages(messages);
+        return messageLog;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -28,6 +28,7 @@
 
 package org.opennms.netmgt.syslogd;
 
+import java.util.ArrayList;
 import java.util.Objects;
 
 import org.opennms.core.ipc.sink.api.AggregationPolicy;
@@ -47,7 +48,7 @@ public class SyslogSinkModule extends AbstractXmlSinkModule<SyslogConnection, Sy
     private final DistPollerDao distPollerDao;
 
     public SyslogSinkModule(SyslogdConfig config, DistPollerDao distPollerDao) {
-        super(SyslogMessageLogDTO.class);
+        super(SyslogMessageLogDTO.class, new SyslogMessageLogCodec());
         this.config = Objects.requireNonNull(config);
         this.distPollerDao = Objects.requireNonNull(distPollerDao);
     }
@@ -85,7 +86,9 @@ public class SyslogSinkModule extends AbstractXmlSinkModule<SyslogConnection, Sy
             @Override
             public SyslogMessageLogDTO aggregate(SyslogMessageLogDTO accumulator, SyslogConnection connection) {
                 if (accumulator == null) {
-                    accumulator = new SyslogMessageLogDTO(systemLocation, systemId, connection.getSource());
+                    // Size the list up front, the bucket is dispatched once it reaches the batch size
+                    accumulator = new SyslogMessageLogDTO(systemLocation, systemId, connection.getSource(),
+                            new ArrayList<>(config.getBatchSize()));
                 }
                 SyslogMessageDTO messageDTO = new SyslogMessageDTO(connection.getBuffer());
                 accumulator.getMessages().add(messageDTO);
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import static org.opennms.core.utils.InetAddressUtils.str;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.opennms.netmgt.config.syslogd.UeiMatch;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * The {@link UeiMatch} entries of the Syslogd configuration, compiled into
+ * a table that is indexed by facility and severity. The substring matches
+ * are evaluated together with a {@link SubstringMatcher}, and the regular
+ * expressions are compiled once.
+ *
+ * {@link #find(SyslogMessage)} returns the first entry, in configuration
+ * order, that matches the message.
+ *
+ * Tables are cached by the identity of the list of {@link UeiMatch} entries,
+ * so that a new table is built when the configuration is reloaded.
+ */
+final class UeiMatchTable {
+
+    private static final LoadingCache<List<UeiMatch>,UeiMatchTable> TABLES = CacheBuilder.newBuilder().weakKeys().build(
+        new CacheLoader<List<UeiMatch>,UeiMatchTable>() {
+            public UeiMatchTable load(List<UeiMatch> ueiMatches) {
+                return new UeiMatchTable(ueiMatches);
+            }
+        }
+    );
+
+    private static final SyslogSeverity[] SEVERITIES = SyslogSeverity.values();
+
+    private static final int[] NONE = new int[0];
+
+    /**
+     * The result of a successful match.
+     */
+    static final class Match {
+        private final UeiMatch m_ueiMatch;
+        private final Matcher m_matcher;
+
+        private Match(final UeiMatch ueiMatch, final Matcher matcher) {
+            m_ueiMatch = ueiMatch;
+            m_matcher = matcher;
+        }
+
+        UeiMatch getUeiMatch() {
+            return m_ueiMatch;
+        }
+
+        /**
+         * @return the matcher of a regex match, or null for a substring match
+         */
+        Matcher getMatcher() {
+            return m_matcher;
+        }
+    }
+
+    private static final class Entry {
+        private final UeiMatch m_ueiMatch;
+        private final Pattern m_process;
+        private final Pattern m_hostname;
+        private final Pattern m_hostaddr;
+        /** The index of the substring in the {@link SubstringMatcher}, or -1 for regex matches */
+        private final int m_substring;
+        private final Pattern m_regex;
+
+        private Entry(final UeiMatch ueiMatch, final Pattern process, final Pattern hostname, final Pattern hostaddr, final int substring, final Pattern regex) {
+            m_ueiMatch = ueiMatch;
+            m_process = process;
+            m_hostname = hostname;
+            m_hostaddr = hostaddr;
+            m_substring = substring;
+            m_regex = regex;
+        }
+    }
+
+    private final int m_size;
+    private final Entry[] m_entries;
+    /** The indexes of the entries that apply to each facility and severity, in configuration order */
+    private final int[][] m_buckets;
+    private final SubstringMatcher m_substrings;
+
+    /**
+     * @return the table for the given list of {@link UeiMatch} entries
+     */
+    static UeiMatchTable forUeiMatches(final List<UeiMatch> ueiMatches) {
+        UeiMatchTable table = TABLES.getUnchecked(ueiMatches);
+        if (table.m_size != ueiMatches.size()) {
+            // The list was modified after the table was built
+            TABLES.invalidate(ueiMatches);
+            table = TABLES.getUnchecked(ueiMatches);
+        }
+        return table;
+    }
+
+    private UeiMatchTable(final List<UeiMatch> ueiMatches) {
+        m_size = ueiMatches.size();
+
+        final List<Entry> entries = new ArrayList<>(m_size);
+        final List<String> substrings = new ArrayList<>();
+        for (final UeiMatch ueiMatch : ueiMatches) {
+            final Pattern process = ueiMatch.getProcessMatch().map(m -> ConvertToEvent.getPattern(m.getExpression())).orElse(null);
+            final Pattern hostname = ueiMatch.getHostnameMatch().map(m -> ConvertToEvent.getPattern(m.getExpression())).orElse(null);
+            final Pattern hostaddr = ueiMatch.getHostaddrMatch().map(m -> ConvertToEvent.getPattern(m.getExpression())).orElse(null);
+            // Entries with invalid expressions can never match
+            if ((ueiMatch.getProcessMatch().isPresent() && process == null)
+                    || (ueiMatch.getHostnameMatch().isPresent() && hostname == null)
+                    || (ueiMatch.getHostaddrMatch().isPresent() && hostaddr == null)) {
+                entries.add(null);
+                continue;
+            }
+
+            final String type = ueiMatch.getMatch().getType();
+            final String expression = ueiMatch.getMatch().getExpression();
+            if (type.equals("substr")) {
+                entries.add(new Entry(ueiMatch, process, hostname, hostaddr, substrings.size(), null));
+                substrings.add(expression);
+            } else if (type.startsWith("regex") && ConvertToEvent.getPattern(expression) != null) {
+                entries.add(new Entry(ueiMatch, process, hostname, hostaddr, -1, ConvertToEvent.getPattern(expression)));
+            } else {
+                entries.add(null);
+            }
+        }
+        m_entries = entries.toArray(new Entry[0]);
+        m_substrings = new SubstringMatcher(substrings);
+
+        final SyslogFacility[] facilities = SyslogFacility.values();
+        m_buckets = new int[facilities.length * SEVERITIES.length][];
+        for (final SyslogFacility facility : facilities) {
+            for (final SyslogSeverity severity : SEVERITIES) {
+                final List<Integer> bucket = new ArrayList<>();
+                for (int i = 0; i < m_entries.length; i++) {
+                    if (m_entries[i] != null
+                            && containsIgnoreCase(m_entries[i].m_ueiMatch.getFacilities(), facility.toString())
+                            && containsIgnoreCase(m_entries[i].m_ueiMatch.getSeverities(), severity.toString())) {
+                        bucket.add(i);
+                    }
+                }
+                m_buckets[bucket(facility, severity)] = bucket.isEmpty() ? NONE : bucket.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+    }
+
+    /**
+     * @return the first entry that matches the message, or null if none do
+     */
+    Match find(final SyslogMessage message) {
+        final int[] bucket = m_buckets[bucket(message.getFacility(), message.getSeverity())];
+        final String text = message.getMessage();
+        if (bucket.length == 0 || text == null) {
+            return null;
+        }
+
+        BitSet substrings = null;
+        String hostAddress = null;
+        boolean resolved = false;
+        for (final int i : bucket) {
+            final Entry entry = m_entries[i];
+            if (entry.m_process != null && !find(entry.m_process, message.getProcessName())) {
+                continue;
+            }
+            if (entry.m_hostname != null && !find(entry.m_hostname, message.getHostName())) {
+                continue;
+            }
+            if (entry.m_hostaddr != null) {
+                // Only resolve the address of the host when required
+                if (!resolved) {
+                    hostAddress = str(message.getHostAddress());
+                    resolved = true;
+                }
+                if (!find(entry.m_hostaddr, hostAddress)) {
+                    continue;
+                }
+            }
+
+            if (entry.m_regex == null) {
+                if (substrings == null) {
+                    substrings = m_substrings.matches(text);
+                }
+                if (substrings.get(entry.m_substring)) {
+                    return new Match(entry.m_ueiMatch, null);
+                }
+            } else {
+                final Matcher matcher = entry.m_regex.matcher(text);
+                if (matcher.find()) {
+                    return new Match(entry.m_ueiMatch, matcher);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int bucket(final SyslogFacility facility, final SyslogSeverity severity) {
+        return facility.ordinal() * SEVERITIES.length + severity.ordinal();
+    }
+
+    private static boolean find(final Pattern pattern, final String input) {
+        return input != null && pattern.matcher(input).find();
+    }
+
+    private static boolean containsIgnoreCase(final List<String> collection, final String match) {
+        if (collection.size() == 0) return true;
+        for (final String string : collection) {
+            if (string.equalsIgnoreCase(match)) return true;
+        }
+        return false;
+    }
+}
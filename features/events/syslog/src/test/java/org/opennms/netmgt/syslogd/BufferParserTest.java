@@ -32,9 +32,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.io.BufferedReader;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -493,6 +497,66 @@ public class BufferParserTest {
 		verifyNms9522Message2(radixParser);
 	}
 
+	/**
+	 * Make sure that {@link RadixTreeParser#parseCompiled(ByteBuffer)} produces
+	 * the same messages as {@link RadixTreeParser#parse(ByteBuffer)} for the
+	 * default grok patterns and the messages in <i>syslogMessages.txt</i>.
+	 */
+	@Test
+	public void testCompiledParserMatchesParser() throws Exception {
+		RadixTreeParser radixParser = new RadixTreeParser();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getClassLoader().getResourceAsStream("org/opennms/netmgt/syslogd/grok-patterns.txt")))) {
+			reader.lines().forEach(pattern -> {
+				// Ignore comments and blank lines
+				if (pattern == null || pattern.trim().length() == 0 || pattern.trim().startsWith("#")) {
+					return;
+				}
+				radixParser.teach(GrokParserStageSequenceBuilder.parseGrok(pattern).toArray(new ParserStage[0]));
+			});
+		}
+		radixParser.performEdgeCompression();
+
+		final Path resource = ConfigurationTestUtils.getFileForResource(this, "/syslogMessages.txt").toPath();
+		assertNotNull(resource);
+		Files.lines(resource).forEach(syslog -> {
+			// Ignore comments and blank lines
+			if (syslog == null || syslog.trim().length() == 0 || syslog.trim().startsWith("#")) {
+				return;
+			}
+			syslog = syslog.replaceAll("\\\\u0000", "\u0000");
+			syslog = syslog.replaceAll("\\\\uFEFF", "\uFEFF");
+
+			SyslogMessage expected = radixParser.parse(SyslogdTestUtils.toByteBuffer(syslog)).join();
+			SyslogMessage actual = radixParser.parseCompiled(SyslogdTestUtils.toByteBuffer(syslog));
+			assertSameMessage(syslog, expected, actual);
+		});
+	}
+
+	private static void assertSameMessage(String syslog, SyslogMessage expected, SyslogMessage actual) {
+		if (expected == null) {
+			assertNull(syslog, actual);
+			return;
+		}
+		assertNotNull(syslog, actual);
+		assertEquals(syslog, expected.getFacility(), actual.getFacility());
+		assertEquals(syslog, expected.getSeverity(), actual.getSeverity());
+		assertEquals(syslog, expected.getVersion(), actual.getVersion());
+		assertEquals(syslog, expected.getDate(), actual.getDate());
+		assertEquals(syslog, expected.getYear(), actual.getYear());
+		assertEquals(syslog, expected.getMonth(), actual.getMonth());
+		assertEquals(syslog, expected.getDayOfMonth(), actual.getDayOfMonth());
+		assertEquals(syslog, expected.getHourOfDay(), actual.getHourOfDay());
+		assertEquals(syslog, expected.getMinute(), actual.getMinute());
+		assertEquals(syslog, expected.getSecond(), actual.getSecond());
+		assertEquals(syslog, expected.getMillisecond(), actual.getMillisecond());
+		assertEquals(syslog, expected.getZoneId(), actual.getZoneId());
+		assertEquals(syslog, expected.getHostName(), actual.getHostName());
+		assertEquals(syslog, expected.getMessageID(), actual.getMessageID());
+		assertEquals(syslog, expected.getProcessName(), actual.getProcessName());
+		assertEquals(syslog, expected.getProcessId(), actual.getProcessId());
+		assertEquals(syslog, expected.getMessage(), actual.getMessage());
+	}
+
 	private static void verifyNms9522Message1(RadixTreeParser radixParser) {
 		SyslogMessage message;
 		message = radixParser.parse(ByteBuffer.wrap("<14> Nov 16 00:01:25 localhost postfix/smtpd[1713]: connect from www.opennms.org[10.1.1.1]".getBytes(StandardCharsets.US_ASCII))).join();
@@ -32,6 +32,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -52,6 +54,11 @@ import org.opennms.core.test.ConfigurationTestUtils;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.config.SyslogdConfig;
 import org.opennms.netmgt.config.SyslogdConfigFactory;
+import org.opennms.netmgt.config.syslogd.HideMatch;
+import org.opennms.netmgt.config.syslogd.Match;
+import org.opennms.netmgt.config.syslogd.ParameterAssignment;
+import org.opennms.netmgt.config.syslogd.ProcessMatch;
+import org.opennms.netmgt.config.syslogd.UeiMatch;
 import org.opennms.netmgt.dao.api.DistPollerDao;
 import org.opennms.netmgt.dao.api.MonitoringLocationDao;
 import org.opennms.netmgt.dao.hibernate.InterfaceToNodeCacheDaoImpl;
@@ -290,6 +297,129 @@ public class ConvertToEventTest {
         results.stream().forEach(System.out::println);
     }
 
+    /**
+     * Verify that the first matching {@link UeiMatch} in configuration
+     * order is used, regardless of the type of the match, and that changes
+     * to the list of matches are picked up.
+     */
+    @Test
+    public void testUeiMatchOrder() throws Exception {
+        final List<UeiMatch> ueiMatches = new ArrayList<>();
+        // Wrong facility
+        UeiMatch ueiMatch = ueiMatch("uei.opennms.org/test/facility", "substr", "load");
+        ueiMatch.addFacility("mail");
+        ueiMatches.add(ueiMatch);
+        // No match
+        ueiMatches.add(ueiMatch("uei.opennms.org/test/nomatch", "regex", "^nomatch"));
+        // Wrong process
+        ueiMatch = ueiMatch("uei.opennms.org/test/process", "substr", "load");
+        final ProcessMatch processMatch = new ProcessMatch();
+        processMatch.setExpression("^bar");
+        ueiMatch.setProcessMatch(processMatch);
+        ueiMatches.add(ueiMatch);
+        // Match
+        ueiMatch = ueiMatch("uei.opennms.org/test/substr", "substr", "tty1");
+        ueiMatch.addFacility("AUTH");
+        ueiMatch.addSeverity("critical");
+        ueiMatches.add(ueiMatch);
+        // Also matches, but comes later
+        ueiMatches.add(ueiMatch("uei.opennms.org/test/regex", "regex", "load test (\\d+)"));
+
+        final List<HideMatch> hideMatches = new ArrayList<>();
+        final HideMatch hideMatch = new HideMatch();
+        hideMatch.setMatch(match("substr", "secret"));
+        hideMatches.add(hideMatch);
+
+        final SyslogdConfig config = mock(SyslogdConfig.class);
+        when(config.getParser()).thenReturn(RadixTreeSyslogParser.class.getName());
+        when(config.getDiscardUei()).thenReturn("DISCARD-MATCHING-MESSAGES");
+        when(config.getUeiList()).thenReturn(ueiMatches);
+        when(config.getHideMessages()).thenReturn(hideMatches);
+
+        Event event = parseSyslog("radixTree", config, "<34>main: 2010-08-19 localhost foo23: load test 23 on tty1");
+        assertEquals("uei.opennms.org/test/substr", event.getUei());
+        assertEquals("load test 23 on tty1", event.getLogmsg().getContent());
+
+        // Add a regex match with a parameter assignment in front of the others
+        ueiMatch = ueiMatch("uei.opennms.org/test/first", "regex", "load test (\\d+)");
+        ueiMatch.getMatch().setDefaultParameterMapping(false);
+        final ParameterAssignment assignment = new ParameterAssignment();
+        assignment.setParameterName("test");
+        assignment.setMatchingGroup(1);
+        ueiMatch.addParameterAssignment(assignment);
+        ueiMatches.add(0, ueiMatch);
+
+        event = parseSyslog("radixTree", config, "<34>main: 2010-08-19 localhost foo23: load test 23 on tty1");
+        assertEquals("uei.opennms.org/test/first", event.getUei());
+        assertEquals("23", event.getParm("test").getValue().getContent());
+        assertEquals(null, event.getParm("group1"));
+
+        // Discard the message
+        ueiMatches.add(0, ueiMatch("DISCARD-MATCHING-MESSAGES", "substr", "23"));
+        assertEquals(null, parseSyslog("radixTree", config, "<34>main: 2010-08-19 localhost foo23: load test 23 on tty1"));
+
+        // Hide the message
+        event = parseSyslog("radixTree", config, "<34>main: 2010-08-19 localhost foo24: load test secret on tty1");
+        assertEquals("uei.opennms.org/test/substr", event.getUei());
+        assertEquals(ConvertToEvent.HIDDEN_MESSAGE, event.getLogmsg().getContent());
+    }
+
+    /**
+     * Verify that matches with invalid regular expressions are skipped
+     * instead of failing every message.
+     */
+    @Test
+    public void testInvalidRegexMatchesAreSkipped() throws Exception {
+        final List<UeiMatch> ueiMatches = new ArrayList<>();
+        ueiMatches.add(ueiMatch("uei.opennms.org/test/invalid", "regex", "load test (\\d+"));
+        UeiMatch ueiMatch = ueiMatch("uei.opennms.org/test/invalidProcess", "substr", "load");
+        final ProcessMatch processMatch = new ProcessMatch();
+        processMatch.setExpression("[foo");
+        ueiMatch.setProcessMatch(processMatch);
+        ueiMatches.add(ueiMatch);
+        ueiMatches.add(ueiMatch("uei.opennms.org/test/valid", "regex", "load test (\\d+)"));
+
+        final List<HideMatch> hideMatches = new ArrayList<>();
+        HideMatch hideMatch = new HideMatch();
+        hideMatch.setMatch(match("regex", "secret("));
+        hideMatches.add(hideMatch);
+        hideMatch = new HideMatch();
+        hideMatch.setMatch(match("regex", "hidden"));
+        hideMatches.add(hideMatch);
+
+        final SyslogdConfig config = mock(SyslogdConfig.class);
+        when(config.getParser()).thenReturn(RadixTreeSyslogParser.class.getName());
+        when(config.getDiscardUei()).thenReturn("DISCARD-MATCHING-MESSAGES");
+        when(config.getUeiList()).thenReturn(ueiMatches);
+        when(config.getHideMessages()).thenReturn(hideMatches);
+
+        Event event = parseSyslog("radixTree", config, "<34>main: 2010-08-19 localhost foo23: load test 23 on tty1");
+        assertEquals("uei.opennms.org/test/valid", event.getUei());
+        assertEquals("load test 23 on tty1", event.getLogmsg().getContent());
+
+        event = parseSyslog("radixTree", config, "<34>main: 2010-08-19 localhost foo23: load test 23 secret( on tty1");
+        assertEquals("uei.opennms.org/test/valid", event.getUei());
+        assertEquals("load test 23 secret( on tty1", event.getLogmsg().getContent());
+
+        event = parseSyslog("radixTree", config, "<34>main: 2010-08-19 localhost foo23: load test 23 hidden on tty1");
+        assertEquals("uei.opennms.org/test/valid", event.getUei());
+        assertEquals(ConvertToEvent.HIDDEN_MESSAGE, event.getLogmsg().getContent());
+    }
+
+    private static UeiMatch ueiMatch(final String uei, final String type, final String expression) {
+        final UeiMatch ueiMatch = new UeiMatch();
+        ueiMatch.setUei(uei);
+        ueiMatch.setMatch(match(type, expression));
+        return ueiMatch;
+    }
+
+    private static Match match(final String type, final String expression) {
+        final Match match = new Match();
+        match.setType(type);
+        match.setExpression(expression);
+        return match;
+    }
+
     private static Event parseSyslog(final String name, final SyslogdConfig config, final String syslog) {
         try {
             ConvertToEvent convert = new ConvertToEvent(
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SubstringMatcherTest {
+
+    @Test
+    public void testMatches() {
+        final SubstringMatcher matcher = new SubstringMatcher(Arrays.asList("he", "she", "his", "hers", "xyz"));
+        final BitSet matches = matcher.matches("ushers");
+        assertEquals(3, matches.cardinality());
+        assertTrue(matches.get(0));
+        assertTrue(matches.get(1));
+        assertTrue(matches.get(3));
+        assertTrue(matcher.containsAny("ushers"));
+        assertFalse(matcher.containsAny("abcdef"));
+        assertTrue(matcher.matches("").isEmpty());
+    }
+
+    @Test
+    public void testEmptySubstring() {
+        final SubstringMatcher matcher = new SubstringMatcher(Arrays.asList("abc", ""));
+        assertEquals(BitSet.valueOf(new long[] { 2 }), matcher.matches("xyz"));
+        assertTrue(matcher.containsAny(""));
+        assertFalse(new SubstringMatcher(Collections.emptyList()).containsAny("xyz"));
+    }
+
+    /**
+     * Compare the results with {@link String#contains(CharSequence)} for
+     * random substrings and texts over a small alphabet.
+     */
+    @Test
+    public void testAgainstContains() {
+        final Random random = new Random(42);
+        for (int run = 0; run < 100; run++) {
+            final String[] substrings = new String[1 + random.nextInt(20)];
+            for (int i = 0; i < substrings.length; i++) {
+                substrings[i] = randomString(random, 1 + random.nextInt(5));
+            }
+            final List<String> substringList = Arrays.asList(substrings);
+            final SubstringMatcher matcher = new SubstringMatcher(substringList);
+
+            for (int i = 0; i < 20; i++) {
+                final String text = randomString(random, random.nextInt(40));
+                final BitSet matches = matcher.matches(text);
+                boolean any = false;
+                for (int k = 0; k < substrings.length; k++) {
+                    assertEquals(substringList + " in " + text, text.contains(substrings[k]), matches.get(k));
+                    any |= text.contains(substrings[k]);
+                }
+                assertEquals(any, matcher.containsAny(text));
+            }
+        }
+    }
+
+    private static String randomString(final Random random, final int length) {
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char)('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+}
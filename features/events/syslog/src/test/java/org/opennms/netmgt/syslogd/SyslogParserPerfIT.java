@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.opennms.core.test.ConfigurationTestUtils;
+import org.opennms.netmgt.config.SyslogdConfig;
+
+/**
+ * Used to compare the throughput of the syslog parsers against the
+ * messages in <i>syslogMessages.txt</i>.
+ *
+ * Each message is parsed on the calling thread in the same way as
+ * {@link ConvertToEvent} does.
+ *
+ * By default, we only run a quick test to validate the setup.
+ *
+ * A longer run, against which you can attach a profiler is available
+ * but disabled by default.
+ */
+public class SyslogParserPerfIT {
+
+    @Test(timeout=120000)
+    public void quickRun() throws Exception {
+        benchmark(100);
+    }
+
+    @Ignore
+    public void longRun() throws Exception {
+        benchmark(20000);
+    }
+
+    private void benchmark(int iterations) throws Exception {
+        final List<String> messages = getMessages();
+        for (SyslogdConfig config : getConfigs()) {
+            // Warm up
+            parse(config, messages, Math.max(1, iterations / 10));
+
+            final long start = System.nanoTime();
+            final long parsed = parse(config, messages, iterations);
+            final long elapsed = System.nanoTime() - start;
+            System.err.printf("%s: %.0f messages per second (%d of %d messages parsed)%n",
+                    config.getParser(),
+                    (messages.size() * (long)iterations) / (elapsed / 1e9d),
+                    parsed, messages.size() * (long)iterations);
+        }
+    }
+
+    private static long parse(SyslogdConfig config, List<String> messages, int iterations) throws Exception {
+        long parsed = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (String message : messages) {
+                final SyslogParser parser = SyslogParser.getParserInstance(config, SyslogdTestUtils.toByteBuffer(message));
+                try {
+                    if (parser.find() && parser.parse() != null) {
+                        parsed++;
+                    }
+                } catch (SyslogParserException e) {
+                    // Count as not parsed
+                }
+            }
+        }
+        return parsed;
+    }
+
+    private List<String> getMessages() throws Exception {
+        final Path resource = ConfigurationTestUtils.getFileForResource(this, "/syslogMessages.txt").toPath();
+        return Files.lines(resource)
+            // Ignore comments and blank lines
+            .filter(syslog -> syslog.trim().length() > 0 && !syslog.trim().startsWith("#"))
+            .map(syslog -> syslog.replaceAll("\\\\u0000", "\u0000").replaceAll("\\\\uFEFF", "\uFEFF"))
+            .collect(Collectors.toList());
+    }
+
+    private static List<SyslogdConfig> getConfigs() {
+        final List<SyslogdConfig> configs = new ArrayList<>();
+
+        SyslogConfigBean config = new SyslogConfigBean();
+        config.setParser(RadixTreeSyslogParser.class.getName());
+        configs.add(config);
+
+        config = new SyslogConfigBean();
+        config.setParser(CompiledRadixTreeSyslogParser.class.getName());
+        configs.add(config);
+
+        config = new SyslogConfigBean();
+        config.setParser(Rfc5424SyslogParser.class.getName());
+        configs.add(config);
+
+        config = new SyslogConfigBean();
+        config.setParser(CustomSyslogParser.class.getName());
+        config.setForwardingRegexp("^.*\\s(19|20)\\d\\d([-/.])(0[1-9]|1[012])\\2(0[1-9]|[12][0-9]|3[01])(\\s+)(\\S+)(\\s)(\\S.+)");
+        config.setMatchingGroupHost(6);
+        config.setMatchingGroupMessage(8);
+        configs.add(config);
+
+        return configs;
+    }
+}
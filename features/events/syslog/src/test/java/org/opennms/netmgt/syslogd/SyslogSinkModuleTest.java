@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.junit.Test;
+import org.opennms.netmgt.config.SyslogdConfig;
+import org.opennms.netmgt.dao.api.DistPollerDao;
+import org.opennms.netmgt.syslogd.api.SyslogMessageDTO;
+import org.opennms.netmgt.syslogd.api.SyslogMessageLogDTO;
+
+public class SyslogSinkModuleTest {
+
+    private final SyslogSinkModule xmlModule = new SyslogSinkModule(mock(SyslogdConfig.class), mock(DistPollerDao.class));
+
+    private final SyslogSinkModule binaryModule = new SyslogSinkModule(mock(SyslogdConfig.class), mock(DistPollerDao.class));
+
+    public SyslogSinkModuleTest() {
+        binaryModule.setBinaryFormatEnabled(true);
+    }
+
+    @Test
+    public void canMarshalAndUnmarshalBinaryMessages() throws Exception {
+        final SyslogMessageLogDTO messageLog = getMessageLog();
+        final byte[] bytes = binaryModule.marshal(messageLog);
+        assertEquals("binary messages start with a NUL byte", 0, bytes[0]);
+        assertEquals(messageLog, binaryModule.unmarshal(bytes));
+
+        // Modules accept binary messages regardless of the format they send
+        assertEquals(messageLog, xmlModule.unmarshal(bytes));
+    }
+
+    @Test
+    public void canUnmarshalXmlMessagesWhenBinaryFormatIsEnabled() throws Exception {
+        final SyslogMessageLogDTO messageLog = getMessageLog();
+        final byte[] bytes = xmlModule.marshal(messageLog);
+        assertEquals('<', bytes[0]);
+        assertEquals(messageLog, binaryModule.unmarshal(bytes));
+    }
+
+    @Test
+    public void binaryFormatIsDisabledByDefault() {
+        assertFalse(xmlModule.isBinaryFormatEnabled());
+        assertTrue(binaryModule.isBinaryFormatEnabled());
+    }
+
+    @Test
+    public void canMarshalMessagesWithNullFields() {
+        final SyslogMessageLogDTO messageLog = new SyslogMessageLogDTO();
+        final SyslogMessageDTO message = new SyslogMessageDTO();
+        messageLog.getMessages().add(message);
+        assertEquals(messageLog, binaryModule.unmarshal(binaryModule.marshal(messageLog)));
+    }
+
+    private static SyslogMessageLogDTO getMessageLog() throws Exception {
+        final SyslogMessageLogDTO messageLog = new SyslogMessageLogDTO();
+        messageLog.setLocation("loc");
+        messageLog.setSystemId("99");
+        messageLog.setSourceAddress(InetAddress.getByName("127.0.0.1"));
+        messageLog.setSourcePort(1514);
+        for (int i = 0; i < 3; i++) {
+            final SyslogMessageDTO message = new SyslogMessageDTO();
+            // The XML format only keeps the timestamps to the second
+            message.setTimestamp(new Date(i * 1000));
+            message.setBytes(ByteBuffer.wrap(("<34>1 2003-10-11T22:14:15.003Z mymachine.example.com su - ID47 - 'su root' failed " + i).getBytes(StandardCharsets.US_ASCII)));
+            messageLog.getMessages().add(message);
+        }
+        return messageLog;
+    }
+}
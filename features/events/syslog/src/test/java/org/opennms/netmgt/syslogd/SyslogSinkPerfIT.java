@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.opennms.core.ipc.sink.api.AsyncDispatcher;
+import org.opennms.core.ipc.sink.api.MessageConsumer;
+import org.opennms.core.ipc.sink.api.SinkModule;
+import org.opennms.core.ipc.sink.mock.MockMessageDispatcherFactory;
+import org.opennms.netmgt.config.SyslogdConfig;
+import org.opennms.netmgt.dao.api.DistPollerDao;
+import org.opennms.netmgt.model.OnmsDistPoller;
+import org.opennms.netmgt.syslogd.api.SyslogConnection;
+import org.opennms.netmgt.syslogd.api.SyslogMessageLogDTO;
+
+/**
+ * Used to compare the throughput of the Syslog sink module when
+ * using the XML and binary wire formats.
+ *
+ * Messages are sent through the asynchronous dispatcher of the mock
+ * sink implementation, and every aggregated message log is marshalled
+ * and unmarshalled as it would be by the other implementations.
+ *
+ * By default, we only run a quick test to validate the setup.
+ *
+ * A longer run, against which you can attach a profiler is available
+ * but disabled by default.
+ */
+public class SyslogSinkPerfIT {
+
+    // Tuneables
+    private static final int NUM_SOURCES = 16;
+    private static final int NUM_THREADS = 4;
+    private static final int BATCH_SIZE = 1000;
+
+    @Test(timeout=120000)
+    public void quickRun() throws Exception {
+        benchmark(false, 10000);
+        benchmark(true, 10000);
+    }
+
+    @Ignore
+    public void longRun() throws Exception {
+        benchmark(false, 5000000);
+        benchmark(true, 5000000);
+    }
+
+    private void benchmark(boolean binary, int numMessages) throws Exception {
+        final SyslogSinkModule module = new SyslogSinkModule(getConfig(), getDistPollerDao());
+        module.setBinaryFormatEnabled(binary);
+
+        final AtomicLong numMessagesReceived = new AtomicLong();
+        final MockMessageDispatcherFactory<SyslogConnection, SyslogMessageLogDTO> messageDispatcherFactory = new MockMessageDispatcherFactory<>();
+        messageDispatcherFactory.setConsumer(new MessageConsumer<SyslogConnection, SyslogMessageLogDTO>() {
+            @Override
+            public SinkModule<SyslogConnection, SyslogMessageLogDTO> getModule() {
+                return module;
+            }
+
+            @Override
+            public void handleMessage(SyslogMessageLogDTO messageLog) {
+                // Go over the wire
+                final SyslogMessageLogDTO received = module.unmarshal(module.marshal(messageLog));
+                numMessagesReceived.addAndGet(received.getMessages().size());
+            }
+        });
+
+        final byte[] syslog = "<31>main: 2010-08-19 localhost foo23: load test 23 on tty1".getBytes(StandardCharsets.US_ASCII);
+        final InetSocketAddress[] sources = new InetSocketAddress[NUM_SOURCES];
+        for (int i = 0; i < NUM_SOURCES; i++) {
+            sources[i] = new InetSocketAddress("127.0.0." + (i + 1), 514);
+        }
+
+        try (AsyncDispatcher<SyslogConnection> dispatcher = messageDispatcherFactory.createAsyncDispatcher(module)) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < numMessages; i++) {
+                dispatcher.send(new SyslogConnection(sources[i % NUM_SOURCES], ByteBuffer.wrap(syslog)));
+            }
+            await().atMost(2, TimeUnit.MINUTES).until(() -> numMessagesReceived.get(), equalTo((long)numMessages));
+            final long elapsed = System.nanoTime() - start;
+            System.err.printf("%s: %.0f messages per second (%d messages, %d sources)%n",
+                    binary ? "Binary" : "XML",
+                    numMessages / (elapsed / 1e9d), numMessages, NUM_SOURCES);
+        }
+    }
+
+    private static SyslogdConfig getConfig() {
+        final SyslogdConfig config = mock(SyslogdConfig.class);
+        when(config.getNumThreads()).thenReturn(NUM_THREADS);
+        when(config.getQueueSize()).thenReturn(10000);
+        when(config.getBatchSize()).thenReturn(BATCH_SIZE);
+        when(config.getBatchIntervalMs()).thenReturn(100);
+        return config;
+    }
+
+    private static DistPollerDao getDistPollerDao() {
+        final OnmsDistPoller distPoller = new OnmsDistPoller(DistPollerDao.DEFAULT_DIST_POLLER_ID);
+        distPoller.setLocation("Default");
+        final DistPollerDao distPollerDao = mock(DistPollerDao.class);
+        when(distPollerDao.whoami()).thenReturn(distPoller);
+        return distPollerDao;
+    }
+}
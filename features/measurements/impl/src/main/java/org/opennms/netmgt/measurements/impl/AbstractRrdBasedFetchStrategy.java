@@ -31,6 +31,11 @@ package org.opennms.netmgt.measurements.impl;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.jrobin.core.RrdException;
 import org.opennms.netmgt.dao.api.ResourceDao;
@@ -46,17 +51,35 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Used to fetch measurements from RRD files.
  *
+ * Strategies that read the files themselves can use {@link #fetchAll(List)}
+ * to read the files of a request in parallel. The "parallelism" attribute sets
+ * an upper limit on the number of files that are read concurrently, across all
+ * of the requests. Setting it to 1 reads the files sequentially on the calling thread.
+ *
  * @author Jesse White <jesse@opennms.org>
  */
 public abstract class AbstractRrdBasedFetchStrategy implements MeasurementFetchStrategy {
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractRrdBasedFetchStrategy.class);
 
+    public static final int PARALLELISM = Integer.getInteger("org.opennms.rrd.query.parallelism", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The thread pool is shared by all of the strategies, and only created when first used.
+     */
+    private static class FetchThreadPoolHolder {
+        private static final ExecutorService THREAD_POOL = Executors.newFixedThreadPool(PARALLELISM,
+                new ThreadFactoryBuilder().setNameFormat("RrdFetchStrategy-%d").setDaemon(true).build());
+    }
+
     @Autowired
     private ResourceDao m_resourceDao;
 
@@ -149,4 +172,42 @@ public abstract class AbstractRrdBasedFetchStrategy implements MeasurementFetchS
     protected abstract FetchResults fetchMeasurements(long start, long end, long step, int maxrows,
             Map<Source, String> rrdsBySource, Map<String, Object> constants) throws RrdException;
 
+    /**
+     * Performs the given fetches using the shared thread pool and waits for all of them
+     * to complete.
+     *
+     * @return the results of the fetches, in the same order as the fetches
+     * @throws RrdException if any of the fetches failed
+     */
+    protected static <T> List<T> fetchAll(List<Callable<T>> fetches) throws RrdException {
+        final List<T> results = Lists.newArrayListWithCapacity(fetches.size());
+        if (PARALLELISM <= 1 || fetches.size() <= 1) {
+            for (Callable<T> fetch : fetches) {
+                try {
+                    results.add(fetch.call());
+                } catch (Exception e) {
+                    throw propagate(e);
+                }
+            }
+            return results;
+        }
+
+        try {
+            for (Future<T> future : FetchThreadPoolHolder.THREAD_POOL.invokeAll(fetches)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RrdException("Interrupted while fetching.", e);
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        }
+        return results;
+    }
+
+    private static RrdException propagate(Throwable t) throws RrdException {
+        Throwables.propagateIfPossible(t, RrdException.class);
+        return new RrdException("Fetch failed.", t);
+    }
+
 }
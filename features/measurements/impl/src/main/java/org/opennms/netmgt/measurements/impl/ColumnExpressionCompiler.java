@@ -0,0 +1,784 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Compiles the subset of the JEXL syntax that is commonly used in graph definitions
+ * into a tree of operations on primitive <code>double[]</code> columns.
+ *
+ * The compiled tree produces the same values as JEXL would for every row, including
+ * the lenient handling of division by zero, the ordering of NaN in comparisons and
+ * the single precision of unsuffixed decimal literals. Constructs that are not supported, or for which the results
+ * could differ, cause an {@link UnsupportedExpressionException} to be thrown so that
+ * the caller can fall back to JEXL.
+ */
+public class ColumnExpressionCompiler {
+
+    /**
+     * Thrown when an expression uses constructs that can't be compiled.
+     */
+    public static class UnsupportedExpressionException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedExpressionException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Resolves the variables referenced in an expression.
+     */
+    public interface VariableResolver {
+        Node resolve(String name) throws UnsupportedExpressionException;
+    }
+
+    public enum Type {
+        INTEGER,
+        DOUBLE,
+        BOOLEAN;
+
+        public boolean isNumeric() {
+            return this != BOOLEAN;
+        }
+    }
+
+    /**
+     * A node in the compiled expression tree. Evaluating a node
+     * yields one value per row. Boolean values are represented as
+     * 1.0 and 0.0.
+     */
+    public static abstract class Node {
+        private final Type m_type;
+
+        protected Node(Type type) {
+            m_type = type;
+        }
+
+        public Type getType() {
+            return m_type;
+        }
+
+        public abstract double[] evaluate(int numRows);
+    }
+
+    /**
+     * A node that yields the same value for every row.
+     */
+    public static class ConstantNode extends Node {
+        private final double m_value;
+
+        public ConstantNode(Type type, double value) {
+            super(type);
+            m_value = value;
+        }
+
+        public double getValue() {
+            return m_value;
+        }
+
+        @Override
+        public double[] evaluate(int numRows) {
+            final double[] values = new double[numRows];
+            Arrays.fill(values, m_value);
+            return values;
+        }
+    }
+
+    /**
+     * A node that yields the values of an existing column. The column
+     * is retrieved at evaluation time, so that it may reference the results
+     * of expressions that are evaluated before this one.
+     */
+    public static class ColumnNode extends Node {
+        private final Supplier<double[]> m_column;
+
+        public ColumnNode(Type type, Supplier<double[]> column) {
+            super(type);
+            m_column = column;
+        }
+
+        @Override
+        public double[] evaluate(int numRows) {
+            return m_column.get();
+        }
+    }
+
+    private static class UnaryNode extends Node {
+        private final Node m_operand;
+        private final DoubleUnaryOperator m_op;
+
+        private UnaryNode(Type type, Node operand, DoubleUnaryOperator op) {
+            super(type);
+            m_operand = operand;
+            m_op = op;
+        }
+
+        @Override
+        public double[] evaluate(int numRows) {
+            final double[] operand = m_operand.evaluate(numRows);
+            final double[] values = new double[numRows];
+            for (int i = 0; i < numRows; i++) {
+                values[i] = m_op.applyAsDouble(operand[i]);
+            }
+            return values;
+        }
+    }
+
+    private static class BinaryNode extends Node {
+        private final Node m_left;
+        private final Node m_right;
+        private final DoubleBinaryOperator m_op;
+
+        private BinaryNode(Type type, Node left, Node right, DoubleBinaryOperator op) {
+            super(type);
+            m_left = left;
+            m_right = right;
+            m_op = op;
+        }
+
+        @Override
+        public double[] evaluate(int numRows) {
+            final double[] left = m_left.evaluate(numRows);
+            final double[] right = m_right.evaluate(numRows);
+            final double[] values = new double[numRows];
+            for (int i = 0; i < numRows; i++) {
+                values[i] = m_op.applyAsDouble(left[i], right[i]);
+            }
+            return values;
+        }
+    }
+
+    private static class TernaryNode extends Node {
+        private final Node m_condition;
+        private final Node m_then;
+        private final Node m_else;
+
+        private TernaryNode(Type type, Node condition, Node then, Node otherwise) {
+            super(type);
+            m_condition = condition;
+            m_then = then;
+            m_else = otherwise;
+        }
+
+        @Override
+        public double[] evaluate(int numRows) {
+            // None of the supported operations have side effects, so it's safe to evaluate both branches
+            final double[] condition = m_condition.evaluate(numRows);
+            final double[] then = m_then.evaluate(numRows);
+            final double[] otherwise = m_else.evaluate(numRows);
+            final double[] values = new double[numRows];
+            for (int i = 0; i < numRows; i++) {
+                values[i] = toBoolean(condition[i]) ? then[i] : otherwise[i];
+            }
+            return values;
+        }
+    }
+
+    private static class FunctionNode extends Node {
+        private final Node[] m_args;
+        private final DoubleUnaryOperator m_unary;
+        private final DoubleBinaryOperator m_binary;
+
+        private FunctionNode(Node[] args, DoubleUnaryOperator unary, DoubleBinaryOperator binary) {
+            super(Type.DOUBLE);
+            m_args = args;
+            m_unary = unary;
+            m_binary = binary;
+        }
+
+        @Override
+        public double[] evaluate(int numRows) {
+            final double[] values = new double[numRows];
+            if (m_unary != null) {
+                final double[] arg = m_args[0].evaluate(numRows);
+                for (int i = 0; i < numRows; i++) {
+                    values[i] = m_unary.applyAsDouble(arg[i]);
+                }
+            } else {
+                final double[] arg0 = m_args[0].evaluate(numRows);
+                final double[] arg1 = m_args[1].evaluate(numRows);
+                for (int i = 0; i < numRows; i++) {
+                    values[i] = m_binary.applyAsDouble(arg0[i], arg1[i]);
+                }
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Mirrors JexlArithmetic.toBoolean() for numbers.
+     */
+    private static boolean toBoolean(double value) {
+        return !Double.isNaN(value) && value != 0d;
+    }
+
+    /**
+     * Mirrors JexlArithmetic.compare() for floating point numbers, which orders
+     * NaN before every other number and considers it equal to itself.
+     */
+    private static int compare(double left, double right) {
+        if (Double.isNaN(left)) {
+            return Double.isNaN(right) ? 0 : -1;
+        } else if (Double.isNaN(right)) {
+            return 1;
+        } else if (left < right) {
+            return -1;
+        } else if (left > right) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private static double fromBoolean(boolean value) {
+        return value ? 1d : 0d;
+    }
+
+    /**
+     * Compiles the given expression.
+     *
+     * @param expression the JEXL expression
+     * @param resolver used to resolve the variables referenced by the expression
+     * @return the root of the compiled tree
+     * @throws UnsupportedExpressionException if the expression can not be compiled
+     */
+    public static Node compile(String expression, VariableResolver resolver) throws UnsupportedExpressionException {
+        final Parser parser = new Parser(tokenize(expression), resolver);
+        final Node root = parser.parseTernary();
+        if (!parser.atEnd()) {
+            throw new UnsupportedExpressionException("Unexpected token: " + parser.peek());
+        }
+        if (!root.getType().isNumeric()) {
+            throw new UnsupportedExpressionException("Expression does not return a number.");
+        }
+        return root;
+    }
+
+    private enum TokenType {
+        NUMBER,
+        IDENTIFIER,
+        FUNCTION,
+        OPERATOR
+    }
+
+    private static class Token {
+        private final TokenType type;
+        private final String text;
+
+        private Token(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        private boolean is(String operator) {
+            return type == TokenType.OPERATOR && text.equals(operator);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static final String[] OPERATORS = new String[] {
+        "==", "!=", "<=", ">=", "&&", "||",
+        "(", ")", ",", "?", ":", "+", "-", "*", "/", "%", "!", "<", ">"
+    };
+
+    private static List<Token> tokenize(String expression) throws UnsupportedExpressionException {
+        final List<Token> tokens = new ArrayList<>();
+        final int length = expression.length();
+        int i = 0;
+        while (i < length) {
+            final char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isDigit(c)) {
+                int j = i;
+                while (j < length && (Character.isDigit(expression.charAt(j)) || expression.charAt(j) == '.')) {
+                    j++;
+                }
+                if (j < length && "lLdDfF".indexOf(expression.charAt(j)) >= 0) {
+                    j++;
+                }
+                if (j < length && (Character.isLetterOrDigit(expression.charAt(j)) || expression.charAt(j) == '_')) {
+                    throw new UnsupportedExpressionException("Unsupported number literal at position " + i);
+                }
+                tokens.add(new Token(TokenType.NUMBER, expression.substring(i, j)));
+                i = j;
+            } else if (Character.isLetter(c) || c == '_' || c == '$') {
+                int j = i;
+                while (j < length && (Character.isLetterOrDigit(expression.charAt(j)) || expression.charAt(j) == '_'
+                        || expression.charAt(j) == '$' || expression.charAt(j) == '.')) {
+                    j++;
+                }
+                final String name = expression.substring(i, j);
+                if (name.endsWith(".")) {
+                    throw new UnsupportedExpressionException("Unsupported identifier: " + name);
+                }
+                if (j < length && expression.charAt(j) == ':' && name.indexOf('.') < 0) {
+                    // Namespaced function, i.e. math:sin
+                    int k = j + 1;
+                    while (k < length && (Character.isLetterOrDigit(expression.charAt(k)) || expression.charAt(k) == '_')) {
+                        k++;
+                    }
+                    if (k == j + 1) {
+                        throw new UnsupportedExpressionException("Unsupported function reference: " + name);
+                    }
+                    tokens.add(new Token(TokenType.FUNCTION, expression.substring(i, k)));
+                    i = k;
+                } else {
+                    tokens.add(toWordToken(name));
+                    i = j;
+                }
+            } else {
+                boolean matched = false;
+                for (String op : OPERATORS) {
+                    if (expression.startsWith(op, i)) {
+                        tokens.add(new Token(TokenType.OPERATOR, op));
+                        i += op.length();
+                        matched = true;
+                        break;
+                    }
+                }
+                if (!matched) {
+                    throw new UnsupportedExpressionException("Unsupported character '" + c + "' at position " + i);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static Token toWordToken(String word) throws UnsupportedExpressionException {
+        switch (word) {
+            case "and": return new Token(TokenType.OPERATOR, "&&");
+            case "or": return new Token(TokenType.OPERATOR, "||");
+            case "not": return new Token(TokenType.OPERATOR, "!");
+            case "eq": return new Token(TokenType.OPERATOR, "==");
+            case "ne": return new Token(TokenType.OPERATOR, "!=");
+            case "lt": return new Token(TokenType.OPERATOR, "<");
+            case "le": return new Token(TokenType.OPERATOR, "<=");
+            case "gt": return new Token(TokenType.OPERATOR, ">");
+            case "ge": return new Token(TokenType.OPERATOR, ">=");
+            case "div": return new Token(TokenType.OPERATOR, "/");
+            case "mod": return new Token(TokenType.OPERATOR, "%");
+            case "true":
+            case "false":
+            case "null":
+            case "empty":
+            case "size":
+            case "new":
+            case "var":
+            case "if":
+            case "else":
+            case "for":
+            case "foreach":
+            case "while":
+            case "return":
+                throw new UnsupportedExpressionException("Unsupported keyword: " + word);
+            default:
+                return new Token(TokenType.IDENTIFIER, word);
+        }
+    }
+
+    private static class Parser {
+        private final List<Token> m_tokens;
+        private final VariableResolver m_resolver;
+        private int m_position = 0;
+
+        private Parser(List<Token> tokens, VariableResolver resolver) {
+            m_tokens = tokens;
+            m_resolver = resolver;
+        }
+
+        private boolean atEnd() {
+            return m_position >= m_tokens.size();
+        }
+
+        private Token peek() {
+            return atEnd() ? null : m_tokens.get(m_position);
+        }
+
+        private boolean accept(String operator) {
+            final Token token = peek();
+            if (token != null && token.is(operator)) {
+                m_position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String operator) throws UnsupportedExpressionException {
+            if (!accept(operator)) {
+                throw new UnsupportedExpressionException("Expected '" + operator + "' but got: " + peek());
+            }
+        }
+
+        private Node parseTernary() throws UnsupportedExpressionException {
+            final Node condition = parseOr();
+            if (!accept("?")) {
+                return condition;
+            }
+            final Node then = parseTernary();
+            expect(":");
+            final Node otherwise = parseTernary();
+
+            final Type type;
+            if (then.getType().isNumeric() && otherwise.getType().isNumeric()) {
+                type = numericResultType(then, otherwise);
+            } else if (then.getType() == Type.BOOLEAN && otherwise.getType() == Type.BOOLEAN) {
+                type = Type.BOOLEAN;
+            } else {
+                throw new UnsupportedExpressionException("Branches of the conditional expression have different types.");
+            }
+            return new TernaryNode(type, condition, then, otherwise);
+        }
+
+        private Node parseOr() throws UnsupportedExpressionException {
+            Node left = parseAnd();
+            while (accept("||")) {
+                final Node right = parseAnd();
+                left = new BinaryNode(Type.BOOLEAN, left, right, (l, r) -> fromBoolean(toBoolean(l) || toBoolean(r)));
+            }
+            return left;
+        }
+
+        private Node parseAnd() throws UnsupportedExpressionException {
+            Node left = parseEquality();
+            while (accept("&&")) {
+                final Node right = parseEquality();
+                left = new BinaryNode(Type.BOOLEAN, left, right, (l, r) -> fromBoolean(toBoolean(l) && toBoolean(r)));
+            }
+            return left;
+        }
+
+        private Node parseEquality() throws UnsupportedExpressionException {
+            Node left = parseRelational();
+            while (true) {
+                final boolean equals;
+                if (accept("==")) {
+                    equals = true;
+                } else if (accept("!=")) {
+                    equals = false;
+                } else {
+                    return left;
+                }
+                final Node right = parseRelational();
+                if (left.getType().isNumeric() != right.getType().isNumeric()) {
+                    throw new UnsupportedExpressionException("Comparison of a boolean with a number.");
+                }
+                left = equals ? new BinaryNode(Type.BOOLEAN, left, right, (l, r) -> fromBoolean(compare(l, r) == 0))
+                        : new BinaryNode(Type.BOOLEAN, left, right, (l, r) -> fromBoolean(compare(l, r) != 0));
+            }
+        }
+
+        private Node parseRelational() throws UnsupportedExpressionException {
+            Node left = parseAdditive();
+            while (true) {
+                final DoubleBinaryOperator op;
+                if (accept("<")) {
+                    op = (l, r) -> fromBoolean(compare(l, r) < 0);
+                } else if (accept("<=")) {
+                    op = (l, r) -> fromBoolean(compare(l, r) <= 0);
+                } else if (accept(">")) {
+                    op = (l, r) -> fromBoolean(compare(l, r) > 0);
+                } else if (accept(">=")) {
+                    op = (l, r) -> fromBoolean(compare(l, r) >= 0);
+                } else {
+                    return left;
+                }
+                final Node right = parseAdditive();
+                requireNumeric(left, right);
+                left = new BinaryNode(Type.BOOLEAN, left, right, op);
+            }
+        }
+
+        private Node parseAdditive() throws UnsupportedExpressionException {
+            Node left = parseMultiplicative();
+            while (true) {
+                final DoubleBinaryOperator op;
+                if (accept("+")) {
+                    op = (l, r) -> l + r;
+                } else if (accept("-")) {
+                    op = (l, r) -> l - r;
+                } else {
+                    return left;
+                }
+                final Node right = parseMultiplicative();
+                requireNumeric(left, right);
+                left = new BinaryNode(numericResultType(left, right), left, right, op);
+            }
+        }
+
+        private Node parseMultiplicative() throws UnsupportedExpressionException {
+            Node left = parseUnary();
+            while (true) {
+                final DoubleBinaryOperator op;
+                final boolean isDivision;
+                if (accept("*")) {
+                    op = (l, r) -> l * r;
+                    isDivision = false;
+                } else if (accept("/")) {
+                    // JEXL returns 0 when dividing by zero in lenient mode
+                    op = (l, r) -> r == 0d ? 0d : l / r;
+                    isDivision = true;
+                } else if (accept("%")) {
+                    op = (l, r) -> r == 0d ? 0d : l % r;
+                    isDivision = true;
+                } else {
+                    return left;
+                }
+                final Node right = parseUnary();
+                requireNumeric(left, right);
+                final Type type = numericResultType(left, right);
+                if (isDivision && type == Type.INTEGER) {
+                    // Integer division truncates in JEXL
+                    throw new UnsupportedExpressionException("Integer division is not supported.");
+                }
+                left = new BinaryNode(type, left, right, op);
+            }
+        }
+
+        private Node parseUnary() throws UnsupportedExpressionException {
+            if (accept("-")) {
+                final Node operand = parseUnary();
+                requireNumeric(operand);
+                if (operand instanceof ConstantNode) {
+                    return new ConstantNode(operand.getType(), -((ConstantNode)operand).getValue());
+                }
+                return new UnaryNode(operand.getType(), operand, v -> -v);
+            } else if (accept("!")) {
+                final Node operand = parseUnary();
+                return new UnaryNode(Type.BOOLEAN, operand, v -> fromBoolean(!toBoolean(v)));
+            }
+            return parsePrimary();
+        }
+
+        private Node parsePrimary() throws UnsupportedExpressionException {
+            final Token token = peek();
+            if (token == null) {
+                throw new UnsupportedExpressionException("Unexpected end of expression.");
+            }
+            m_position++;
+            switch (token.type) {
+                case NUMBER:
+                    return parseNumber(token.text);
+                case IDENTIFIER:
+                    return m_resolver.resolve(token.text);
+                case FUNCTION:
+                    return parseFunction(token.text);
+                default:
+                    if (token.is("(")) {
+                        final Node node = parseTernary();
+                        expect(")");
+                        return node;
+                    }
+                    throw new UnsupportedExpressionException("Unexpected token: " + token);
+            }
+        }
+
+        private Node parseFunction(String name) throws UnsupportedExpressionException {
+            final List<Node> args = new ArrayList<>();
+            expect("(");
+            if (!accept(")")) {
+                do {
+                    args.add(parseTernary());
+                } while (accept(","));
+                expect(")");
+            }
+            for (Node arg : args) {
+                requireNumeric(arg);
+            }
+            return toFunctionNode(name, args.toArray(new Node[args.size()]));
+        }
+    }
+
+    private static Node parseNumber(String text) throws UnsupportedExpressionException {
+        final char suffix = Character.toLowerCase(text.charAt(text.length() - 1));
+        final boolean hasSuffix = Character.isLetter(suffix);
+        final String digits = hasSuffix ? text.substring(0, text.length() - 1) : text;
+        final boolean isReal = digits.indexOf('.') >= 0;
+        try {
+            if (isReal || suffix == 'd' || suffix == 'f') {
+                if (suffix == 'l') {
+                    throw new UnsupportedExpressionException("Unsupported number literal: " + text);
+                }
+                if (suffix == 'd') {
+                    return new ConstantNode(Type.DOUBLE, Double.parseDouble(digits));
+                }
+                // JEXL parses decimal literals without a suffix as floats
+                return new ConstantNode(Type.DOUBLE, Float.parseFloat(digits));
+            }
+            final long value = Long.parseLong(digits);
+            // Values that are exactly representable as doubles behave the same
+            if (Math.abs(value) > (1L << 53)) {
+                throw new UnsupportedExpressionException("Integer literal is too large: " + text);
+            }
+            return new ConstantNode(Type.INTEGER, value);
+        } catch (NumberFormatException e) {
+            throw new UnsupportedExpressionException("Unsupported number literal: " + text);
+        }
+    }
+
+    private static Node toFunctionNode(String name, Node[] args) throws UnsupportedExpressionException {
+        final int separator = name.indexOf(':');
+        final String namespace = name.substring(0, separator);
+        final String function = name.substring(separator + 1);
+        final boolean strict;
+        if ("math".equals(namespace)) {
+            strict = false;
+        } else if ("strictmath".equals(namespace)) {
+            strict = true;
+        } else {
+            throw new UnsupportedExpressionException("Unsupported function namespace: " + namespace);
+        }
+
+        // These are overloaded for integers, so only compile them when called with doubles
+        switch (function) {
+            case "abs":
+            case "max":
+            case "min":
+            case "signum":
+                for (Node arg : args) {
+                    if (arg.getType() != Type.DOUBLE) {
+                        throw new UnsupportedExpressionException("Function " + name + " is only supported with decimal arguments.");
+                    }
+                }
+                break;
+            default:
+        }
+
+        if (args.length == 1) {
+            final DoubleUnaryOperator op = strict ? strictUnaryFunction(function) : unaryFunction(function);
+            if (op != null) {
+                return new FunctionNode(args, op, null);
+            }
+        } else if (args.length == 2) {
+            final DoubleBinaryOperator op = strict ? strictBinaryFunction(function) : binaryFunction(function);
+            if (op != null) {
+                return new FunctionNode(args, null, op);
+            }
+        }
+        throw new UnsupportedExpressionException("Unsupported function: " + name + " with " + args.length + " argument(s)");
+    }
+
+    private static DoubleUnaryOperator unaryFunction(String function) {
+        switch (function) {
+            case "abs": return Math::abs;
+            case "acos": return Math::acos;
+            case "asin": return Math::asin;
+            case "atan": return Math::atan;
+            case "cbrt": return Math::cbrt;
+            case "ceil": return Math::ceil;
+            case "cos": return Math::cos;
+            case "cosh": return Math::cosh;
+            case "exp": return Math::exp;
+            case "floor": return Math::floor;
+            case "log": return Math::log;
+            case "log10": return Math::log10;
+            case "rint": return Math::rint;
+            case "signum": return Math::signum;
+            case "sin": return Math::sin;
+            case "sinh": return Math::sinh;
+            case "sqrt": return Math::sqrt;
+            case "tan": return Math::tan;
+            case "tanh": return Math::tanh;
+            case "toDegrees": return Math::toDegrees;
+            case "toRadians": return Math::toRadians;
+            default: return null;
+        }
+    }
+
+    private static DoubleUnaryOperator strictUnaryFunction(String function) {
+        switch (function) {
+            case "abs": return StrictMath::abs;
+            case "acos": return StrictMath::acos;
+            case "asin": return StrictMath::asin;
+            case "atan": return StrictMath::atan;
+            case "cbrt": return StrictMath::cbrt;
+            case "ceil": return StrictMath::ceil;
+            case "cos": return StrictMath::cos;
+            case "cosh": return StrictMath::cosh;
+            case "exp": return StrictMath::exp;
+            case "floor": return StrictMath::floor;
+            case "log": return StrictMath::log;
+            case "log10": return StrictMath::log10;
+            case "rint": return StrictMath::rint;
+            case "signum": return StrictMath::signum;
+            case "sin": return StrictMath::sin;
+            case "sinh": return StrictMath::sinh;
+            case "sqrt": return StrictMath::sqrt;
+            case "tan": return StrictMath::tan;
+            case "tanh": return StrictMath::tanh;
+            case "toDegrees": return StrictMath::toDegrees;
+            case "toRadians": return StrictMath::toRadians;
+            default: return null;
+        }
+    }
+
+    private static DoubleBinaryOperator binaryFunction(String function) {
+        switch (function) {
+            case "atan2": return Math::atan2;
+            case "hypot": return Math::hypot;
+            case "max": return Math::max;
+            case "min": return Math::min;
+            case "pow": return Math::pow;
+            default: return null;
+        }
+    }
+
+    private static DoubleBinaryOperator strictBinaryFunction(String function) {
+        switch (function) {
+            case "atan2": return StrictMath::atan2;
+            case "hypot": return StrictMath::hypot;
+            case "max": return StrictMath::max;
+            case "min": return StrictMath::min;
+            case "pow": return StrictMath::pow;
+            default: return null;
+        }
+    }
+
+    private static void requireNumeric(Node... nodes) throws UnsupportedExpressionException {
+        for (Node node : nodes) {
+            if (!node.getType().isNumeric()) {
+                throw new UnsupportedExpressionException("Arithmetic on boolean values is not supported.");
+            }
+        }
+    }
+
+    private static Type numericResultType(Node left, Node right) {
+        return left.getType() == Type.DOUBLE || right.getType() == Type.DOUBLE ? Type.DOUBLE : Type.INTEGER;
+    }
+}
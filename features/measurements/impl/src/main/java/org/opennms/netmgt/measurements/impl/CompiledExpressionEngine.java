@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opennms.netmgt.measurements.api.ExpressionEngine;
+import org.opennms.netmgt.measurements.api.FetchResults;
+import org.opennms.netmgt.measurements.api.exceptions.ExpressionException;
+import org.opennms.netmgt.measurements.impl.ColumnExpressionCompiler.ColumnNode;
+import org.opennms.netmgt.measurements.impl.ColumnExpressionCompiler.ConstantNode;
+import org.opennms.netmgt.measurements.impl.ColumnExpressionCompiler.Node;
+import org.opennms.netmgt.measurements.impl.ColumnExpressionCompiler.Type;
+import org.opennms.netmgt.measurements.impl.ColumnExpressionCompiler.UnsupportedExpressionException;
+import org.opennms.netmgt.measurements.model.Expression;
+import org.opennms.netmgt.measurements.model.QueryRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An expression engine that compiles the expressions once per request and
+ * evaluates them a column at a time, instead of evaluating every expression
+ * once per row with a freshly populated context.
+ *
+ * Requests that contain expressions which can not be compiled by the
+ * {@link ColumnExpressionCompiler} are handed to the fallback engine
+ * as a whole, so the results are always consistent with JEXL.
+ */
+public class CompiledExpressionEngine implements ExpressionEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompiledExpressionEngine.class);
+
+    private final ExpressionEngine m_fallback;
+
+    private boolean m_enabled = true;
+
+    public CompiledExpressionEngine() {
+        this(new JEXLExpressionEngine());
+    }
+
+    public CompiledExpressionEngine(ExpressionEngine fallback) {
+        m_fallback = Preconditions.checkNotNull(fallback, "fallback argument");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applyExpressions(final QueryRequest request, final FetchResults results) throws ExpressionException {
+        Preconditions.checkNotNull(request, "request argument");
+        Preconditions.checkNotNull(results, "results argument");
+
+        final List<Expression> expressions = request.getExpressions();
+        if (expressions.size() < 1) {
+            return;
+        }
+
+        final double[][] values = new double[expressions.size()][];
+        final Node[] nodes = m_enabled ? compile(expressions, results, values) : null;
+        if (nodes == null) {
+            m_fallback.applyExpressions(request, results);
+            return;
+        }
+
+        // Evaluate every expression, in the same order as which they appeared in the query,
+        // so that the values are available to the expressions that reference them
+        final int numRows = results.getTimestamps().length;
+        for (int k = 0; k < nodes.length; k++) {
+            double[] derived = nodes[k].evaluate(numRows);
+            if (nodes[k] instanceof ColumnNode) {
+                // Don't share the array with the column that is referenced
+                derived = derived.clone();
+            }
+            values[k] = derived;
+        }
+
+        // Store the results
+        final Map<String, double[]> columns = results.getColumns();
+        for (int k = 0; k < nodes.length; k++) {
+            if (!expressions.get(k).getTransient()) {
+                columns.put(expressions.get(k).getLabel(), values[k]);
+            }
+        }
+    }
+
+    /**
+     * Compiles all of the expressions in the request.
+     *
+     * @param values holds the values of the expressions once they are evaluated
+     * @return the compiled expressions, or null if any of the expressions can not be compiled
+     */
+    protected Node[] compile(final List<Expression> expressions, final FetchResults results, final double[][] values) {
+        final Map<String, Integer> indexByLabel = new HashMap<>();
+        for (int k = 0; k < expressions.size(); k++) {
+            if (indexByLabel.put(expressions.get(k).getLabel(), k) != null) {
+                LOG.debug("Expressions contain duplicate label '{}'. Using the fallback engine.", expressions.get(k).getLabel());
+                return null;
+            }
+        }
+
+        final Variables variables = new Variables(results, indexByLabel, values);
+        final Node[] nodes = new Node[expressions.size()];
+        for (int k = 0; k < expressions.size(); k++) {
+            final Expression expression = expressions.get(k);
+            final int index = k;
+            try {
+                nodes[k] = ColumnExpressionCompiler.compile(expression.getExpression(), name -> variables.resolve(name, index));
+            } catch (UnsupportedExpressionException e) {
+                LOG.debug("Expression with label '{}' can not be compiled: {}. Using the fallback engine.", expression.getLabel(), e.getMessage());
+                return null;
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Resolves variables with the same precedence as the JEXL context
+     * that is populated by the {@link JEXLExpressionEngine}.
+     */
+    private static class Variables {
+        private final FetchResults m_results;
+        private final Map<String, Integer> m_indexByLabel;
+        private final double[][] m_values;
+        private final int m_numRows;
+        private double[] m_timestamps;
+        private double[] m_indices;
+
+        private Variables(FetchResults results, Map<String, Integer> indexByLabel, double[][] values) {
+            m_results = results;
+            m_indexByLabel = indexByLabel;
+            m_values = values;
+            m_numRows = results.getTimestamps().length;
+        }
+
+        private Node resolve(String name, int expressionIndex) throws UnsupportedExpressionException {
+            // JEXL resolves dotted names as property accesses if any prefix is defined
+            int dot = name.indexOf('.');
+            while (dot > 0) {
+                if (isDefined(name.substring(0, dot))) {
+                    throw new UnsupportedExpressionException("Property access on '" + name.substring(0, dot) + "' is not supported.");
+                }
+                dot = name.indexOf('.', dot + 1);
+            }
+
+            // The columns, their arrays, the timestamp and the index are put in the
+            // context before every expression is evaluated, and shadow the labels
+            final double[] column = m_results.getColumns().get(name);
+            if (column != null) {
+                if (column.length != m_numRows) {
+                    throw new UnsupportedExpressionException("Column '" + name + "' does not have a value for every row.");
+                }
+                return new ColumnNode(Type.DOUBLE, () -> column);
+            }
+            if (name.startsWith("__") && m_results.getColumns().containsKey(name.substring(2))) {
+                throw new UnsupportedExpressionException("Reference to the samples of '" + name.substring(2) + "' is not supported.");
+            }
+            switch (name) {
+                case "timestamp":
+                    return new ColumnNode(Type.INTEGER, this::getTimestamps);
+                case "__i":
+                    return new ColumnNode(Type.INTEGER, this::getIndices);
+                default:
+            }
+
+            // The results of the expressions are put in the context as they are evaluated
+            final Integer index = m_indexByLabel.get(name);
+            if (index != null) {
+                if (index >= expressionIndex) {
+                    // JEXL would see the value from the previous row
+                    throw new UnsupportedExpressionException("Reference to '" + name + "' before it is evaluated.");
+                }
+                return new ColumnNode(Type.DOUBLE, () -> m_values[index]);
+            }
+
+            // The constants are put in the context once, before any of the expressions are evaluated
+            switch (name) {
+                case "__diff_time":
+                    final long[] timestamps = m_results.getTimestamps();
+                    return new ConstantNode(Type.DOUBLE, m_numRows < 1 ? 0d : timestamps[m_numRows-1] - timestamps[0]);
+                case "__inf":
+                    return new ConstantNode(Type.DOUBLE, Double.POSITIVE_INFINITY);
+                case "__neg_inf":
+                    return new ConstantNode(Type.DOUBLE, Double.NEGATIVE_INFINITY);
+                case "NaN":
+                    return new ConstantNode(Type.DOUBLE, Double.NaN);
+                case "__E":
+                    return new ConstantNode(Type.DOUBLE, Math.E);
+                case "__PI":
+                    return new ConstantNode(Type.DOUBLE, Math.PI);
+                default:
+            }
+
+            final Object constant = m_results.getConstants().get(name);
+            if (constant instanceof Double || constant instanceof Float) {
+                return new ConstantNode(Type.DOUBLE, ((Number)constant).doubleValue());
+            } else if (constant instanceof Integer || constant instanceof Long || constant instanceof Short || constant instanceof Byte) {
+                return new ConstantNode(Type.INTEGER, ((Number)constant).doubleValue());
+            }
+            throw new UnsupportedExpressionException("Variable '" + name + "' is undefined or is not a number.");
+        }
+
+        private boolean isDefined(String name) {
+            return m_indexByLabel.containsKey(name)
+                    || m_results.getColumns().containsKey(name)
+                    || m_results.getConstants().containsKey(name)
+                    || name.equals("timestamp") || name.equals("__i") || name.equals("__diff_time")
+                    || name.equals("__inf") || name.equals("__neg_inf") || name.equals("NaN")
+                    || name.equals("__E") || name.equals("__PI")
+                    || (name.startsWith("__") && m_results.getColumns().containsKey(name.substring(2)));
+        }
+
+        private double[] getTimestamps() {
+            if (m_timestamps == null) {
+                final long[] timestamps = m_results.getTimestamps();
+                m_timestamps = new double[timestamps.length];
+                for (int i = 0; i < timestamps.length; i++) {
+                    m_timestamps[i] = timestamps[i];
+                }
+            }
+            return m_timestamps;
+        }
+
+        private double[] getIndices() {
+            if (m_indices == null) {
+                m_indices = new double[m_numRows];
+                for (int i = 0; i < m_numRows; i++) {
+                    m_indices[i] = i;
+                }
+            }
+            return m_indices;
+        }
+    }
+
+    public boolean isEnabled() {
+        return m_enabled;
+    }
+
+    /**
+     * When disabled, all requests are handed to the fallback engine.
+     */
+    public void setEnabled(boolean enabled) {
+        m_enabled = enabled;
+    }
+}
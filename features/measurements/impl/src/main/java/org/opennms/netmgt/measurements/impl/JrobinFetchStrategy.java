@@ -29,23 +29,37 @@
 package org.opennms.netmgt.measurements.impl;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
+import org.jrobin.core.FetchData;
+import org.jrobin.core.FetchRequest;
+import org.jrobin.core.RrdDb;
 import org.jrobin.core.RrdException;
 import org.jrobin.data.DataProcessor;
 import org.opennms.netmgt.measurements.api.FetchResults;
 import org.opennms.netmgt.measurements.model.Source;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
  * Used to fetch measurements from JRB files.
  *
+ * Each file is read once per consolidation function, even if it is referenced
+ * by multiple sources, and the files are read in parallel.
+ *
  * @author Jesse White <jesse@opennms.org>
  * @author Dustin Frisch <fooker@lab.sh>
  */
 public class JrobinFetchStrategy extends AbstractRrdBasedFetchStrategy {
 
+    private static final Logger LOG = LoggerFactory.getLogger(JrobinFetchStrategy.class);
+
     /**
      * {@inheritDoc}
      */
@@ -68,11 +82,36 @@ public class JrobinFetchStrategy extends AbstractRrdBasedFetchStrategy {
         }
         dproc.setFetchRequestResolution(stepInSeconds);
 
+        // Group the sources by file and consolidation function, so that each
+        // of the archives is only read once
+        final Map<List<String>, List<Source>> sourcesByArchive = Maps.newLinkedHashMap();
         for (final Map.Entry<Source, String> entry : rrdsBySource.entrySet()) {
             final Source source = entry.getKey();
             final String rrdFile = entry.getValue();
-            dproc.addDatasource(source.getLabel(), rrdFile, source.getEffectiveDataSource(),
-                    source.getAggregation());
+            sourcesByArchive.computeIfAbsent(Arrays.asList(rrdFile, source.getAggregation()), key -> Lists.newArrayList())
+                    .add(source);
+        }
+
+        final long resolution = stepInSeconds;
+        final List<Callable<FetchData>> fetches = Lists.newArrayListWithCapacity(sourcesByArchive.size());
+        for (final Map.Entry<List<String>, List<Source>> entry : sourcesByArchive.entrySet()) {
+            final String rrdFile = entry.getKey().get(0);
+            final String consolFun = entry.getKey().get(1);
+            final String[] dsNames = entry.getValue().stream()
+                    .map(Source::getEffectiveDataSource)
+                    .distinct()
+                    .toArray(String[]::new);
+            fetches.add(() -> fetchData(rrdFile, consolFun, dsNames, startInSeconds, endInSeconds, resolution));
+        }
+
+        // The data processor uses the data that was already fetched, instead of reading the files itself
+        final List<FetchData> fetchData = fetchAll(fetches);
+        int k = 0;
+        for (final List<Source> sources : sourcesByArchive.values()) {
+            final FetchData data = fetchData.get(k++);
+            for (final Source source : sources) {
+                dproc.addDatasource(source.getLabel(), source.getEffectiveDataSource(), data);
+            }
         }
 
         try {
@@ -95,4 +134,29 @@ public class JrobinFetchStrategy extends AbstractRrdBasedFetchStrategy {
 
         return new FetchResults(timestamps, columns, dproc.getStep() * 1000, constants);
     }
+
+    /**
+     * Reads the given data sources from a JRB file, in the same way
+     * the {@link DataProcessor} would.
+     */
+    private static FetchData fetchData(String rrdFile, String consolFun, String[] dsNames,
+            long startInSeconds, long endInSeconds, long resolution) throws RrdException {
+        RrdDb rrdDb = null;
+        try {
+            rrdDb = new RrdDb(rrdFile, true);
+            final FetchRequest request = rrdDb.createFetchRequest(consolFun, startInSeconds, endInSeconds, resolution);
+            request.setFilter(dsNames);
+            return request.fetchData();
+        } catch (IOException e) {
+            throw new RrdException("JRB processing failed.", e);
+        } finally {
+            if (rrdDb != null) {
+                try {
+                    rrdDb.close();
+                } catch (IOException e) {
+                    LOG.warn("Failed to close {}", rrdFile, e);
+                }
+            }
+        }
+    }
 }
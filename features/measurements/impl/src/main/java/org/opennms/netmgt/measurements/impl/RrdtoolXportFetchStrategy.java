@@ -31,6 +31,8 @@ package org.opennms.netmgt.measurements.impl;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.bind.JAXBContext;
@@ -55,6 +57,7 @@ import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.XMLReaderFactory;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
@@ -64,6 +67,9 @@ import com.google.common.collect.Maps;
  * As of Feb 24th the jrrd library does not support 'xport' commands.
  * See http://issues.opennms.org/browse/JRRD-3.
  *
+ * Sources that reference the same data source, in the same file and
+ * with the same consolidation function, share a single definition.
+ *
  * @author Jesse White <jesse@opennms.org>
  * @author Dustin Frisch <fooker@lab.sh>
  */
@@ -112,19 +118,25 @@ public class RrdtoolXportFetchStrategy extends AbstractRrdBasedFetchStrategy {
         }
 
         // Use labels without spaces when executing the xport command
-        // These are mapped back to the requested labels in the response
-        final Map<String, String> labelMap = Maps.newHashMap();
-
-        int k = 0;
+        // These are the (1-based) indices of the definitions, which are mapped
+        // back to the requested labels in the response
+        final Map<List<String>, List<Source>> sourcesByDef = Maps.newLinkedHashMap();
         for (final Map.Entry<Source, String> entry : rrdsBySource.entrySet()) {
             final Source source = entry.getKey();
             final String rrdFile = entry.getValue();
-            final String tempLabel = Integer.toString(++k);
-            labelMap.put(tempLabel, source.getLabel());
+            sourcesByDef.computeIfAbsent(Arrays.asList(rrdFile, source.getEffectiveDataSource(), source.getAggregation()),
+                    key -> Lists.newArrayList()).add(source);
+        }
+
+        final List<List<Source>> sourcesByTempLabel = Lists.newArrayListWithCapacity(sourcesByDef.size());
+        for (final Map.Entry<List<String>, List<Source>> entry : sourcesByDef.entrySet()) {
+            final List<String> def = entry.getKey();
+            sourcesByTempLabel.add(entry.getValue());
+            final String tempLabel = Integer.toString(sourcesByTempLabel.size());
 
             cmdLine.addArgument(String.format("DEF:%s=%s:%s:%s",
-                    tempLabel, Utils.escapeColons(rrdFile), Utils.escapeColons(source.getEffectiveDataSource()),
-                    source.getAggregation()));
+                    tempLabel, Utils.escapeColons(def.get(0)), Utils.escapeColons(def.get(1)),
+                    def.get(2)));
             cmdLine.addArgument(String.format("XPORT:%s:%s", tempLabel, tempLabel));
         }
 
@@ -190,10 +202,16 @@ public class RrdtoolXportFetchStrategy extends AbstractRrdBasedFetchStrategy {
 
         // Map the columns by label
         // The legend entries are in the same order as the column values
-        final Map<String, double[]> columns = Maps.newHashMapWithExpectedSize(numColumns);
+        final Map<String, double[]> columns = Maps.newHashMapWithExpectedSize(rrdsBySource.size());
         i = 0;
         for (String label : rrdXport.getMeta().getLegends()) {
-            columns.put(labelMap.get(label), values[i++]);
+            final double[] column = values[i++];
+            boolean shared = false;
+            for (Source source : sourcesByTempLabel.get(Integer.parseInt(label) - 1)) {
+                // Every source gets its own copy of the values, so that they can be modified independently
+                columns.put(source.getLabel(), shared ? Arrays.copyOf(column, column.length) : column);
+                shared = true;
+            }
         }
 
         return new FetchResults(timestamps, columns, xportStepInMs, constants);
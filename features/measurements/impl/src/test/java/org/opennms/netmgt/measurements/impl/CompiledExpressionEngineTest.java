@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.opennms.netmgt.measurements.api.ExpressionEngine;
+import org.opennms.netmgt.measurements.api.FetchResults;
+import org.opennms.netmgt.measurements.api.exceptions.ExpressionException;
+import org.opennms.netmgt.measurements.model.Expression;
+import org.opennms.netmgt.measurements.model.QueryRequest;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Verifies that the {@link CompiledExpressionEngine} produces the same
+ * results as the {@link JEXLExpressionEngine}.
+ */
+public class CompiledExpressionEngineTest {
+
+    private final AtomicInteger fallbackCount = new AtomicInteger();
+
+    private final ExpressionEngine jexlExpressionEngine = new JEXLExpressionEngine();
+
+    private final ExpressionEngine compiledExpressionEngine = new CompiledExpressionEngine((request, results) -> {
+        fallbackCount.incrementAndGet();
+        jexlExpressionEngine.applyExpressions(request, results);
+    });
+
+    @Test
+    public void canCompileCommonExpressions() throws ExpressionException {
+        assertSameResults(false, "x * 5 + 7");
+        assertSameResults(false, "x * 8 / 1000000");
+        assertSameResults(false, "-x + 0.1");
+        assertSameResults(false, "x / 0");
+        assertSameResults(false, "x % 7.0d");
+        assertSameResults(false, "x > 50 ? x : NaN");
+        assertSameResults(false, "(x == NaN) ? 0 : x");
+        assertSameResults(false, "(z == NaN) ? 1.0d : z");
+        assertSameResults(false, "z < 10 || z >= 90 ? __inf : __neg_inf");
+        assertSameResults(false, "z <= 10 and not (z eq 5) ? 1 : 2");
+        assertSameResults(false, "!(x > 10) ? x : x * 2");
+        assertSameResults(false, "math:sin(x) + strictmath:cos(x)");
+        assertSameResults(false, "math:max(x, z) - math:min(x, z)");
+        assertSameResults(false, "math:pow(x, 2) + math:sqrt(x)");
+        assertSameResults(false, "timestamp / 125.0d");
+        assertSameResults(false, "__i * __diff_time");
+        assertSameResults(false, "speed * x / __PI");
+    }
+
+    @Test
+    public void fallsBackForUnsupportedExpressions() throws ExpressionException {
+        assertSameResults(true, "timestamp / 1000");
+        assertSameResults(true, "math:abs(-3)");
+        assertSameResults(true, "fn:arrayNaN(\"x\", 5)");
+        assertSameResults(true, "__x[0] + x");
+    }
+
+    @Test(expected=ExpressionException.class)
+    public void failsWhenExpressionHasInvalidSyntax() throws ExpressionException {
+        performExpression(compiledExpressionEngine, "/");
+    }
+
+    @Test
+    public void canReferencePreviousExpressions() throws ExpressionException {
+        final List<Expression> expressions = Lists.newArrayList(
+                new Expression("a", "x * 2", true),
+                new Expression("b", "a + z", false),
+                new Expression("c", "b", false));
+
+        final FetchResults compiledResults = performExpressions(compiledExpressionEngine, expressions);
+        final FetchResults jexlResults = performExpressions(jexlExpressionEngine, expressions);
+
+        assertEquals(0, fallbackCount.get());
+        assertEquals(jexlResults.getColumns().keySet(), compiledResults.getColumns().keySet());
+        assertArrayEquals(jexlResults.getColumns().get("b"), compiledResults.getColumns().get("b"), 0.0d);
+        assertArrayEquals(jexlResults.getColumns().get("c"), compiledResults.getColumns().get("c"), 0.0d);
+        assertNotSame(compiledResults.getColumns().get("b"), compiledResults.getColumns().get("c"));
+    }
+
+    @Test
+    public void usesTheSamePrecedenceAsJexl() throws ExpressionException {
+        // The columns and the timestamp shadow the labels, and the labels shadow the constants
+        final List<Expression> expressions = Lists.newArrayList(
+                new Expression("x", "z * 2", true),
+                new Expression("timestamp", "z * 3", true),
+                new Expression("speed", "z * 4", true),
+                new Expression("a", "x + 1", false),
+                new Expression("b", "timestamp / 125.0d", false),
+                new Expression("c", "speed - 1", false));
+
+        final FetchResults compiledResults = performExpressions(compiledExpressionEngine, expressions);
+        final FetchResults jexlResults = performExpressions(jexlExpressionEngine, expressions);
+
+        assertEquals(0, fallbackCount.get());
+        assertArrayEquals(jexlResults.getColumns().get("a"), compiledResults.getColumns().get("a"), 0.0d);
+        assertArrayEquals(jexlResults.getColumns().get("b"), compiledResults.getColumns().get("b"), 0.0d);
+        assertArrayEquals(jexlResults.getColumns().get("c"), compiledResults.getColumns().get("c"), 0.0d);
+    }
+
+    private void assertSameResults(boolean expectFallback, String expression) throws ExpressionException {
+        final int fallbacksBefore = fallbackCount.get();
+        final double[] expected = performExpression(jexlExpressionEngine, expression);
+        final double[] actual = performExpression(compiledExpressionEngine, expression);
+        assertEquals("Fallback for expression: " + expression, expectFallback, fallbackCount.get() > fallbacksBefore);
+        assertArrayEquals("Results for expression: " + expression, expected, actual, 0.0d);
+    }
+
+    private double[] performExpression(ExpressionEngine engine, String expression) throws ExpressionException {
+        return performExpressions(engine, Lists.newArrayList(new Expression("y", expression, false))).getColumns().get("y");
+    }
+
+    private FetchResults performExpressions(ExpressionEngine engine, List<Expression> expressions) throws ExpressionException {
+        final QueryRequest request = new QueryRequest();
+        request.setExpressions(expressions);
+
+        // Build the fetch results with known values, including some NaNs
+        final int N = 100;
+        final long timestamps[] = new long[N];
+        final double xValues[] = new double[N];
+        final double zValues[] = new double[N];
+        for (int i = 0; i < N; i++) {
+            timestamps[i] = i * 1000;
+            xValues[i] = Double.valueOf(i);
+            zValues[i] = i % 3 == 0 ? Double.NaN : N - i;
+        }
+        final Map<String, double[]> values = Maps.newHashMap();
+        values.put("x", xValues);
+        values.put("z", zValues);
+        final Map<String, Object> constants = Maps.newHashMap();
+        constants.put("speed", 65);
+        final FetchResults results = new FetchResults(timestamps, values, 1, constants);
+
+        engine.applyExpressions(request, results);
+        return results;
+    }
+}
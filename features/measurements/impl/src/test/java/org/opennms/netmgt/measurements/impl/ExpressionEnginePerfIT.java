@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.opennms.netmgt.measurements.api.ExpressionEngine;
+import org.opennms.netmgt.measurements.api.FetchResults;
+import org.opennms.netmgt.measurements.model.Expression;
+import org.opennms.netmgt.measurements.model.QueryRequest;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Used to compare the performance of the {@link JEXLExpressionEngine}
+ * and the {@link CompiledExpressionEngine}.
+ *
+ * By default, we only run a quick test to validate the setup.
+ *
+ * A longer run, against which you can attach a profiler is available
+ * but disabled by default.
+ */
+public class ExpressionEnginePerfIT {
+
+    // Tuneables
+    private static final int NUM_ROWS = 4 * 7 * 288; // 4 weeks of 5 minute samples
+    private static final int NUM_SERIES = 24;
+    private static final int NUM_WARMUP_ITERATIONS = 5;
+
+    private final ExpressionEngine jexlExpressionEngine = new JEXLExpressionEngine();
+    private final ExpressionEngine compiledExpressionEngine = new CompiledExpressionEngine(jexlExpressionEngine);
+
+    @Test(timeout=60000)
+    public void quickRun() throws Exception {
+        // Make sure both engines agree before comparing them
+        final FetchResults jexlResults = apply(jexlExpressionEngine);
+        final FetchResults compiledResults = apply(compiledExpressionEngine);
+        for (String label : jexlResults.getColumns().keySet()) {
+            assertArrayEquals(label, jexlResults.getColumns().get(label), compiledResults.getColumns().get(label), 0.0d);
+        }
+
+        benchmark(1);
+    }
+
+    @Ignore
+    public void longRun() throws Exception {
+        benchmark(100);
+    }
+
+    private void benchmark(int numIterations) throws Exception {
+        for (ExpressionEngine engine : new ExpressionEngine[] { jexlExpressionEngine, compiledExpressionEngine }) {
+            for (int i = 0; i < NUM_WARMUP_ITERATIONS; i++) {
+                apply(engine);
+            }
+            final long start = System.nanoTime();
+            for (int i = 0; i < numIterations; i++) {
+                apply(engine);
+            }
+            final long elapsed = System.nanoTime() - start;
+            System.err.printf("%s: %.2f ms per request (%d rows, %d series, %d expressions)%n",
+                    engine.getClass().getSimpleName(),
+                    TimeUnit.NANOSECONDS.toMicros(elapsed) / 1000d / numIterations,
+                    NUM_ROWS, NUM_SERIES, getExpressions().size());
+        }
+    }
+
+    private static FetchResults apply(ExpressionEngine engine) throws Exception {
+        final QueryRequest request = new QueryRequest();
+        request.setExpressions(getExpressions());
+        final FetchResults results = getFetchResults();
+        engine.applyExpressions(request, results);
+        return results;
+    }
+
+    private static List<Expression> getExpressions() {
+        final List<Expression> expressions = Lists.newArrayList();
+        for (int k = 0; k < NUM_SERIES; k += 2) {
+            // Typical bits per second and utilization expressions of an interface graph
+            expressions.add(new Expression("inBits" + k, "octetsIn" + k + " * 8", true));
+            expressions.add(new Expression("outBits" + k, "octetsOut" + k + " * 8", true));
+            expressions.add(new Expression("inUtil" + k, "inBits" + k + " / ifSpeed * 100.0d", false));
+            expressions.add(new Expression("outUtil" + k, "outBits" + k + " / ifSpeed * 100.0d", false));
+            expressions.add(new Expression("total" + k, "( ( inBits" + k + " == NaN ) ? 0 : inBits" + k + " ) + ( ( outBits" + k + " == NaN ) ? 0 : outBits" + k + " )", false));
+        }
+        return expressions;
+    }
+
+    private static FetchResults getFetchResults() {
+        final long[] timestamps = new long[NUM_ROWS];
+        for (int i = 0; i < NUM_ROWS; i++) {
+            timestamps[i] = 1500000000000L + i * 300000L;
+        }
+        final Map<String, double[]> columns = Maps.newHashMap();
+        for (int k = 0; k < NUM_SERIES; k += 2) {
+            final double[] in = new double[NUM_ROWS];
+            final double[] out = new double[NUM_ROWS];
+            for (int i = 0; i < NUM_ROWS; i++) {
+                in[i] = i % 97 == 0 ? Double.NaN : (i * 31 + k) % 125000;
+                out[i] = i % 89 == 0 ? Double.NaN : (i * 17 + k) % 125000;
+            }
+            columns.put("octetsIn" + k, in);
+            columns.put("octetsOut" + k, out);
+        }
+        final Map<String, Object> constants = Maps.newHashMap();
+        constants.put("ifSpeed", 1000000000d);
+        return new FetchResults(timestamps, columns, 300, constants);
+    }
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.measurements.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.jrobin.core.Sample;
+import org.jrobin.data.DataProcessor;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.netmgt.measurements.api.FetchResults;
+import org.opennms.netmgt.measurements.model.Source;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Used to compare the performance of the {@link JrobinFetchStrategy}
+ * against reading the files sequentially with a single {@link DataProcessor},
+ * using a synthetic tree of JRB files.
+ *
+ * By default, we only run a quick test to validate the setup.
+ *
+ * A longer run, against which you can attach a profiler is available
+ * but disabled by default.
+ */
+public class JrobinFetchStrategyPerfIT {
+
+    // Tuneables
+    private static final int NUM_FILES = 100;
+    private static final int NUM_ROWS = 4 * 7 * 288; // 4 weeks of 5 minute samples
+    private static final int NUM_WARMUP_ITERATIONS = 5;
+
+    private static final long STEP = 300;
+    private static final long START = 1500000000L;
+    private static final long END = START + NUM_ROWS * STEP;
+
+    @ClassRule
+    public static TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static Map<Source, String> rrdsBySource;
+
+    private final JrobinFetchStrategy fetchStrategy = new JrobinFetchStrategy();
+
+    @BeforeClass
+    public static void createRrdTree() throws Exception {
+        rrdsBySource = Maps.newLinkedHashMap();
+        for (int k = 0; k < NUM_FILES; k++) {
+            final File nodeDir = tempFolder.newFolder("snmp", Integer.toString(k), "eth0");
+            final String rrdFile = new File(nodeDir, "mib2-interfaces.jrb").getAbsolutePath();
+            createRrd(rrdFile, k);
+
+            // Typical sources of an interface graph, two of which reference the same data source
+            rrdsBySource.put(source("octetsIn" + k, "ifHCInOctets", "AVERAGE"), rrdFile);
+            rrdsBySource.put(source("octetsOut" + k, "ifHCOutOctets", "AVERAGE"), rrdFile);
+            rrdsBySource.put(source("octetsInPeak" + k, "ifHCInOctets", "MAX"), rrdFile);
+            rrdsBySource.put(source("octetsInAgain" + k, "ifHCInOctets", "AVERAGE"), rrdFile);
+        }
+    }
+
+    @Test(timeout=60000)
+    public void quickRun() throws Exception {
+        // Make sure both approaches agree before comparing them
+        final FetchResults sequentialResults = fetchSequentially();
+        final FetchResults strategyResults = fetchWithStrategy();
+        assertArrayEquals(sequentialResults.getTimestamps(), strategyResults.getTimestamps());
+        assertEquals(sequentialResults.getStep(), strategyResults.getStep());
+        assertEquals(rrdsBySource.size(), strategyResults.getColumns().size());
+        for (String label : sequentialResults.getColumns().keySet()) {
+            assertArrayEquals(label, sequentialResults.getColumns().get(label), strategyResults.getColumns().get(label), 0.0d);
+        }
+
+        benchmark(1);
+    }
+
+    @Ignore
+    public void longRun() throws Exception {
+        benchmark(100);
+    }
+
+    private void benchmark(int numIterations) throws Exception {
+        for (boolean sequential : new boolean[] { true, false }) {
+            for (int i = 0; i < NUM_WARMUP_ITERATIONS; i++) {
+                fetch(sequential);
+            }
+            final long start = System.nanoTime();
+            for (int i = 0; i < numIterations; i++) {
+                fetch(sequential);
+            }
+            final long elapsed = System.nanoTime() - start;
+            System.err.printf("%s: %.2f ms per request (%d files, %d sources, %d rows, parallelism %d)%n",
+                    sequential ? DataProcessor.class.getSimpleName() : JrobinFetchStrategy.class.getSimpleName(),
+                    TimeUnit.NANOSECONDS.toMicros(elapsed) / 1000d / numIterations,
+                    NUM_FILES, rrdsBySource.size(), NUM_ROWS, AbstractRrdBasedFetchStrategy.PARALLELISM);
+        }
+    }
+
+    private FetchResults fetch(boolean sequential) throws Exception {
+        return sequential ? fetchSequentially() : fetchWithStrategy();
+    }
+
+    private FetchResults fetchWithStrategy() throws Exception {
+        return fetchStrategy.fetchMeasurements(START * 1000, END * 1000, STEP * 1000, 0, rrdsBySource, Maps.newHashMap());
+    }
+
+    /**
+     * Lets the {@link DataProcessor} read each of the sources from the files itself.
+     */
+    private static FetchResults fetchSequentially() throws Exception {
+        final DataProcessor dproc = new DataProcessor(START, END);
+        dproc.setFetchRequestResolution(STEP);
+        for (Map.Entry<Source, String> entry : rrdsBySource.entrySet()) {
+            final Source source = entry.getKey();
+            dproc.addDatasource(source.getLabel(), entry.getValue(), source.getEffectiveDataSource(), source.getAggregation());
+        }
+        dproc.processData();
+
+        final long[] timestamps = dproc.getTimestamps();
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] *= 1000;
+        }
+        final Map<String, double[]> columns = Maps.newHashMap();
+        for (Source source : rrdsBySource.keySet()) {
+            columns.put(source.getLabel(), dproc.getValues(source.getLabel()));
+        }
+        return new FetchResults(timestamps, columns, dproc.getStep() * 1000, Maps.newHashMap());
+    }
+
+    private static Source source(String label, String dataSource, String aggregation) {
+        final Source source = new Source(label, "node[1].interfaceSnmp[eth0]", "mib2-interfaces", dataSource, false);
+        source.setAggregation(aggregation);
+        return source;
+    }
+
+    private static void createRrd(String rrdFile, int k) throws Exception {
+        final RrdDef def = new RrdDef(rrdFile, START - STEP, STEP);
+        def.addDatasource("ifHCInOctets", "GAUGE", 2 * STEP, Double.NaN, Double.NaN);
+        def.addDatasource("ifHCOutOctets", "GAUGE", 2 * STEP, Double.NaN, Double.NaN);
+        def.addArchive("AVERAGE", 0.5, 1, NUM_ROWS);
+        def.addArchive("MAX", 0.5, 1, NUM_ROWS);
+
+        final RrdDb rrdDb = new RrdDb(def);
+        try {
+            final Sample sample = rrdDb.createSample();
+            for (int i = 0; i < NUM_ROWS; i++) {
+                sample.setTime(START + i * STEP);
+                sample.setValue("ifHCInOctets", i % 97 == 0 ? Double.NaN : (i * 31 + k) % 125000);
+                sample.setValue("ifHCOutOctets", i % 89 == 0 ? Double.NaN : (i * 17 + k) % 125000);
+                sample.update();
+            }
+        } finally {
+            rrdDb.close();
+        }
+    }
+}
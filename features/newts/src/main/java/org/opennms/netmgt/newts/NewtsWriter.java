@@ -41,6 +41,7 @@ import javax.inject.Named;
 import org.joda.time.Duration;
 import org.opennms.core.logging.Logging;
 import org.opennms.netmgt.newts.support.NewtsUtils;
+import org.opennms.netmgt.newts.support.QueuingSampleProcessorService;
 import org.opennms.newts.api.Sample;
 import org.opennms.newts.api.SampleRepository;
 import org.opennms.newts.api.search.Indexer;
@@ -70,6 +71,10 @@ import com.swrve.ratelimitedlogger.RateLimitedLog;
  * Calls to {@link #insert()} publish the samples to a ring buffer so
  * that they don't block while the data is being persisted.
  *
+ * Calls to {@link #index()} are handed off to the {@link QueuingSampleProcessorService}
+ * when one is available, so that they are deduplicated and rate limited along with
+ * the index updates issued by the sample repository.
+ *
  * @author jwhite
  */
 public class NewtsWriter implements WorkHandler<SampleBatchEvent>, DisposableBean {
@@ -87,6 +92,9 @@ public class NewtsWriter implements WorkHandler<SampleBatchEvent>, DisposableBea
     @Autowired
     private Indexer m_indexer;
 
+    @Autowired(required = false)
+    private QueuingSampleProcessorService m_indexQueue;
+
     private WorkerPool<SampleBatchEvent> m_workerPool;
 
     private RingBuffer<SampleBatchEvent> m_ringBuffer;
@@ -175,6 +183,10 @@ public class NewtsWriter implements WorkHandler<SampleBatchEvent>, DisposableBea
     }
 
     public void index(List<Sample> samples) {
+        if (m_indexQueue != null) {
+            m_indexQueue.submit(samples);
+            return;
+        }
         pushToRingBuffer(samples, INDEX_ONLY_TRANSLATOR);
     }
 
@@ -258,4 +270,9 @@ public class NewtsWriter implements WorkHandler<SampleBatchEvent>, DisposableBea
     public void setIndexer(Indexer indexer) {
         m_indexer = indexer;
     }
+
+    @VisibleForTesting
+    public void setIndexQueue(QueuingSampleProcessorService indexQueue) {
+        m_indexQueue = indexQueue;
+    }
 }
@@ -37,6 +37,7 @@ import java.util.stream.StreamSupport;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.nustaq.serialization.FSTConfiguration;
 import org.opennms.newts.api.Context;
 import org.opennms.newts.api.Resource;
 import org.opennms.newts.cassandra.search.ResourceMetadata;
@@ -50,6 +51,7 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import com.googlecode.concurrenttrees.radix.ConcurrentRadixTree;
@@ -66,6 +68,12 @@ import com.googlecode.concurrenttrees.radix.node.concrete.DefaultCharArrayNodeFa
  *
  * Both structures are kept in synch via a {@link RemovalListener}.
  *
+ * The cache can either be bounded by the number of entries, or by the approximate number of bytes
+ * used by the entries. The size of an entry is estimated from the length of its key, which is stored
+ * in both structures, and from the size of its metrics and attributes once serialized. Since Guava
+ * only weighs the entries when these are put in the cache, the entries are put again when a merge
+ * adds to their metadata.
+ *
  * @author jwhite
  */
 public class GuavaSearchableResourceMetadataCache implements SearchableResourceMetadataCache, RemovalListener<String, ResourceMetadata> {
@@ -74,19 +82,48 @@ public class GuavaSearchableResourceMetadataCache implements SearchableResourceM
 
     private static final Joiner m_keyJoiner = Joiner.on(':');
 
+    /**
+     * Estimated number of bytes used by an entry, excluding the key and the contents of the
+     * metadata: the cache and radix tree nodes, and the empty metadata.
+     */
+    protected static final int ENTRY_OVERHEAD_BYTES = 512;
+
+    /**
+     * Ratio between the size of the metrics and attributes on the heap, and their serialized size.
+     */
+    private static final int CONTENTS_HEAP_RATIO = 4;
+
+    private static final FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
+
     private final Cache<String, ResourceMetadata> m_cache;
     private final ConcurrentRadixTree<ResourceMetadata> m_radixTree;
     private final Meter m_metricReqs;
     private final Meter m_attributeReqs;
     private final Meter m_metricMisses;
     private final Meter m_attributeMisses;
+    private final boolean m_weighed;
+
+    public GuavaSearchableResourceMetadataCache(long maxSize, MetricRegistry registry) {
+        this(maxSize, 0L, registry);
+    }
 
     @Inject
-    public GuavaSearchableResourceMetadataCache(@Named("search.resourceMetadata.maxCacheEntries") long maxSize, MetricRegistry registry) {
+    public GuavaSearchableResourceMetadataCache(@Named("search.resourceMetadata.maxCacheEntries") long maxSize,
+            @Named("search.resourceMetadata.maxCacheBytes") long maxSizeBytes, MetricRegistry registry) {
         m_radixTree = new ConcurrentRadixTree<>(new DefaultCharArrayNodeFactory());
-
-        LOG.info("Initializing resource metadata cache ({} max entries)", maxSize);
-        m_cache = CacheBuilder.newBuilder().maximumSize(maxSize).removalListener(this).build();
+        m_weighed = maxSizeBytes > 0;
+
+        if (maxSizeBytes > 0) {
+            LOG.info("Initializing resource metadata cache ({} max bytes)", maxSizeBytes);
+            m_cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maxSizeBytes)
+                    .weigher((String key, ResourceMetadata metadata) -> weigh(key, metadata))
+                    .removalListener(this)
+                    .build();
+        } else {
+            LOG.info("Initializing resource metadata cache ({} max entries)", maxSize);
+            m_cache = CacheBuilder.newBuilder().maximumSize(maxSize).removalListener(this).build();
+        }
 
         m_metricReqs = registry.meter(name("cache", "metric-reqs"));
         m_metricMisses = registry.meter(name("cache", "metric-misses"));
@@ -107,6 +144,21 @@ public class GuavaSearchableResourceMetadataCache implements SearchableResourceM
                         return maxSize;
                     }
                 });
+        registry.register(MetricRegistry.name("cache", "max-size-bytes"),
+                new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return maxSizeBytes;
+                    }
+                });
+    }
+
+    protected static int weigh(String key, ResourceMetadata metadata) {
+        // Only serialize the metrics and attributes, and not the meters
+        final ResourceMetadata contents = new ResourceMetadata();
+        contents.merge(metadata);
+        // The key is stored as UTF-16 in both the cache and the radix tree
+        return ENTRY_OVERHEAD_BYTES + 4 * key.length() + CONTENTS_HEAP_RATIO * conf.asByteArray(contents).length;
     }
 
     @Override
@@ -137,13 +189,18 @@ public class GuavaSearchableResourceMetadataCache implements SearchableResourceM
             ResourceMetadata newMetadata = new ResourceMetadata(m_metricReqs, m_attributeReqs, m_metricMisses, m_attributeMisses);
             newMetadata.merge(metadata);
             String key = key(context, resource.getId());
-            m_cache.put(key, newMetadata);
+            // Update the tree first, in case the entry is evicted as soon as it is put in the cache
             m_radixTree.put(key, newMetadata);
+            m_cache.put(key, newMetadata);
             return;
         }
 
-        o.get().merge(metadata);
-
+        if (o.get().merge(metadata) && m_weighed) {
+            // Put the entry again so that it is weighed with its new contents
+            String key = key(context, resource.getId());
+            m_radixTree.put(key, o.get());
+            m_cache.put(key, o.get());
+        }
     }
 
     @Override
@@ -155,6 +212,10 @@ public class GuavaSearchableResourceMetadataCache implements SearchableResourceM
 
     @Override
     public void onRemoval(RemovalNotification<String, ResourceMetadata> notification) {
+        if (notification.getCause() == RemovalCause.REPLACED) {
+            // The entry was put again after a merge, and is still in the cache
+            return;
+        }
         m_radixTree.remove(notification.getKey());
     }
 }
@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.newts.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.Duration;
+import org.opennms.core.logging.Logging;
+import org.opennms.newts.api.Sample;
+import org.opennms.newts.api.SampleProcessor;
+import org.opennms.newts.api.SampleProcessorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
+import com.swrve.ratelimitedlogger.RateLimitedLog;
+
+/**
+ * A sample processing service that decouples the sample processors (i.e. the indexer)
+ * from the threads that write the samples.
+ *
+ * Submitted samples are added to a bounded queue, and are processed in batches by a
+ * dedicated pool of threads. While a sample is queued, subsequent samples for the same
+ * context, resource and metric replace it instead of being queued again, since only the
+ * resource, the metric name and the attributes are relevant to the indexer. The rate at which
+ * the samples are processed can be limited in order to avoid flooding Cassandra with
+ * index updates when the cache is cold.
+ *
+ * When the queue is full, calls to {@link #submit(Collection)} block until there is room
+ * for the new samples. On {@link #shutdown()}, the queued samples are processed before the
+ * threads exit, and samples submitted after the service was shut down are processed by the
+ * calling thread.
+ */
+public class QueuingSampleProcessorService implements SampleProcessorService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueuingSampleProcessorService.class);
+
+    private static final RateLimitedLog RATE_LIMITED_LOGGER = RateLimitedLog
+            .withRateLimit(LOG)
+            .maxRate(5).every(Duration.standardSeconds(30))
+            .build();
+
+    private static final long POLL_INTERVAL_MS = 1000;
+
+    private final Set<SampleProcessor> m_processors;
+
+    private final int m_maxBatchSize;
+
+    private final int m_maxQueueSize;
+
+    private final RateLimiter m_rateLimiter;
+
+    private final Meter m_blockedSubmits;
+
+    private final Meter m_mergedSamples;
+
+    private final Map<SampleKey, Sample> m_queue = new LinkedHashMap<>();
+
+    private final List<Thread> m_threads = new ArrayList<>();
+
+    private volatile boolean m_running = true;
+
+    public QueuingSampleProcessorService(Set<SampleProcessor> processors, Integer maxBatchSize, Integer maxQueueSize,
+            Integer numThreads, Double maxSamplesPerSecond, MetricRegistry registry) {
+        Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be strictly positive");
+        Preconditions.checkArgument(maxQueueSize > 0, "maxQueueSize must be strictly positive");
+        Preconditions.checkArgument(numThreads > 0, "numThreads must be strictly positive");
+        Preconditions.checkNotNull(registry, "metric registry");
+
+        if (NewtsUtils.DISABLE_INDEXING) {
+            // Currently the only processor is the indexing processor so
+            // we always use an empty set of processors when indexing is disabled
+            m_processors = Collections.emptySet();
+        } else {
+            m_processors = Objects.requireNonNull(processors);
+        }
+        m_maxBatchSize = maxBatchSize;
+        m_maxQueueSize = maxQueueSize;
+        m_rateLimiter = maxSamplesPerSecond > 0 ? RateLimiter.create(maxSamplesPerSecond) : null;
+
+        registry.register(MetricRegistry.name("index-queue", "size"),
+                new Gauge<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        synchronized (m_queue) {
+                            return m_queue.size();
+                        }
+                    }
+                });
+        registry.register(MetricRegistry.name("index-queue", "max-size"),
+                new Gauge<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return m_maxQueueSize;
+                    }
+                });
+        m_blockedSubmits = registry.meter(MetricRegistry.name("index-queue", "blocked-submits"));
+        m_mergedSamples = registry.meter(MetricRegistry.name("index-queue", "merged-samples"));
+
+        LOG.debug("Using max_batch_size: {}, max_queue_size: {}, threads: {} and max_rate: {}",
+                maxBatchSize, maxQueueSize, numThreads, maxSamplesPerSecond);
+        for (int i = 0; i < numThreads; i++) {
+            final Thread thread = new Thread(this::processQueue, "NewtsIndexer-Consumer-" + i);
+            thread.setDaemon(true);
+            m_threads.add(thread);
+            thread.start();
+        }
+    }
+
+    @Override
+    public void submit(Collection<Sample> samples) {
+        if (m_processors.isEmpty()) {
+            return;
+        }
+
+        final List<Sample> unqueued = new ArrayList<>();
+        boolean blocked = false;
+        int merged = 0;
+        synchronized (m_queue) {
+            for (Sample sample : samples) {
+                if (!m_running) {
+                    // The consumers may have already exited, process these in the calling thread
+                    unqueued.add(sample);
+                    continue;
+                }
+
+                final SampleKey key = new SampleKey(sample);
+                if (m_queue.containsKey(key)) {
+                    // Keep the most recent sample, with the most recent attributes, in its original position
+                    m_queue.put(key, sample);
+                    merged++;
+                    continue;
+                }
+
+                while (m_running && m_queue.size() >= m_maxQueueSize) {
+                    blocked = true;
+                    try {
+                        m_queue.wait(POLL_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        // Go over the limit instead of losing the sample
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+
+                if (m_running) {
+                    m_queue.put(key, sample);
+                    m_queue.notifyAll();
+                } else {
+                    unqueued.add(sample);
+                }
+            }
+        }
+
+        if (merged > 0) {
+            m_mergedSamples.mark(merged);
+        }
+        if (blocked) {
+            RATE_LIMITED_LOGGER.warn("The index queue is full. Samples are being written faster than they can be indexed.");
+            m_blockedSubmits.mark();
+        }
+        if (!unqueued.isEmpty()) {
+            process(unqueued);
+        }
+    }
+
+    private void processQueue() {
+        // We'd expect the logs from this thread to be in collectd.log
+        Logging.putPrefix("collectd");
+
+        while (true) {
+            final List<Sample> batch;
+            try {
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (batch.isEmpty()) {
+                // We've been shut down and the queue is drained
+                return;
+            }
+
+            if (m_rateLimiter != null && m_running) {
+                m_rateLimiter.acquire(batch.size());
+            }
+            process(batch);
+        }
+    }
+
+    private void process(List<Sample> batch) {
+        for (SampleProcessor processor : m_processors) {
+            try {
+                LOG.debug("Processing {} samples with {}", batch.size(), processor);
+                processor.submit(batch);
+            } catch (Throwable t) {
+                RATE_LIMITED_LOGGER.error("An error occurred while indexing samples. Some resources may not be indexed.", t);
+            }
+        }
+    }
+
+    private List<Sample> nextBatch() throws InterruptedException {
+        synchronized (m_queue) {
+            while (m_queue.isEmpty()) {
+                if (!m_running) {
+                    return Collections.emptyList();
+                }
+                m_queue.wait(POLL_INTERVAL_MS);
+            }
+
+            final List<Sample> batch = new ArrayList<>(Math.min(m_maxBatchSize, m_queue.size()));
+            final Iterator<Sample> it = m_queue.values().iterator();
+            while (it.hasNext() && batch.size() < m_maxBatchSize) {
+                batch.add(it.next());
+                it.remove();
+            }
+            // Wake up any writers waiting for room in the queue
+            m_queue.notifyAll();
+            return batch;
+        }
+    }
+
+    /**
+     * Stops accepting samples into the queue and waits for the threads
+     * to process the samples that are already queued.
+     */
+    @Override
+    public void shutdown() throws InterruptedException {
+        m_running = false;
+        synchronized (m_queue) {
+            m_queue.notifyAll();
+        }
+        for (Thread thread : m_threads) {
+            thread.join();
+        }
+    }
+
+    @Override
+    public boolean awaitShutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread thread : m_threads) {
+            final long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0) {
+                return false;
+            }
+            thread.join(remainingMs);
+            if (thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class SampleKey {
+        private final String m_context;
+        private final String m_resource;
+        private final String m_metric;
+
+        private SampleKey(Sample sample) {
+            m_context = sample.getContext().getId();
+            m_resource = sample.getResource().getId();
+            m_metric = sample.getName();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(m_context, m_resource, m_metric);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SampleKey)) {
+                return false;
+            }
+            final SampleKey other = (SampleKey) obj;
+            return Objects.equals(m_context, other.m_context)
+                    && Objects.equals(m_resource, other.m_resource)
+                    && Objects.equals(m_metric, other.m_metric);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.newts.support;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.opennms.newts.api.Context;
+import org.opennms.newts.api.Resource;
+import org.opennms.newts.cassandra.CassandraSession;
+import org.opennms.newts.cassandra.search.ResourceMetadata;
+import org.opennms.newts.cassandra.search.ResourceMetadataCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Statement;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Warms the {@link GuavaSearchableResourceMetadataCache} on start-up by loading the
+ * resource metadata that was previously indexed from Cassandra.
+ *
+ * Without this, every resource is indexed again when first written after a restart,
+ * which issues a large number of writes to Cassandra in a short period of time.
+ *
+ * The token ring is split into ranges which are scanned in parallel, in the background.
+ * Loading stops once the cache holds the configured maximum number of entries.
+ */
+public class ResourceMetadataCacheWarmer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceMetadataCacheWarmer.class);
+
+    private static final String METRICS_QUERY = "SELECT token(context, resource), context, resource, metric_name FROM resource_metrics "
+            + "WHERE token(context, resource) > ? AND token(context, resource) <= ?";
+
+    private static final String ATTRIBUTES_QUERY = "SELECT context, resource, attribute, value FROM resource_attributes "
+            + "WHERE token(context, resource) > ? AND token(context, resource) <= ?";
+
+    private static final int FETCH_SIZE = 1000;
+
+    /**
+     * Number of token ranges scanned by every thread, so that the load is balanced
+     * even if the data is not evenly distributed.
+     */
+    private static final int RANGES_PER_THREAD = 16;
+
+    private final CassandraSession m_session;
+
+    private final ResourceMetadataCache m_cache;
+
+    private final boolean m_enabled;
+
+    private final int m_numThreads;
+
+    private final long m_maxEntries;
+
+    private final AtomicLong m_numLoaded = new AtomicLong();
+
+    private ExecutorService m_executor;
+
+    @Inject
+    public ResourceMetadataCacheWarmer(CassandraSession session, ResourceMetadataCache cache,
+            @Named("search.resourceMetadata.warmOnStart") Boolean enabled, @Named("search.resourceMetadata.warmerThreads") Integer numThreads,
+            @Named("search.resourceMetadata.maxCacheEntries") Long maxEntries) {
+        Preconditions.checkArgument(numThreads > 0, "numThreads must be strictly positive");
+        m_session = Preconditions.checkNotNull(session, "session");
+        m_cache = Preconditions.checkNotNull(cache, "cache");
+        m_enabled = enabled;
+        m_numThreads = numThreads;
+        m_maxEntries = maxEntries;
+    }
+
+    public synchronized void start() {
+        if (!m_enabled) {
+            LOG.debug("Warming of the resource metadata cache is disabled.");
+            return;
+        } else if (!(m_cache instanceof GuavaSearchableResourceMetadataCache)) {
+            // Other caches are not emptied when we restart
+            LOG.debug("Not warming the resource metadata cache of type {}.", m_cache.getClass());
+            return;
+        }
+
+        final PreparedStatement metricsStatement = m_session.prepare(METRICS_QUERY);
+        final PreparedStatement attributesStatement = m_session.prepare(ATTRIBUTES_QUERY);
+
+        m_executor = Executors.newFixedThreadPool(m_numThreads, new ThreadFactoryBuilder()
+                .setNameFormat("NewtsCacheWarmer-%d").build());
+
+        final long start = System.currentTimeMillis();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (long[] range : getTokenRanges(m_numThreads * RANGES_PER_THREAD)) {
+            futures.add(CompletableFuture.runAsync(() -> load(metricsStatement, attributesStatement, range[0], range[1]), m_executor));
+        }
+        m_executor.shutdown();
+
+        LOG.info("Warming the resource metadata cache with up to {} entries.", m_maxEntries);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).whenComplete((v, ex) -> {
+            if (ex != null) {
+                LOG.warn("Failed to warm the resource metadata cache. {} entries were loaded.", m_numLoaded.get(), ex);
+            } else {
+                LOG.info("Loaded {} entries in the resource metadata cache in {}ms.", m_numLoaded.get(), System.currentTimeMillis() - start);
+            }
+        });
+    }
+
+    public synchronized void stop() {
+        if (m_executor != null) {
+            m_executor.shutdownNow();
+        }
+    }
+
+    private void load(PreparedStatement metricsStatement, PreparedStatement attributesStatement, long fromToken, long toToken) {
+        if (isFull() || Thread.currentThread().isInterrupted()) {
+            return;
+        }
+
+        // Rows are returned in token order, so all of the entries that we've loaded from this range
+        // are located before the last accepted token, and we can stop scanning once the cache is full
+        Long lastToken = null;
+        for (Row row : m_session.execute(bind(metricsStatement, fromToken, toToken))) {
+            final Context context = new Context(row.getString(1));
+            final Resource resource = new Resource(row.getString(2));
+            if (!accept(context, resource)) {
+                break;
+            }
+            final ResourceMetadata metadata = new ResourceMetadata();
+            metadata.putMetric(row.getString(3));
+            m_cache.merge(context, resource, metadata);
+            lastToken = row.getLong(0);
+        }
+
+        if (lastToken == null) {
+            return;
+        }
+        for (Row row : m_session.execute(bind(attributesStatement, fromToken, lastToken))) {
+            final Context context = new Context(row.getString(0));
+            final Resource resource = new Resource(row.getString(1));
+            if (!m_cache.get(context, resource).isPresent()) {
+                continue;
+            }
+            final ResourceMetadata metadata = new ResourceMetadata();
+            metadata.putAttribute(row.getString(2), row.getString(3));
+            m_cache.merge(context, resource, metadata);
+        }
+    }
+
+    private boolean accept(Context context, Resource resource) {
+        if (m_cache.get(context, resource).isPresent()) {
+            return true;
+        }
+        if (m_numLoaded.incrementAndGet() <= m_maxEntries) {
+            return true;
+        }
+        m_numLoaded.decrementAndGet();
+        return false;
+    }
+
+    private boolean isFull() {
+        return m_numLoaded.get() >= m_maxEntries;
+    }
+
+    private static Statement bind(PreparedStatement statement, long fromToken, long toToken) {
+        return statement.bind(fromToken, toToken).setFetchSize(FETCH_SIZE);
+    }
+
+    /**
+     * Splits the token ring of the Murmur3 partitioner, (-2^63, 2^63-1], into the
+     * given number of contiguous ranges.
+     *
+     * @return the (exclusive, inclusive] bounds of the ranges
+     */
+    @VisibleForTesting
+    protected static List<long[]> getTokenRanges(int numRanges) {
+        final BigInteger min = BigInteger.valueOf(Long.MIN_VALUE);
+        final BigInteger width = BigInteger.valueOf(Long.MAX_VALUE).subtract(min);
+        final List<long[]> ranges = new ArrayList<>(numRanges);
+        long from = Long.MIN_VALUE;
+        for (int i = 1; i <= numRanges; i++) {
+            final long to = min.add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(numRanges))).longValueExact();
+            ranges.add(new long[] { from, to });
+            from = to;
+        }
+        return ranges;
+    }
+}
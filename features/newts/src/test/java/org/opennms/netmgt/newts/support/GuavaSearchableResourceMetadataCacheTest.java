@@ -29,6 +29,7 @@
 package org.opennms.netmgt.newts.support;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Ignore;
@@ -60,6 +61,64 @@ public class GuavaSearchableResourceMetadataCacheTest {
         assertTrue(cache.getResourceIdsWithPrefix(ctx, "a:b:c:d").isEmpty());
     }
 
+    @Test
+    public void canLimitCacheBySize() {
+        Context ctx = Context.DEFAULT_CONTEXT;
+        String resourceId = "snmp:1:eth0-x:ifHcInOctets";
+        long maxSizeBytes = 8 * GuavaSearchableResourceMetadataCache.weigh("default:" + resourceId, new ResourceMetadata());
+        GuavaSearchableResourceMetadataCache cache = new GuavaSearchableResourceMetadataCache(2048, maxSizeBytes, m_registry);
+
+        for (int k = 0; k < 100; k++) {
+            cache.merge(ctx, new Resource(String.format("snmp:%d:eth0-x:ifHcInOctets", k)), new ResourceMetadata());
+        }
+
+        // The radix tree should only contain the entries that were not evicted
+        int numEntries = cache.getResourceIdsWithPrefix(ctx, "snmp").size();
+        assertTrue(numEntries > 0);
+        assertTrue(numEntries <= 8);
+    }
+
+    @Test
+    public void canWeighEntriesByContents() {
+        String key = "default:snmp:1:eth0-x";
+        ResourceMetadata metadata = new ResourceMetadata();
+        int emptyWeight = GuavaSearchableResourceMetadataCache.weigh(key, metadata);
+
+        metadata.putMetric("ifHCInOctets");
+        int weightWithMetric = GuavaSearchableResourceMetadataCache.weigh(key, metadata);
+        assertTrue(weightWithMetric > emptyWeight);
+
+        metadata.putAttribute("ifName", "eth0");
+        assertTrue(GuavaSearchableResourceMetadataCache.weigh(key, metadata) > weightWithMetric);
+    }
+
+    @Test
+    public void canReweighEntriesOnMerge() {
+        Context ctx = Context.DEFAULT_CONTEXT;
+        Resource resource = new Resource("snmp:1:eth0-x");
+        long maxSizeBytes = 8 * GuavaSearchableResourceMetadataCache.weigh("default:" + resource.getId(), new ResourceMetadata());
+        GuavaSearchableResourceMetadataCache cache = new GuavaSearchableResourceMetadataCache(2048, maxSizeBytes, m_registry);
+
+        cache.merge(ctx, resource, new ResourceMetadata());
+        ResourceMetadata metadata = new ResourceMetadata();
+        metadata.putMetric("ifHCInOctets");
+        cache.merge(ctx, resource, metadata);
+
+        // The entry is still searchable after being put again
+        assertTrue(cache.get(ctx, resource).isPresent());
+        assertEquals(1, cache.getResourceIdsWithPrefix(ctx, "snmp").size());
+
+        // Grow the entry past the maximum weight of the cache
+        metadata = new ResourceMetadata();
+        for (int k = 0; k < 1000; k++) {
+            metadata.putMetric("metric" + k);
+        }
+        cache.merge(ctx, resource, metadata);
+
+        assertFalse(cache.get(ctx, resource).isPresent());
+        assertTrue(cache.getResourceIdsWithPrefix(ctx, "snmp").isEmpty());
+    }
+
     @Test
     @Ignore
     public void getResourceIdsWithPrefixPerftTest() {
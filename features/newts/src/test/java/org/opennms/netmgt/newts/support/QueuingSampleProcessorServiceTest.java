@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.newts.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.newts.api.Counter;
+import org.opennms.newts.api.MetricType;
+import org.opennms.newts.api.Resource;
+import org.opennms.newts.api.Sample;
+import org.opennms.newts.api.SampleProcessor;
+import org.opennms.newts.api.Timestamp;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class QueuingSampleProcessorServiceTest {
+
+    private MetricRegistry m_registry = new MetricRegistry();
+
+    private QueuingSampleProcessorService m_service;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (m_service != null) {
+            m_service.shutdown();
+            assertTrue(m_service.awaitShutdown(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void canMergeQueuedSamples() throws InterruptedException {
+        BlockingSampleProcessor processor = new BlockingSampleProcessor(3);
+        m_service = new QueuingSampleProcessorService(Sets.newHashSet(processor), 16, 1024, 1, 0d, m_registry);
+
+        // Block the consumer with the first sample
+        m_service.submit(Lists.newArrayList(sample("x", "y", 0)));
+        processor.started.await();
+
+        // These should be merged into two samples
+        List<Sample> samples = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            samples.add(sample("x", "y", i));
+        }
+        samples.add(sample("x", "z", 0));
+        m_service.submit(samples);
+
+        processor.blocked.countDown();
+        processor.processed.await();
+
+        assertEquals(3, processor.samples.size());
+        assertEquals(9L, m_registry.meter(MetricRegistry.name("index-queue", "merged-samples")).getCount());
+        assertEquals(0L, m_registry.meter(MetricRegistry.name("index-queue", "blocked-submits")).getCount());
+    }
+
+    @Test(timeout = 30000)
+    public void canBlockWhenQueueIsFull() throws InterruptedException {
+        BlockingSampleProcessor processor = new BlockingSampleProcessor(6);
+        m_service = new QueuingSampleProcessorService(Sets.newHashSet(processor), 16, 2, 1, 0d, m_registry);
+
+        m_service.submit(Lists.newArrayList(sample("x", "y", 0)));
+        processor.started.await();
+
+        List<Sample> samples = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            samples.add(sample("r" + i, "y", i));
+        }
+        Thread writer = new Thread(() -> m_service.submit(samples));
+        writer.start();
+
+        // The writer should be waiting for room in the queue
+        writer.join(1000);
+        assertTrue(writer.isAlive());
+
+        processor.blocked.countDown();
+        writer.join();
+        processor.processed.await();
+
+        assertEquals(6, processor.samples.size());
+        assertEquals(1L, m_registry.meter(MetricRegistry.name("index-queue", "blocked-submits")).getCount());
+    }
+
+    @Test(timeout = 30000)
+    public void canDrainQueueOnShutdown() throws InterruptedException {
+        BlockingSampleProcessor processor = new BlockingSampleProcessor(5);
+        m_service = new QueuingSampleProcessorService(Sets.newHashSet(processor), 1, 1024, 1, 0d, m_registry);
+
+        m_service.submit(Lists.newArrayList(sample("x", "y", 0)));
+        processor.started.await();
+
+        List<Sample> samples = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            samples.add(sample("r" + i, "y", i));
+        }
+        m_service.submit(samples);
+
+        Thread shutdown = new Thread(() -> {
+            try {
+                m_service.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        shutdown.start();
+
+        // The queued samples should be processed before shutdown() returns
+        processor.blocked.countDown();
+        shutdown.join();
+        assertEquals(4, processor.samples.size());
+
+        // Samples submitted after the shutdown are processed by the caller
+        m_service.submit(Lists.newArrayList(sample("z", "y", 0)));
+        assertEquals(5, processor.samples.size());
+    }
+
+    private static Sample sample(String resourceId, String metric, int value) {
+        return new Sample(Timestamp.now(), new Resource(resourceId), metric, MetricType.COUNTER, new Counter(value));
+    }
+
+    private static class BlockingSampleProcessor implements SampleProcessor {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch processed;
+        private final List<Sample> samples = new ArrayList<>();
+
+        private BlockingSampleProcessor(int numSamples) {
+            processed = new CountDownLatch(numSamples);
+        }
+
+        @Override
+        public void submit(Collection<Sample> batch) {
+            started.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            synchronized (samples) {
+                samples.addAll(batch);
+            }
+            batch.forEach(s -> processed.countDown());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <p>
+ * A {@link ServiceMonitor} that is able to perform the poll without blocking
+ * the calling thread.
+ * </p>
+ *
+ * <p>
+ * When available, the framework invokes {@link #pollAsync(MonitoredService, Map)}
+ * instead of {@link #poll(MonitoredService, Map)}, which allows a large number of
+ * polls to be in flight using only a small number of threads. The blocking
+ * {@link #poll(MonitoredService, Map)} must continue to behave as it does for
+ * any other monitor, since it is used by the tooling and the remote poller.
+ * </p>
+ *
+ * <P>
+ * <STRONG>NOTE: </STRONG> The returned future is typically completed on an
+ * I/O thread shared with other monitors. Callers should not perform any
+ * blocking operations in the stages that depend on it.
+ * </P>
+ */
+public interface AsyncServiceMonitor extends ServiceMonitor {
+
+    /**
+     * Asynchronous equivalent of {@link #poll(MonitoredService, Map)}.
+     *
+     * @param svc
+     *            Includes details about to the service being monitored.
+     * @param parameters
+     *            Includes the service parameters defined in <EM>poller-configuration.xml</EM> and those
+     *            returned by {@link #getRuntimeAttributes(MonitoredService, Map)}.
+     * @return a future that is completed with the availability of the service, or
+     *         completed exceptionally if an unrecoverable error occurs
+     */
+    public CompletableFuture<PollStatus> pollAsync(MonitoredService svc, Map<String, Object> parameters);
+
+}
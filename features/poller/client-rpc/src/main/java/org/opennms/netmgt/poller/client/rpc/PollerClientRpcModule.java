@@ -30,10 +30,12 @@ package org.opennms.netmgt.poller.client.rpc;
 
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 
 import org.opennms.core.rpc.xml.AbstractXmlRpcModule;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
 import org.opennms.netmgt.poller.PollStatus;
 import org.opennms.netmgt.poller.ServiceMonitor;
 import org.opennms.netmgt.poller.ServiceMonitorRegistry;
@@ -68,6 +70,10 @@ public class PollerClientRpcModule extends AbstractXmlRpcModule<PollerRequestDTO
             return CompletableFuture.completedFuture(new PollerResponseDTO(PollStatus.unknown("No monitor found with class name '" + className + "'.")));
         }
 
+        if (monitor instanceof AsyncServiceMonitor) {
+            return executeAsync((AsyncServiceMonitor)monitor, request);
+        }
+
         return CompletableFuture.supplyAsync(new Supplier<PollerResponseDTO>() {
             @Override
             public PollerResponseDTO get() {
@@ -83,6 +89,25 @@ public class PollerClientRpcModule extends AbstractXmlRpcModule<PollerRequestDTO
         }, executor);
     }
 
+    private CompletableFuture<PollerResponseDTO> executeAsync(AsyncServiceMonitor monitor, PollerRequestDTO request) {
+        CompletableFuture<PollStatus> future;
+        try {
+            final Map<String, Object> parameters = request.getMonitorParameters();
+            future = monitor.pollAsync(request, parameters);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.completedFuture(PollStatus.unknown(e.getMessage()));
+        }
+
+        // Don't tie up the monitor's I/O threads with the remainder of the processing
+        return future.handleAsync((pollStatus, ex) -> {
+            if (ex != null) {
+                final Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                pollStatus = PollStatus.unknown(cause.getMessage());
+            }
+            return new PollerResponseDTO(pollStatus);
+        }, executor);
+    }
+
     public void setServiceMonitorRegistry(ServiceMonitorRegistry serviceMonitorRegistry) {
         this.serviceMonitorRegistry = serviceMonitorRegistry;
     }
@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang.StringUtils;
+import org.opennms.core.utils.IPLike;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.core.utils.ParameterMap;
+import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.poller.Distributable;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.monitors.support.AbstractNettyMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Non-blocking equivalent of the {@link HttpMonitor}, which accepts the same parameters.
+ *
+ * The ports are tried one after the other until the service is found to be available
+ * on one of them. Unlike the {@link HttpMonitor}, the connection is closed as soon as
+ * the status is known, instead of reading the remainder of the response.
+ */
+@Distributable
+public class AsyncHttpMonitor extends AbstractNettyMonitor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncHttpMonitor.class);
+
+    private static final int[] DEFAULT_PORTS = { 80, 8080, 8888 };
+
+    private static final int DEFAULT_RETRY = 0;
+
+    private static final int DEFAULT_TIMEOUT = 3000;
+
+    @Override
+    public CompletableFuture<PollStatus> pollAsync(MonitoredService svc, Map<String, Object> parameters) {
+        final InetAddress addr = svc.getAddress();
+        final int[] ports = ParameterMap.getKeyedIntegerArray(parameters, HttpMonitor.PARAMETER_PORT, DEFAULT_PORTS);
+        final String request = buildRequest(svc.getNodeLabel(), addr, parameters);
+
+        final String testedPorts = Arrays.stream(ports).mapToObj(Integer::toString).collect(Collectors.joining(","));
+        final CompletableFuture<PollStatus> future = ports.length > 0 ? pollPort(svc, parameters, request, ports, 0) : CompletableFuture.completedFuture(PollStatus.unavailable());
+        return future.thenApply(status -> {
+            if (status.getStatusCode() == PollStatus.SERVICE_UNAVAILABLE) {
+                final String reason = status.getReason() + "/Ports: " + testedPorts;
+                LOG.debug("checkStatus: Reason: \"{}\"", reason);
+                return PollStatus.unavailable(reason);
+            }
+            return status;
+        });
+    }
+
+    private CompletableFuture<PollStatus> pollPort(MonitoredService svc, Map<String, Object> parameters, String request, int[] ports, int portIndex) {
+        final InetAddress addr = svc.getAddress();
+        final int port = ports[portIndex];
+        final TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
+        LOG.debug("Port = {}, Address = {}, {}", port, addr, tracker);
+
+        final String serviceInfo = addr + ":" + svc.getSvcName() + ":" + port;
+        final InetSocketAddress address = new InetSocketAddress(addr, port);
+        final AtomicBoolean noRouteToHost = new AtomicBoolean(false);
+
+        return pollWithRetries(tracker,
+                t -> exchange(address, t, request, new HttpResponseHandler(t, parameters)),
+                e -> {
+                    if (e instanceof NoRouteToHostException) {
+                        noRouteToHost.set(true);
+                    }
+                    return toPollStatus(e, addr, port, serviceInfo, tracker);
+                }).thenCompose(status -> {
+                    if (status.isAvailable() || noRouteToHost.get() || portIndex + 1 >= ports.length) {
+                        return CompletableFuture.completedFuture(status);
+                    }
+                    return pollPort(svc, parameters, request, ports, portIndex + 1);
+                });
+    }
+
+    private static PollStatus toPollStatus(Throwable e, InetAddress addr, int port, String serviceInfo, TimeoutTracker tracker) {
+        if (e instanceof NoRouteToHostException) {
+            LOG.warn("checkStatus: No route to host exception while polling {}", serviceInfo, e);
+            return PollStatus.unavailable("No route to host exception");
+        } else if (isTimeout(e)) {
+            LOG.info("checkStatus: HTTP socket connection for service {} timed out with {}", serviceInfo, tracker);
+            return PollStatus.unavailable("HTTP connection timeout");
+        } else if (e instanceof ConnectException) {
+            LOG.warn("Connection exception for {}", serviceInfo, e);
+            return PollStatus.unavailable("HTTP connection exception on port: " + port + ": " + e.getMessage());
+        } else if (e instanceof IOException) {
+            LOG.warn("{} while polling {}", e.getClass().getSimpleName(), serviceInfo, e);
+            return PollStatus.unavailable("IOException while polling address: " + addr + ": " + e.getMessage());
+        } else {
+            LOG.warn("Unexpected {} while polling {}", e.getClass().getSimpleName(), serviceInfo, e);
+            return PollStatus.unavailable("Unexpected exception while polling address: " + addr + ": " + e.getMessage());
+        }
+    }
+
+    private static String buildRequest(String nodeLabel, InetAddress addr, Map<String, Object> parameters) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("GET ").append(HttpMonitor.determineUrl(parameters)).append(" HTTP/1.1\r\n");
+        sb.append("Connection: CLOSE \r\n");
+        sb.append("Host: ").append(determineVirtualHost(nodeLabel, addr, parameters)).append("\r\n");
+        sb.append("User-Agent: ").append(HttpMonitor.determineUserAgent(parameters)).append("\r\n");
+
+        final String credentials = HttpMonitor.determineBasicAuthentication(parameters);
+        if (credentials != null) {
+            sb.append("Authorization: Basic ").append(credentials).append("\r\n");
+        }
+
+        for (final String parmKey : parameters.keySet()) {
+            if (HttpMonitor.HEADER_PATTERN.matcher(parmKey).matches()) {
+                sb.append(HttpMonitor.determineHttpHeader(parameters, parmKey)).append("\r\n");
+            }
+        }
+
+        sb.append("\r\n");
+        final String cmd = sb.toString();
+        LOG.debug("checkStatus: cmd:\n{}", cmd);
+        return cmd;
+    }
+
+    private static String determineVirtualHost(String nodeLabel, InetAddress addr, Map<String, Object> parameters) {
+        final boolean res = ParameterMap.getKeyedBoolean(parameters, HttpMonitor.PARAMETER_RESOLVE_IP, false);
+        final boolean useNodeLabel = ParameterMap.getKeyedBoolean(parameters, HttpMonitor.PARAMETER_NODE_LABEL_HOST_NAME, false);
+        final String virtualHost = ParameterMap.getKeyedString(parameters, HttpMonitor.PARAMETER_HOST_NAME, null);
+
+        if (StringUtils.isBlank(virtualHost)) {
+            if (res) {
+                return addr.getCanonicalHostName();
+            } else if (useNodeLabel) {
+                return nodeLabel;
+            } else {
+                final String host = InetAddressUtils.str(addr);
+                // Wrap IPv6 addresses in square brackets
+                return addr instanceof Inet6Address ? "[" + host + "]" : host;
+            }
+        }
+        return virtualHost;
+    }
+
+    private static class HttpResponseHandler implements LineHandler {
+        private final TimeoutTracker tracker;
+        private final Map<String, Object> parameters;
+        private final boolean verbose;
+        private final String responseText;
+
+        private int serviceStatus = PollStatus.SERVICE_UNAVAILABLE;
+        private String reason;
+        private double responseTime;
+        private boolean statusLineReceived = false;
+        private boolean matchingResponseText = false;
+        private boolean headerFinished = false;
+
+        private HttpResponseHandler(TimeoutTracker tracker, Map<String, Object> parameters) {
+            this.tracker = tracker;
+            this.parameters = parameters;
+            this.verbose = HttpMonitor.determineVerbosity(parameters);
+            this.responseText = HttpMonitor.determineResponseText(parameters);
+        }
+
+        @Override
+        public PollStatus onConnected() {
+            // We're connected, so upgrade status to unresponsive
+            serviceStatus = PollStatus.SERVICE_UNRESPONSIVE;
+            return null;
+        }
+
+        @Override
+        public PollStatus onLine(String line) {
+            if (verbose) {
+                LOG.debug("\t<<: {}", line);
+            }
+
+            if (!statusLineReceived) {
+                statusLineReceived = true;
+                responseTime = tracker.elapsedTimeInMillis();
+                LOG.debug("poll: response= {}", line);
+                LOG.debug("poll: responseTime= {}ms", responseTime);
+
+                determineServerResponse(line);
+                if (serviceStatus == PollStatus.SERVICE_AVAILABLE && StringUtils.isNotBlank(responseText)) {
+                    serviceStatus = PollStatus.SERVICE_UNAVAILABLE;
+                    reason = "Matching text: [" + responseText + "] not found in body of HTTP response";
+                    matchingResponseText = true;
+                    return null;
+                }
+                return getPollStatus();
+            }
+
+            if (matchingResponseText && matchesResponseText(line)) {
+                LOG.debug("response-text: {}: found.", responseText);
+                serviceStatus = PollStatus.SERVICE_AVAILABLE;
+                return getPollStatus();
+            }
+            return null;
+        }
+
+        @Override
+        public PollStatus onEndOfStream() {
+            if (!statusLineReceived) {
+                return PollStatus.unresponsive();
+            }
+            return getPollStatus();
+        }
+
+        private void determineServerResponse(String line) {
+            if (!line.startsWith("HTTP/")) {
+                return;
+            }
+
+            final StringTokenizer t = new StringTokenizer(line);
+            if (t.hasMoreTokens()) {
+                t.nextToken();
+            }
+            int serverResponse = -1;
+            if (t.hasMoreTokens()) {
+                try {
+                    serverResponse = Integer.parseInt(t.nextToken());
+                } catch (final NumberFormatException e) {
+                    LOG.info("Error converting response code, response = {}", line);
+                }
+            }
+
+            final String expectedResponse = HttpMonitor.determineResponse(parameters);
+            if (IPLike.matchNumericListOrRange(String.valueOf(serverResponse), expectedResponse)) {
+                LOG.debug("determineServerResponse: valid server response: {} found.", serverResponse);
+                serviceStatus = PollStatus.SERVICE_AVAILABLE;
+            } else {
+                serviceStatus = PollStatus.SERVICE_UNAVAILABLE;
+                reason = "HTTP response value: " + serverResponse + ". Expecting: " + expectedResponse + ".";
+            }
+        }
+
+        private boolean matchesResponseText(String line) {
+            if (!headerFinished && StringUtils.isEmpty(line)) {
+                // Set to true when all HTTP headers has been processed.
+                headerFinished = true;
+            }
+            if (!headerFinished) {
+                return false;
+            }
+            if (responseText.charAt(0) == '~') {
+                return line.matches(responseText.substring(1));
+            }
+            return line.indexOf(responseText) != -1;
+        }
+
+        private PollStatus getPollStatus() {
+            if (serviceStatus == PollStatus.SERVICE_AVAILABLE) {
+                return PollStatus.available(responseTime);
+            }
+            return PollStatus.get(serviceStatus, reason);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.core.utils.ParameterMap;
+import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.poller.Distributable;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.monitors.support.AbstractNettyMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Non-blocking equivalent of the {@link TcpMonitor}, which accepts the same parameters.
+ *
+ * Connects to the specified port and, if a banner is given, verifies that the first
+ * line sent by the service matches it.
+ */
+@Distributable
+public class AsyncTcpMonitor extends AbstractNettyMonitor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncTcpMonitor.class);
+
+    private static final int DEFAULT_PORT = -1;
+
+    private static final int DEFAULT_RETRY = 0;
+
+    private static final int DEFAULT_TIMEOUT = 3000;
+
+    @Override
+    public CompletableFuture<PollStatus> pollAsync(MonitoredService svc, Map<String, Object> parameters) {
+        final TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
+
+        final int port = ParameterMap.getKeyedInteger(parameters, TcpMonitor.PARAMETER_PORT, DEFAULT_PORT);
+        if (port == DEFAULT_PORT) {
+            throw new RuntimeException("AsyncTcpMonitor: required parameter 'port' is not present in supplied properties.");
+        }
+
+        final String bannerMatch = ParameterMap.getKeyedString(parameters, TcpMonitor.PARAMETER_BANNER, null);
+
+        final InetAddress ipAddr = svc.getAddress();
+        final String hostAddress = InetAddressUtils.str(ipAddr);
+        LOG.debug("poll: address = {}, port = {}, {}", hostAddress, port, tracker);
+
+        final InetSocketAddress address = new InetSocketAddress(ipAddr, port);
+        return pollWithRetries(tracker,
+                t -> exchange(address, t, null, new BannerHandler(t, bannerMatch)),
+                e -> toPollStatus(e, ipAddr, hostAddress, tracker));
+    }
+
+    private static PollStatus toPollStatus(Throwable e, InetAddress ipAddr, String hostAddress, TimeoutTracker tracker) {
+        final String reason;
+        if (e instanceof NoRouteToHostException) {
+            reason = "No route to host exception for address " + hostAddress;
+            LOG.debug(reason, e);
+        } else if (isTimeout(e)) {
+            reason = "did not connect to host with " + tracker;
+            LOG.debug(reason);
+        } else if (e instanceof ConnectException) {
+            reason = "Connection exception for address: " + ipAddr;
+            LOG.debug(reason, e);
+        } else if (e instanceof IOException) {
+            reason = "IOException while polling address: " + ipAddr;
+            LOG.debug(reason, e);
+        } else {
+            reason = "Unexpected exception while polling address: " + ipAddr + ": " + e.getMessage();
+            LOG.warn(reason, e);
+        }
+        return PollStatus.unavailable(reason);
+    }
+
+    private static class BannerHandler implements LineHandler {
+        private final TimeoutTracker tracker;
+        private final String bannerMatch;
+
+        private BannerHandler(TimeoutTracker tracker, String bannerMatch) {
+            this.tracker = tracker;
+            this.bannerMatch = bannerMatch;
+        }
+
+        @Override
+        public PollStatus onConnected() {
+            if (bannerMatch == null || bannerMatch.length() == 0 || bannerMatch.equals("*")) {
+                return PollStatus.available(tracker.elapsedTimeInMillis());
+            }
+            return null;
+        }
+
+        @Override
+        public PollStatus onLine(String response) {
+            final double responseTime = tracker.elapsedTimeInMillis();
+            LOG.debug("poll: banner = {}", response);
+            LOG.debug("poll: responseTime= {}ms", responseTime);
+
+            if (bannerMatch.charAt(0) == '~') {
+                if (!response.matches(bannerMatch.substring(1))) {
+                    return PollStatus.unavailable("Banner does not match Regex '" + bannerMatch + "'");
+                }
+                return PollStatus.available(responseTime);
+            } else if (response.indexOf(bannerMatch) > -1) {
+                return PollStatus.available(responseTime);
+            } else {
+                return PollStatus.unavailable("Banner: '" + response + "' does not contain match string '" + bannerMatch + "'");
+            }
+        }
+
+        @Override
+        public PollStatus onEndOfStream() {
+            // We connected, but didn't get a banner
+            return PollStatus.unresponsive();
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors.support;
+
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.support.AbstractServiceMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.ByteProcessor;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Base class for monitors that exchange lines of text with the service using
+ * non-blocking I/O.
+ *
+ * All of the monitors extending this class share a single event loop group, so
+ * that a large number of polls can be in flight using a small number of threads.
+ * The number of threads can be set with the {@link #EVENT_LOOP_THREADS_PROPERTY}
+ * system property, and defaults to the number of available processors.
+ */
+public abstract class AbstractNettyMonitor extends AbstractServiceMonitor implements AsyncServiceMonitor {
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractNettyMonitor.class);
+
+    public static final String EVENT_LOOP_THREADS_PROPERTY = "org.opennms.netmgt.poller.monitors.nio.threads";
+
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /**
+     * Called as the exchange with the service progresses. Each of the callbacks
+     * returns <code>null</code> to continue reading from the service, or the
+     * status with which the exchange should be completed.
+     */
+    protected interface LineHandler {
+        /**
+         * Invoked once the connection is established, and before the request is sent.
+         */
+        PollStatus onConnected();
+
+        /**
+         * Invoked for every line received from the service, without the line terminator.
+         * Lines longer than 8 KB are truncated.
+         */
+        PollStatus onLine(String line);
+
+        /**
+         * Invoked when the service closed the connection. Must not return <code>null</code>.
+         */
+        PollStatus onEndOfStream();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Waits for the result of {@link #pollAsync(MonitoredService, Map)}.
+     */
+    @Override
+    public PollStatus poll(MonitoredService svc, Map<String, Object> parameters) {
+        try {
+            return pollAsync(svc, parameters).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return PollStatus.unknown("Interrupted while polling.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Performs up to the number of attempts allowed by the tracker, one after the other,
+     * until one of them returns an available status. Retries are not performed when
+     * there is no route to the host.
+     *
+     * @param tracker tracks the attempts and their timeouts
+     * @param attempt performs a single attempt
+     * @param onError maps a failed attempt to a status
+     * @return the status of the last attempt
+     */
+    protected static CompletableFuture<PollStatus> pollWithRetries(TimeoutTracker tracker, Function<TimeoutTracker, CompletableFuture<PollStatus>> attempt, Function<Throwable, PollStatus> onError) {
+        final CompletableFuture<PollStatus> result = new CompletableFuture<>();
+        tracker.reset();
+        nextAttempt(tracker, attempt, onError, PollStatus.unavailable(), result);
+        return result;
+    }
+
+    private static void nextAttempt(TimeoutTracker tracker, Function<TimeoutTracker, CompletableFuture<PollStatus>> attempt, Function<Throwable, PollStatus> onError,
+            PollStatus lastStatus, CompletableFuture<PollStatus> result) {
+        if (!tracker.shouldRetry()) {
+            result.complete(lastStatus);
+            return;
+        }
+
+        tracker.startAttempt();
+        final CompletableFuture<PollStatus> future;
+        try {
+            future = attempt.apply(tracker);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        future.whenComplete((status, ex) -> {
+            final PollStatus attemptStatus;
+            boolean retry = true;
+            try {
+                if (ex != null) {
+                    final Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    attemptStatus = onError.apply(cause);
+                    retry = !(cause instanceof NoRouteToHostException);
+                } else {
+                    attemptStatus = status;
+                }
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+                return;
+            }
+
+            if (!retry || attemptStatus.isAvailable()) {
+                result.complete(attemptStatus);
+            } else {
+                tracker.nextAttempt();
+                nextAttempt(tracker, attempt, onError, attemptStatus, result);
+            }
+        });
+    }
+
+    /**
+     * Connects to the given address, sends the request, if any, and feeds the lines
+     * received in response to the handler until it returns a status.
+     *
+     * The connection and read timeouts are taken from the tracker. Failures to connect,
+     * time outs and I/O errors complete the returned future exceptionally.
+     *
+     * @param address the address of the service
+     * @param tracker used to determine the timeouts
+     * @param request the request to send once connected, may be <code>null</code>
+     * @param handler processes the response
+     * @return the status returned by the handler
+     */
+    protected static CompletableFuture<PollStatus> exchange(InetSocketAddress address, TimeoutTracker tracker, String request, LineHandler handler) {
+        final CompletableFuture<PollStatus> future = new CompletableFuture<>();
+        final Bootstrap bootstrap = new Bootstrap()
+                .group(getEventLoopGroup())
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, tracker.getConnectionTimeout())
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(
+                                new ReadTimeoutHandler(tracker.getSoTimeout(), TimeUnit.MILLISECONDS),
+                                new TruncatingLineDecoder(MAX_LINE_LENGTH),
+                                new StringDecoder(CHARSET),
+                                new LineHandlerAdapter(handler, request, future));
+                    }
+                });
+
+        bootstrap.connect(address).addListener((ChannelFutureListener) f -> {
+            if (!f.isSuccess()) {
+                future.completeExceptionally(f.cause());
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Used to determine whether or not an exception thrown by {@link #exchange(InetSocketAddress, TimeoutTracker, String, LineHandler)}
+     * was caused by the connect or read timeout.
+     */
+    protected static boolean isTimeout(Throwable t) {
+        return t instanceof ConnectTimeoutException || t instanceof ReadTimeoutException;
+    }
+
+    protected static EventLoopGroup getEventLoopGroup() {
+        return EventLoopGroupHolder.EVENT_LOOP_GROUP;
+    }
+
+    private static class EventLoopGroupHolder {
+        private static final EventLoopGroup EVENT_LOOP_GROUP = createEventLoopGroup();
+
+        private static EventLoopGroup createEventLoopGroup() {
+            final int threads = Integer.getInteger(EVENT_LOOP_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+            LOG.debug("Creating event loop group with {} threads.", threads);
+            // Use daemon threads, so that the group does not need to be shutdown
+            return new NioEventLoopGroup(threads, new DefaultThreadFactory("poller-monitors-nio", true));
+        }
+    }
+
+    private static class LineHandlerAdapter extends SimpleChannelInboundHandler<String> {
+        private final LineHandler handler;
+        private final String request;
+        private final CompletableFuture<PollStatus> future;
+
+        private LineHandlerAdapter(LineHandler handler, String request, CompletableFuture<PollStatus> future) {
+            this.handler = handler;
+            this.request = request;
+            this.future = future;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            final PollStatus status = handler.onConnected();
+            if (status != null) {
+                complete(ctx, status);
+            } else if (request != null) {
+                ctx.writeAndFlush(Unpooled.copiedBuffer(request, CHARSET));
+            }
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, String line) throws Exception {
+            if (future.isDone()) {
+                return;
+            }
+            final PollStatus status = handler.onLine(line);
+            if (status != null) {
+                complete(ctx, status);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            if (!future.isDone()) {
+                future.complete(handler.onEndOfStream());
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            future.completeExceptionally(cause);
+            ctx.close();
+        }
+
+        private void complete(ChannelHandlerContext ctx, PollStatus status) {
+            future.complete(status);
+            ctx.close();
+        }
+    }
+
+    /**
+     * Splits the input into lines, like the {@link io.netty.handler.codec.LineBasedFrameDecoder}.
+     *
+     * Lines that are longer than the maximum length are truncated instead of failing
+     * the exchange, since the blocking monitors accept these. The last line received is
+     * also emitted when the service closes the connection without terminating it.
+     */
+    private static class TruncatingLineDecoder extends ByteToMessageDecoder {
+        private final int maxLength;
+        private boolean discarding = false;
+
+        private TruncatingLineDecoder(int maxLength) {
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+            final int eol = in.forEachByte(ByteProcessor.FIND_LF);
+            if (eol >= 0) {
+                if (!discarding) {
+                    int length = eol - in.readerIndex();
+                    if (length > 0 && in.getByte(eol - 1) == '\r') {
+                        length--;
+                    }
+                    out.add(in.readRetainedSlice(Math.min(length, maxLength)));
+                }
+                // Skip the remainder of the line, and its terminator
+                in.readerIndex(eol + 1);
+                discarding = false;
+            } else if (discarding) {
+                in.skipBytes(in.readableBytes());
+            } else if (in.readableBytes() > maxLength) {
+                // Emit the beginning of the line and discard the rest of it
+                out.add(in.readRetainedSlice(maxLength));
+                in.skipBytes(in.readableBytes());
+                discarding = true;
+            }
+        }
+
+        @Override
+        protected void decodeLast(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+            super.decodeLast(ctx, in, out);
+            if (!discarding && in.isReadable()) {
+                out.add(in.readRetainedSlice(in.readableBytes()));
+            }
+        }
+    }
+}
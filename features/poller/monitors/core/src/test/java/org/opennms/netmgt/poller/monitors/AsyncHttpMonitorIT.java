@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
+import org.opennms.core.test.http.JUnitHttpServerExecutionListener;
+import org.opennms.core.test.http.annotations.JUnitHttpServer;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.mock.MonitorTestUtils;
+import org.opennms.netmgt.utils.DnsUtils;
+import org.opennms.test.JUnitConfigurationEnvironment;
+import org.opennms.test.mock.MockUtil;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+
+@RunWith(OpenNMSJUnit4ClassRunner.class)
+@ContextConfiguration(locations={"classpath:/META-INF/opennms/emptyContext.xml"})
+@JUnitConfigurationEnvironment
+@DirtiesContext
+public class AsyncHttpMonitorIT {
+    private ServerSocket m_serverSocket;
+
+    @Before
+    public void setUp() throws Exception {
+        MockLogAppender.setupLogging();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (m_serverSocket != null) {
+            m_serverSocket.close();
+        }
+    }
+
+    @Test
+    @JUnitHttpServer(port=0)
+    public void testResponseRange() throws Exception {
+        final Map<String, Object> m = new ConcurrentSkipListMap<String, Object>();
+        final MonitoredService svc = MonitorTestUtils.getMonitoredService(3, "localhost", DnsUtils.resolveHostname("localhost"), "HTTP");
+        final AsyncHttpMonitor monitor = new AsyncHttpMonitor();
+
+        m.put("port", String.valueOf(getPort()));
+        m.put("retry", "1");
+        m.put("timeout", "500");
+        m.put("response", "100-199");
+
+        PollStatus status = monitor.pollAsync(svc, m).get();
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertNotNull(status.getReason());
+
+        m.put("response", "100,200,302,400-500");
+
+        status = monitor.pollAsync(svc, m).get();
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+        assertNull(status.getReason());
+
+        m.put("response", "*");
+
+        status = monitor.poll(svc, m);
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+        assertNull(status.getReason());
+    }
+
+    @Test
+    @JUnitHttpServer(port=0)
+    public void testMatchingTextInResponse() throws Exception {
+        final Map<String, Object> m = new ConcurrentSkipListMap<String, Object>();
+        final MonitoredService svc = MonitorTestUtils.getMonitoredService(3, "localhost", DnsUtils.resolveHostname("localhost"), "HTTP");
+        final AsyncHttpMonitor monitor = new AsyncHttpMonitor();
+
+        m.put("port", String.valueOf(getPort()));
+        m.put("retry", "0");
+        m.put("timeout", "500");
+        m.put("response", "100-499");
+        m.put("verbose", "true");
+        m.put("host-name", "localhost");
+        m.put("url", "/");
+        m.put("response-text", "opennmsrulz");
+
+        PollStatus status = monitor.pollAsync(svc, m).get();
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertNotNull(status.getReason());
+
+        m.put("response-text", "written by monkeys");
+
+        status = monitor.pollAsync(svc, m).get();
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+        assertNull(status.getReason());
+
+        m.put("response-text", "~.*[Tt]est HTTP [Ss]erver.*");
+
+        status = monitor.pollAsync(svc, m).get();
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+        assertNull(status.getReason());
+    }
+
+    @Test
+    public void testLongLinesInResponse() throws Exception {
+        // The first line of the body is longer than the maximum line length of the decoder
+        final int port = startHttpServer("<html>" + StringUtils.repeat("x", 10000) + "</html>\r\n"
+                + "written by monkeys\r\n");
+
+        final Map<String, Object> m = new ConcurrentSkipListMap<String, Object>();
+        final MonitoredService svc = MonitorTestUtils.getMonitoredService(3, "localhost", InetAddress.getLoopbackAddress(), "HTTP");
+        final AsyncHttpMonitor monitor = new AsyncHttpMonitor();
+
+        m.put("port", String.valueOf(port));
+        m.put("retry", "0");
+        m.put("timeout", "500");
+        m.put("response", "100-499");
+        m.put("url", "/");
+        m.put("response-text", "written by monkeys");
+
+        PollStatus status = monitor.pollAsync(svc, m).get();
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+        assertNull(status.getReason());
+
+        // The beginning of the long line can be matched
+        m.put("response-text", "~^<html>x+$");
+
+        status = monitor.pollAsync(svc, m).get();
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+        assertNull(status.getReason());
+    }
+
+    private static int getPort() {
+        final int port = JUnitHttpServerExecutionListener.getPort();
+        if (port <= 0) {
+            throw new IllegalStateException("Unable to determine what port the HTTP server started on!");
+        }
+        return port;
+    }
+
+    /**
+     * Starts a server that answers every request with the given body,
+     * and closes the connection.
+     */
+    private int startHttpServer(String body) throws IOException {
+        m_serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread thread = new Thread(() -> {
+            while (!m_serverSocket.isClosed()) {
+                try (Socket socket = m_serverSocket.accept()) {
+                    final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                    String line;
+                    do {
+                        line = in.readLine();
+                    } while (line != null && !line.isEmpty());
+
+                    final OutputStream out = socket.getOutputStream();
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nConnection: close\r\n\r\n" + body).getBytes());
+                    out.flush();
+                } catch (IOException e) {
+                    // The server socket was closed
+                }
+            }
+        }, "http-server");
+        thread.setDaemon(true);
+        thread.start();
+        return m_serverSocket.getLocalPort();
+    }
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
+import org.opennms.core.test.http.annotations.JUnitHttpServer;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.mock.MonitorTestUtils;
+import org.opennms.netmgt.utils.DnsUtils;
+import org.opennms.test.JUnitConfigurationEnvironment;
+import org.opennms.test.mock.MockUtil;
+import org.springframework.test.context.ContextConfiguration;
+
+@RunWith(OpenNMSJUnit4ClassRunner.class)
+@ContextConfiguration(locations={"classpath:/META-INF/opennms/emptyContext.xml"})
+@JUnitConfigurationEnvironment
+public class AsyncTcpMonitorIT {
+    private ServerSocket m_serverSocket;
+
+    @Before
+    public void setUp() throws Exception {
+        MockLogAppender.setupLogging();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (m_serverSocket != null) {
+            m_serverSocket.close();
+        }
+    }
+
+    @Test
+    @JUnitHttpServer(port=10342)
+    public void testLocalhostConnection() throws Exception {
+        final Map<String, Object> m = new ConcurrentSkipListMap<String, Object>();
+        m.put("port", "10342");
+        m.put("retry", "1");
+        m.put("timeout", "500");
+
+        final AsyncTcpMonitor monitor = new AsyncTcpMonitor();
+        final MonitoredService svc = MonitorTestUtils.getMonitoredService(3, "localhost", DnsUtils.resolveHostname("localhost"), "TCP");
+
+        final CompletableFuture<PollStatus> future = monitor.pollAsync(svc, m);
+        final PollStatus status = future.get();
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+        assertNull(status.getReason());
+    }
+
+    @Test
+    public void testConnectionRefused() throws Exception {
+        // Grab a free port, and release it
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final Map<String, Object> m = new ConcurrentSkipListMap<String, Object>();
+        m.put("port", Integer.toString(port));
+        m.put("retry", "1");
+        m.put("timeout", "500");
+
+        final AsyncTcpMonitor monitor = new AsyncTcpMonitor();
+        final MonitoredService svc = MonitorTestUtils.getMonitoredService(3, "localhost", DnsUtils.resolveHostname("localhost"), "TCP");
+
+        final PollStatus status = monitor.poll(svc, m);
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertNotNull(status.getReason());
+    }
+
+    @Test
+    public void testBanner() throws Exception {
+        final int port = startBannerServer("220 opennms.org ESMTP ready");
+
+        final Map<String, Object> m = new ConcurrentSkipListMap<String, Object>();
+        m.put("port", Integer.toString(port));
+        m.put("retry", "0");
+        m.put("timeout", "500");
+        m.put("banner", "ESMTP");
+
+        final AsyncTcpMonitor monitor = new AsyncTcpMonitor();
+        final MonitoredService svc = MonitorTestUtils.getMonitoredService(3, "localhost", InetAddress.getLoopbackAddress(), "TCP");
+
+        PollStatus status = monitor.poll(svc, m);
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+
+        m.put("banner", "~^220 .* ESMTP.*$");
+        status = monitor.poll(svc, m);
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+
+        m.put("banner", "SSH");
+        status = monitor.poll(svc, m);
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertEquals("Banner: '220 opennms.org ESMTP ready' does not contain match string 'SSH'", status.getReason());
+    }
+
+    @Test
+    public void testLongBanner() throws Exception {
+        // Longer than the maximum line length of the decoder
+        final int port = startBannerServer("220 opennms.org ESMTP " + StringUtils.repeat("x", 10000) + "\r\n");
+
+        final Map<String, Object> m = new ConcurrentSkipListMap<String, Object>();
+        m.put("port", Integer.toString(port));
+        m.put("retry", "0");
+        m.put("timeout", "500");
+        m.put("banner", "ESMTP");
+
+        final AsyncTcpMonitor monitor = new AsyncTcpMonitor();
+        final MonitoredService svc = MonitorTestUtils.getMonitoredService(3, "localhost", InetAddress.getLoopbackAddress(), "TCP");
+
+        PollStatus status = monitor.poll(svc, m);
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+
+        m.put("banner", "~^220 .* ESMTP x+$");
+        status = monitor.poll(svc, m);
+        MockUtil.println("Reason: "+status.getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+    }
+
+    /**
+     * Starts a server that sends the given banner, without a line terminator,
+     * and closes the connection.
+     */
+    private int startBannerServer(String banner) throws IOException {
+        m_serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread thread = new Thread(() -> {
+            while (!m_serverSocket.isClosed()) {
+                try (Socket socket = m_serverSocket.accept()) {
+                    final OutputStream out = socket.getOutputStream();
+                    out.write(banner.getBytes());
+                    out.flush();
+                } catch (IOException e) {
+                    // The server socket was closed
+                }
+            }
+        }, "banner-server");
+        thread.setDaemon(true);
+        thread.start();
+        return m_serverSocket.getLocalPort();
+    }
+}
@@ -28,24 +28,14 @@
 
 package org.opennms.netmgt.telemetry.adapters.collection;
 
-import org.opennms.netmgt.collection.api.CollectionAgentFactory;
 import org.opennms.netmgt.collection.api.PersisterFactory;
-import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
-import org.opennms.netmgt.dao.api.NodeDao;
 import org.opennms.netmgt.filter.api.FilterDao;
 import org.osgi.framework.BundleContext;
-import org.springframework.transaction.support.TransactionOperations;
 
 public abstract class AbstractCollectionAdapterFactory {
     
 
-    private CollectionAgentFactory collectionAgentFactory;
-
-    private InterfaceToNodeCache interfaceToNodeCache;
-
-    private NodeDao nodeDao;
-
-    private TransactionOperations transactionTemplate;
+    private NodeResolver nodeResolver;
 
     private FilterDao filterDao;
 
@@ -61,36 +51,12 @@ public abstract class AbstractCollectionAdapterFactory {
         this.bundleContext = m_bundleContext;
     }
 
-    public CollectionAgentFactory getCollectionAgentFactory() {
-        return collectionAgentFactory;
-    }
-
-    public void setCollectionAgentFactory(CollectionAgentFactory collectionAgentFactory) {
-        this.collectionAgentFactory = collectionAgentFactory;
-    }
-
-    public InterfaceToNodeCache getInterfaceToNodeCache() {
-        return interfaceToNodeCache;
-    }
-
-    public void setInterfaceToNodeCache(InterfaceToNodeCache interfaceToNodeCache) {
-        this.interfaceToNodeCache = interfaceToNodeCache;
-    }
-
-    public NodeDao getNodeDao() {
-        return nodeDao;
-    }
-
-    public void setNodeDao(NodeDao nodeDao) {
-        this.nodeDao = nodeDao;
-    }
-
-    public TransactionOperations getTransactionTemplate() {
-        return transactionTemplate;
+    public NodeResolver getNodeResolver() {
+        return nodeResolver;
     }
 
-    public void setTransactionTemplate(TransactionOperations transactionTemplate) {
-        this.transactionTemplate = transactionTemplate;
+    public void setNodeResolver(NodeResolver nodeResolver) {
+        this.nodeResolver = nodeResolver;
     }
 
     public FilterDao getFilterDao() {
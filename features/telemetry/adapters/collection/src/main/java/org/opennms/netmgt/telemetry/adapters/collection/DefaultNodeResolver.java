@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.adapters.collection;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.netmgt.collection.api.CollectionAgent;
+import org.opennms.netmgt.collection.api.CollectionAgentFactory;
+import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
+import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventListener;
+import org.opennms.netmgt.events.api.EventSubscriptionService;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Parm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+
+/**
+ * A {@link NodeResolver} that caches its results.
+ *
+ * The system id is first treated as an address and looked up in the {@link InterfaceToNodeCache},
+ * and then as a node label. Both positive and negative results are cached for the given location
+ * and system id, since devices stream every few seconds and the label lookup hits the database.
+ *
+ * Entries are dropped when the matching nodes or interfaces are changed or deleted, and
+ * all negative entries are dropped when nodes or interfaces are added.
+ *
+ * A single instance is shared by all of the collection adapters.
+ */
+public class DefaultNodeResolver implements NodeResolver, EventListener {
+    private static final Logger LOG = LoggerFactory.getLogger(DefaultNodeResolver.class);
+
+    public static final long DEFAULT_CACHE_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+
+    public static final long DEFAULT_NEGATIVE_CACHE_TTL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    public static final long DEFAULT_CACHE_MAX_SIZE = 10000;
+
+    private static final List<String> UEIS = Arrays.asList(
+            EventConstants.NODE_ADDED_EVENT_UEI,
+            EventConstants.NODE_DELETED_EVENT_UEI,
+            EventConstants.NODE_LABEL_CHANGED_EVENT_UEI,
+            EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI,
+            EventConstants.INTERFACE_DELETED_EVENT_UEI,
+            EventConstants.INTERFACE_REPARENTED_EVENT_UEI);
+
+    @Autowired
+    private CollectionAgentFactory collectionAgentFactory;
+
+    @Autowired
+    private InterfaceToNodeCache interfaceToNodeCache;
+
+    @Autowired
+    private NodeDao nodeDao;
+
+    @Autowired
+    private TransactionOperations transactionTemplate;
+
+    @Autowired(required = false)
+    private EventSubscriptionService eventSubscriptionService;
+
+    private long cacheTtlMs = DEFAULT_CACHE_TTL_MS;
+
+    private long negativeCacheTtlMs = DEFAULT_NEGATIVE_CACHE_TTL_MS;
+
+    private long cacheMaxSize = DEFAULT_CACHE_MAX_SIZE;
+
+    private Cache<Key, CollectionAgent> agents;
+
+    private Cache<Key, Boolean> unresolved;
+
+    public void init() {
+        agents = CacheBuilder.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtlMs, TimeUnit.MILLISECONDS)
+                .build();
+        unresolved = CacheBuilder.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(negativeCacheTtlMs, TimeUnit.MILLISECONDS)
+                .build();
+
+        if (eventSubscriptionService != null) {
+            eventSubscriptionService.addEventListener(this, UEIS);
+        } else {
+            LOG.warn("No event subscription service available. Cached entries will only be refreshed once they expire.");
+        }
+    }
+
+    public void destroy() {
+        if (eventSubscriptionService != null) {
+            eventSubscriptionService.removeEventListener(this, UEIS);
+        }
+    }
+
+    @Override
+    public Optional<CollectionAgent> getCollectionAgent(String location, String systemId) {
+        final Key key = new Key(location, systemId);
+
+        final CollectionAgent cachedAgent = agents.getIfPresent(key);
+        if (cachedAgent != null) {
+            return Optional.of(cachedAgent);
+        }
+        if (unresolved.getIfPresent(key) != null) {
+            return Optional.empty();
+        }
+
+        final CollectionAgent agent = resolve(location, systemId);
+        if (agent != null) {
+            agents.put(key, agent);
+        } else {
+            unresolved.put(key, Boolean.TRUE);
+        }
+        return Optional.ofNullable(agent);
+    }
+
+    private CollectionAgent resolve(String location, String systemId) {
+        try {
+            // Attempt to resolve the systemId to an InetAddress
+            final InetAddress inetAddress = InetAddress.getByName(systemId);
+            final Optional<Integer> nodeId = interfaceToNodeCache.getFirstNodeId(location, inetAddress);
+            if (nodeId.isPresent()) {
+                // NOTE: This will throw a IllegalArgumentException if the
+                // nodeId/inetAddress pair does not exist in the database
+                return collectionAgentFactory.createCollectionAgent(Integer.toString(nodeId.get()), inetAddress);
+            }
+        } catch (UnknownHostException e) {
+            LOG.debug("Could not convert system id to address: {}", systemId);
+        }
+
+        // We were unable to build the agent by resolving the systemId,
+        // try finding a node with a matching label
+        return transactionTemplate.execute(status -> {
+            final OnmsNode node = Iterables.getFirst(nodeDao.findByLabel(systemId), null);
+            if (node != null) {
+                final OnmsIpInterface primaryInterface = node.getPrimaryInterface();
+                return collectionAgentFactory.createCollectionAgent(primaryInterface);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public String getName() {
+        return "Telemetryd:NodeResolver";
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        LOG.debug("Received event: {}", event.getUei());
+        switch (event.getUei()) {
+            case EventConstants.NODE_ADDED_EVENT_UEI:
+            case EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI:
+                unresolved.invalidateAll();
+                break;
+            case EventConstants.NODE_DELETED_EVENT_UEI:
+            case EventConstants.INTERFACE_DELETED_EVENT_UEI:
+                invalidateNode(event.getNodeid());
+                break;
+            case EventConstants.NODE_LABEL_CHANGED_EVENT_UEI:
+                invalidateNode(event.getNodeid());
+                unresolved.invalidateAll();
+                break;
+            case EventConstants.INTERFACE_REPARENTED_EVENT_UEI:
+                final Parm oldNodeId = event.getParm(EventConstants.PARM_OLD_NODEID);
+                if (oldNodeId != null && oldNodeId.getValue() != null) {
+                    try {
+                        invalidateNode(Long.valueOf(oldNodeId.getValue().getContent()));
+                    } catch (NumberFormatException e) {
+                        LOG.warn("Invalid {} parameter on event: {}", EventConstants.PARM_OLD_NODEID, event);
+                    }
+                }
+                invalidateNode(event.getNodeid());
+                unresolved.invalidateAll();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void invalidateNode(Long nodeId) {
+        if (nodeId == null) {
+            return;
+        }
+        agents.asMap().values().removeIf(agent -> agent.getNodeId() == nodeId.intValue());
+    }
+
+    public void setCollectionAgentFactory(CollectionAgentFactory collectionAgentFactory) {
+        this.collectionAgentFactory = collectionAgentFactory;
+    }
+
+    public void setInterfaceToNodeCache(InterfaceToNodeCache interfaceToNodeCache) {
+        this.interfaceToNodeCache = interfaceToNodeCache;
+    }
+
+    public void setNodeDao(NodeDao nodeDao) {
+        this.nodeDao = nodeDao;
+    }
+
+    public void setTransactionTemplate(TransactionOperations transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public void setEventSubscriptionService(EventSubscriptionService eventSubscriptionService) {
+        this.eventSubscriptionService = eventSubscriptionService;
+    }
+
+    public void setCacheTtlMs(long cacheTtlMs) {
+        this.cacheTtlMs = cacheTtlMs;
+    }
+
+    public void setNegativeCacheTtlMs(long negativeCacheTtlMs) {
+        this.negativeCacheTtlMs = negativeCacheTtlMs;
+    }
+
+    public void setCacheMaxSize(long cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
+    private static final class Key {
+        private final String location;
+        private final String systemId;
+
+        private Key(String location, String systemId) {
+            this.location = location;
+            this.systemId = Objects.requireNonNull(systemId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key that = (Key) o;
+            return Objects.equals(location, that.location)
+                    && Objects.equals(systemId, that.systemId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(location, systemId);
+        }
+    }
+}
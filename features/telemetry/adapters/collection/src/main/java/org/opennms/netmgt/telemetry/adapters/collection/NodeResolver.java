@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.adapters.collection;
+
+import java.util.Optional;
+
+import org.opennms.netmgt.collection.api.CollectionAgent;
+
+/**
+ * Resolves the system id reported by a telemetry source to the collection agent
+ * of the matching node.
+ */
+public interface NodeResolver {
+
+    /**
+     * Resolves the given system id to a collection agent.
+     *
+     * @param location location of the source that sent the message
+     * @param systemId system id reported by the source, either an address or a node label
+     * @return the agent, or an empty value if no node matches the system id
+     */
+    Optional<CollectionAgent> getCollectionAgent(String location, String systemId);
+
+}
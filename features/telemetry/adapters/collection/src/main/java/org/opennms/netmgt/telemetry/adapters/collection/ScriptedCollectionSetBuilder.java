@@ -70,8 +70,25 @@ public class ScriptedCollectionSetBuilder {
             throw new IllegalStateException("Cannot read script at '" + script + "'.");
         }
 
-        final String ext = Files.getFileExtension(script.getAbsolutePath());
+        final Compilable compilable = getCompilable(Files.getFileExtension(script.getAbsolutePath()), manager);
+        try (FileReader reader = new FileReader(script)) {
+            compiledScript = compilable.compile(reader);
+        }
+    }
+
+    /**
+     * Compiles the given source, using the engine associated with the given extension.
+     *
+     * @param extension file extension of the script i.e. groovy
+     * @param source contents of the script
+     * @param manager manager used to locate the engine
+     * @throws ScriptException if the script fails to compile
+     */
+    public ScriptedCollectionSetBuilder(String extension, String source, ScriptEngineManager manager) throws ScriptException {
+        compiledScript = getCompilable(extension, manager).compile(source);
+    }
 
+    private static Compilable getCompilable(String ext, ScriptEngineManager manager) {
         final ScriptEngine engine = manager.getEngineByExtension(ext);
         if (engine == null) {
             throw new IllegalStateException("No engine found for extension: " + ext);
@@ -80,17 +97,15 @@ public class ScriptedCollectionSetBuilder {
         if (!(engine instanceof Compilable)) {
             throw new IllegalStateException("Only engines that can compile scripts are supported.");
         }
-        final Compilable compilable = (Compilable) engine;
-        try (FileReader reader = new FileReader(script)) {
-            compiledScript = compilable.compile(reader);
-        }
+        return (Compilable) engine;
     }
 
     /**
      * Builds a collection set from the given message.
      *
      * WARNING: This method is not necessarily thread safe. This depends on the
-     * script, and the script engine that is being used.
+     * script, and the script engine that is being used. Use a
+     * {@link ScriptedCollectionSetBuilderPool} to share a script between threads.
      *
      * @param agent
      *            the agent associated with the collection set
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.adapters.collection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.opennms.features.osgi.script.OSGiScriptEngineManager;
+import org.opennms.netmgt.collection.api.CollectionAgent;
+import org.opennms.netmgt.collection.api.CollectionSet;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.google.common.io.Files;
+
+/**
+ * Shares a script between threads by keeping a pool of {@link ScriptedCollectionSetBuilder}s,
+ * each compiled with its own engine.
+ *
+ * The pool is pre-warmed with the given number of builders, and grows when more threads
+ * use it concurrently. The script is compiled again when its modification time changes.
+ * If this fails, the previous version of the script continues to be used.
+ *
+ * The time spent building collection sets is tracked for every script in the
+ * {@link #METRIC_REGISTRY_NAME} registry.
+ */
+public class ScriptedCollectionSetBuilderPool {
+    private static final Logger LOG = LoggerFactory.getLogger(ScriptedCollectionSetBuilderPool.class);
+
+    public static final String METRIC_REGISTRY_NAME = "org.opennms.netmgt.telemetry.scripts";
+
+    public static final long DEFAULT_RELOAD_CHECK_INTERVAL_MS = 5000;
+
+    private final File script;
+
+    private final ScriptEngineManager manager;
+
+    private final int size;
+
+    private final long reloadCheckIntervalMs;
+
+    private final Timer buildTimer;
+
+    private final Meter compiles;
+
+    private final Meter reloads;
+
+    private volatile Generation current;
+
+    private volatile long nextReloadCheck;
+
+    public ScriptedCollectionSetBuilderPool(File script, BundleContext bundleContext) {
+        this(script, bundleContext != null ? new OSGiScriptEngineManager(bundleContext) : new ScriptEngineManager(),
+                Runtime.getRuntime().availableProcessors(), DEFAULT_RELOAD_CHECK_INTERVAL_MS,
+                SharedMetricRegistries.getOrCreate(METRIC_REGISTRY_NAME));
+    }
+
+    public ScriptedCollectionSetBuilderPool(File script, ScriptEngineManager manager, int size, long reloadCheckIntervalMs, MetricRegistry metrics) {
+        this.script = Objects.requireNonNull(script);
+        this.manager = Objects.requireNonNull(manager);
+        this.size = size;
+        this.reloadCheckIntervalMs = reloadCheckIntervalMs;
+
+        buildTimer = metrics.timer(MetricRegistry.name(script.getName(), "build"));
+        compiles = metrics.meter(MetricRegistry.name(script.getName(), "compiles"));
+        reloads = metrics.meter(MetricRegistry.name(script.getName(), "reloads"));
+
+        current = load();
+        nextReloadCheck = System.currentTimeMillis() + reloadCheckIntervalMs;
+    }
+
+    /**
+     * Builds a collection set from the given message using one of the pooled builders.
+     *
+     * @param agent
+     *            the agent associated with the collection set
+     * @param message
+     *            the messaged passed to script containing the metrics
+     * @return a collection set
+     * @throws ScriptException if the script could not be compiled, or failed
+     */
+    public CollectionSet build(CollectionAgent agent, Object message) throws ScriptException {
+        checkForChanges();
+
+        final Generation generation = current;
+        final ScriptedCollectionSetBuilder builder = generation.borrow();
+        final Timer.Context ctx = buildTimer.time();
+        try {
+            return builder.build(agent, message);
+        } finally {
+            ctx.stop();
+            generation.release(builder);
+        }
+    }
+
+    private void checkForChanges() {
+        final long now = System.currentTimeMillis();
+        if (now < nextReloadCheck) {
+            return;
+        }
+        synchronized (this) {
+            if (now < nextReloadCheck) {
+                return;
+            }
+            nextReloadCheck = now + reloadCheckIntervalMs;
+
+            final long lastModified = script.lastModified();
+            if (lastModified == current.lastModified) {
+                return;
+            }
+
+            final Generation generation = load();
+            if (generation.source == null) {
+                if (current.source != null) {
+                    // Keep using the last good version of the script, but don't try this one again
+                    current = new Generation(generation.lastModified, current.source, current.idle);
+                } else {
+                    current = generation;
+                }
+                return;
+            }
+            LOG.info("Reloaded script '{}'.", script);
+            reloads.mark();
+            current = generation;
+        }
+    }
+
+    private Generation load() {
+        final long lastModified = script.lastModified();
+        final String source;
+        try {
+            source = Files.toString(script, Charset.defaultCharset());
+        } catch (IOException e) {
+            LOG.error("Failed to read script '{}'.", script, e);
+            return new Generation(lastModified, null, new ConcurrentLinkedQueue<>());
+        }
+
+        final Queue<ScriptedCollectionSetBuilder> idle = new ConcurrentLinkedQueue<>();
+        try {
+            for (int i = 0; i < size; i++) {
+                idle.add(compile(source));
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to compile script '{}'.", script, e);
+            return new Generation(lastModified, null, idle);
+        }
+        return new Generation(lastModified, source, idle);
+    }
+
+    private ScriptedCollectionSetBuilder compile(String source) throws ScriptException {
+        // The engine managers are not thread safe
+        synchronized (manager) {
+            compiles.mark();
+            return new ScriptedCollectionSetBuilder(Files.getFileExtension(script.getName()), source, manager);
+        }
+    }
+
+    private class Generation {
+        private final long lastModified;
+        private final String source;
+        private final Queue<ScriptedCollectionSetBuilder> idle;
+
+        private Generation(long lastModified, String source, Queue<ScriptedCollectionSetBuilder> idle) {
+            this.lastModified = lastModified;
+            this.source = source;
+            this.idle = idle;
+        }
+
+        private ScriptedCollectionSetBuilder borrow() throws ScriptException {
+            if (source == null) {
+                throw new ScriptException(String.format("Error compiling script '%s'. See logs for details.", script));
+            }
+            final ScriptedCollectionSetBuilder builder = idle.poll();
+            if (builder != null) {
+                return builder;
+            }
+            // All of the builders are in use, add another one to the pool
+            return compile(source);
+        }
+
+        private void release(ScriptedCollectionSetBuilder builder) {
+            // Builders from previous versions of the script are discarded
+            if (current.idle == idle) {
+                idle.offer(builder);
+            }
+        }
+    }
+}
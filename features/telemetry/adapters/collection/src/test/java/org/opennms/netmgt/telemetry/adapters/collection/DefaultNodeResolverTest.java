@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.adapters.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.collection.api.CollectionAgent;
+import org.opennms.netmgt.collection.api.CollectionAgentFactory;
+import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
+import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+public class DefaultNodeResolverTest {
+
+    private static final String LOCATION = "Default";
+
+    // Use address literals so that no name lookups are made
+    private static final String SYSTEM_ID = "10.0.0.1";
+
+    private CollectionAgentFactory collectionAgentFactory = mock(CollectionAgentFactory.class);
+
+    private InterfaceToNodeCache interfaceToNodeCache = mock(InterfaceToNodeCache.class);
+
+    private NodeDao nodeDao = mock(NodeDao.class);
+
+    private DefaultNodeResolver nodeResolver = new DefaultNodeResolver();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        final TransactionOperations transactionTemplate = mock(TransactionOperations.class);
+        when(transactionTemplate.execute(any(TransactionCallback.class)))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArguments()[0]).doInTransaction(null));
+        when(interfaceToNodeCache.getFirstNodeId(anyString(), any(InetAddress.class))).thenReturn(Optional.empty());
+        when(nodeDao.findByLabel(anyString())).thenReturn(Collections.emptyList());
+
+        nodeResolver.setCollectionAgentFactory(collectionAgentFactory);
+        nodeResolver.setInterfaceToNodeCache(interfaceToNodeCache);
+        nodeResolver.setNodeDao(nodeDao);
+        nodeResolver.setTransactionTemplate(transactionTemplate);
+        nodeResolver.init();
+    }
+
+    @Test
+    public void canCacheResolvedAddresses() throws Exception {
+        final InetAddress address = InetAddress.getByName(SYSTEM_ID);
+        final CollectionAgent agent = mockAgent(1);
+        when(interfaceToNodeCache.getFirstNodeId(LOCATION, address)).thenReturn(Optional.of(1));
+        when(collectionAgentFactory.createCollectionAgent("1", address)).thenReturn(agent);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Optional.of(agent), nodeResolver.getCollectionAgent(LOCATION, SYSTEM_ID));
+        }
+        verify(collectionAgentFactory, times(1)).createCollectionAgent("1", address);
+
+        // The location is part of the key
+        assertFalse(nodeResolver.getCollectionAgent("Elsewhere", SYSTEM_ID).isPresent());
+    }
+
+    @Test
+    public void canCacheUnresolvedLabels() {
+        for (int i = 0; i < 10; i++) {
+            assertFalse(nodeResolver.getCollectionAgent(LOCATION, SYSTEM_ID).isPresent());
+        }
+        verify(nodeDao, times(1)).findByLabel(SYSTEM_ID);
+
+        // Adding a node should clear the negative entries
+        final CollectionAgent agent = mockNodeWithLabel(1, SYSTEM_ID);
+        nodeResolver.onEvent(new EventBuilder(EventConstants.NODE_ADDED_EVENT_UEI, "test").setNodeid(1).getEvent());
+        assertEquals(Optional.of(agent), nodeResolver.getCollectionAgent(LOCATION, SYSTEM_ID));
+        verify(nodeDao, times(2)).findByLabel(SYSTEM_ID);
+    }
+
+    @Test
+    public void canInvalidateOnNodeEvents() {
+        final CollectionAgent agent = mockNodeWithLabel(1, SYSTEM_ID);
+        assertEquals(Optional.of(agent), nodeResolver.getCollectionAgent(LOCATION, SYSTEM_ID));
+
+        // Events for other nodes should not affect the entry
+        nodeResolver.onEvent(new EventBuilder(EventConstants.NODE_DELETED_EVENT_UEI, "test").setNodeid(2).getEvent());
+        assertEquals(Optional.of(agent), nodeResolver.getCollectionAgent(LOCATION, SYSTEM_ID));
+        verify(nodeDao, times(1)).findByLabel(SYSTEM_ID);
+
+        // Relabel the node
+        when(nodeDao.findByLabel(SYSTEM_ID)).thenReturn(Collections.emptyList());
+        nodeResolver.onEvent(new EventBuilder(EventConstants.NODE_LABEL_CHANGED_EVENT_UEI, "test").setNodeid(1).getEvent());
+        assertFalse(nodeResolver.getCollectionAgent(LOCATION, SYSTEM_ID).isPresent());
+        verify(nodeDao, times(2)).findByLabel(SYSTEM_ID);
+
+        // Now delete a node that was matched
+        final CollectionAgent otherAgent = mockNodeWithLabel(3, SYSTEM_ID);
+        nodeResolver.onEvent(new EventBuilder(EventConstants.NODE_ADDED_EVENT_UEI, "test").setNodeid(3).getEvent());
+        assertEquals(Optional.of(otherAgent), nodeResolver.getCollectionAgent(LOCATION, SYSTEM_ID));
+        nodeResolver.onEvent(new EventBuilder(EventConstants.NODE_DELETED_EVENT_UEI, "test").setNodeid(3).getEvent());
+        nodeResolver.getCollectionAgent(LOCATION, SYSTEM_ID);
+        verify(nodeDao, times(4)).findByLabel(SYSTEM_ID);
+    }
+
+    @Test
+    public void canInvalidateOnReparentedInterface() {
+        final CollectionAgent agent = mockNodeWithLabel(1, SYSTEM_ID);
+        assertEquals(Optional.of(agent), nodeResolver.getCollectionAgent(LOCATION, SYSTEM_ID));
+
+        nodeResolver.onEvent(new EventBuilder(EventConstants.INTERFACE_REPARENTED_EVENT_UEI, "test")
+                .setNodeid(2)
+                .addParam(EventConstants.PARM_OLD_NODEID, "1")
+                .getEvent());
+        assertTrue(nodeResolver.getCollectionAgent(LOCATION, SYSTEM_ID).isPresent());
+        verify(nodeDao, times(2)).findByLabel(SYSTEM_ID);
+    }
+
+    private CollectionAgent mockNodeWithLabel(int nodeId, String label) {
+        final OnmsIpInterface primaryInterface = new OnmsIpInterface();
+        final OnmsNode node = mock(OnmsNode.class);
+        when(node.getPrimaryInterface()).thenReturn(primaryInterface);
+        when(nodeDao.findByLabel(label)).thenReturn(Collections.singletonList(node));
+
+        final CollectionAgent agent = mockAgent(nodeId);
+        when(collectionAgentFactory.createCollectionAgent(eq(primaryInterface))).thenReturn(agent);
+        return agent;
+    }
+
+    private static CollectionAgent mockAgent(int nodeId) {
+        final CollectionAgent agent = mock(CollectionAgent.class);
+        when(agent.getNodeId()).thenReturn(nodeId);
+        return agent;
+    }
+}
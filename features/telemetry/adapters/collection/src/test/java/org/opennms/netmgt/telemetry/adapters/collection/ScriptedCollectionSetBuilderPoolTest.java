@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.adapters.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.netmgt.collection.api.CollectionAgent;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.Files;
+
+public class ScriptedCollectionSetBuilderPoolTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final CollectionAgent agent = mock(CollectionAgent.class);
+
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    private File script;
+
+    @Before
+    public void setUp() throws IOException {
+        script = tempFolder.newFile("test.groovy");
+    }
+
+    @Test
+    public void canReloadScript() throws Exception {
+        writeScript("msg.add('v1')");
+        final ScriptedCollectionSetBuilderPool pool = new ScriptedCollectionSetBuilderPool(script, new ScriptEngineManager(), 2, 0, metrics);
+        assertEquals("v1", build(pool));
+
+        writeScript("msg.add('v2')");
+        assertEquals("v2", build(pool));
+        assertEquals(1, metrics.meter("test.groovy.reloads").getCount());
+
+        // Keep using the last version of the script that compiled
+        writeScript("msg.add(");
+        assertEquals("v2", build(pool));
+        assertEquals(1, metrics.meter("test.groovy.reloads").getCount());
+
+        writeScript("msg.add('v3')");
+        assertEquals("v3", build(pool));
+        assertEquals(2, metrics.meter("test.groovy.reloads").getCount());
+        assertEquals(4, metrics.timer("test.groovy.build").getCount());
+    }
+
+    @Test(expected = ScriptException.class)
+    public void failsWhenScriptDoesNotCompile() throws Exception {
+        writeScript("msg.add(");
+        final ScriptedCollectionSetBuilderPool pool = new ScriptedCollectionSetBuilderPool(script, new ScriptEngineManager(), 2, 0, metrics);
+        build(pool);
+    }
+
+    @Test
+    public void canShareScriptBetweenThreads() throws Exception {
+        writeScript("msg.add('v1')");
+        final ScriptedCollectionSetBuilderPool pool = new ScriptedCollectionSetBuilderPool(script, new ScriptEngineManager(), 2,
+                ScriptedCollectionSetBuilderPool.DEFAULT_RELOAD_CHECK_INTERVAL_MS, metrics);
+        assertEquals(2, metrics.meter("test.groovy.compiles").getCount());
+
+        final int numThreads = 4;
+        final int numBuilds = 100;
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < numThreads * numBuilds; i++) {
+                futures.add(executor.submit(() -> build(pool)));
+            }
+            for (Future<String> future : futures) {
+                assertEquals("v1", future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(numThreads * numBuilds, metrics.timer("test.groovy.build").getCount());
+        // The pool only grows up to the number of threads using it concurrently
+        assertTrue(metrics.meter("test.groovy.compiles").getCount() <= numThreads);
+    }
+
+    private String build(ScriptedCollectionSetBuilderPool pool) throws ScriptException {
+        final List<String> msg = new ArrayList<>();
+        pool.build(agent, msg);
+        return msg.get(0);
+    }
+
+    private void writeScript(String source) throws IOException {
+        final long lastModified = script.lastModified();
+        Files.write(source, script, Charset.defaultCharset());
+        // Make sure the modification time changes, regardless of the resolution of the file system
+        script.setLastModified(lastModified + 1000);
+    }
+}
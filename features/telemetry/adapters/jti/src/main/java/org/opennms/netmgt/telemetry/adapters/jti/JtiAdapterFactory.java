@@ -48,10 +48,7 @@ public class JtiAdapterFactory extends AbstractCollectionAdapterFactory implemen
 
         final JtiGpbAdapter adapter = new JtiGpbAdapter();
         adapter.setProtocol(protocol);
-        adapter.setCollectionAgentFactory(getCollectionAgentFactory());
-        adapter.setInterfaceToNodeCache(getInterfaceToNodeCache());
-        adapter.setNodeDao(getNodeDao());
-        adapter.setTransactionTemplate(getTransactionTemplate());
+        adapter.setNodeResolver(getNodeResolver());
         adapter.setFilterDao(getFilterDao());
         adapter.setPersisterFactory(getPersisterFactory());
         adapter.setBundleContext(getBundleContext());
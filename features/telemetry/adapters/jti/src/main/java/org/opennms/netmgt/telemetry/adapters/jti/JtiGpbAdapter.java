@@ -28,20 +28,15 @@
 
 package org.opennms.netmgt.telemetry.adapters.jti;
 
-import com.google.common.collect.Iterables;
 import com.google.protobuf.ExtensionRegistry;
 import org.opennms.netmgt.collection.api.CollectionAgent;
-import org.opennms.netmgt.collection.api.CollectionAgentFactory;
 import org.opennms.netmgt.collection.api.CollectionSet;
-import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
-import org.opennms.netmgt.dao.api.NodeDao;
-import org.opennms.netmgt.model.OnmsIpInterface;
-import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.telemetry.adapters.api.TelemetryMessage;
 import org.opennms.netmgt.telemetry.adapters.api.TelemetryMessageLog;
 import org.opennms.netmgt.telemetry.adapters.collection.AbstractPersistingAdapter;
 import org.opennms.netmgt.telemetry.adapters.collection.CollectionSetWithAgent;
-import org.opennms.netmgt.telemetry.adapters.collection.ScriptedCollectionSetBuilder;
+import org.opennms.netmgt.telemetry.adapters.collection.NodeResolver;
+import org.opennms.netmgt.telemetry.adapters.collection.ScriptedCollectionSetBuilderPool;
 import org.opennms.netmgt.telemetry.adapters.jti.proto.CpuMemoryUtilizationOuterClass;
 import org.opennms.netmgt.telemetry.adapters.jti.proto.FirewallOuterClass;
 import org.opennms.netmgt.telemetry.adapters.jti.proto.LogicalPortOuterClass;
@@ -53,13 +48,8 @@ import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.TransactionCallback;
-import org.springframework.transaction.support.TransactionOperations;
 
 import java.io.File;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.Optional;
 
 /**
@@ -85,36 +75,13 @@ public class JtiGpbAdapter extends AbstractPersistingAdapter {
     }
 
     @Autowired
-    private CollectionAgentFactory collectionAgentFactory;
-
-    @Autowired
-    private InterfaceToNodeCache interfaceToNodeCache;
-
-    @Autowired
-    private NodeDao nodeDao;
-
-    @Autowired
-    private TransactionOperations transactionTemplate;
+    private NodeResolver nodeResolver;
 
     private String script;
 
     private BundleContext bundleContext;
 
-    private final ThreadLocal<ScriptedCollectionSetBuilder> scriptedCollectionSetBuilders = new ThreadLocal<ScriptedCollectionSetBuilder>() {
-        @Override
-        protected ScriptedCollectionSetBuilder initialValue() {
-            try {
-                if (bundleContext != null) {
-                    return new ScriptedCollectionSetBuilder(new File(script), bundleContext);
-                } else {
-                    return new ScriptedCollectionSetBuilder(new File(script));
-                }
-            } catch (Exception e) {
-                LOG.error("Failed to create builder for script '{}'.", script, e);
-                return null;
-            }
-        }
-    };
+    private volatile ScriptedCollectionSetBuilderPool scriptedCollectionSetBuilders;
 
     @Override
     public Optional<CollectionSetWithAgent> handleMessage(TelemetryMessage message, TelemetryMessageLog messageLog)
@@ -122,49 +89,25 @@ public class JtiGpbAdapter extends AbstractPersistingAdapter {
         final TelemetryTop.TelemetryStream jtiMsg = TelemetryTop.TelemetryStream.parseFrom(message.getByteArray(),
                 s_registry);
 
-        CollectionAgent agent = null;
-        try {
-            // Attempt to resolve the systemId to an InetAddress
-            final InetAddress inetAddress = InetAddress.getByName(jtiMsg.getSystemId());
-            final Optional<Integer> nodeId = interfaceToNodeCache.getFirstNodeId(messageLog.getLocation(), inetAddress);
-            if (nodeId.isPresent()) {
-                // NOTE: This will throw a IllegalArgumentException if the
-                // nodeId/inetAddress pair does not exist in the database
-                agent = collectionAgentFactory.createCollectionAgent(Integer.toString(nodeId.get()), inetAddress);
-            }
-        } catch (UnknownHostException e) {
-            LOG.debug("Could not convert system id to address: {}", jtiMsg.getSystemId());
-        }
-
-        if (agent == null) {
-            // We were unable to build the agent by resolving the systemId,
-            // try finding
-            // a node with a matching label
-            agent = transactionTemplate.execute(new TransactionCallback<CollectionAgent>() {
-                @Override
-                public CollectionAgent doInTransaction(TransactionStatus status) {
-                    final OnmsNode node = Iterables.getFirst(nodeDao.findByLabel(jtiMsg.getSystemId()), null);
-                    if (node != null) {
-                        final OnmsIpInterface primaryInterface = node.getPrimaryInterface();
-                        return collectionAgentFactory.createCollectionAgent(primaryInterface);
-                    }
-                    return null;
-                }
-            });
-        }
-
-        if (agent == null) {
+        final Optional<CollectionAgent> agent = nodeResolver.getCollectionAgent(messageLog.getLocation(), jtiMsg.getSystemId());
+        if (!agent.isPresent()) {
             LOG.warn("Unable to find node and inteface for system id: {}", jtiMsg.getSystemId());
             return Optional.empty();
         }
 
-        final ScriptedCollectionSetBuilder builder = scriptedCollectionSetBuilders.get();
-        if (builder == null) {
-            throw new Exception(String.format("Error compiling script '%s'. See logs for details.", script));
-        }
+        final CollectionSet collectionSet = getScriptedCollectionSetBuilders().build(agent.get(), jtiMsg);
+        return Optional.of(new CollectionSetWithAgent(agent.get(), collectionSet));
+    }
 
-        final CollectionSet collectionSet = builder.build(agent, jtiMsg);
-        return Optional.of(new CollectionSetWithAgent(agent, collectionSet));
+    private ScriptedCollectionSetBuilderPool getScriptedCollectionSetBuilders() {
+        if (scriptedCollectionSetBuilders == null) {
+            synchronized (this) {
+                if (scriptedCollectionSetBuilders == null) {
+                    scriptedCollectionSetBuilders = new ScriptedCollectionSetBuilderPool(new File(script), bundleContext);
+                }
+            }
+        }
+        return scriptedCollectionSetBuilders;
     }
 
     public String getScript() {
@@ -175,20 +118,8 @@ public class JtiGpbAdapter extends AbstractPersistingAdapter {
         this.script = script;
     }
 
-    public void setCollectionAgentFactory(CollectionAgentFactory collectionAgentFactory) {
-        this.collectionAgentFactory = collectionAgentFactory;
-    }
-
-    public void setInterfaceToNodeCache(InterfaceToNodeCache interfaceToNodeCache) {
-        this.interfaceToNodeCache = interfaceToNodeCache;
-    }
-
-    public void setNodeDao(NodeDao nodeDao) {
-        this.nodeDao = nodeDao;
-    }
-
-    public void setTransactionTemplate(TransactionOperations transactionTemplate) {
-        this.transactionTemplate = transactionTemplate;
+    public void setNodeResolver(NodeResolver nodeResolver) {
+        this.nodeResolver = nodeResolver;
     }
 
     public void setBundleContext(BundleContext bundleContext) {
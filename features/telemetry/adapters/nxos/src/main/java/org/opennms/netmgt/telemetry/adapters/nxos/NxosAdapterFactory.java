@@ -48,10 +48,7 @@ public class NxosAdapterFactory extends AbstractCollectionAdapterFactory impleme
     public Adapter createAdapter(Protocol protocol, Map<String, String> properties) {
         final NxosGpbAdapter adapter = new NxosGpbAdapter();
         adapter.setProtocol(protocol);
-        adapter.setCollectionAgentFactory(getCollectionAgentFactory());
-        adapter.setInterfaceToNodeCache(getInterfaceToNodeCache());
-        adapter.setNodeDao(getNodeDao());
-        adapter.setTransactionTemplate(getTransactionTemplate());
+        adapter.setNodeResolver(getNodeResolver());
         adapter.setFilterDao(getFilterDao());
         adapter.setPersisterFactory(getPersisterFactory());
         adapter.setBundleContext(getBundleContext());
@@ -29,32 +29,22 @@
 package org.opennms.netmgt.telemetry.adapters.nxos;
 
 import java.io.File;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.Optional;
 
 import org.opennms.netmgt.collection.api.CollectionAgent;
-import org.opennms.netmgt.collection.api.CollectionAgentFactory;
 import org.opennms.netmgt.collection.api.CollectionSet;
-import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
-import org.opennms.netmgt.dao.api.NodeDao;
-import org.opennms.netmgt.model.OnmsIpInterface;
-import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.telemetry.adapters.api.TelemetryMessage;
 import org.opennms.netmgt.telemetry.adapters.api.TelemetryMessageLog;
 import org.opennms.netmgt.telemetry.adapters.collection.AbstractPersistingAdapter;
 import org.opennms.netmgt.telemetry.adapters.collection.CollectionSetWithAgent;
-import org.opennms.netmgt.telemetry.adapters.collection.ScriptedCollectionSetBuilder;
+import org.opennms.netmgt.telemetry.adapters.collection.NodeResolver;
+import org.opennms.netmgt.telemetry.adapters.collection.ScriptedCollectionSetBuilderPool;
 import org.opennms.netmgt.telemetry.adapters.nxos.proto.TelemetryBis;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.TransactionCallback;
-import org.springframework.transaction.support.TransactionOperations;
 
-import com.google.common.collect.Iterables;
 import com.google.protobuf.ExtensionRegistry;
 
 public class NxosGpbAdapter extends AbstractPersistingAdapter {
@@ -68,36 +58,24 @@ public class NxosGpbAdapter extends AbstractPersistingAdapter {
     }
 
     @Autowired
-    private CollectionAgentFactory collectionAgentFactory;
-
-    @Autowired
-    private InterfaceToNodeCache interfaceToNodeCache;
-
-    @Autowired
-    private NodeDao nodeDao;
-
-    @Autowired
-    private TransactionOperations transactionTemplate;
+    private NodeResolver nodeResolver;
     
     private BundleContext bundleContext;
 
     private String script;
 
-    private final ThreadLocal<ScriptedCollectionSetBuilder> scriptedCollectionSetBuilders = new ThreadLocal<ScriptedCollectionSetBuilder>() {
-        @Override
-        protected ScriptedCollectionSetBuilder initialValue() {
-            try {
-                if (bundleContext != null) {
-                    return new ScriptedCollectionSetBuilder(new File(script), bundleContext);
-                } else {
-                    return new ScriptedCollectionSetBuilder(new File(script));
+    private volatile ScriptedCollectionSetBuilderPool scriptedCollectionSetBuilders;
+
+    private ScriptedCollectionSetBuilderPool getScriptedCollectionSetBuilders() {
+        if (scriptedCollectionSetBuilders == null) {
+            synchronized (this) {
+                if (scriptedCollectionSetBuilders == null) {
+                    scriptedCollectionSetBuilders = new ScriptedCollectionSetBuilderPool(new File(script), bundleContext);
                 }
-            } catch (Exception e) {
-                LOG.error("Failed to create builder for script '{}'.", script, e);
-                return null;
             }
         }
-    };
+        return scriptedCollectionSetBuilders;
+    }
 
     public String getScript() {
         return script;
@@ -112,61 +90,18 @@ public class NxosGpbAdapter extends AbstractPersistingAdapter {
     
         final TelemetryBis.Telemetry msg = TelemetryBis.Telemetry.parseFrom(message.getByteArray(), s_registry);
 
-        CollectionAgent agent = null;
-        try {
-            final InetAddress inetAddress = InetAddress.getByName(msg.getNodeIdStr());
-            final Optional<Integer> nodeId = interfaceToNodeCache.getFirstNodeId(messageLog.getLocation(), inetAddress);
-            if (nodeId.isPresent()) {
-                // NOTE: This will throw a IllegalArgumentException if the nodeId/inetAddress pair does not exist in the database
-                agent = collectionAgentFactory.createCollectionAgent(Integer.toString(nodeId.get()), inetAddress);
-            }
-        } catch (UnknownHostException e) {
-            LOG.debug("Could not convert system id to address: {}", msg.getNodeIdStr());
-        }
-
-        if (agent == null) {
-            // We were unable to build the agent by resolving the systemId, try finding
-            // a node with a matching label
-            agent = transactionTemplate.execute(new TransactionCallback<CollectionAgent>() {
-                @Override
-                public CollectionAgent doInTransaction(TransactionStatus status) {
-                    final OnmsNode node = Iterables.getFirst(nodeDao.findByLabel(msg.getNodeIdStr()), null);
-                    if (node != null) {
-                        final OnmsIpInterface primaryInterface = node.getPrimaryInterface();
-                        return collectionAgentFactory.createCollectionAgent(primaryInterface);
-                    }
-                    return null;
-                }
-            });
-        }
-
-        if (agent == null) {
+        final Optional<CollectionAgent> agent = nodeResolver.getCollectionAgent(messageLog.getLocation(), msg.getNodeIdStr());
+        if (!agent.isPresent()) {
             LOG.warn("Unable to find node and inteface for system id: {}", msg.getNodeIdStr());
             return Optional.empty();
         }
 
-        final ScriptedCollectionSetBuilder builder = scriptedCollectionSetBuilders.get();
-        if (builder == null) {
-            throw new Exception(String.format("Error compiling script '%s'. See logs for details.", script));
-        }
-        final CollectionSet collectionSet = builder.build(agent, msg);
-        return Optional.of(new CollectionSetWithAgent(agent, collectionSet));
-    }
-
-    public void setCollectionAgentFactory(CollectionAgentFactory collectionAgentFactory) {
-        this.collectionAgentFactory = collectionAgentFactory;
-    }
-
-    public void setInterfaceToNodeCache(InterfaceToNodeCache interfaceToNodeCache) {
-        this.interfaceToNodeCache = interfaceToNodeCache;
-    }
-
-    public void setNodeDao(NodeDao nodeDao) {
-        this.nodeDao = nodeDao;
+        final CollectionSet collectionSet = getScriptedCollectionSetBuilders().build(agent.get(), msg);
+        return Optional.of(new CollectionSetWithAgent(agent.get(), collectionSet));
     }
 
-    public void setTransactionTemplate(TransactionOperations transactionTemplate) {
-        this.transactionTemplate = transactionTemplate;
+    public void setNodeResolver(NodeResolver nodeResolver) {
+        this.nodeResolver = nodeResolver;
     }
 
     public void setBundleContext(BundleContext bundleContext) {
@@ -55,6 +55,10 @@ public class Protocol implements org.opennms.netmgt.telemetry.config.api.Protoco
     private Integer batchIntervalMs;
     @XmlAttribute(name="queue-size")
     private Integer queueSize;
+    @XmlAttribute(name="adapter-threads")
+    private Integer adapterThreads;
+    @XmlAttribute(name="adapter-queue-size")
+    private Integer adapterQueueSize;
     @XmlElement(name="listener")
     private List<Listener> listeners = new ArrayList<>();
     @XmlElement(name="adapter")
@@ -123,6 +127,22 @@ public class Protocol implements org.opennms.netmgt.telemetry.config.api.Protoco
         this.queueSize = queueSize;
     }
 
+    public Optional<Integer> getAdapterThreads() {
+        return Optional.ofNullable(adapterThreads);
+    }
+
+    public void setAdapterThreads(Integer adapterThreads) {
+        this.adapterThreads = adapterThreads;
+    }
+
+    public Optional<Integer> getAdapterQueueSize() {
+        return Optional.ofNullable(adapterQueueSize);
+    }
+
+    public void setAdapterQueueSize(Integer adapterQueueSize) {
+        this.adapterQueueSize = adapterQueueSize;
+    }
+
     public List<Listener> getListeners() {
         return listeners;
     }
@@ -160,6 +180,8 @@ public class Protocol implements org.opennms.netmgt.telemetry.config.api.Protoco
                 Objects.equals(batchSize, protocol.batchSize) &&
                 Objects.equals(batchIntervalMs, protocol.batchIntervalMs) &&
                 Objects.equals(queueSize, protocol.queueSize) &&
+                Objects.equals(adapterThreads, protocol.adapterThreads) &&
+                Objects.equals(adapterQueueSize, protocol.adapterQueueSize) &&
                 Objects.equals(listeners, protocol.listeners) &&
                 Objects.equals(adapters, protocol.adapters) &&
                 Objects.equals(packages, protocol.packages);
@@ -167,7 +189,7 @@ public class Protocol implements org.opennms.netmgt.telemetry.config.api.Protoco
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, description, enabled, numThreads, batchSize, batchIntervalMs, queueSize, listeners, adapters, packages);
+        return Objects.hash(name, description, enabled, numThreads, batchSize, batchIntervalMs, queueSize, adapterThreads, adapterQueueSize, listeners, adapters, packages);
     }
 
     @Override
@@ -180,6 +202,8 @@ public class Protocol implements org.opennms.netmgt.telemetry.config.api.Protoco
                 ", batchSize=" + batchSize +
                 ", batchIntervalMs=" + batchIntervalMs +
                 ", queueSize=" + queueSize +
+                ", adapterThreads=" + adapterThreads +
+                ", adapterQueueSize=" + adapterQueueSize +
                 ", listeners=" + listeners +
                 ", adapters=" + adapters +
                 ", packages=" + packages +
@@ -57,6 +57,8 @@ public class TelemetrydConfigTest extends XmlTestNoCastor<TelemetrydConfiguratio
         jtiProtocol.setName("JTI");
         jtiProtocol.setDescription("Junos Telemetry Interface (JTI)");
         jtiProtocol.setEnabled(false);
+        jtiProtocol.setAdapterThreads(4);
+        jtiProtocol.setAdapterQueueSize(1000);
         telemetrydConfig.getProtocols().add(jtiProtocol);
 
         Listener udpListener = new Listener();
@@ -88,7 +90,7 @@ public class TelemetrydConfigTest extends XmlTestNoCastor<TelemetrydConfiguratio
         return Arrays.asList(new Object[][] { {
                 telemetrydConfig,
                 "<telemetryd-config>\n" +
-                "  <protocol name=\"JTI\" description=\"Junos Telemetry Interface (JTI)\" enabled=\"false\">\n" +
+                "  <protocol name=\"JTI\" description=\"Junos Telemetry Interface (JTI)\" enabled=\"false\" adapter-threads=\"4\" adapter-queue-size=\"1000\">\n" +
                 "    <listener name=\"JTI-UDP-50000\" class-name=\"org.opennms.netmgt.collection.streaming.udp.UdpListener\">\n" +
                 "      <parameter key=\"port\" value=\"50000\"/>\n" +
                 "    </listener>\n" +
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.daemon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.logging.Logging;
+import org.opennms.netmgt.telemetry.adapters.api.TelemetryMessageLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Hands the message logs of a protocol off to a fixed set of worker threads,
+ * so that the adapters hold up neither the Sink consumer, nor each other.
+ *
+ * Every message log is queued once per adapter. The work is partitioned over
+ * the workers by the source address of the message log and by adapter, so
+ * that the message logs of a given exporter are handled by a given adapter in
+ * the order in which they were received, while the exporters and the adapters
+ * are spread over all of the workers.
+ *
+ * Every worker has a bounded queue. When it is full, the message log is
+ * dropped for that adapter instead of blocking the Sink consumer.
+ */
+public class AdapterPipeline implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(AdapterPipeline.class);
+
+    /**
+     * How long the workers wait for a message log before checking whether
+     * or not the pipeline was closed.
+     */
+    private static final long POLL_TIMEOUT_MS = 1000L;
+
+    private final List<MeteredAdapter> adapters;
+
+    private final List<Worker> workers;
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param name the name of the protocol, used to name the worker threads and the metrics
+     * @param adapters the adapters that handle every message log
+     * @param numThreads the number of worker threads
+     * @param queueSize the number of message logs each worker can hold
+     * @param metrics the registry in which the queue size gauge is created
+     */
+    public AdapterPipeline(String name, List<MeteredAdapter> adapters, int numThreads, int queueSize, MetricRegistry metrics) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be >= 1");
+        }
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize must be >= 1");
+        }
+        this.adapters = new ArrayList<>(adapters);
+
+        final ThreadFactory threadFactory = new LogPreservingThreadFactory("Telemetryd-" + name, Integer.MAX_VALUE);
+        workers = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            final Worker worker = new Worker(queueSize);
+            final Thread thread = threadFactory.newThread(worker);
+            thread.setDaemon(true);
+            workers.add(worker);
+            thread.start();
+        }
+
+        metrics.register(MetricRegistry.name(name, "adapters", "queued"), (Gauge<Integer>) this::getQueueSize);
+    }
+
+    /**
+     * Queues the message log for all of the adapters.
+     *
+     * @param messageLog the message log
+     * @param receivedAt when the message log was received, see {@link System#nanoTime()}
+     */
+    public void submit(TelemetryMessageLog messageLog, long receivedAt) {
+        final int sourceHash = Objects.hashCode(messageLog.getSourceAddress());
+        for (int i = 0; i < adapters.size(); i++) {
+            final MeteredAdapter adapter = adapters.get(i);
+            if (closed) {
+                adapter.dropped();
+                continue;
+            }
+            final Worker worker = workers.get(Math.floorMod(31 * sourceHash + i, workers.size()));
+            if (!worker.queue.offer(new Task(adapter, messageLog, receivedAt))) {
+                LOG.debug("The queue is full, dropping message log from {} for adapter {}.", messageLog.getSourceAddress(), adapter);
+                adapter.dropped();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting new message logs. The workers exit once their queues are drained.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * The number of message logs waiting to be handled, per adapter.
+     */
+    public int getQueueSize() {
+        int size = 0;
+        for (Worker worker : workers) {
+            size += worker.queue.size();
+        }
+        return size;
+    }
+
+    private static class Task {
+        private final MeteredAdapter adapter;
+        private final TelemetryMessageLog messageLog;
+        private final long receivedAt;
+
+        private Task(MeteredAdapter adapter, TelemetryMessageLog messageLog, long receivedAt) {
+            this.adapter = adapter;
+            this.messageLog = messageLog;
+            this.receivedAt = receivedAt;
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final BlockingQueue<Task> queue;
+
+        private Worker(int queueSize) {
+            queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        @Override
+        public void run() {
+            try (Logging.MDCCloseable mdc = Logging.withPrefixCloseable(Telemetryd.LOG_PREFIX)) {
+                while (true) {
+                    final Task task;
+                    try {
+                        task = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    if (task == null) {
+                        if (closed) {
+                            // The queue was drained after the pipeline was closed
+                            return;
+                        }
+                        continue;
+                    }
+
+                    try {
+                        task.adapter.handleMessageLog(task.messageLog, task.receivedAt);
+                    } catch (Throwable t) {
+                        LOG.error("Unexpected error while handling message log with adapter {}", task.adapter, t);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.daemon;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.netmgt.telemetry.adapters.api.Adapter;
+import org.opennms.netmgt.telemetry.adapters.api.TelemetryMessageLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Wraps an {@link Adapter} and keeps track of the number of message logs
+ * it handled, failed to handle or that were dropped before reaching it,
+ * as well as of the time it took to handle them.
+ */
+public class MeteredAdapter {
+    private static final Logger LOG = LoggerFactory.getLogger(MeteredAdapter.class);
+
+    private final String name;
+    private final Adapter adapter;
+
+    private final Timer handleTimer;
+    private final Timer latencyTimer;
+    private final Meter failedMeter;
+    private final Meter droppedMeter;
+
+    /**
+     * @param protocol the name of the protocol, used to prefix the names of the metrics
+     * @param name the name of the adapter, as defined in the configuration
+     * @param adapter the adapter
+     * @param metrics the registry in which the metrics of the adapter are created
+     */
+    public MeteredAdapter(String protocol, String name, Adapter adapter, MetricRegistry metrics) {
+        this.name = Objects.requireNonNull(name);
+        this.adapter = Objects.requireNonNull(adapter);
+        // Time spent in the adapter
+        handleTimer = metrics.timer(MetricRegistry.name(protocol, "adapters", name, "handle"));
+        // Time from the reception of the message log, including any time spent waiting in a queue
+        latencyTimer = metrics.timer(MetricRegistry.name(protocol, "adapters", name, "latency"));
+        failedMeter = metrics.meter(MetricRegistry.name(protocol, "adapters", name, "failed"));
+        droppedMeter = metrics.meter(MetricRegistry.name(protocol, "adapters", name, "dropped"));
+    }
+
+    /**
+     * Handles the message log with the adapter.
+     *
+     * @param messageLog the message log
+     * @param receivedAt when the message log was received, see {@link System#nanoTime()}
+     */
+    public void handleMessageLog(TelemetryMessageLog messageLog, long receivedAt) {
+        try (Timer.Context ctx = handleTimer.time()) {
+            adapter.handleMessageLog(messageLog);
+        } catch (RuntimeException e) {
+            failedMeter.mark();
+            LOG.warn("Adapter: {} failed to handle message log: {}. Skipping.", adapter, messageLog, e);
+        } finally {
+            latencyTimer.update(System.nanoTime() - receivedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Accounts for a message log that was dropped before reaching the adapter.
+     */
+    public void dropped() {
+        droppedMeter.mark();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Adapter getAdapter() {
+        return adapter;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
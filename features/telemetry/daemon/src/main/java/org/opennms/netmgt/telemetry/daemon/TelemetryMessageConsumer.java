@@ -45,6 +45,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
 
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+
 import javax.annotation.PostConstruct;
 
 import java.lang.reflect.Constructor;
@@ -52,9 +55,23 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+/**
+ * Hands the message logs received by the Sink consumer of a protocol to its adapters.
+ *
+ * By default, the adapters handle the message logs one after another on the
+ * Sink consumer thread. When the protocol defines a number of adapter threads,
+ * the message logs are handed off to an {@link AdapterPipeline} instead.
+ *
+ * The metrics of the adapters are exposed via JMX in the
+ * {@value #METRICS_DOMAIN} domain.
+ */
 public class TelemetryMessageConsumer implements MessageConsumer<TelemetryMessage, TelemetryProtos.TelemetryMessageLog> {
     private final Logger LOG = LoggerFactory.getLogger(TelemetryMessageConsumer.class);
 
+    public static final String METRICS_DOMAIN = "org.opennms.netmgt.telemetry";
+
+    public static final int DEFAULT_ADAPTER_QUEUE_SIZE = 10000;
+
     @Autowired
     private ApplicationContext applicationContext;
 
@@ -63,7 +80,11 @@ public class TelemetryMessageConsumer implements MessageConsumer<TelemetryMessag
 
     private final Protocol protocolDef;
     private final TelemetrySinkModule sinkModule;
-    private final List<Adapter> adapters;
+    private final List<MeteredAdapter> adapters;
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private JmxReporter reporter;
+    private volatile AdapterPipeline pipeline;
 
     public TelemetryMessageConsumer(Protocol protocol, TelemetrySinkModule sinkModule) throws Exception {
         this.protocolDef = Objects.requireNonNull(protocol);
@@ -76,25 +97,51 @@ public class TelemetryMessageConsumer implements MessageConsumer<TelemetryMessag
         // Pre-emptively instantiate the adapters
         for (org.opennms.netmgt.telemetry.config.model.Adapter adapterDef : protocolDef.getAdapters()) {
             try {
-                adapters.add(buildAdapter(adapterDef));
+                adapters.add(new MeteredAdapter(protocolDef.getName(), adapterDef.getName(), buildAdapter(adapterDef), metrics));
             } catch (Exception e) {
                 throw new Exception("Failed to create adapter from definition: " + adapterDef, e);
             }
         }
+
+        final int adapterThreads = protocolDef.getAdapterThreads().orElse(0);
+        if (adapterThreads > 0) {
+            pipeline = new AdapterPipeline(protocolDef.getName(), adapters, adapterThreads,
+                    protocolDef.getAdapterQueueSize().orElse(DEFAULT_ADAPTER_QUEUE_SIZE), metrics);
+        }
+
+        reporter = JmxReporter.forRegistry(metrics)
+                .inDomain(METRICS_DOMAIN)
+                .build();
+        reporter.start();
+    }
+
+    /**
+     * Stops the adapter threads, if any, and unregisters the metrics.
+     */
+    public void destroy() {
+        if (pipeline != null) {
+            pipeline.close();
+            pipeline = null;
+        }
+        if (reporter != null) {
+            reporter.close();
+            reporter = null;
+        }
     }
 
     @Override
     public void handleMessage(TelemetryProtos.TelemetryMessageLog messageLog) {
         try (Logging.MDCCloseable mdc = Logging.withPrefixCloseable(Telemetryd.LOG_PREFIX)) {
             LOG.trace("Received message log: {}", messageLog);
+            final long receivedAt = System.nanoTime();
+            final AdapterPipeline pipeline = this.pipeline;
+            if (pipeline != null) {
+                pipeline.submit(messageLog, receivedAt);
+                return;
+            }
             // Handle the message with all of the adapters
-            for (Adapter adapter : adapters) {
-                try {
-                    adapter.handleMessageLog(messageLog);
-                } catch (RuntimeException e) {
-                    LOG.warn("Adapter: {} failed to handle message log: {}. Skipping.", adapter, messageLog);
-                    continue;
-                }
+            for (MeteredAdapter adapter : adapters) {
+                adapter.handleMessageLog(messageLog, receivedAt);
             }
         }
     }
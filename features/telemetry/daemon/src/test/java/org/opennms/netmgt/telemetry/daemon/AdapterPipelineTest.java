@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.daemon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.opennms.netmgt.telemetry.adapters.api.Adapter;
+import org.opennms.netmgt.telemetry.adapters.api.TelemetryMessage;
+import org.opennms.netmgt.telemetry.adapters.api.TelemetryMessageLog;
+import org.opennms.netmgt.telemetry.config.api.Protocol;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class AdapterPipelineTest {
+
+    /**
+     * Verifies that the message logs of a given source are handled
+     * by every adapter in the order in which they were submitted.
+     */
+    @Test(timeout=30000)
+    public void canPreserveOrderPerSource() throws InterruptedException {
+        final int numSources = 10;
+        final int numLogsPerSource = 500;
+        final CountDownLatch done = new CountDownLatch(2 * numSources * numLogsPerSource);
+        final RecordingAdapter adapter1 = new RecordingAdapter(done);
+        final RecordingAdapter adapter2 = new RecordingAdapter(done);
+
+        final MetricRegistry metrics = new MetricRegistry();
+        final List<MeteredAdapter> adapters = new ArrayList<>();
+        adapters.add(new MeteredAdapter("test", "adapter1", adapter1, metrics));
+        adapters.add(new MeteredAdapter("test", "adapter2", adapter2, metrics));
+
+        final AdapterPipeline pipeline = new AdapterPipeline("test", adapters, 4, numSources * numLogsPerSource, metrics);
+        try {
+            for (int i = 0; i < numLogsPerSource; i++) {
+                for (int source = 0; source < numSources; source++) {
+                    pipeline.submit(new MockMessageLog("10.0.0." + source, i), System.nanoTime());
+                }
+            }
+            done.await();
+        } finally {
+            pipeline.close();
+        }
+
+        for (RecordingAdapter adapter : new RecordingAdapter[] { adapter1, adapter2 }) {
+            assertEquals(numSources, adapter.sequences.size());
+            for (List<Integer> sequences : adapter.sequences.values()) {
+                assertEquals(numLogsPerSource, sequences.size());
+                for (int i = 0; i < numLogsPerSource; i++) {
+                    assertEquals(Integer.valueOf(i), sequences.get(i));
+                }
+            }
+        }
+        assertEquals(numSources * numLogsPerSource, metrics.timer("test.adapters.adapter1.handle").getCount());
+        assertEquals(0, metrics.meter("test.adapters.adapter1.dropped").getCount());
+    }
+
+    /**
+     * Verifies that message logs are dropped, instead of blocking the
+     * caller, when the queue is full.
+     */
+    @Test(timeout=30000)
+    public void canShedLoad() throws InterruptedException {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Adapter blockingAdapter = new MockAdapter() {
+            @Override
+            public void handleMessageLog(TelemetryMessageLog messageLog) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        final MetricRegistry metrics = new MetricRegistry();
+        final AdapterPipeline pipeline = new AdapterPipeline("test", Collections.singletonList(new MeteredAdapter("test", "blocking", blockingAdapter, metrics)), 1, 1, metrics);
+        try {
+            // Occupy the only worker
+            pipeline.submit(new MockMessageLog("10.0.0.1", 0), System.nanoTime());
+            assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+            // The first fills the queue, the others are dropped
+            for (int i = 1; i <= 3; i++) {
+                pipeline.submit(new MockMessageLog("10.0.0.1", i), System.nanoTime());
+            }
+            assertEquals(1, pipeline.getQueueSize());
+            assertEquals(2, metrics.meter("test.adapters.blocking.dropped").getCount());
+        } finally {
+            release.countDown();
+            pipeline.close();
+        }
+    }
+
+    private static abstract class MockAdapter implements Adapter {
+        @Override
+        public void setProtocol(Protocol protocol) {
+            // pass
+        }
+    }
+
+    private static class RecordingAdapter extends MockAdapter {
+        private final Map<String, List<Integer>> sequences = new ConcurrentHashMap<>();
+        private final CountDownLatch done;
+
+        private RecordingAdapter(CountDownLatch done) {
+            this.done = done;
+        }
+
+        @Override
+        public void handleMessageLog(TelemetryMessageLog messageLog) {
+            // Lists are only ever modified by the worker handling the source
+            sequences.computeIfAbsent(messageLog.getSourceAddress(), k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(((MockMessageLog)messageLog).sequence);
+            done.countDown();
+        }
+    }
+
+    private static class MockMessageLog implements TelemetryMessageLog {
+        private final String sourceAddress;
+        private final int sequence;
+
+        private MockMessageLog(String sourceAddress, int sequence) {
+            this.sourceAddress = sourceAddress;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public String getLocation() {
+            return "Default";
+        }
+
+        @Override
+        public String getSystemId() {
+            return "00000000-0000-0000-0000-000000ddba11";
+        }
+
+        @Override
+        public int getSourcePort() {
+            return 50000;
+        }
+
+        @Override
+        public String getSourceAddress() {
+            return sourceAddress;
+        }
+
+        @Override
+        public List<? extends TelemetryMessage> getMessageList() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -28,6 +28,8 @@
 
 package org.opennms.netmgt.alarmd;
 
+import java.util.concurrent.locks.Lock;
+
 import org.hibernate.Hibernate;
 import org.opennms.netmgt.dao.api.AlarmDao;
 import org.opennms.netmgt.dao.api.EventDao;
@@ -59,6 +61,7 @@ public class AlarmPersisterImpl implements AlarmPersister {
     private EventDao m_eventDao;
     private EventForwarder m_eventForwarder;
     private TransactionOperations m_transactionOperations;
+    private AlarmReductionKeyCache m_reductionKeyCache;
 
     private static class OnmsAlarmAndLifecycleEvent {
         private final OnmsAlarm m_alarm;
@@ -90,13 +93,32 @@ public class AlarmPersisterImpl implements AlarmPersister {
             LOG.debug("process: {}; nodeid: {}; ipaddr: {}; serviceid: {}", event.getUei(), event.getNodeid(), event.getInterface(), event.getService());
         }
 
-        // Process the alarm inside a transaction
-        OnmsAlarmAndLifecycleEvent alarmAndEvent = m_transactionOperations.execute(new TransactionCallback<OnmsAlarmAndLifecycleEvent>() {
-            @Override
-            public OnmsAlarmAndLifecycleEvent doInTransaction(TransactionStatus arg0) {
-                return addOrReduceEventAsAlarm(event);
+        // Hold the lock for the reduction key until the transaction has been committed
+        // so that concurrent events with the same key never create two alarms
+        final String reductionKey = event.getAlarmData().getReductionKey();
+        final Lock lock = m_reductionKeyCache != null && reductionKey != null ? m_reductionKeyCache.getLock(reductionKey) : null;
+        if (lock != null) {
+            lock.lock();
+        }
+
+        final OnmsAlarmAndLifecycleEvent alarmAndEvent;
+        try {
+            // Process the alarm inside a transaction
+            alarmAndEvent = m_transactionOperations.execute(new TransactionCallback<OnmsAlarmAndLifecycleEvent>() {
+                @Override
+                public OnmsAlarmAndLifecycleEvent doInTransaction(TransactionStatus arg0) {
+                    return addOrReduceEventAsAlarm(event);
+                }
+            });
+
+            if (m_reductionKeyCache != null) {
+                m_reductionKeyCache.put(alarmAndEvent.getAlarm());
+            }
+        } finally {
+            if (lock != null) {
+                lock.unlock();
             }
-        });
+        }
 
         // Send the event outside of the database transaction
         m_eventForwarder.sendNow(alarmAndEvent.getEvent());
@@ -111,7 +133,7 @@ public class AlarmPersisterImpl implements AlarmPersister {
 
         String reductionKey = event.getAlarmData().getReductionKey();
         LOG.debug("addOrReduceEventAsAlarm: looking for existing reduction key: {}", reductionKey);
-        OnmsAlarm alarm = m_alarmDao.findByReductionKey(reductionKey);
+        OnmsAlarm alarm = m_reductionKeyCache != null ? m_reductionKeyCache.findByReductionKey(reductionKey) : m_alarmDao.findByReductionKey(reductionKey);
 
         EventBuilder ebldr = null;
         if (alarm == null) {
@@ -319,4 +341,12 @@ public class AlarmPersisterImpl implements AlarmPersister {
     public EventForwarder getEventForwarder() {
         return m_eventForwarder;
     }
+
+    public void setReductionKeyCache(AlarmReductionKeyCache reductionKeyCache) {
+        m_reductionKeyCache = reductionKeyCache;
+    }
+
+    public AlarmReductionKeyCache getReductionKeyCache() {
+        return m_reductionKeyCache;
+    }
 }
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.alarmd;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+import org.opennms.netmgt.dao.api.AlarmDao;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.Assert;
+
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Keeps track of the ID of the alarm that is associated with each reduction key,
+ * so that reductions can load the alarm by primary key instead of querying
+ * the alarms table by reduction key.
+ *
+ * The database remains the source of truth: alarms are also updated and deleted
+ * outside of Alarmd (acknowledgements, automations, the UI, ...) so every hit is
+ * verified against the alarm that was loaded and stale entries are dropped.
+ *
+ * The cache also hands out a lock per reduction key. Holding it for the duration
+ * of the transaction prevents two threads from creating separate alarms for the
+ * same reduction key, while different reduction keys can be processed in parallel.
+ */
+public class AlarmReductionKeyCache implements InitializingBean {
+    private static final Logger LOG = LoggerFactory.getLogger(AlarmReductionKeyCache.class);
+
+    private static final int NUM_STRIPE_LOCKS = Integer.getInteger("org.opennms.alarmd.numStripeLocks", 64);
+
+    private final Map<String, Integer> m_alarmIdsByReductionKey = new ConcurrentHashMap<>();
+
+    private final Striped<Lock> m_lockStripes = Striped.lock(NUM_STRIPE_LOCKS);
+
+    private AlarmDao m_alarmDao;
+
+    private TransactionOperations m_transactionOperations;
+
+    @Override
+    public void afterPropertiesSet() {
+        Assert.notNull(m_alarmDao, "alarmDao must be set");
+        Assert.notNull(m_transactionOperations, "transactionOperations must be set");
+        load();
+    }
+
+    /**
+     * Replaces the content of the cache with the reduction keys
+     * of all of the alarms that are currently in the database.
+     */
+    public void load() {
+        final Map<String, Integer> alarmIdsByReductionKey = m_transactionOperations.execute(status -> m_alarmDao.getAlarmIdsByReductionKey());
+        m_alarmIdsByReductionKey.clear();
+        m_alarmIdsByReductionKey.putAll(alarmIdsByReductionKey);
+        LOG.info("Loaded {} reduction keys.", m_alarmIdsByReductionKey.size());
+    }
+
+    /**
+     * Returns the lock that guards the given reduction key.
+     */
+    public Lock getLock(final String reductionKey) {
+        return m_lockStripes.get(Objects.requireNonNull(reductionKey));
+    }
+
+    /**
+     * Finds the alarm with the given reduction key. This must be called
+     * within a transaction.
+     *
+     * @return the alarm, or null if no alarm exists with the given reduction key
+     */
+    public OnmsAlarm findByReductionKey(final String reductionKey) {
+        final Integer alarmId = m_alarmIdsByReductionKey.get(reductionKey);
+        if (alarmId != null) {
+            final OnmsAlarm alarm = m_alarmDao.get(alarmId);
+            if (alarm != null && reductionKey.equals(alarm.getReductionKey())) {
+                return alarm;
+            }
+            LOG.debug("findByReductionKey: alarm with id {} no longer matches reduction key {}; removing it from the cache.", alarmId, reductionKey);
+            m_alarmIdsByReductionKey.remove(reductionKey, alarmId);
+        }
+
+        // Not cached, or cached entry was stale
+        final OnmsAlarm alarm = m_alarmDao.findByReductionKey(reductionKey);
+        if (alarm != null) {
+            m_alarmIdsByReductionKey.put(reductionKey, alarm.getId());
+        }
+        return alarm;
+    }
+
+    /**
+     * Associates the given alarm with its reduction key. This should
+     * only be called once the alarm has been committed.
+     */
+    public void put(final OnmsAlarm alarm) {
+        if (alarm.getReductionKey() != null && alarm.getId() != null) {
+            m_alarmIdsByReductionKey.put(alarm.getReductionKey(), alarm.getId());
+        }
+    }
+
+    public int size() {
+        return m_alarmIdsByReductionKey.size();
+    }
+
+    public AlarmDao getAlarmDao() {
+        return m_alarmDao;
+    }
+
+    public void setAlarmDao(AlarmDao alarmDao) {
+        m_alarmDao = alarmDao;
+    }
+
+    public TransactionOperations getTransactionOperations() {
+        return m_transactionOperations;
+    }
+
+    public void setTransactionOperations(TransactionOperations transactionOperations) {
+        m_transactionOperations = transactionOperations;
+    }
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.alarmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.dao.api.AlarmDao;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+public class AlarmReductionKeyCacheTest {
+
+    private static final String REDUCTION_KEY = "uei.opennms.org/nodes/nodeDown::1";
+
+    /**
+     * The alarms that are in the "database", by id.
+     */
+    private final Map<Integer, OnmsAlarm> m_alarms = new ConcurrentHashMap<>();
+
+    private final AtomicInteger m_nextId = new AtomicInteger();
+
+    private final AlarmDao m_alarmDao = mock(AlarmDao.class);
+
+    private final AlarmReductionKeyCache m_cache = new AlarmReductionKeyCache();
+
+    @Before
+    public void setUp() {
+        when(m_alarmDao.get(anyInt())).thenAnswer(inv -> m_alarms.get(inv.getArguments()[0]));
+        when(m_alarmDao.findByReductionKey(anyString())).thenAnswer(inv -> m_alarms.values().stream()
+                .filter(a -> inv.getArguments()[0].equals(a.getReductionKey()))
+                .findFirst().orElse(null));
+        when(m_alarmDao.getAlarmIdsByReductionKey()).thenAnswer(inv -> m_alarms.values().stream()
+                .collect(Collectors.toMap(OnmsAlarm::getReductionKey, OnmsAlarm::getId)));
+
+        final TransactionOperations transactionOperations = mock(TransactionOperations.class);
+        when(transactionOperations.execute(any())).thenAnswer(inv -> ((TransactionCallback<?>)inv.getArguments()[0]).doInTransaction(null));
+
+        m_cache.setAlarmDao(m_alarmDao);
+        m_cache.setTransactionOperations(transactionOperations);
+        m_cache.afterPropertiesSet();
+    }
+
+    /**
+     * Concurrent lookups and inserts of the same reduction key, done in the
+     * same way as {@link AlarmPersisterImpl}, must create a single alarm.
+     */
+    @Test(timeout=30000)
+    public void canLookupAndInsertSameReductionKeyConcurrently() throws Exception {
+        final int numThreads = 8;
+        final int numIterations = 100;
+        final AtomicInteger created = new AtomicInteger();
+        final Set<Integer> alarmIds = ConcurrentHashMap.newKeySet();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < numIterations; j++) {
+                        final Lock lock = m_cache.getLock(REDUCTION_KEY);
+                        lock.lock();
+                        try {
+                            OnmsAlarm alarm = m_cache.findByReductionKey(REDUCTION_KEY);
+                            if (alarm == null) {
+                                alarm = createAlarm(REDUCTION_KEY);
+                                created.incrementAndGet();
+                            }
+                            m_cache.put(alarm);
+                            alarmIds.add(alarm.getId());
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, created.get());
+        assertEquals(1, alarmIds.size());
+        assertEquals(1, m_cache.size());
+        // Only the first lookup missed the cache
+        verify(m_alarmDao, times(1)).findByReductionKey(REDUCTION_KEY);
+    }
+
+    /**
+     * Entries whose alarm was deleted, or no longer has the same reduction
+     * key, must be evicted from the cache.
+     */
+    @Test
+    public void canEvictStaleEntries() {
+        final OnmsAlarm alarm = createAlarm(REDUCTION_KEY);
+        m_cache.load();
+        assertEquals(1, m_cache.size());
+        assertSame(alarm, m_cache.findByReductionKey(REDUCTION_KEY));
+        verify(m_alarmDao, never()).findByReductionKey(REDUCTION_KEY);
+
+        // The alarm was deleted, and another one was created outside of Alarmd
+        m_alarms.remove(alarm.getId());
+        final OnmsAlarm other = createAlarm(REDUCTION_KEY);
+        assertSame(other, m_cache.findByReductionKey(REDUCTION_KEY));
+        assertEquals(1, m_cache.size());
+
+        // The reduction key of the alarm was changed
+        other.setReductionKey(REDUCTION_KEY + "::changed");
+        assertNull(m_cache.findByReductionKey(REDUCTION_KEY));
+        assertEquals(0, m_cache.size());
+
+        // The alarm was deleted, and no other alarm exists
+        m_cache.put(other);
+        m_alarms.remove(other.getId());
+        assertEquals(1, m_cache.size());
+        assertNull(m_cache.findByReductionKey(other.getReductionKey()));
+        assertEquals(0, m_cache.size());
+    }
+
+    private OnmsAlarm createAlarm(String reductionKey) {
+        final OnmsAlarm alarm = new OnmsAlarm();
+        alarm.setId(m_nextId.incrementAndGet());
+        alarm.setReductionKey(reductionKey);
+        m_alarms.put(alarm.getId(), alarm);
+        return alarm;
+    }
+}
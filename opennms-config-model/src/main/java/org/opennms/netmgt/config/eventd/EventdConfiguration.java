@@ -125,6 +125,27 @@ public class EventdConfiguration implements Serializable {
     @XmlAttribute(name = "logEventSummaries")
     private Boolean m_logEventSummaries;
 
+    /**
+     * The maximum number of events that are persisted to the
+     *  database in a single transaction.
+     */
+    @XmlAttribute(name = "writerBatchSize")
+    private Integer m_writerBatchSize;
+
+    /**
+     * The maximum amount of time, in milliseconds, that an
+     *  event waits for a batch to fill up before the batch is persisted.
+     */
+    @XmlAttribute(name = "writerBatchInterval")
+    private Long m_writerBatchInterval;
+
+    /**
+     * The maximum number of events handed to an event listener
+     *  in a single batch.
+     */
+    @XmlAttribute(name = "listenerBatchSize")
+    private Integer m_listenerBatchSize;
+
     @XmlValue
     private String m_contents;
 
@@ -211,6 +232,30 @@ public class EventdConfiguration implements Serializable {
         m_logEventSummaries = logEventSummaries;
     }
 
+    public Optional<Integer> getWriterBatchSize() {
+        return Optional.ofNullable(m_writerBatchSize);
+    }
+
+    public void setWriterBatchSize(final Integer writerBatchSize) {
+        m_writerBatchSize = writerBatchSize;
+    }
+
+    public Optional<Long> getWriterBatchInterval() {
+        return Optional.ofNullable(m_writerBatchInterval);
+    }
+
+    public void setWriterBatchInterval(final Long writerBatchInterval) {
+        m_writerBatchInterval = writerBatchInterval;
+    }
+
+    public Optional<Integer> getListenerBatchSize() {
+        return Optional.ofNullable(m_listenerBatchSize);
+    }
+
+    public void setListenerBatchSize(final Integer listenerBatchSize) {
+        m_listenerBatchSize = listenerBatchSize;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(
@@ -223,7 +268,10 @@ public class EventdConfiguration implements Serializable {
                             m_getNextEventID, 
                             m_socketSoTimeoutRequired, 
                             m_socketSoTimeoutPeriod, 
-                            m_logEventSummaries);
+                            m_logEventSummaries,
+                            m_writerBatchSize,
+                            m_writerBatchInterval,
+                            m_listenerBatchSize);
     }
 
     @Override
@@ -243,7 +291,10 @@ public class EventdConfiguration implements Serializable {
                     && Objects.equals(this.m_getNextEventID, that.m_getNextEventID)
                     && Objects.equals(this.m_socketSoTimeoutRequired, that.m_socketSoTimeoutRequired)
                     && Objects.equals(this.m_socketSoTimeoutPeriod, that.m_socketSoTimeoutPeriod)
-                    && Objects.equals(this.m_logEventSummaries, that.m_logEventSummaries);
+                    && Objects.equals(this.m_logEventSummaries, that.m_logEventSummaries)
+                    && Objects.equals(this.m_writerBatchSize, that.m_writerBatchSize)
+                    && Objects.equals(this.m_writerBatchInterval, that.m_writerBatchInterval)
+                    && Objects.equals(this.m_listenerBatchSize, that.m_listenerBatchSize);
         }
         return false;
     }
@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.xml.eventconf;
+
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SNMP_EID;
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SNMP_GENERIC;
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SNMP_SPECIFIC;
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SOURCE;
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_UEI;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Index over the event definitions used to find the first definition matching
+ * an event without testing every definition in turn.
+ *
+ * Each definition is filed under a single key of the most selective
+ * dimension its mask allows: the UEI, the enterprise id, generic and specific
+ * numbers of a trap, the enterprise id alone, the source or the generic
+ * number. Definitions whose masks can't be keyed (regular expressions,
+ * varbinds only, ...) are kept in a residual list. Since every mask element
+ * must match for a definition to match, a definition can only match an event
+ * if the event yields the definition's key, so the candidates gathered for
+ * an event always include the first matching definition.
+ *
+ * The candidate lists are kept in the order of the definitions, which lets
+ * {@link #findFirstMatchingEvent(org.opennms.netmgt.xml.event.Event)} stop
+ * scanning a list as soon as it passes the best match found so far.
+ */
+final class EventMatchIndex {
+
+    /**
+     * Combinations of mask elements, in the order in which they are tried
+     * when filing a definition.
+     */
+    private static final String[][] DIMENSIONS = new String[][] {
+        { TAG_UEI },
+        { TAG_SNMP_EID, TAG_SNMP_GENERIC, TAG_SNMP_SPECIFIC },
+        { TAG_SNMP_EID },
+        { TAG_SOURCE },
+        { TAG_SNMP_GENERIC }
+    };
+
+    /**
+     * Upper bound on the number of keys a single definition can be filed
+     * under in a dimension that spans many mask elements.
+     */
+    private static final int MAX_KEYS_PER_EVENT = 64;
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final List<Dimension> m_dimensions = new ArrayList<>(DIMENSIONS.length);
+
+    private final List<Event> m_residualEvents = new ArrayList<>();
+
+    EventMatchIndex() {
+        for (final String[] names : DIMENSIONS) {
+            m_dimensions.add(new Dimension(names));
+        }
+    }
+
+    /**
+     * Adds the definition to the index. Definitions must be added in the
+     * order in which they are to be matched.
+     */
+    void add(final Event event) {
+        final Mask mask = event.getMask();
+        if (mask == null || mask.getMaskelements().isEmpty()) {
+            // The definition only matches on its UEI, see Event#constructMatcher()
+            if (event.getUei() != null) {
+                m_dimensions.get(0).addExact(event.getUei(), event);
+            }
+            return;
+        }
+
+        for (final Dimension dimension : m_dimensions) {
+            if (dimension.add(mask, event)) {
+                return;
+            }
+        }
+        m_residualEvents.add(event);
+    }
+
+    Event findFirstMatchingEvent(final org.opennms.netmgt.xml.event.Event matchingEvent) {
+        Event firstMatch = firstMatch(m_residualEvents, matchingEvent, null);
+        for (final Dimension dimension : m_dimensions) {
+            firstMatch = dimension.findFirstMatchingEvent(matchingEvent, firstMatch);
+        }
+        return firstMatch;
+    }
+
+    /**
+     * Scans the ordered list of candidates and returns the first one to match
+     * the event if it comes before the given best match, or the best match
+     * otherwise.
+     */
+    private static Event firstMatch(final List<Event> candidates, final org.opennms.netmgt.xml.event.Event matchingEvent, final Event bestMatch) {
+        if (candidates == null) {
+            return bestMatch;
+        }
+        for (final Event candidate : candidates) {
+            if (bestMatch != null && candidate.compareTo(bestMatch) >= 0) {
+                break;
+            }
+            if (candidate.matches(matchingEvent)) {
+                return candidate;
+            }
+        }
+        return bestMatch;
+    }
+
+    private static void addToList(final Map<String, List<Event>> map, final String key, final Event event) {
+        final List<Event> events = map.computeIfAbsent(key, k -> new ArrayList<>(1));
+        // Avoid filing a definition twice under the same key, i.e. when the same value is listed twice
+        if (events.isEmpty() || events.get(events.size() - 1) != event) {
+            events.add(event);
+        }
+    }
+
+    private static class Dimension {
+        private final String[] m_names;
+        private final Field[] m_fields;
+        private final Map<String, List<Event>> m_exact = new HashMap<>();
+        private final Map<String, List<Event>> m_prefixes = new HashMap<>();
+        private final TreeSet<Integer> m_prefixLengths = new TreeSet<>();
+        private int[] m_prefixLengthArray = new int[0];
+
+        private Dimension(final String[] names) {
+            m_names = names;
+            m_fields = new Field[names.length];
+            for (int i = 0; i < names.length; i++) {
+                m_fields[i] = EventMatchers.field(names[i]);
+            }
+        }
+
+        /**
+         * Files the definition under this dimension if its mask has keyable
+         * values for all of the dimension's mask elements.
+         *
+         * @return true if the definition was filed
+         */
+        private boolean add(final Mask mask, final Event event) {
+            final List<List<String>> values = new ArrayList<>(m_names.length);
+            for (final String name : m_names) {
+                final List<String> elementValues = nonNullValues(mask.getMaskElementValues(name));
+                if (elementValues.isEmpty()) {
+                    return false;
+                }
+                for (final String value : elementValues) {
+                    if (value.startsWith("~")) {
+                        return false;
+                    }
+                    // Prefixes are only indexed when the dimension has a single element
+                    if (value.endsWith("%") && m_names.length > 1) {
+                        return false;
+                    }
+                }
+                values.add(elementValues);
+            }
+
+            if (m_names.length == 1) {
+                for (final String value : values.get(0)) {
+                    if (value.endsWith("%")) {
+                        addPrefix(value.substring(0, value.length() - 1), event);
+                    } else {
+                        addExact(value, event);
+                    }
+                }
+                return true;
+            }
+
+            final List<String> keys = compositeKeys(values);
+            if (keys == null) {
+                return false;
+            }
+            for (final String key : keys) {
+                addExact(key, event);
+            }
+            return true;
+        }
+
+        private void addExact(final String key, final Event event) {
+            addToList(m_exact, key, event);
+        }
+
+        private void addPrefix(final String prefix, final Event event) {
+            addToList(m_prefixes, prefix, event);
+            if (m_prefixLengths.add(prefix.length())) {
+                m_prefixLengthArray = new int[m_prefixLengths.size()];
+                int i = 0;
+                for (final Integer length : m_prefixLengths) {
+                    m_prefixLengthArray[i++] = length;
+                }
+            }
+        }
+
+        private Event findFirstMatchingEvent(final org.opennms.netmgt.xml.event.Event matchingEvent, Event bestMatch) {
+            if (m_exact.isEmpty() && m_prefixes.isEmpty()) {
+                return bestMatch;
+            }
+
+            final String key = getKey(matchingEvent);
+            if (key == null) {
+                return bestMatch;
+            }
+
+            bestMatch = firstMatch(m_exact.get(key), matchingEvent, bestMatch);
+            for (final int length : m_prefixLengthArray) {
+                if (length > key.length()) {
+                    break;
+                }
+                bestMatch = firstMatch(m_prefixes.get(key.substring(0, length)), matchingEvent, bestMatch);
+            }
+            return bestMatch;
+        }
+
+        private String getKey(final org.opennms.netmgt.xml.event.Event matchingEvent) {
+            if (m_fields.length == 1) {
+                return m_fields[0].get(matchingEvent);
+            }
+            final StringBuilder key = new StringBuilder();
+            for (int i = 0; i < m_fields.length; i++) {
+                final String value = m_fields[i].get(matchingEvent);
+                if (value == null) {
+                    return null;
+                }
+                if (i > 0) {
+                    key.append(KEY_SEPARATOR);
+                }
+                key.append(value);
+            }
+            return key.toString();
+        }
+
+        private static List<String> nonNullValues(final List<String> values) {
+            if (values == null) {
+                return Collections.emptyList();
+            }
+            final List<String> nonNullValues = new ArrayList<>(values.size());
+            for (final String value : values) {
+                if (value != null) {
+                    nonNullValues.add(value);
+                }
+            }
+            return nonNullValues;
+        }
+
+        /**
+         * Builds all of the combinations of the given values, or returns null
+         * if there are too many of them.
+         */
+        private static List<String> compositeKeys(final List<List<String>> values) {
+            List<String> keys = Collections.singletonList("");
+            for (int i = 0; i < values.size(); i++) {
+                final List<String> elementValues = values.get(i);
+                if (keys.size() * elementValues.size() > MAX_KEYS_PER_EVENT) {
+                    return null;
+                }
+                final List<String> nextKeys = new ArrayList<>(keys.size() * elementValues.size());
+                for (final String key : keys) {
+                    for (final String value : elementValues) {
+                        nextKeys.add(i == 0 ? value : key + KEY_SEPARATOR + value);
+                    }
+                }
+                keys = nextKeys;
+            }
+            return keys;
+        }
+    }
+}
@@ -56,6 +56,13 @@ public class EventOrdering implements Comparable<EventOrdering>{
             
             return m_index - orderIndex.m_index;
         }
+
+        /**
+         * @return the sequence, i.e. the event file, the index belongs to
+         */
+        EventOrdering getOrdering() {
+            return m_ordering;
+        }
         
     }
     
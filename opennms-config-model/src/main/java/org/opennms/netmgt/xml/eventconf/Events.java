@@ -114,6 +114,16 @@ public class Events implements Serializable {
     @XmlTransient
     private List<Event> m_wildcardEvents;
 
+    @XmlTransient
+    private EventMatchIndex m_matchIndex;
+
+    /**
+     * The first definition found by UEI when searching the loaded event files in
+     * turn, using the UEI index of each file. Only maintained along with the match index.
+     */
+    @XmlTransient
+    private Map<String, Event> m_firstEventsByUeiInFiles = new HashMap<>();
+
     @XmlTransient
     private EventOrdering m_ordering;
 
@@ -282,7 +292,20 @@ public class Events implements Serializable {
             }
         }
 
-        // If the UEI match failed, fallback to searching with the matchers through the partitions
+        // If the UEI match failed, fallback to searching with the matchers through the index
+        if (m_matchIndex != null) {
+            final Event maskMatch = m_matchIndex.findFirstMatchingEvent(matchingEvent);
+            final Event fileUeiMatch = ueiToMatch != null ? m_firstEventsByUeiInFiles.get(ueiToMatch) : null;
+            // Each event file is searched by UEI before its masks are, so a definition found
+            // by UEI wins over masks matched in the same or in a later file
+            if (fileUeiMatch != null && (maskMatch == null
+                    || fileUeiMatch.getIndex().getOrdering().compareTo(maskMatch.getIndex().getOrdering()) <= 0)) {
+                return fileUeiMatch;
+            }
+            return maskMatch;
+        }
+
+        // or the partitions when this isn't the root configuration
         final String key = m_partition.group(matchingEvent);
         Collection<Event> potentialMatches = m_nullPartitionedEvents;
         if (key != null) {
@@ -346,6 +369,10 @@ public class Events implements Serializable {
     }
 
     public void initialize(final Partition partition, final EventOrdering eventOrdering) {
+        initialize(partition, eventOrdering, true);
+    }
+
+    private void initialize(final Partition partition, final EventOrdering eventOrdering, final boolean buildMatchIndex) {
         m_ordering = eventOrdering;
 
         for (final Event event : m_events) {
@@ -356,10 +383,31 @@ public class Events implements Serializable {
 
         for(final Entry<String, Events> loadedEvents : m_loadedEventFiles.entrySet()) {
             final Events events = loadedEvents.getValue();
-            events.initialize(partition, m_ordering.subsequence());
+            events.initialize(partition, m_ordering.subsequence(), false);
         }
 
         indexEventsByUei();
+
+        // The index spans the loaded event files, so it is only built for the root configuration
+        m_matchIndex = buildMatchIndex ? indexEventsByMask() : null;
+        m_firstEventsByUeiInFiles.clear();
+        if (buildMatchIndex) {
+            for (final Events events : m_loadedEventFiles.values()) {
+                for (final Entry<String, Event> entry : events.m_eventsByUei.entrySet()) {
+                    m_firstEventsByUeiInFiles.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    private EventMatchIndex indexEventsByMask() {
+        return forEachEvent(new EventMatchIndex(), new EventCallback<EventMatchIndex>() {
+            @Override
+            public EventMatchIndex process(final EventMatchIndex index, final Event event) {
+                index.add(event);
+                return index;
+            }
+        });
     }
 
     private void indexEventsByUei() {
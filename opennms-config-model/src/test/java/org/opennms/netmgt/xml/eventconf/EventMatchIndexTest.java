@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.xml.eventconf;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.xml.event.Snmp;
+
+public class EventMatchIndexTest {
+
+    private Events m_events;
+    private Events m_includedEvents;
+
+    @Before
+    public void setUp() {
+        m_events = new Events();
+        m_includedEvents = new Events();
+        m_events.addLoadedEventFile("events/included.events.xml", m_includedEvents);
+    }
+
+    @Test
+    public void canMatchTrapsOnEnterpriseGenericAndSpecific() {
+        final Event linkDown = addEvent(m_includedEvents, "uei.opennms.org/test/linkDown", ".1.3.6.1.4.1.5813", "6", "1");
+        final Event linkUp = addEvent(m_includedEvents, "uei.opennms.org/test/linkUp", ".1.3.6.1.4.1.5813", "6", "2");
+        initialize();
+
+        assertSame(linkDown, m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.5813", 6, 1)));
+        assertSame(linkUp, m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.5813", 6, 2)));
+        assertNull(m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.5813", 6, 3)));
+        assertNull(m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.5814", 6, 1)));
+    }
+
+    @Test
+    public void keepsFirstMatchAcrossIndexedAndWildcardDefinitions() {
+        // Defined in the root configuration, so it shadows the definitions from the event files
+        final Event wildcard = addEvent(m_events, "uei.opennms.org/test/anyEnterprise", ".1.3.6.1.4.1.58%", "6", null);
+        addEvent(m_includedEvents, "uei.opennms.org/test/exact", ".1.3.6.1.4.1.5813", "6", "1");
+        final Event regex = addEvent(m_includedEvents, "uei.opennms.org/test/regex", "~^\\.1\\.3\\.6\\.1\\.4\\.1\\.99.*", "6", "1");
+        addEvent(m_includedEvents, "uei.opennms.org/test/afterRegex", ".1.3.6.1.4.1.991", "6", "1");
+        final Event other = addEvent(m_includedEvents, "uei.opennms.org/test/other", ".1.3.6.1.4.1.88", "6", "1");
+        initialize();
+
+        assertSame(wildcard, m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.5813", 6, 1)));
+        assertSame(regex, m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.991", 6, 1)));
+        assertSame(regex, m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.992", 6, 1)));
+        assertSame(other, m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.88", 6, 1)));
+        assertNull(m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.5813", 5, 1)));
+    }
+
+    @Test
+    public void indexIsRebuiltOnInitialize() {
+        final Event linkDown = addEvent(m_includedEvents, "uei.opennms.org/test/linkDown", ".1.3.6.1.4.1.5813", "6", "1");
+        initialize();
+        assertSame(linkDown, m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.5813", 6, 1)));
+
+        final Event override = new Event();
+        override.setUei("uei.opennms.org/test/override");
+        override.setMask(mask(".1.3.6.1.4.1.5813", "6", "1"));
+        m_events.addEvent(override);
+        initialize();
+        assertSame(override, m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.5813", 6, 1)));
+    }
+
+    @Test
+    public void canMatchOnSourceAndUeiMasks() {
+        final Event syslog = new Event();
+        syslog.setUei("uei.opennms.org/test/syslog");
+        final Mask mask = new Mask();
+        mask.addMaskelement(maskElement("source", "syslogd%"));
+        syslog.setMask(mask);
+        m_includedEvents.addEvent(syslog);
+        initialize();
+
+        final org.opennms.netmgt.xml.event.Event event = new org.opennms.netmgt.xml.event.Event();
+        event.setSource("syslogd-listener");
+        assertSame(syslog, m_events.findFirstMatchingEvent(event));
+        event.setSource("trapd");
+        assertNull(m_events.findFirstMatchingEvent(event));
+    }
+
+    @Test
+    public void searchesEachEventFileByUeiBeforeItsMasks() {
+        // The same UEI is defined in multiple files, so it isn't found by the root configuration
+        final Events otherEvents = new Events();
+        m_events.addLoadedEventFile("events/other.events.xml", otherEvents);
+        final Event first = addEvent(m_includedEvents, "uei.opennms.org/test/duplicate", ".1.3.6.1.4.1.5813", "6", "1");
+        final Event second = addEvent(otherEvents, "uei.opennms.org/test/duplicate", ".1.3.6.1.4.1.5814", "6", "1");
+        initialize();
+
+        // Found by UEI in the first file, even though only the mask of the second matches
+        final org.opennms.netmgt.xml.event.Event event = trap(".1.3.6.1.4.1.5814", 6, 1);
+        event.setUei("uei.opennms.org/test/duplicate");
+        assertSame(first, m_events.findFirstMatchingEvent(event));
+
+        // Without a UEI, the masks are used
+        assertSame(second, m_events.findFirstMatchingEvent(trap(".1.3.6.1.4.1.5814", 6, 1)));
+    }
+
+    @Test
+    public void masksOfEarlierFilesWinOverUeisOfLaterFiles() {
+        final Events otherEvents = new Events();
+        final Events lastEvents = new Events();
+        m_events.addLoadedEventFile("events/other.events.xml", otherEvents);
+        m_events.addLoadedEventFile("events/last.events.xml", lastEvents);
+        final Event earlier = addEvent(m_includedEvents, "uei.opennms.org/test/earlier", ".1.3.6.1.4.1.5813", "6", "1");
+        addEvent(otherEvents, "uei.opennms.org/test/duplicate", ".1.3.6.1.4.1.5814", "6", "1");
+        addEvent(lastEvents, "uei.opennms.org/test/duplicate", ".1.3.6.1.4.1.5815", "6", "1");
+        initialize();
+
+        final org.opennms.netmgt.xml.event.Event event = trap(".1.3.6.1.4.1.5813", 6, 1);
+        event.setUei("uei.opennms.org/test/duplicate");
+        assertSame(earlier, m_events.findFirstMatchingEvent(event));
+    }
+
+    private void initialize() {
+        m_events.initialize(new EnterpriseIdPartition(), new EventOrdering());
+    }
+
+    private static Event addEvent(final Events events, final String uei, final String id, final String generic, final String specific) {
+        final Event event = new Event();
+        event.setUei(uei);
+        event.setMask(mask(id, generic, specific));
+        events.addEvent(event);
+        return event;
+    }
+
+    private static Mask mask(final String id, final String generic, final String specific) {
+        final Mask mask = new Mask();
+        mask.addMaskelement(maskElement("id", id));
+        mask.addMaskelement(maskElement("generic", generic));
+        if (specific != null) {
+            mask.addMaskelement(maskElement("specific", specific));
+        }
+        return mask;
+    }
+
+    private static Maskelement maskElement(final String name, final String value) {
+        final Maskelement maskElement = new Maskelement();
+        maskElement.setMename(name);
+        maskElement.addMevalue(value);
+        return maskElement;
+    }
+
+    private static org.opennms.netmgt.xml.event.Event trap(final String enterpriseId, final int generic, final int specific) {
+        final Snmp snmp = new Snmp();
+        snmp.setId(enterpriseId);
+        snmp.setGeneric(generic);
+        snmp.setSpecific(specific);
+        final org.opennms.netmgt.xml.event.Event event = new org.opennms.netmgt.xml.event.Event();
+        event.setSnmp(snmp);
+        return event;
+    }
+}
@@ -225,6 +225,50 @@ public class EventdConfigManager implements EventdConfig {
         }
     }
 
+    /**
+     * Return the maximum number of events persisted in a single batch.
+     *
+     * @return the maximum number of events persisted in a single batch
+     */
+    public int getWriterBatchSize() {
+        getReadLock().lock();
+        try {
+            return m_config.getWriterBatchSize().orElse(1);
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Return the maximum amount of time, in milliseconds, that an event
+     * waits for a batch to fill up before the batch is persisted.
+     *
+     * @return the batch interval in milliseconds
+     */
+    public long getWriterBatchInterval() {
+        getReadLock().lock();
+        try {
+            return m_config.getWriterBatchInterval().orElse(250L);
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Return the maximum number of events handed to an event listener in a
+     * single batch, or 0 if the events are not dispatched in batches.
+     *
+     * @return the maximum number of events handed to a listener in a single batch
+     */
+    public int getListenerBatchSize() {
+        getReadLock().lock();
+        try {
+            return m_config.getListenerBatchSize().orElse(0);
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
     /**
      * Return the SQL statement to get the next event ID.
      *
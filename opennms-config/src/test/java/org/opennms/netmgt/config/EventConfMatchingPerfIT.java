@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.opennms.core.test.ConfigurationTestUtils;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.eventconf.Event;
+import org.opennms.netmgt.xml.eventconf.EventMatcher;
+import org.opennms.netmgt.xml.eventconf.Events;
+import org.opennms.netmgt.xml.eventconf.Mask;
+import org.opennms.netmgt.xml.eventconf.Maskelement;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Replays a corpus of events built from the shipped event configuration
+ * against {@link DefaultEventConfDao#findByEvent(org.opennms.netmgt.xml.event.Event)}
+ * and compares it to the original algorithm, which searched the root configuration
+ * and then each of the event files in turn, first by UEI and then by mask.
+ *
+ * By default, we only run a quick test to validate the setup.
+ *
+ * A longer run, against which you can attach a profiler is available
+ * but disabled by default.
+ */
+public class EventConfMatchingPerfIT {
+
+    // Tuneables
+    private static final int NUM_UNKNOWN_TRAPS = 1000;
+    private static final int NUM_WARMUP_ITERATIONS = 2;
+
+    private DefaultEventConfDao m_eventConfDao;
+    private List<Event> m_allEvents;
+    private List<org.opennms.netmgt.xml.event.Event> m_traps;
+
+    // The event files searched by the original algorithm, in order, starting with the root configuration
+    private final List<Scope> m_scopes = new ArrayList<>();
+    private Map<String, Event> m_rootEventsByUei;
+
+    @Before
+    public void setUp() throws Exception {
+        m_eventConfDao = new DefaultEventConfDao();
+        m_eventConfDao.setConfigResource(new FileSystemResource(ConfigurationTestUtils.getFileForConfigFile("eventconf.xml")));
+        m_eventConfDao.afterPropertiesSet();
+        m_allEvents = m_eventConfDao.getAllEvents();
+        m_traps = getTraps(m_allEvents);
+
+        final Events rootEvents = m_eventConfDao.getRootEvents();
+        m_rootEventsByUei = indexByUei(m_allEvents);
+        m_scopes.add(new Scope(Collections.emptyMap(), rootEvents.getEvents()));
+        for (String eventFile : rootEvents.getEventFiles()) {
+            final Events events = rootEvents.getLoadEventsByFile(eventFile);
+            if (events != null) {
+                m_scopes.add(new Scope(indexByUei(events.getEvents()), events.getEvents()));
+            }
+        }
+    }
+
+    @Test(timeout=300000)
+    public void quickRun() throws Exception {
+        // Make sure the index returns the same definitions as the original algorithm before comparing them
+        for (org.opennms.netmgt.xml.event.Event trap : m_traps) {
+            assertSame(trap.getUei() + " " + trap.getSnmp().getId() + "/" + trap.getSnmp().getGeneric() + "/" + trap.getSnmp().getSpecific(),
+                    findByOriginalAlgorithm(trap), m_eventConfDao.findByEvent(trap));
+        }
+
+        benchmark(1);
+    }
+
+    @Ignore
+    public void longRun() throws Exception {
+        benchmark(20);
+    }
+
+    private void benchmark(int numIterations) {
+        for (int i = 0; i < NUM_WARMUP_ITERATIONS; i++) {
+            replay(true);
+            replay(false);
+        }
+        for (boolean indexed : new boolean[] { false, true }) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < numIterations; i++) {
+                replay(indexed);
+            }
+            final long elapsed = System.nanoTime() - start;
+            System.err.printf("%s: %.2f us per trap (%d traps, %d event definitions)%n",
+                    indexed ? "Indexed" : "Original",
+                    elapsed / 1000d / numIterations / m_traps.size(),
+                    m_traps.size(), m_allEvents.size());
+        }
+    }
+
+    private int replay(boolean indexed) {
+        int numMatched = 0;
+        for (org.opennms.netmgt.xml.event.Event trap : m_traps) {
+            final Event eventConf = indexed ? m_eventConfDao.findByEvent(trap) : findByOriginalAlgorithm(trap);
+            if (eventConf != null) {
+                numMatched++;
+            }
+        }
+        return numMatched;
+    }
+
+    /**
+     * Reference implementation: the definition found by UEI across all of the files,
+     * if that UEI is only defined once, or else the first definition found by searching
+     * the root configuration and then each of the event files in turn, first by UEI
+     * and then by mask.
+     */
+    private Event findByOriginalAlgorithm(org.opennms.netmgt.xml.event.Event trap) {
+        final String uei = trap.getUei();
+        if (uei != null && m_rootEventsByUei.containsKey(uei)) {
+            return m_rootEventsByUei.get(uei);
+        }
+        for (Scope scope : m_scopes) {
+            if (uei != null && scope.eventsByUei.containsKey(uei)) {
+                return scope.eventsByUei.get(uei);
+            }
+            for (Event eventConf : scope.events) {
+                if (eventConf.matches(trap)) {
+                    return eventConf;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indexes the definitions by UEI, leaving out the UEIs that are defined more than
+     * once or that are matched by the UEI mask element of any of the definitions.
+     */
+    private static Map<String, Event> indexByUei(List<Event> eventConfs) {
+        final Map<String, Event> eventsByUei = new LinkedHashMap<>();
+        final Set<String> duplicateUeis = new HashSet<>();
+        final List<EventMatcher> ueiMatchers = new ArrayList<>();
+        for (Event eventConf : eventConfs) {
+            if (eventConf.getUei() != null && eventsByUei.putIfAbsent(eventConf.getUei(), eventConf) != null) {
+                duplicateUeis.add(eventConf.getUei());
+            }
+            final Mask mask = eventConf.getMask();
+            final Maskelement ueiMask = mask != null ? mask.getMaskElement("uei") : null;
+            if (ueiMask != null) {
+                ueiMatchers.add(ueiMask.constructMatcher());
+            }
+        }
+        eventsByUei.keySet().removeAll(duplicateUeis);
+        eventsByUei.keySet().removeIf(uei -> {
+            final org.opennms.netmgt.xml.event.Event event = new org.opennms.netmgt.xml.event.Event();
+            event.setUei(uei);
+            return ueiMatchers.stream().anyMatch(matcher -> matcher.matches(event));
+        });
+        return new HashMap<>(eventsByUei);
+    }
+
+    private static class Scope {
+        private final Map<String, Event> eventsByUei;
+        private final List<Event> events;
+
+        private Scope(Map<String, Event> eventsByUei, List<Event> events) {
+            this.eventsByUei = eventsByUei;
+            this.events = events;
+        }
+    }
+
+    /**
+     * Builds a trap for every definition that matches on the enterprise id, both
+     * with and without the definition's UEI, an event carrying only the UEI for
+     * every definition, and traps that don't match any of the definitions,
+     * in a reproducible random order.
+     *
+     * The UEIs of the definitions include UEIs that are defined in more than one
+     * event file, which are resolved per file.
+     */
+    private static List<org.opennms.netmgt.xml.event.Event> getTraps(List<Event> eventConfs) {
+        final List<org.opennms.netmgt.xml.event.Event> traps = new ArrayList<>();
+        final Random random = new Random(42);
+        for (Event eventConf : eventConfs) {
+            if (eventConf.getUei() != null) {
+                final org.opennms.netmgt.xml.event.Event event = trap(".1.3.6.1.4.1.99999", 6, 0);
+                event.setUei(eventConf.getUei());
+                traps.add(event);
+            }
+
+            final String enterpriseId = getFirstValue(eventConf, "id");
+            if (enterpriseId == null || enterpriseId.startsWith("~")) {
+                continue;
+            }
+            final String generic = getFirstValue(eventConf, "generic");
+            final String specific = getFirstValue(eventConf, "specific");
+            final String trapEnterpriseId = enterpriseId.endsWith("%") ? enterpriseId.substring(0, enterpriseId.length() - 1) + ".1" : enterpriseId;
+            traps.add(trap(trapEnterpriseId, toInt(generic, 6), toInt(specific, 0)));
+
+            // The same trap, with the UEI of the definition or of another one
+            final org.opennms.netmgt.xml.event.Event withUei = trap(trapEnterpriseId, toInt(generic, 6), toInt(specific, 0));
+            final Event ueiSource = random.nextBoolean() ? eventConf : eventConfs.get(random.nextInt(eventConfs.size()));
+            withUei.setUei(ueiSource.getUei());
+            traps.add(withUei);
+        }
+
+        for (int i = 0; i < NUM_UNKNOWN_TRAPS; i++) {
+            traps.add(trap(".1.3.6.1.4.1.99999." + random.nextInt(100), 6, random.nextInt(100)));
+        }
+        Collections.shuffle(traps, random);
+        return traps;
+    }
+
+    private static String getFirstValue(Event eventConf, String name) {
+        final List<String> values = eventConf.getMaskElementValues(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static int toInt(String value, int defaultValue) {
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static org.opennms.netmgt.xml.event.Event trap(String enterpriseId, int generic, int specific) {
+        final EventBuilder bldr = new EventBuilder(null, "trapd");
+        bldr.setSnmpVersion("v2");
+        bldr.setCommunity("public");
+        bldr.setHost("127.0.0.1");
+        bldr.setSnmpHost("127.0.0.1");
+        bldr.setGeneric(generic);
+        bldr.setSpecific(specific);
+        bldr.setEnterpriseId(enterpriseId);
+        return bldr.getEvent();
+    }
+}
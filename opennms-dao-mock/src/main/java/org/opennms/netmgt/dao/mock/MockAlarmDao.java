@@ -81,6 +81,13 @@ public class MockAlarmDao extends AbstractMockDao<OnmsAlarm, Integer> implements
         throw new UnsupportedOperationException("Not yet implemented!");
     }
 
+    @Override
+    public Map<String, Integer> getAlarmIdsByReductionKey() {
+        return findAll().stream()
+                .filter(a -> a.getReductionKey() != null)
+                .collect(Collectors.toMap(OnmsAlarm::getReductionKey, OnmsAlarm::getId, (a, b) -> b));
+    }
+
     @Override
     public List<AlarmSummary> getNodeAlarmSummaries() {
         throw new UnsupportedOperationException("Not yet implemented!");
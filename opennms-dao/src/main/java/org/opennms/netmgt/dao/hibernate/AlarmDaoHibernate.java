@@ -30,6 +30,7 @@ package org.opennms.netmgt.dao.hibernate;
 
 import java.sql.SQLException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -65,6 +66,17 @@ public class AlarmDaoHibernate extends AbstractDaoHibernate<OnmsAlarm, Integer>
         return super.findUnique(hql, reductionKey);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Integer> getAlarmIdsByReductionKey() {
+        final List<Object[]> rows = findObjects(Object[].class, "select alarms.reductionKey, alarms.id from OnmsAlarm as alarms where alarms.reductionKey is not null");
+        final Map<String, Integer> alarmIdsByReductionKey = new HashMap<>(rows.size());
+        for (final Object[] row : rows) {
+            alarmIdsByReductionKey.put((String)row[0], (Integer)row[1]);
+        }
+        return alarmIdsByReductionKey;
+    }
+
     /** {@inheritDoc} */
     @Override
     public List<AlarmSummary> getNodeAlarmSummariesIncludeAcknowledgedOnes(List<Integer> nodeIds) {
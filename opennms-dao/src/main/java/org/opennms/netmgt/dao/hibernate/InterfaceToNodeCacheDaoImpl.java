@@ -31,11 +31,15 @@ package org.opennms.netmgt.dao.hibernate;
 import static org.opennms.core.utils.InetAddressUtils.str;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.TreeSet;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.core.utils.LocationUtils;
@@ -54,15 +58,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.ComparisonChain;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.SortedSetMultimap;
 
 /**
  * This class represents a singular instance that is used to map IP
  * addresses to known nodes.
  *
+ * Lookups do not take any locks: the entries are kept in a concurrent map
+ * keyed by location and address, and the node ids of each entry are stored
+ * in an immutable, sorted array that is replaced when the entry changes.
+ * {@link #dataSourceSync()} builds a new map and swaps it in atomically.
+ *
  * @author Seth
  * @author <a href="mailto:joed@opennms.org">Johan Edstrom</a>
  * @author <a href="mailto:weave@oculan.com">Brian Weaver </a>
@@ -74,16 +79,14 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
 
     private static class Key {
         private final String location;
-        private final InetAddress ipAddress;
+        private final byte[] ipAddress;
+        private final int hashCode;
 
         public Key(String location, InetAddress ipAddress) {
             // Use the default location when location is null
             this.location = LocationUtils.getEffectiveLocationName(location);
-            this.ipAddress = Objects.requireNonNull(ipAddress);
-        }
-
-        public InetAddress getIpAddress() {
-            return ipAddress;
+            this.ipAddress = Objects.requireNonNull(ipAddress).getAddress();
+            this.hashCode = 31 * Arrays.hashCode(this.ipAddress) + this.location.hashCode();
         }
 
         public String getLocation() {
@@ -102,18 +105,19 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
                 return false;
             }
             final Key that = (Key) obj;
-            return Objects.equals(this.ipAddress, that.ipAddress)
+            return this.hashCode == that.hashCode
+                    && Arrays.equals(this.ipAddress, that.ipAddress)
                     && Objects.equals(this.location, that.location);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(this.ipAddress, this.location);
+            return hashCode;
         }
 
         @Override
         public String toString() {
-            return String.format("Key[location='%s', ipAddress='%s']", this.location, this.ipAddress);
+            return String.format("Key[location='%s', ipAddress='%s']", this.location, Arrays.toString(this.ipAddress));
         }
     }
 
@@ -171,14 +175,80 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
         }
     }
 
+    /**
+     * The values known for a key, sorted by interface management priority.
+     * Entries are never modified once published, a new entry is created instead.
+     */
+    private static class Entry {
+        private static final Entry EMPTY = new Entry(new Value[0]);
+
+        private final Value[] values;
+        private final List<Integer> nodeIds;
+
+        private Entry(Value[] values) {
+            this.values = values;
+            final Integer[] nodeIds = new Integer[values.length];
+            for (int i = 0; i < values.length; i++) {
+                nodeIds[i] = values[i].getNodeId();
+            }
+            this.nodeIds = Collections.unmodifiableList(Arrays.asList(nodeIds));
+        }
+
+        private int size() {
+            return values.length;
+        }
+
+        /**
+         * @return a new entry with the given value, or this entry if the value is already present
+         */
+        private Entry with(Value value) {
+            final int idx = Arrays.binarySearch(values, value);
+            if (idx >= 0) {
+                return this;
+            }
+            final int insertAt = -(idx + 1);
+            final Value[] newValues = new Value[values.length + 1];
+            System.arraycopy(values, 0, newValues, 0, insertAt);
+            newValues[insertAt] = value;
+            System.arraycopy(values, insertAt, newValues, insertAt + 1, values.length - insertAt);
+            return new Entry(newValues);
+        }
+
+        /**
+         * @return a new entry without the given value, or this entry if the value is not present
+         */
+        private Entry without(Value value) {
+            final int idx = Arrays.binarySearch(values, value);
+            if (idx < 0) {
+                return this;
+            }
+            final Value[] newValues = new Value[values.length - 1];
+            System.arraycopy(values, 0, newValues, 0, idx);
+            System.arraycopy(values, idx + 1, newValues, idx, values.length - idx - 1);
+            return new Entry(newValues);
+        }
+    }
+
+    /**
+     * An immutable reference to the entries along with their total number of values.
+     */
+    private static class Snapshot {
+        private final Map<Key, Entry> entries;
+        private final AtomicInteger size;
+
+        private Snapshot(Map<Key, Entry> entries, int size) {
+            this.entries = entries;
+            this.size = new AtomicInteger(size);
+        }
+    }
+
     @Autowired
     private NodeDao m_nodeDao;
 
     @Autowired
     private IpInterfaceDao m_ipInterfaceDao;
 
-    private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
-    private final SortedSetMultimap<Key, Value> m_managedAddresses = Multimaps.newSortedSetMultimap(Maps.newHashMap(), TreeSet::new);
+    private volatile Snapshot m_managedAddresses = new Snapshot(new ConcurrentHashMap<>(), 0);
 
     public NodeDao getNodeDao() {
         return m_nodeDao;
@@ -213,7 +283,8 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
          * if something goes wrong with the DB we won't lose whatever was already
          * in there
          */
-        final SortedSetMultimap<Key, Value> newAlreadyDiscovered = Multimaps.newSortedSetMultimap(Maps.newHashMap(), TreeSet::new);
+        final Map<Key, List<Value>> newAlreadyDiscovered = new HashMap<>();
+        int size = 0;
 
         // Fetch all non-deleted nodes
         final CriteriaBuilder builder = new CriteriaBuilder(OnmsNode.class);
@@ -227,12 +298,19 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
                     continue;
                 }
                 LOG.debug("Adding entry: {}:{} -> {}", node.getLocation().getLocationName(), iface.getIpAddress(), node.getId());
-                newAlreadyDiscovered.put(new Key(node.getLocation().getLocationName(), iface.getIpAddress()), new Value(node.getId(), iface.getIsSnmpPrimary()));
+                newAlreadyDiscovered.computeIfAbsent(new Key(node.getLocation().getLocationName(), iface.getIpAddress()), k -> new ArrayList<>())
+                    .add(new Value(node.getId(), iface.getIsSnmpPrimary()));
             }
         }
-        m_managedAddresses.clear();
-        m_managedAddresses.putAll(newAlreadyDiscovered);
-        LOG.info("dataSourceSync: initialized list of managed IP addresses with {} members", m_managedAddresses.size());
+
+        final Map<Key, Entry> entries = new ConcurrentHashMap<>(Math.max(16, newAlreadyDiscovered.size() * 4 / 3 + 1));
+        for (Map.Entry<Key, List<Value>> e : newAlreadyDiscovered.entrySet()) {
+            final Value[] values = e.getValue().stream().distinct().sorted().toArray(Value[]::new);
+            entries.put(e.getKey(), new Entry(values));
+            size += values.length;
+        }
+        m_managedAddresses = new Snapshot(entries, size);
+        LOG.info("dataSourceSync: initialized list of managed IP addresses with {} members", size);
     }
 
     /**
@@ -245,18 +323,13 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
      * @return The node ID of the IP Address if known.
      */
     @Override
-    public synchronized Iterable<Integer> getNodeId(final String location, final InetAddress address) {
+    public Iterable<Integer> getNodeId(final String location, final InetAddress address) {
         if (address == null) {
             return Collections.emptySet();
         }
 
-        m_lock.readLock().lock();
-        try {
-            return Iterables.transform(m_managedAddresses.get(new Key(location, address)),
-                    Value::getNodeId);
-        } finally {
-            m_lock.readLock().unlock();
-        }
+        final Entry entry = m_managedAddresses.entries.get(new Key(location, address));
+        return entry != null ? entry.nodeIds : Collections.emptySet();
     }
 
     /**
@@ -280,12 +353,19 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
 
         LOG.debug("setNodeId: adding IP address to cache: {}:{} -> {}", location, str(addr), nodeid);
 
-        m_lock.writeLock().lock();
-        try {
-            return m_managedAddresses.put(new Key(location, addr), new Value(nodeid, iface.getIsSnmpPrimary()));
-        } finally {
-            m_lock.writeLock().unlock();
+        final Value value = new Value(nodeid, iface.getIsSnmpPrimary());
+        final Snapshot snapshot = m_managedAddresses;
+        final boolean[] added = { false };
+        snapshot.entries.compute(new Key(location, addr), (k, entry) -> {
+            final Entry current = entry != null ? entry : Entry.EMPTY;
+            final Entry updated = current.with(value);
+            added[0] = updated != current;
+            return updated;
+        });
+        if (added[0]) {
+            snapshot.size.incrementAndGet();
         }
+        return added[0];
     }
 
     /**
@@ -303,34 +383,33 @@ public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache im
 
         LOG.debug("removeNodeId: removing IP address from cache: {}:{}", location, str(address));
 
-        m_lock.writeLock().lock();
-        try {
-            final Key key = new Key(location, address);
-            return m_managedAddresses.remove(key, new Value(nodeId, PrimaryType.PRIMARY)) ||
-                    m_managedAddresses.remove(key, new Value(nodeId, PrimaryType.SECONDARY)) ||
-                    m_managedAddresses.remove(key, new Value(nodeId, PrimaryType.NOT_ELIGIBLE));
-        } finally {
-            m_lock.writeLock().unlock();
+        final Snapshot snapshot = m_managedAddresses;
+        final boolean[] removed = { false };
+        snapshot.entries.computeIfPresent(new Key(location, address), (k, entry) -> {
+            Entry updated = entry;
+            for (PrimaryType type : new PrimaryType[] { PrimaryType.PRIMARY, PrimaryType.SECONDARY, PrimaryType.NOT_ELIGIBLE }) {
+                updated = entry.without(new Value(nodeId, type));
+                if (updated != entry) {
+                    removed[0] = true;
+                    break;
+                }
+            }
+            // Remove the key once the last value is gone
+            return updated.size() > 0 ? updated : null;
+        });
+        if (removed[0]) {
+            snapshot.size.decrementAndGet();
         }
+        return removed[0];
     }
 
     @Override
     public int size() {
-        m_lock.readLock().lock();
-        try {
-            return m_managedAddresses.size();
-        } finally {
-            m_lock.readLock().unlock();
-        }
+        return m_managedAddresses.size.get();
     }
 
     @Override
     public void clear() {
-        m_lock.writeLock().lock();
-        try {
-            m_managedAddresses.clear();
-        } finally {
-            m_lock.writeLock().unlock();
-        }
+        m_managedAddresses = new Snapshot(new ConcurrentHashMap<>(), 0);
     }
 }
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.dao.hibernate;
+
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.opennms.netmgt.dao.api.IpInterfaceDao;
+import org.opennms.netmgt.dao.api.MonitoringLocationDao;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.opennms.netmgt.model.PrimaryType;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Measures the throughput of {@link InterfaceToNodeCacheDaoImpl#getNodeId(String, InetAddress)}
+ * with an increasing number of threads, while another thread adds and
+ * removes entries, in order to verify that lookups scale across cores.
+ *
+ * By default, we only run a quick test to validate the setup.
+ *
+ * A longer run, against which you can attach a profiler is available
+ * but disabled by default.
+ */
+public class InterfaceToNodeCacheDaoImplPerfIT {
+
+    // Tuneables
+    private static final int NUM_ADDRESSES = 10000;
+    private static final int NUM_LOOKUPS_PER_THREAD = 1000000;
+
+    private InterfaceToNodeCacheDaoImpl m_cache;
+    private InetAddress[] m_addresses;
+
+    @Before
+    public void setUp() throws Exception {
+        final OnmsIpInterface iface = new OnmsIpInterface();
+        iface.setIsSnmpPrimary(PrimaryType.PRIMARY);
+        final IpInterfaceDao ipInterfaceDao = createNiceMock(IpInterfaceDao.class);
+        expect(ipInterfaceDao.findByNodeIdAndIpAddress(anyInt(), anyObject())).andStubReturn(iface);
+        replay(ipInterfaceDao);
+
+        m_cache = new InterfaceToNodeCacheDaoImpl();
+        m_cache.setIpInterfaceDao(ipInterfaceDao);
+
+        m_addresses = new InetAddress[NUM_ADDRESSES];
+        for (int i = 0; i < NUM_ADDRESSES; i++) {
+            m_addresses[i] = getAddress(i);
+            m_cache.setNodeId(MonitoringLocationDao.DEFAULT_MONITORING_LOCATION_ID, m_addresses[i], i + 1);
+        }
+    }
+
+    @Test(timeout=300000)
+    public void quickRun() throws Exception {
+        assertEquals(NUM_ADDRESSES, m_cache.size());
+        for (int i = 0; i < NUM_ADDRESSES; i++) {
+            assertEquals(i + 1, (int)Iterables.getOnlyElement(m_cache.getNodeId(null, getAddress(i))));
+        }
+
+        benchmark(NUM_LOOKUPS_PER_THREAD / 100);
+
+        // The entries that were updated concurrently are left as they were
+        assertEquals(NUM_ADDRESSES, m_cache.size());
+    }
+
+    @Ignore
+    public void longRun() throws Exception {
+        benchmark(NUM_LOOKUPS_PER_THREAD);
+    }
+
+    private void benchmark(int numLookupsPerThread) throws Exception {
+        final int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int numThreads = 1; numThreads <= maxThreads; numThreads *= 2) {
+            System.err.printf("%d thread(s): %.2f million lookups per second%n",
+                    numThreads, lookup(numThreads, numLookupsPerThread) / 1e6);
+        }
+    }
+
+    /**
+     * @return the number of lookups per second
+     */
+    private double lookup(int numThreads, int numLookupsPerThread) throws Exception {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(numThreads);
+        final AtomicLong numFound = new AtomicLong(0);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            final int offset = t;
+            threads.add(new Thread(() -> {
+                try {
+                    startLatch.await();
+                    long found = 0;
+                    for (int i = 0; i < numLookupsPerThread; i++) {
+                        if (m_cache.getNodeId(null, m_addresses[(i * 31 + offset) % NUM_ADDRESSES]).iterator().hasNext()) {
+                            found++;
+                        }
+                    }
+                    numFound.addAndGet(found);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    doneLatch.countDown();
+                }
+            }));
+        }
+
+        // Keep on adding and removing a second node to the addresses while the lookups are running
+        final Thread writer = new Thread(() -> {
+            int i = 0;
+            while (doneLatch.getCount() > 0) {
+                final InetAddress address = m_addresses[i++ % NUM_ADDRESSES];
+                m_cache.setNodeId(MonitoringLocationDao.DEFAULT_MONITORING_LOCATION_ID, address, 0);
+                m_cache.removeNodeId(MonitoringLocationDao.DEFAULT_MONITORING_LOCATION_ID, address, 0);
+            }
+        });
+
+        threads.forEach(Thread::start);
+        writer.start();
+        final long start = System.nanoTime();
+        startLatch.countDown();
+        doneLatch.await();
+        final long elapsed = System.nanoTime() - start;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertEquals((long)numThreads * numLookupsPerThread, numFound.get());
+        return (double)numThreads * numLookupsPerThread / (elapsed / 1e9);
+    }
+
+    private static InetAddress getAddress(int i) throws UnknownHostException {
+        return InetAddress.getByAddress(new byte[] { 10, (byte)(i >> 16), (byte)(i >> 8), (byte)i });
+    }
+}
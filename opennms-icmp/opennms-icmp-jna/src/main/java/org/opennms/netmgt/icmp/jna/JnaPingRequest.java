@@ -241,6 +241,10 @@ public class JnaPingRequest implements Request<JnaPingRequestId, JnaPingRequest,
         return m_id.getAddress();
     }
 
+    public long getTimeout() {
+        return m_timeout;
+    }
+
     public void send(final V6Pinger v6, final Inet6Address addr6) {
         try {
             //throw new IllegalStateException("The m_request field should be set here!!!");
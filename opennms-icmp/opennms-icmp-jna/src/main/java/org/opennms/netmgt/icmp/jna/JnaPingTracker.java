@@ -0,0 +1,469 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.jna;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.core.logging.Logging;
+import org.opennms.protocols.rt.Messenger;
+import org.opennms.protocols.rt.ReplyHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Tracks the echo requests sent by the {@link JnaPinger}.
+ *
+ * Requests are queued, and sent in batches by a single thread at up to the configured
+ * number of packets per second. The requests that are waiting for a reply are kept in a table
+ * keyed by a primitive derived from their thread id and sequence number, and are placed in the
+ * bucket of a hashed timing wheel for their timeout. Timeouts and retries are handled by the
+ * same thread when the wheel reaches their bucket, so the cost of tracking a request does not
+ * depend on the number of requests in flight.
+ *
+ * Replies are matched and dispatched to the callbacks by a separate thread, so that the
+ * socket readers are never blocked by the callbacks.
+ *
+ * The round trip times, along with the number of requests sent, retried and timed out are
+ * exposed over JMX.
+ */
+public class JnaPingTracker implements ReplyHandler<JnaPingReply> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JnaPingTracker.class);
+
+    public static final String JMX_DOMAIN = "org.opennms.netmgt.icmp.jna";
+
+    public static final long DEFAULT_TICK_DURATION = 10;
+
+    public static final int DEFAULT_WHEEL_SIZE = 1024;
+
+    /**
+     * Maximum number of echo requests sent per second. A value of 0 disables the limit.
+     */
+    public static final long DEFAULT_PACKETS_PER_SECOND = Long.getLong("org.opennms.netmgt.icmp.jna.packetsPerSecond", 0);
+
+    private static class Timeout {
+        private final long m_key;
+        private final JnaPingRequest m_request;
+        private final long m_expiration;
+        private long m_remainingRounds;
+
+        private Timeout(long key, JnaPingRequest request, long expiration) {
+            m_key = key;
+            m_request = request;
+            m_expiration = expiration;
+        }
+    }
+
+    private final String m_name;
+
+    private final Messenger<JnaPingRequest, JnaPingReply> m_messenger;
+
+    private final long m_packetsPerSecond;
+
+    private final long m_tickDuration;
+
+    private final List<Timeout>[] m_wheel;
+
+    private final int m_mask;
+
+    private final InFlightTable m_inFlight = new InFlightTable();
+
+    private final BlockingQueue<JnaPingRequest> m_sendQueue = new LinkedBlockingQueue<>();
+
+    private final BlockingQueue<JnaPingReply> m_replyQueue = new LinkedBlockingQueue<>();
+
+    private final MetricRegistry m_metrics = new MetricRegistry();
+
+    private final Histogram m_rtt;
+
+    private final Meter m_sent;
+
+    private final Meter m_retries;
+
+    private final Meter m_timeouts;
+
+    private final Meter m_replies;
+
+    private final Meter m_unmatchedReplies;
+
+    private JmxReporter m_reporter;
+
+    private volatile boolean m_stopped = false;
+
+    private long m_tick;
+
+    private long m_startTime;
+
+    public JnaPingTracker(String name, Messenger<JnaPingRequest, JnaPingReply> messenger) {
+        this(name, messenger, DEFAULT_PACKETS_PER_SECOND, DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public JnaPingTracker(String name, Messenger<JnaPingRequest, JnaPingReply> messenger, long packetsPerSecond, long tickDuration, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be strictly positive");
+        }
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize must be a power of two");
+        }
+        m_name = name;
+        m_messenger = messenger;
+        m_packetsPerSecond = packetsPerSecond;
+        m_tickDuration = tickDuration;
+        m_wheel = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            m_wheel[i] = new ArrayList<>();
+        }
+        m_mask = wheelSize - 1;
+
+        m_rtt = m_metrics.histogram(MetricRegistry.name(name, "rtt"));
+        m_sent = m_metrics.meter(MetricRegistry.name(name, "sent"));
+        m_retries = m_metrics.meter(MetricRegistry.name(name, "retries"));
+        m_timeouts = m_metrics.meter(MetricRegistry.name(name, "timeouts"));
+        m_replies = m_metrics.meter(MetricRegistry.name(name, "replies"));
+        m_unmatchedReplies = m_metrics.meter(MetricRegistry.name(name, "unmatched-replies"));
+        m_metrics.register(MetricRegistry.name(name, "in-flight"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return m_inFlight.size();
+            }
+        });
+        m_metrics.register(MetricRegistry.name(name, "send-queue"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return m_sendQueue.size();
+            }
+        });
+    }
+
+    public synchronized void start() {
+        m_startTime = System.currentTimeMillis();
+        m_messenger.start(this);
+
+        final Thread sender = new Thread(this::sendAndExpire, m_name + "-Sender");
+        sender.setDaemon(true);
+        sender.start();
+
+        final Thread receiver = new Thread(this::processReplies, m_name + "-Receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        m_reporter = JmxReporter.forRegistry(m_metrics).inDomain(JMX_DOMAIN).build();
+        m_reporter.start();
+    }
+
+    public synchronized void stop() {
+        m_stopped = true;
+        if (m_reporter != null) {
+            m_reporter.stop();
+            m_reporter = null;
+        }
+    }
+
+    /**
+     * Queues the given request. The request is sent by the sender thread.
+     */
+    public void sendRequest(JnaPingRequest request) {
+        m_sendQueue.add(request);
+    }
+
+    @Override
+    public void handleReply(JnaPingReply reply) {
+        m_replyQueue.add(reply);
+    }
+
+    public MetricRegistry getMetrics() {
+        return m_metrics;
+    }
+
+    protected static long key(int sequenceNumber, long threadId) {
+        return (threadId << 16) | (sequenceNumber & 0xffff);
+    }
+
+    private void processReplies() {
+        Logging.putPrefix("icmp");
+        while (!m_stopped) {
+            final JnaPingReply reply;
+            try {
+                reply = m_replyQueue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (reply == null) {
+                continue;
+            }
+
+            final JnaPingRequest request = m_inFlight.remove(key(reply.getSequenceNumber(), reply.getThreadId()), reply);
+            if (request == null) {
+                // The request already timed out, or the reply is a duplicate
+                LOG.debug("No request found for reply: {}", reply);
+                m_unmatchedReplies.mark();
+                continue;
+            }
+
+            m_replies.mark();
+            m_rtt.update(Math.round(reply.elapsedTime(TimeUnit.MICROSECONDS)));
+            try {
+                request.processResponse(reply);
+            } catch (Throwable t) {
+                LOG.error("Unexpected error while processing reply for request: {}", request, t);
+            }
+        }
+    }
+
+    private void sendAndExpire() {
+        Logging.putPrefix("icmp");
+        m_tick = 0;
+        // Allow a full second of packets to be sent in a burst
+        double permits = m_packetsPerSecond;
+        long lastRefill = System.nanoTime();
+
+        while (!m_stopped) {
+            try {
+                final long nextTickTime = m_startTime + (m_tick + 1) * m_tickDuration;
+                final long waitMs = Math.max(0, nextTickTime - System.currentTimeMillis());
+
+                if (m_packetsPerSecond > 0) {
+                    final long now = System.nanoTime();
+                    permits = Math.min(m_packetsPerSecond, permits + (now - lastRefill) * m_packetsPerSecond / 1.0e9);
+                    lastRefill = now;
+                }
+
+                // Wait for a request, or for the next tick
+                final JnaPingRequest first;
+                if (m_packetsPerSecond <= 0 || permits >= 1) {
+                    first = m_sendQueue.poll(waitMs, TimeUnit.MILLISECONDS);
+                } else {
+                    first = null;
+                    Thread.sleep(Math.max(1, Math.min(waitMs, (long)Math.ceil((1 - permits) * 1000 / m_packetsPerSecond))));
+                }
+
+                if (first != null) {
+                    final List<JnaPingRequest> batch = new ArrayList<>();
+                    batch.add(first);
+                    final int maxBatchSize = m_packetsPerSecond > 0 ? (int)Math.min(Integer.MAX_VALUE, (long)permits) : Integer.MAX_VALUE;
+                    m_sendQueue.drainTo(batch, maxBatchSize - 1);
+                    permits -= batch.size();
+                    for (JnaPingRequest request : batch) {
+                        send(request);
+                    }
+                }
+
+                while (System.currentTimeMillis() >= m_startTime + (m_tick + 1) * m_tickDuration) {
+                    m_tick++;
+                    expire(m_tick);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable t) {
+                LOG.error("Unexpected error in ping tracker {}.", m_name, t);
+            }
+        }
+    }
+
+    private void send(JnaPingRequest request) {
+        final long key = key(request.getSequenceNumber(), request.getThreadId());
+        // Add the request to the table before sending it, so that we don't miss fast replies
+        m_inFlight.put(key, request);
+        try {
+            m_messenger.sendRequest(request);
+        } catch (Exception e) {
+            m_inFlight.remove(key, request);
+            request.processError(e);
+            return;
+        }
+        m_sent.mark();
+        // The request computes its expiration when it is sent, so ours is never earlier
+        schedule(new Timeout(key, request, System.currentTimeMillis() + request.getTimeout()));
+    }
+
+    private void schedule(Timeout timeout) {
+        final long expirationTick = Math.max(m_tick + 1, (timeout.m_expiration - m_startTime + m_tickDuration - 1) / m_tickDuration);
+        timeout.m_remainingRounds = (expirationTick - m_tick - 1) / m_wheel.length;
+        m_wheel[(int)(expirationTick & m_mask)].add(timeout);
+    }
+
+    private void expire(long tick) {
+        final List<Timeout> bucket = m_wheel[(int)(tick & m_mask)];
+        if (bucket.isEmpty()) {
+            return;
+        }
+
+        final List<Timeout> expired = new ArrayList<>();
+        for (int i = bucket.size() - 1; i >= 0; i--) {
+            final Timeout timeout = bucket.get(i);
+            if (timeout.m_remainingRounds > 0) {
+                timeout.m_remainingRounds--;
+                continue;
+            }
+            // Swap-remove, the order of the entries within a bucket does not matter
+            final Timeout last = bucket.remove(bucket.size() - 1);
+            if (i < bucket.size()) {
+                bucket.set(i, last);
+            }
+            expired.add(timeout);
+        }
+
+        for (Timeout timeout : expired) {
+            // Only the requests that are still waiting for a reply are timed out
+            if (!m_inFlight.remove(timeout.m_key, timeout.m_request)) {
+                continue;
+            }
+            try {
+                final JnaPingRequest retry = timeout.m_request.processTimeout();
+                if (retry != null) {
+                    m_retries.mark();
+                    // Retries go to the back of the queue, and are paced along with the other requests
+                    m_sendQueue.add(retry);
+                } else {
+                    m_timeouts.mark();
+                }
+            } catch (Throwable t) {
+                LOG.error("Unexpected error while processing timeout for request: {}", timeout.m_request, t);
+            }
+        }
+    }
+
+    /**
+     * An open addressing hash table from primitive keys to the requests that
+     * are waiting for a reply, which avoids allocating a key and an entry for
+     * every request.
+     */
+    private static class InFlightTable {
+        private static final float LOAD_FACTOR = 0.5f;
+
+        private long[] m_keys = new long[1024];
+        private JnaPingRequest[] m_values = new JnaPingRequest[1024];
+        private int m_size = 0;
+
+        public synchronized int size() {
+            return m_size;
+        }
+
+        public synchronized void put(long key, JnaPingRequest request) {
+            if (m_size + 1 > m_keys.length * LOAD_FACTOR) {
+                resize(m_keys.length * 2);
+            }
+            int i = indexOf(key);
+            if (m_values[i] == null) {
+                m_keys[i] = key;
+                m_size++;
+            }
+            m_values[i] = request;
+        }
+
+        /**
+         * Removes the request with the given key if it matches the given reply.
+         */
+        public synchronized JnaPingRequest remove(long key, JnaPingReply reply) {
+            final int i = indexOf(key);
+            final JnaPingRequest request = m_values[i];
+            if (request == null || !request.getId().equals(reply.getRequestId())) {
+                return null;
+            }
+            delete(i);
+            return request;
+        }
+
+        /**
+         * Removes the given request, if it is still in the table.
+         */
+        public synchronized boolean remove(long key, JnaPingRequest request) {
+            final int i = indexOf(key);
+            if (m_values[i] != request) {
+                return false;
+            }
+            delete(i);
+            return true;
+        }
+
+        private int indexOf(long key) {
+            final int mask = m_keys.length - 1;
+            int i = mix(key) & mask;
+            while (m_values[i] != null && m_keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void delete(int i) {
+            // Shift back the entries that follow so that the probe sequences stay intact
+            final int mask = m_keys.length - 1;
+            int hole = i;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (m_values[j] == null) {
+                    break;
+                }
+                final int home = mix(m_keys[j]) & mask;
+                // Move the entry if its home slot is not within (hole, j]
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    m_keys[hole] = m_keys[j];
+                    m_values[hole] = m_values[j];
+                    hole = j;
+                }
+            }
+            m_values[hole] = null;
+            m_keys[hole] = 0;
+            m_size--;
+        }
+
+        private void resize(int capacity) {
+            final long[] keys = m_keys;
+            final JnaPingRequest[] values = m_values;
+            m_keys = new long[capacity];
+            m_values = new JnaPingRequest[capacity];
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null) {
+                    final int j = indexOf(keys[i]);
+                    m_keys[j] = keys[i];
+                    m_values[j] = values[i];
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            final long h = key * 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.jna;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.netmgt.icmp.EchoPacket;
+import org.opennms.netmgt.icmp.PingResponseCallback;
+import org.opennms.protocols.rt.Messenger;
+import org.opennms.protocols.rt.ReplyHandler;
+
+public class JnaPingTrackerTest {
+
+    private JnaPingTracker m_tracker;
+
+    @After
+    public void tearDown() {
+        if (m_tracker != null) {
+            m_tracker.stop();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void canMatchReplies() throws Exception {
+        final FakeMessenger messenger = new FakeMessenger(true);
+        m_tracker = new JnaPingTracker("test-replies", messenger, 0, 10, 64);
+        m_tracker.start();
+
+        final int numRequests = 1000;
+        final CountingCallback cb = new CountingCallback(numRequests);
+        for (int i = 0; i < numRequests; i++) {
+            m_tracker.sendRequest(new JnaPingRequest(InetAddress.getLoopbackAddress(), 1, i, 5000, 0, 64, cb));
+        }
+        cb.done.await();
+
+        assertEquals(numRequests, cb.responses.get());
+        assertEquals(0, cb.timeouts.get());
+        assertEquals(numRequests, m_tracker.getMetrics().histogram("test-replies.rtt").getCount());
+        assertEquals(0, m_tracker.getMetrics().getGauges().get("test-replies.in-flight").getValue());
+    }
+
+    @Test(timeout = 30000)
+    public void canRetryAndTimeout() throws Exception {
+        final FakeMessenger messenger = new FakeMessenger(false);
+        m_tracker = new JnaPingTracker("test-timeouts", messenger, 0, 10, 8);
+        m_tracker.start();
+
+        final CountingCallback cb = new CountingCallback(2);
+        // The second timeout spans more than one round of the wheel
+        m_tracker.sendRequest(new JnaPingRequest(InetAddress.getLoopbackAddress(), 1, 1, 50, 2, 64, cb));
+        m_tracker.sendRequest(new JnaPingRequest(InetAddress.getLoopbackAddress(), 1, 2, 200, 0, 64, cb));
+        cb.done.await();
+
+        assertEquals(0, cb.responses.get());
+        assertEquals(2, cb.timeouts.get());
+        // 3 attempts for the first request, and 1 for the second
+        assertEquals(4, messenger.sent.size());
+        assertEquals(2, m_tracker.getMetrics().meter("test-timeouts.retries").getCount());
+    }
+
+    @Test(timeout = 30000)
+    public void canLimitRate() throws Exception {
+        final FakeMessenger messenger = new FakeMessenger(true);
+        m_tracker = new JnaPingTracker("test-rate", messenger, 100, 10, 64);
+        m_tracker.start();
+
+        // 100 packets can be sent in a burst, the next 50 take half a second
+        final int numRequests = 150;
+        final CountingCallback cb = new CountingCallback(numRequests);
+        final long start = System.nanoTime();
+        for (int i = 0; i < numRequests; i++) {
+            m_tracker.sendRequest(new JnaPingRequest(InetAddress.getLoopbackAddress(), 1, i, 5000, 0, 64, cb));
+        }
+        cb.done.await();
+
+        assertEquals(numRequests, cb.responses.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 400);
+    }
+
+    private static class FakeMessenger implements Messenger<JnaPingRequest, JnaPingReply> {
+        private final boolean m_reply;
+        private final List<JnaPingRequest> sent = new ArrayList<>();
+        private ReplyHandler<JnaPingReply> m_handler;
+
+        private FakeMessenger(boolean reply) {
+            m_reply = reply;
+        }
+
+        @Override
+        public void sendRequest(JnaPingRequest request) {
+            synchronized (sent) {
+                sent.add(request);
+            }
+            if (m_reply) {
+                m_handler.handleReply(new JnaPingReply(request.getAddress(), new FakeEchoReply(request)));
+            }
+        }
+
+        @Override
+        public void start(ReplyHandler<JnaPingReply> handler) {
+            m_handler = handler;
+        }
+    }
+
+    private static class FakeEchoReply implements EchoPacket {
+        private final JnaPingRequest m_request;
+
+        private FakeEchoReply(JnaPingRequest request) {
+            m_request = request;
+        }
+
+        @Override
+        public boolean isEchoReply() {
+            return true;
+        }
+
+        @Override
+        public int getIdentifier() {
+            return m_request.getIdentifier();
+        }
+
+        @Override
+        public int getSequenceNumber() {
+            return m_request.getSequenceNumber();
+        }
+
+        @Override
+        public long getThreadId() {
+            return m_request.getThreadId();
+        }
+
+        @Override
+        public long getReceivedTimeNanos() {
+            return 2000;
+        }
+
+        @Override
+        public long getSentTimeNanos() {
+            return 1000;
+        }
+
+        @Override
+        public double elapsedTime(TimeUnit timeUnit) {
+            return timeUnit.convert(1000, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static class CountingCallback implements PingResponseCallback {
+        private final AtomicInteger responses = new AtomicInteger();
+        private final AtomicInteger timeouts = new AtomicInteger();
+        private final CountDownLatch done;
+
+        private CountingCallback(int count) {
+            done = new CountDownLatch(count);
+        }
+
+        @Override
+        public void handleResponse(InetAddress address, EchoPacket response) {
+            responses.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void handleTimeout(InetAddress address, EchoPacket request) {
+            timeouts.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void handleError(InetAddress address, EchoPacket request, Throwable t) {
+            done.countDown();
+        }
+    }
+}
@@ -32,15 +32,15 @@ import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.opennms.core.rpc.xml.AbstractXmlRpcModule;
 import org.opennms.core.utils.IteratorUtils;
@@ -54,7 +54,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.google.common.base.Throwables;
-import com.google.common.collect.Sets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.RateLimiter;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
@@ -69,6 +70,14 @@ public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO
 
     private final ExecutorService executor = Executors.newCachedThreadPool(threadFactory);
 
+    /**
+     * Rate limiters of the sweeps in progress, by location and rate. The values are weakly
+     * referenced, so that the limiters are removed once the sweeps using them are complete.
+     */
+    private final Cache<String, RateLimiter> rateLimiters = CacheBuilder.newBuilder()
+            .weakValues()
+            .build();
+
     @Autowired
     private PingerFactory pingerFactory;
 
@@ -89,14 +98,17 @@ public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO
             ranges.add(pollRange);
         }
 
-        // Use a RateLimiter to limit the ping packets per second that we send
-        RateLimiter limiter = RateLimiter.create(request.getPacketsPerSecond());
-
-        List<IPPollAddress> addresses = StreamSupport.stream(getAddresses(ranges).spliterator(), false)
-                .filter(j -> j.getAddress() != null).collect(Collectors.toList());
+        // Use a RateLimiter to limit the ping packets per second that we send. The limiter is
+        // shared by all of the sweeps at the same location with the same rate, so that concurrent
+        // sweeps don't exceed that rate when combined.
+        final RateLimiter limiter = getRateLimiter(location, request.getPacketsPerSecond());
 
         return CompletableFuture.supplyAsync(() -> {
-            addresses.stream().forEach(pollAddress -> {
+            // The addresses are generated from the ranges as they are pinged, rather than up front
+            for (IPPollAddress pollAddress : getAddresses(ranges)) {
+                if (pollAddress.getAddress() == null) {
+                    continue;
+                }
                 try {
                     tracker.expectCallbackFor(pollAddress.getAddress());
                     limiter.acquire();
@@ -105,7 +117,8 @@ public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO
                     tracker.handleError(pollAddress.getAddress(), null, e);
                     tracker.completeExceptionally(e);
                 }
-            });
+            }
+            tracker.allRequestsSent();
 
             try {
                 tracker.getLatch().await();
@@ -121,12 +134,17 @@ public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO
     private static class PingSweepResultTracker extends CompletableFuture<PingSweepResponseDTO>
             implements PingResponseCallback {
 
-        private final Set<InetAddress> waitingFor = Sets.newConcurrentHashSet();
+        // Starts at one, so that the latch isn't released before all of the requests were sent
+        private final AtomicInteger pending = new AtomicInteger(1);
         private final CountDownLatch m_doneSignal = new CountDownLatch(1);
         private final PingSweepResponseDTO responseDTO = new PingSweepResponseDTO();
 
         public void expectCallbackFor(InetAddress address) {
-            waitingFor.add(address);
+            pending.incrementAndGet();
+        }
+
+        public void allRequestsSent() {
+            afterHandled(null);
         }
 
         @Override
@@ -151,8 +169,7 @@ public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO
         }
 
         private void afterHandled(InetAddress address) {
-            waitingFor.remove(address);
-            if (waitingFor.isEmpty()) {
+            if (pending.decrementAndGet() == 0) {
                 m_doneSignal.countDown();
             }
         }
@@ -181,6 +198,16 @@ public class PingSweepRpcModule extends AbstractXmlRpcModule<PingSweepRequestDTO
         return RPC_MODULE_ID;
     }
 
+    private RateLimiter getRateLimiter(String location, double packetsPerSecond) {
+        // Sweeps with different rates use different limiters, instead of changing each other's rate
+        final String key = Objects.toString(location, "") + ":" + packetsPerSecond;
+        try {
+            return rateLimiters.get(key, () -> RateLimiter.create(packetsPerSecond));
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
     public void setPingerFactory(PingerFactory pingerFactory) {
         this.pingerFactory = pingerFactory;
     }
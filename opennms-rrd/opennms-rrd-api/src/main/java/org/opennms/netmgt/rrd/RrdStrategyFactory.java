@@ -46,8 +46,10 @@ public class RrdStrategyFactory implements ApplicationContextAware {
     private static enum StrategyName {
         basicRrdStrategy,
         queuingRrdStrategy,
+        shardedQueuingRrdStrategy,
         tcpAndBasicRrdStrategy,
-        tcpAndQueuingRrdStrategy
+        tcpAndQueuingRrdStrategy,
+        tcpAndShardedQueuingRrdStrategy
     }
 
     @Override
@@ -65,8 +67,15 @@ public class RrdStrategyFactory implements ApplicationContextAware {
         RrdStrategy<D, F> rrdStrategy = null;
         Boolean useQueue = (Boolean) m_context.getBean("useQueue");
         Boolean useTcp = (Boolean) m_context.getBean("useTcp");
+        Boolean useShardedQueue = (Boolean) m_context.getBean("useShardedQueue");
 
-        if (useQueue) {
+        if (useQueue && useShardedQueue) {
+            if (useTcp) {
+                rrdStrategy = (RrdStrategy<D, F>) m_context.getBean(StrategyName.tcpAndShardedQueuingRrdStrategy.toString());
+            } else {
+                rrdStrategy = (RrdStrategy<D, F>) m_context.getBean(StrategyName.shardedQueuingRrdStrategy.toString());
+            }
+        } else if (useQueue) {
             if (useTcp) {
                 rrdStrategy = (RrdStrategy<D, F>) m_context.getBean(StrategyName.tcpAndQueuingRrdStrategy.toString());
             } else {
@@ -0,0 +1,803 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.opennms.core.logging.Logging;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Queuing implementation of RrdStrategy, sharded by file.
+ *
+ * Like the {@link QueuingRrdStrategy}, the create and update operations are
+ * enqueued on a per file basis and written by a set of threads, so that all
+ * of the updates that are pending for a file are written with a single open.
+ *
+ * The files are spread over a fixed number of shards by the hash of their
+ * path. Each shard has its own lock and is processed by a single write
+ * thread, so a file is never written by two threads at once and the
+ * enqueuing threads only contend with the write thread of the shard they
+ * are enqueuing to.
+ *
+ * The pending updates of a file are coalesced into a single byte array
+ * instead of being kept as one object per update, and the total size of
+ * the pending updates is bounded: when the budget is exhausted, the
+ * enqueuing threads wait for the write threads to catch up, and the
+ * updates are discarded if they are still over budget after
+ * <code>maxEnqueueWait</code> milliseconds.
+ *
+ * The number of pending files, updates and bytes along with the age of the
+ * oldest pending file are exposed per shard in the metric registry, when
+ * one is set.
+ *
+ * Files are written in the order in which they were first queued, with the
+ * exception of files that are promoted by {@link #promoteEnqueuedFiles(Collection)}.
+ * There is no distinction between significant and insignificant updates.
+ */
+public class ShardedQueuingRrdStrategy implements RrdStrategy<ShardedQueuingRrdStrategy.CreateOperation,String>, RrdQueueStatistics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedQueuingRrdStrategy.class);
+
+    /**
+     * Rough size of the bookkeeping for a pending file, excluding its name
+     * and its updates: the entries in the map and queue of the shard, along
+     * with the pending file and its buffer.
+     */
+    private static final int PENDING_FILE_OVERHEAD = 128;
+
+    /**
+     * Each update is terminated by a new line in the buffer of the file.
+     */
+    private static final byte UPDATE_SEPARATOR = '\n';
+
+    private final RrdStrategy<Object, Object> m_delegate;
+
+    private Properties m_configurationProperties;
+
+    private int m_shards = 16;
+
+    private int m_writeThreads = 2;
+
+    private boolean m_queueCreates = false;
+
+    private long m_maxQueuedBytes = 256L * 1024L * 1024L;
+
+    private long m_maxEnqueueWait = 10000;
+
+    private long m_writeThreadSleepTime = 50;
+
+    private String m_category = "queued";
+
+    private MetricRegistry m_metricRegistry;
+
+    private volatile Shard[] m_shardArray;
+
+    private final AtomicLong m_queuedBytes = new AtomicLong(0);
+
+    private final Object m_budgetMonitor = new Object();
+
+    private volatile int m_waitingForBudget = 0;
+
+    private final AtomicLong m_startTime = new AtomicLong(0);
+
+    private final LongAdder m_enqueuedOperations = new LongAdder();
+
+    private final LongAdder m_dequeuedOperations = new LongAdder();
+
+    private final LongAdder m_dequeuedItems = new LongAdder();
+
+    private final LongAdder m_createsCompleted = new LongAdder();
+
+    private final LongAdder m_updatesCompleted = new LongAdder();
+
+    private final LongAdder m_errors = new LongAdder();
+
+    private final LongAdder m_dropped = new LongAdder();
+
+    private final LongAdder m_promotionCount = new LongAdder();
+
+    public ShardedQueuingRrdStrategy(RrdStrategy<Object, Object> delegate) {
+        m_delegate = delegate;
+    }
+
+    public RrdStrategy<Object, Object> getDelegate() {
+        return m_delegate;
+    }
+
+    public Properties getConfigurationProperties() {
+        return m_configurationProperties;
+    }
+
+    @Override
+    public void setConfigurationProperties(final Properties configurationParameters) {
+        m_configurationProperties = configurationParameters;
+    }
+
+    public int getShards() {
+        return m_shards;
+    }
+
+    public void setShards(int shards) {
+        m_shards = shards;
+    }
+
+    public int getWriteThreads() {
+        return m_writeThreads;
+    }
+
+    public void setWriteThreads(int writeThreads) {
+        m_writeThreads = writeThreads;
+    }
+
+    public boolean queueCreates() {
+        return m_queueCreates;
+    }
+
+    public void setQueueCreates(boolean queueCreates) {
+        m_queueCreates = queueCreates;
+    }
+
+    public long getMaxQueuedBytes() {
+        return m_maxQueuedBytes;
+    }
+
+    /**
+     * @param maxQueuedBytes the approximate number of bytes that can be used by the pending operations
+     */
+    public void setMaxQueuedBytes(long maxQueuedBytes) {
+        m_maxQueuedBytes = maxQueuedBytes;
+    }
+
+    public long getMaxEnqueueWait() {
+        return m_maxEnqueueWait;
+    }
+
+    /**
+     * @param maxEnqueueWait how long, in milliseconds, to wait for room in the queue before discarding an operation
+     */
+    public void setMaxEnqueueWait(long maxEnqueueWait) {
+        m_maxEnqueueWait = maxEnqueueWait;
+    }
+
+    public long getWriteThreadSleepTime() {
+        return m_writeThreadSleepTime;
+    }
+
+    public void setWriteThreadSleepTime(long writeThreadSleepTime) {
+        m_writeThreadSleepTime = writeThreadSleepTime;
+    }
+
+    public String getCategory() {
+        return m_category;
+    }
+
+    public void setCategory(final String category) {
+        m_category = category;
+    }
+
+    public MetricRegistry getMetricRegistry() {
+        return m_metricRegistry;
+    }
+
+    public void setMetricRegistry(MetricRegistry metricRegistry) {
+        m_metricRegistry = metricRegistry;
+    }
+
+    /**
+     * A create that was requested for a file, along with the definition of the delegate.
+     */
+    public static class CreateOperation {
+        private final String m_fileName;
+        private final Object m_definition;
+
+        CreateOperation(String fileName, Object definition) {
+            m_fileName = fileName;
+            m_definition = definition;
+        }
+
+        public String getFileName() {
+            return m_fileName;
+        }
+
+        public Object getDefinition() {
+            return m_definition;
+        }
+    }
+
+    /**
+     * The operations pending for a file.
+     */
+    private static class PendingFile {
+        private final String fileName;
+        private final long enqueuedAt = System.currentTimeMillis();
+        private Object createDefinition;
+        private byte[] updates;
+        private int length = 0;
+        private int count = 0;
+        private int operations = 0;
+        private long reservedBytes = 0;
+
+        private PendingFile(String fileName) {
+            this.fileName = fileName;
+        }
+
+        private void addUpdate(byte[] update) {
+            final int required = length + update.length + 1;
+            if (updates == null) {
+                updates = new byte[required];
+            } else if (required > updates.length) {
+                updates = Arrays.copyOf(updates, Math.max(required, updates.length + (updates.length >> 1)));
+            }
+            System.arraycopy(update, 0, updates, length, update.length);
+            updates[required - 1] = UPDATE_SEPARATOR;
+            length = required;
+            count++;
+        }
+    }
+
+    private class Shard {
+        private final Map<String, PendingFile> m_pendingFiles = new HashMap<>();
+        private final ArrayDeque<PendingFile> m_readyFiles = new ArrayDeque<>();
+        private final ArrayDeque<PendingFile> m_promotedFiles = new ArrayDeque<>();
+        private long m_pendingOperations = 0;
+        private long m_pendingBytes = 0;
+        private Writer m_writer;
+
+        /**
+         * The overhead of the file entry is only charged when the file had no
+         * pending operations.
+         *
+         * @return true if the file had no pending operations
+         */
+        private synchronized boolean add(String fileName, Object createDefinition, byte[] update, long updateBytes, long fileOverhead) {
+            PendingFile pendingFile = m_pendingFiles.get(fileName);
+            final boolean isNew = pendingFile == null;
+            if (isNew) {
+                pendingFile = new PendingFile(fileName);
+                m_pendingFiles.put(fileName, pendingFile);
+                m_readyFiles.addLast(pendingFile);
+            }
+            if (createDefinition != null) {
+                pendingFile.createDefinition = createDefinition;
+            }
+            if (update != null) {
+                pendingFile.addUpdate(update);
+            }
+            final long reservedBytes = updateBytes + (isNew ? fileOverhead : 0);
+            pendingFile.operations++;
+            pendingFile.reservedBytes += reservedBytes;
+            m_pendingOperations++;
+            m_pendingBytes += reservedBytes;
+            return isNew;
+        }
+
+        private synchronized PendingFile poll() {
+            PendingFile pendingFile = m_promotedFiles.pollFirst();
+            if (pendingFile == null) {
+                pendingFile = m_readyFiles.pollFirst();
+            }
+            if (pendingFile != null) {
+                m_pendingFiles.remove(pendingFile.fileName);
+                m_pendingOperations -= pendingFile.operations;
+                m_pendingBytes -= pendingFile.reservedBytes;
+            }
+            return pendingFile;
+        }
+
+        private synchronized boolean promote(String fileName) {
+            final PendingFile pendingFile = m_pendingFiles.get(fileName);
+            if (pendingFile != null && m_readyFiles.remove(pendingFile)) {
+                m_promotedFiles.addLast(pendingFile);
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized int getPendingFiles() {
+            return m_pendingFiles.size();
+        }
+
+        private synchronized long getPendingOperations() {
+            return m_pendingOperations;
+        }
+
+        private synchronized long getPendingBytes() {
+            return m_pendingBytes;
+        }
+
+        /**
+         * @return the number of milliseconds since the oldest pending file was queued
+         */
+        private synchronized long getAge() {
+            // The ready files are in the order in which they were queued, but the promoted ones are not
+            long oldest = m_readyFiles.isEmpty() ? Long.MAX_VALUE : m_readyFiles.peekFirst().enqueuedAt;
+            for (PendingFile pendingFile : m_promotedFiles) {
+                oldest = Math.min(oldest, pendingFile.enqueuedAt);
+            }
+            return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+        }
+    }
+
+    private class Writer implements Runnable {
+        private final List<Shard> m_shards;
+        private volatile Thread m_thread;
+
+        private Writer(List<Shard> shards) {
+            m_shards = shards;
+        }
+
+        private void start(String name) {
+            m_thread = new Thread(this, name);
+            m_thread.setDaemon(true);
+            m_thread.start();
+        }
+
+        private void wakeUp() {
+            LockSupport.unpark(m_thread);
+        }
+
+        @Override
+        public void run() {
+            int next = 0;
+            while (true) {
+                PendingFile pendingFile = null;
+                for (int i = 0; i < m_shards.size() && pendingFile == null; i++) {
+                    pendingFile = m_shards.get(next).poll();
+                    next = (next + 1) % m_shards.size();
+                }
+
+                if (pendingFile == null) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(m_writeThreadSleepTime));
+                    continue;
+                }
+
+                m_dequeuedOperations.add(pendingFile.operations);
+                m_dequeuedItems.increment();
+                process(pendingFile);
+            }
+        }
+    }
+
+    private Shard[] getShardArray() {
+        Shard[] shards = m_shardArray;
+        if (shards == null) {
+            synchronized (this) {
+                shards = m_shardArray;
+                if (shards == null) {
+                    shards = startShards();
+                    m_shardArray = shards;
+                }
+            }
+        }
+        return shards;
+    }
+
+    private Shard[] startShards() {
+        final int numShards = Math.max(m_shards, 1);
+        final int numWriters = Math.max(Math.min(m_writeThreads, numShards), 1);
+        LOG.info("Starting {} write threads for {} shards", numWriters, numShards);
+
+        final Shard[] shards = new Shard[numShards];
+        final Writer[] writers = new Writer[numWriters];
+        for (int i = 0; i < numShards; i++) {
+            shards[i] = new Shard();
+        }
+        for (int i = 0; i < numWriters; i++) {
+            final List<Shard> assignedShards = new ArrayList<>();
+            for (int j = i; j < numShards; j += numWriters) {
+                assignedShards.add(shards[j]);
+            }
+            writers[i] = new Writer(assignedShards);
+            for (Shard shard : assignedShards) {
+                shard.m_writer = writers[i];
+            }
+        }
+
+        if (m_metricRegistry != null) {
+            for (int i = 0; i < numShards; i++) {
+                final Shard shard = shards[i];
+                final String prefix = MetricRegistry.name("shards", Integer.toString(i));
+                m_metricRegistry.register(MetricRegistry.name(prefix, "files"), (Gauge<Integer>) shard::getPendingFiles);
+                m_metricRegistry.register(MetricRegistry.name(prefix, "operations"), (Gauge<Long>) shard::getPendingOperations);
+                m_metricRegistry.register(MetricRegistry.name(prefix, "bytes"), (Gauge<Long>) shard::getPendingBytes);
+                m_metricRegistry.register(MetricRegistry.name(prefix, "age"), (Gauge<Long>) shard::getAge);
+            }
+            m_metricRegistry.register("queuedBytes", (Gauge<Long>) m_queuedBytes::get);
+            m_metricRegistry.register("dropped", (Gauge<Long>) m_dropped::sum);
+        }
+
+        for (int i = 0; i < numWriters; i++) {
+            writers[i].start(getClass().getSimpleName() + "-" + (i + 1));
+        }
+        return shards;
+    }
+
+    private Shard getShard(String fileName) {
+        final Shard[] shards = getShardArray();
+        final int h = fileName.hashCode();
+        return shards[Math.floorMod(h ^ (h >>> 16), shards.length)];
+    }
+
+    //
+    // Queue management
+    //
+
+    private void enqueue(final String fileName, final Object createDefinition, final byte[] update) {
+        final Shard shard = getShard(fileName);
+        final long fileOverhead = PENDING_FILE_OVERHEAD + 2L * fileName.length();
+        final long updateBytes = update != null ? update.length + 1 : 0;
+
+        // Reserve room for the file entry, in case the file has no other pending operations
+        if (!reserve(fileOverhead + updateBytes)) {
+            m_dropped.increment();
+            LOG.error("RRD Data Queue is Full!! Discarding operation for file {}", fileName);
+            return;
+        }
+        m_startTime.compareAndSet(0, System.currentTimeMillis());
+
+        m_enqueuedOperations.increment();
+        if (shard.add(fileName, createDefinition, update, updateBytes, fileOverhead)) {
+            shard.m_writer.wakeUp();
+        } else {
+            release(fileOverhead);
+        }
+    }
+
+    private boolean reserve(long bytes) {
+        if (tryReserve(bytes)) {
+            return true;
+        }
+
+        final long deadline = System.currentTimeMillis() + m_maxEnqueueWait;
+        synchronized (m_budgetMonitor) {
+            m_waitingForBudget++;
+            try {
+                while (!tryReserve(bytes)) {
+                    final long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    m_budgetMonitor.wait(remaining);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                m_waitingForBudget--;
+            }
+        }
+    }
+
+    private boolean tryReserve(long bytes) {
+        if (m_queuedBytes.addAndGet(bytes) <= m_maxQueuedBytes || m_maxQueuedBytes <= 0) {
+            return true;
+        }
+        m_queuedBytes.addAndGet(-bytes);
+        return false;
+    }
+
+    private void release(long bytes) {
+        m_queuedBytes.addAndGet(-bytes);
+        if (m_waitingForBudget > 0) {
+            synchronized (m_budgetMonitor) {
+                m_budgetMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void process(final PendingFile pendingFile) {
+        Logging.withPrefix(m_category, new Runnable() {
+            @Override public void run() {
+                Object rrd = null;
+                try {
+                    if (pendingFile.createDefinition != null) {
+                        m_delegate.createFile(pendingFile.createDefinition);
+                        m_createsCompleted.increment();
+                    }
+                    if (pendingFile.count > 0) {
+                        rrd = m_delegate.openFile(pendingFile.fileName);
+                        int start = 0;
+                        for (int i = 0; i < pendingFile.length; i++) {
+                            if (pendingFile.updates[i] != UPDATE_SEPARATOR) {
+                                continue;
+                            }
+                            final String update = new String(pendingFile.updates, start, i - start, StandardCharsets.UTF_8);
+                            start = i + 1;
+                            try {
+                                m_delegate.updateFile(rrd, "", update);
+                                m_updatesCompleted.increment();
+                            } catch (final Throwable e) {
+                                m_errors.increment();
+                                LOG.debug("Error processing update for file {}: {}", pendingFile.fileName, update, e);
+                            }
+                        }
+                    }
+                } catch (final Throwable e) {
+                    m_errors.increment();
+                    LOG.debug("Error updating file {}: {}", pendingFile.fileName, e.getMessage(), e);
+                } finally {
+                    if (rrd != null) {
+                        try {
+                            m_delegate.closeFile(rrd);
+                        } catch (final Throwable e) {
+                            m_errors.increment();
+                            LOG.debug("Error closing rrd {}: {}", rrd, e.getMessage(), e);
+                        }
+                    }
+                    release(pendingFile.reservedBytes);
+                }
+            }
+        });
+    }
+
+    //
+    // RrdStrategy Implementation.. These methods just enqueue the calls as
+    // operations
+    //
+
+    /**
+     * {@inheritDoc}
+     *
+     * The file is closed by the write threads.
+     */
+    @Override
+    public void closeFile(String rrd) throws Exception {
+        // no need to do anything here
+    }
+
+    @Override
+    public CreateOperation createDefinition(String creator, String directory, String rrdName, int step, List<RrdDataSource> dataSources, List<String> rraList) throws Exception {
+        String fileName = directory + File.separator + rrdName + m_delegate.getDefaultFileExtension();
+        Object def = m_delegate.createDefinition(creator, directory, rrdName, step, dataSources, rraList);
+        return new CreateOperation(fileName, def);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The file is created by the write threads if <code>queueCreates</code> is set.
+     */
+    @Override
+    public void createFile(CreateOperation op) throws Exception {
+        if (m_queueCreates && op.getDefinition() != null) {
+            enqueue(op.getFileName(), op.getDefinition(), null);
+        } else {
+            m_delegate.createFile(op.getDefinition());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The file is opened by the write threads.
+     */
+    @Override
+    public String openFile(String fileName) throws Exception {
+        return fileName;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The update is queued and written by the write threads.
+     */
+    @Override
+    public void updateFile(String rrdFile, String owner, String data) throws Exception {
+        enqueue(rrdFile, null, data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Double fetchLastValue(String rrdFile, String ds, int interval) throws NumberFormatException, RrdException {
+        return m_delegate.fetchLastValue(rrdFile, ds, interval);
+    }
+
+    @Override
+    public Double fetchLastValue(String rrdFile, String ds, String consolidationFunction, int interval) throws NumberFormatException, RrdException {
+        return m_delegate.fetchLastValue(rrdFile, ds, consolidationFunction, interval);
+    }
+
+    @Override
+    public Double fetchLastValueInRange(String rrdFile, String ds, int interval, int range) throws NumberFormatException, RrdException {
+        return m_delegate.fetchLastValueInRange(rrdFile, ds, interval, range);
+    }
+
+    @Override
+    public InputStream createGraph(String command, File workDir) throws IOException, RrdException {
+        return m_delegate.createGraph(command, workDir);
+    }
+
+    @Override
+    public RrdGraphDetails createGraphReturnDetails(String command, File workDir) throws IOException, RrdException {
+        return m_delegate.createGraphReturnDetails(command, workDir);
+    }
+
+    @Override
+    public int getGraphLeftOffset() {
+        return m_delegate.getGraphLeftOffset();
+    }
+
+    @Override
+    public int getGraphRightOffset() {
+        return m_delegate.getGraphRightOffset();
+    }
+
+    @Override
+    public int getGraphTopOffsetWithText() {
+        return m_delegate.getGraphTopOffsetWithText();
+    }
+
+    @Override
+    public String getDefaultFileExtension() {
+        return m_delegate.getDefaultFileExtension();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Moves the given files to the head of their shard, so that they are written next.
+     */
+    @Override
+    public void promoteEnqueuedFiles(Collection<String> rrdFiles) {
+        for (String rrdFile : rrdFiles) {
+            final Shard shard = getShard(rrdFile);
+            if (shard.promote(rrdFile)) {
+                m_promotionCount.increment();
+                shard.m_writer.wakeUp();
+            }
+        }
+        m_delegate.promoteEnqueuedFiles(rrdFiles);
+    }
+
+    @Override
+    public String getStats() {
+        final StringBuilder stats = new StringBuilder();
+        stats.append("\nQS:\t").append("totalOperationsPending=").append(getTotalOperationsPending())
+            .append(", queuedBytes=").append(m_queuedBytes.get())
+            .append(", createsCompleted=").append(getCreatesCompleted())
+            .append(", updatesCompleted=").append(getUpdatesCompleted())
+            .append(", errors=").append(getErrors())
+            .append(", dropped=").append(m_dropped.sum())
+            .append(", overallOpsPerUpdate=").append(getDequeuedOperations() / Math.max(getDequeuedItems(), 1.0));
+        final Shard[] shards = m_shardArray;
+        if (shards != null) {
+            for (int i = 0; i < shards.length; i++) {
+                stats.append("\nQS:\t").append("shard=").append(i)
+                    .append(", files=").append(shards[i].getPendingFiles())
+                    .append(", operations=").append(shards[i].getPendingOperations())
+                    .append(", bytes=").append(shards[i].getPendingBytes())
+                    .append(", age=").append(shards[i].getAge());
+            }
+        }
+        return stats.toString();
+    }
+
+    @Override
+    public long getTotalOperationsPending() {
+        return m_enqueuedOperations.sum() - m_dequeuedOperations.sum();
+    }
+
+    @Override
+    public long getCreatesCompleted() {
+        return m_createsCompleted.sum();
+    }
+
+    @Override
+    public long getUpdatesCompleted() {
+        return m_updatesCompleted.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return m_errors.sum();
+    }
+
+    /**
+     * @return the number of operations that were discarded because the queue was full
+     */
+    public long getDropped() {
+        return m_dropped.sum();
+    }
+
+    @Override
+    public long getPromotionCount() {
+        return m_promotionCount.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * All of the operations are considered to be significant.
+     */
+    @Override
+    public long getSignificantOpsEnqueued() {
+        return getEnqueuedOperations();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * All of the operations are considered to be significant.
+     */
+    @Override
+    public long getSignificantOpsDequeued() {
+        return getDequeuedOperations();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * All of the operations are considered to be significant.
+     */
+    @Override
+    public long getSignificantOpsCompleted() {
+        return getCreatesCompleted() + getUpdatesCompleted();
+    }
+
+    @Override
+    public long getEnqueuedOperations() {
+        return m_enqueuedOperations.sum();
+    }
+
+    @Override
+    public long getDequeuedOperations() {
+        return m_dequeuedOperations.sum();
+    }
+
+    @Override
+    public long getDequeuedItems() {
+        return m_dequeuedItems.sum();
+    }
+
+    @Override
+    public long getStartTime() {
+        return m_startTime.get();
+    }
+
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedQueuingRrdStrategyTest {
+
+    private RecordingRrdStrategy m_delegate;
+
+    private ShardedQueuingRrdStrategy m_strategy;
+
+    @Before
+    public void setUp() {
+        m_delegate = new RecordingRrdStrategy();
+        m_strategy = new ShardedQueuingRrdStrategy(m_delegate);
+        m_strategy.setShards(1);
+        m_strategy.setWriteThreads(1);
+        m_strategy.setWriteThreadSleepTime(10);
+    }
+
+    @After
+    public void tearDown() {
+        m_delegate.unblock();
+    }
+
+    @Test
+    public void canCoalesceUpdatesPerFile() throws Exception {
+        // Hold the write thread while the updates are queued
+        m_strategy.updateFile("blocker", "", "N:0");
+        m_delegate.awaitBlocked();
+
+        m_strategy.updateFile("a", "", "N:1");
+        m_strategy.updateFile("b", "", "N:2");
+        m_strategy.updateFile("a", "", "N:3");
+        m_strategy.updateFile("a", "", "1:18446744073709551615");
+        assertEquals(4, m_strategy.getTotalOperationsPending());
+
+        m_delegate.unblock();
+        waitFor(() -> m_strategy.getUpdatesCompleted() == 5);
+
+        // Each file is opened once and the updates are applied in the order in which they were queued
+        assertEquals(Arrays.asList("open blocker", "update blocker N:0", "close blocker",
+                "open a", "update a N:1", "update a N:3", "update a 1:18446744073709551615", "close a",
+                "open b", "update b N:2", "close b"), m_delegate.getOperations());
+        assertEquals(0, m_strategy.getTotalOperationsPending());
+        assertEquals(5, m_strategy.getEnqueuedOperations());
+        assertEquals(3, m_strategy.getDequeuedItems());
+        assertEquals(0, m_strategy.getErrors());
+    }
+
+    @Test
+    public void canQueueCreates() throws Exception {
+        m_strategy.setQueueCreates(true);
+        m_strategy.updateFile("blocker", "", "N:0");
+        m_delegate.awaitBlocked();
+
+        m_strategy.createFile(m_strategy.createDefinition("test", "dir", "a", 300, Collections.emptyList(), Collections.emptyList()));
+        m_strategy.updateFile("dir/a.rrd", "", "N:1");
+
+        m_delegate.unblock();
+        waitFor(() -> m_strategy.getUpdatesCompleted() == 2);
+
+        assertEquals(Arrays.asList("open blocker", "update blocker N:0", "close blocker",
+                "create dir/a.rrd", "open dir/a.rrd", "update dir/a.rrd N:1", "close dir/a.rrd"), m_delegate.getOperations());
+        assertEquals(1, m_strategy.getCreatesCompleted());
+    }
+
+    @Test
+    public void canPromoteFiles() throws Exception {
+        m_strategy.updateFile("blocker", "", "N:0");
+        m_delegate.awaitBlocked();
+
+        m_strategy.updateFile("a", "", "N:1");
+        m_strategy.updateFile("b", "", "N:2");
+        m_strategy.promoteEnqueuedFiles(Collections.singletonList("b"));
+
+        m_delegate.unblock();
+        waitFor(() -> m_strategy.getUpdatesCompleted() == 3);
+
+        assertEquals(Arrays.asList("open blocker", "update blocker N:0", "close blocker",
+                "open b", "update b N:2", "close b",
+                "open a", "update a N:1", "close a"), m_delegate.getOperations());
+        assertEquals(1, m_strategy.getPromotionCount());
+    }
+
+    @Test
+    public void canDiscardUpdatesWhenTheQueueIsFull() throws Exception {
+        m_strategy.setMaxQueuedBytes(1024);
+        m_strategy.setMaxEnqueueWait(10);
+        m_strategy.updateFile("blocker", "", "N:0");
+        m_delegate.awaitBlocked();
+
+        for (int i = 0; i < 100; i++) {
+            m_strategy.updateFile("file" + i, "", "N:" + i);
+        }
+        assertTrue(m_strategy.getDropped() > 0);
+        assertEquals(100, m_strategy.getEnqueuedOperations() - 1 + m_strategy.getDropped());
+
+        // The queue accepts updates again once the write thread catches up
+        m_delegate.unblock();
+        waitFor(() -> m_strategy.getTotalOperationsPending() == 0);
+        m_strategy.setMaxEnqueueWait(10000);
+        final long dropped = m_strategy.getDropped();
+        m_strategy.updateFile("a", "", "N:1");
+        assertEquals(dropped, m_strategy.getDropped());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting for the write threads", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Records the operations, and holds the write thread when the
+     * "blocker" file is opened until {@link #unblock()} is called.
+     */
+    private static class RecordingRrdStrategy extends NullRrdStrategy {
+        private final List<String> m_operations = new ArrayList<>();
+        private final CountDownLatch m_blocked = new CountDownLatch(1);
+        private final CountDownLatch m_unblocked = new CountDownLatch(1);
+
+        private synchronized void record(String operation) {
+            m_operations.add(operation);
+        }
+
+        public synchronized List<String> getOperations() {
+            return new ArrayList<>(m_operations);
+        }
+
+        public void awaitBlocked() throws InterruptedException {
+            assertTrue(m_blocked.await(10, TimeUnit.SECONDS));
+        }
+
+        public void unblock() {
+            m_unblocked.countDown();
+        }
+
+        @Override
+        public Object createDefinition(String creator, String directory, String rrdName, int step, List<RrdDataSource> dataSources, List<String> rraList) {
+            return directory + "/" + rrdName + getDefaultFileExtension();
+        }
+
+        @Override
+        public void createFile(Object rrdDef) {
+            record("create " + rrdDef);
+        }
+
+        @Override
+        public Object openFile(String fileName) {
+            record("open " + fileName);
+            if ("blocker".equals(fileName)) {
+                m_blocked.countDown();
+                try {
+                    m_unblocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return fileName;
+        }
+
+        @Override
+        public void updateFile(Object rrd, String owner, String data) {
+            record("update " + rrd + " " + data);
+        }
+
+        @Override
+        public void closeFile(Object rrd) {
+            record("close " + rrd);
+        }
+
+        @Override
+        public String getDefaultFileExtension() {
+            return ".rrd";
+        }
+    }
+}
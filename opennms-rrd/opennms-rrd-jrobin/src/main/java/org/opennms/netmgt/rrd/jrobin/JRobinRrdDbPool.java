@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd.jrobin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jrobin.core.RrdBackendFactory;
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Keeps the most recently used {@link RrdDb} handles open, so that the header
+ * of the files doesn't need to be parsed, and the files reopened, on every
+ * update and fetch.
+ *
+ * Handles are reference counted: {@link #request(String)} and {@link #release(RrdDb)}
+ * must always be paired. The same handle is shared by all the threads that
+ * request the same file, which is safe since {@link RrdDb} synchronizes stores
+ * and fetches. Once the number of open handles exceeds the capacity, the least
+ * recently used handles that are not in use are closed.
+ */
+public class JRobinRrdDbPool {
+    private static final Logger LOG = LoggerFactory.getLogger(JRobinRrdDbPool.class);
+
+    private final int m_capacity;
+
+    private final RrdBackendFactory m_factory;
+
+    /**
+     * Entries by path, in access order.
+     */
+    private final LinkedHashMap<String, Entry> m_entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<RrdDb, Entry> m_entriesByDb = new IdentityHashMap<>();
+
+    private final Meter m_hits;
+
+    private final Meter m_misses;
+
+    private final Meter m_evictions;
+
+    public JRobinRrdDbPool(int capacity, RrdBackendFactory factory, MetricRegistry metrics) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        m_capacity = capacity;
+        m_factory = Objects.requireNonNull(factory);
+
+        m_hits = metrics.meter("hits");
+        m_misses = metrics.meter("misses");
+        m_evictions = metrics.meter("evictions");
+        metrics.register("open", (Gauge<Integer>) this::getOpenCount);
+        metrics.register("in-use", (Gauge<Integer>) this::getInUseCount);
+    }
+
+    /**
+     * Retrieves a handle for the given file, opening it if necessary.
+     *
+     * @param path path to the file
+     * @return an open handle, which must be given back using {@link #release(RrdDb)}
+     */
+    public RrdDb request(String path) throws IOException, RrdException {
+        final Entry entry;
+        final List<RrdDb> evicted;
+        synchronized (this) {
+            Entry existing = m_entries.get(path);
+            if (existing != null) {
+                m_hits.mark();
+            } else {
+                m_misses.mark();
+                existing = new Entry(path);
+                m_entries.put(path, existing);
+            }
+            entry = existing;
+            entry.m_references++;
+            evicted = evict();
+        }
+        close(evicted);
+
+        try {
+            return entry.open();
+        } catch (IOException | RrdException | RuntimeException e) {
+            synchronized (this) {
+                entry.m_references--;
+                if (entry.m_references == 0 && entry.m_db == null) {
+                    m_entries.remove(path, entry);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gives back a handle retrieved by {@link #request(String)}.
+     */
+    public void release(RrdDb db) throws IOException {
+        final List<RrdDb> evicted;
+        synchronized (this) {
+            final Entry entry = m_entriesByDb.get(db);
+            if (entry == null) {
+                // Not one of ours
+                evicted = new ArrayList<>(1);
+                evicted.add(db);
+            } else {
+                entry.m_references--;
+                if (entry.m_references == 0 && entry.m_stale) {
+                    remove(entry);
+                    evicted = new ArrayList<>(1);
+                    evicted.add(db);
+                } else {
+                    evicted = evict();
+                }
+            }
+        }
+        close(evicted);
+    }
+
+    /**
+     * Stops handing out the current handle for the given file, i.e. after the file
+     * was replaced. The handle is closed once it is no longer in use.
+     */
+    public void invalidate(String path) {
+        final List<RrdDb> evicted = new ArrayList<>(1);
+        synchronized (this) {
+            final Entry entry = m_entries.remove(path);
+            if (entry == null) {
+                return;
+            }
+            entry.m_stale = true;
+            if (entry.m_references == 0 && entry.m_db != null) {
+                m_entriesByDb.remove(entry.m_db);
+                evicted.add(entry.m_db);
+            }
+        }
+        close(evicted);
+    }
+
+    /**
+     * Closes all of the handles that are not in use.
+     */
+    public void closeAll() {
+        final List<RrdDb> evicted = new ArrayList<>();
+        synchronized (this) {
+            for (final Iterator<Entry> it = m_entries.values().iterator(); it.hasNext();) {
+                final Entry entry = it.next();
+                if (entry.m_references == 0 && entry.m_db != null) {
+                    it.remove();
+                    m_entriesByDb.remove(entry.m_db);
+                    evicted.add(entry.m_db);
+                }
+            }
+        }
+        close(evicted);
+    }
+
+    public int getCapacity() {
+        return m_capacity;
+    }
+
+    public synchronized int getOpenCount() {
+        return m_entriesByDb.size();
+    }
+
+    public synchronized int getInUseCount() {
+        int inUse = 0;
+        for (final Entry entry : m_entries.values()) {
+            if (entry.m_references > 0) {
+                inUse++;
+            }
+        }
+        return inUse;
+    }
+
+    /**
+     * Removes the least recently used entries that are not in use, until we're back
+     * within capacity. Must be called while holding the lock.
+     */
+    private List<RrdDb> evict() {
+        if (m_entries.size() <= m_capacity) {
+            return null;
+        }
+        final List<RrdDb> evicted = new ArrayList<>();
+        for (final Iterator<Entry> it = m_entries.values().iterator(); it.hasNext() && m_entries.size() > m_capacity;) {
+            final Entry entry = it.next();
+            if (entry.m_references == 0 && entry.m_db != null) {
+                it.remove();
+                m_entriesByDb.remove(entry.m_db);
+                evicted.add(entry.m_db);
+                m_evictions.mark();
+            }
+        }
+        return evicted;
+    }
+
+    private void remove(Entry entry) {
+        m_entries.remove(entry.m_path, entry);
+        m_entriesByDb.remove(entry.m_db);
+    }
+
+    private static void close(List<RrdDb> dbs) {
+        if (dbs == null) {
+            return;
+        }
+        for (final RrdDb db : dbs) {
+            try {
+                db.close();
+            } catch (IOException e) {
+                LOG.error("Failed to close rrd file: {}", db.getPath(), e);
+            }
+        }
+    }
+
+    private class Entry {
+        private final String m_path;
+
+        /**
+         * Guarded by the pool.
+         */
+        private int m_references = 0;
+
+        /**
+         * Guarded by the pool.
+         */
+        private boolean m_stale = false;
+
+        /**
+         * Written while holding both the entry and the pool, so that it can be read
+         * while holding either.
+         */
+        private RrdDb m_db;
+
+        private Entry(String path) {
+            m_path = path;
+        }
+
+        private synchronized RrdDb open() throws IOException, RrdException {
+            synchronized (JRobinRrdDbPool.this) {
+                if (m_db != null) {
+                    return m_db;
+                }
+            }
+            // Other threads requesting the same file wait for us
+            final RrdDb db = new RrdDb(m_path, false, m_factory);
+            LOG.trace("Opened {}.", m_path);
+            synchronized (JRobinRrdDbPool.this) {
+                m_db = db;
+                m_entriesByDb.put(db, this);
+            }
+            return db;
+        }
+    }
+}
@@ -44,6 +44,7 @@ import java.util.Map.Entry;
 import java.util.Properties;
 
 import org.jrobin.core.FetchData;
+import org.jrobin.core.RrdBackendFactory;
 import org.jrobin.core.RrdDb;
 import org.jrobin.core.RrdDef;
 import org.jrobin.core.RrdException;
@@ -58,6 +59,10 @@ import org.opennms.netmgt.rrd.RrdStrategy;
 import org.opennms.netmgt.rrd.RrdMetaDataUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
 
 
 /**
@@ -65,13 +70,24 @@ import org.slf4j.LoggerFactory;
  * FILE mode (NIO is too memory consuming for the large number of files that we
  * open)
  *
+ * When <code>org.opennms.rrd.jrobin.pooled</code> is set, the files are kept
+ * open in a {@link JRobinRrdDbPool} between updates and fetches instead. The
+ * pooled files use the backend given by <code>org.opennms.rrd.jrobin.pool.backend</code>,
+ * NIO by default, and the statistics of the pool are exposed via JMX.
+ *
  * @author ranger
  * @version $Id: $
  */
-public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
+public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb>, DisposableBean {
     private static final Logger LOG = LoggerFactory.getLogger(JRobinRrdStrategy.class);
     private static final String BACKEND_FACTORY_PROPERTY = "org.jrobin.core.RrdBackendFactory";
     private static final String DEFAULT_BACKEND_FACTORY = "FILE";
+    private static final String POOLED_PROPERTY = "org.opennms.rrd.jrobin.pooled";
+    private static final String POOL_CAPACITY_PROPERTY = "org.opennms.rrd.jrobin.pool.capacity";
+    private static final String DEFAULT_POOL_CAPACITY = "1000";
+    private static final String POOL_BACKEND_FACTORY_PROPERTY = "org.opennms.rrd.jrobin.pool.backend";
+    private static final String DEFAULT_POOL_BACKEND_FACTORY = "NIO";
+    private static final String METRICS_DOMAIN = "org.opennms.netmgt.rrd.jrobin";
 
     /*
      * Ensure that we only initialize certain things *once* per
@@ -81,6 +97,10 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
 
     private Properties m_configurationProperties;
 
+    private JRobinRrdDbPool m_pool;
+
+    private JmxReporter m_poolReporter;
+
     /**
      * An extremely simple Plottable for holding static datasources that
      * can't be represented with an SDEF -- currently used only for PERCENT
@@ -137,6 +157,37 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
                 LOG.error("Could not set default JRobin RRD factory", e);
             }
         }
+        if (m_pool == null && m_configurationProperties != null
+                && Boolean.parseBoolean(m_configurationProperties.getProperty(POOLED_PROPERTY, "false"))) {
+            createPool();
+        }
+    }
+
+    private void createPool() {
+        final int capacity = Integer.parseInt(m_configurationProperties.getProperty(POOL_CAPACITY_PROPERTY, DEFAULT_POOL_CAPACITY));
+        final String factory = m_configurationProperties.getProperty(POOL_BACKEND_FACTORY_PROPERTY, DEFAULT_POOL_BACKEND_FACTORY);
+        try {
+            final MetricRegistry metrics = new MetricRegistry();
+            m_pool = new JRobinRrdDbPool(capacity, RrdBackendFactory.getFactory(factory), metrics);
+            m_poolReporter = JmxReporter.forRegistry(metrics).inDomain(METRICS_DOMAIN).build();
+            m_poolReporter.start();
+            LOG.info("Keeping up to {} JRobin RRD files open using the {} backend.", capacity, factory);
+        } catch (RrdException e) {
+            LOG.error("Could not create the JRobin RRD pool, files will be opened on every access", e);
+        }
+    }
+
+    /**
+     * Closes the pooled files, if any.
+     */
+    @Override
+    public void destroy() {
+        if (m_pool != null) {
+            m_pool.closeAll();
+        }
+        if (m_poolReporter != null) {
+            m_poolReporter.stop();
+        }
     }
 
     /**
@@ -147,7 +198,11 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
      */
     @Override
     public void closeFile(final RrdDb rrdFile) throws Exception {
-        rrdFile.close();
+        if (m_pool != null) {
+            m_pool.release(rrdFile);
+        } else {
+            rrdFile.close();
+        }
     }
 
     /** {@inheritDoc} */
@@ -204,6 +259,11 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
 
         RrdDb rrd = new RrdDb(rrdDef);
         rrd.close();
+
+        if (m_pool != null) {
+            // Don't hand out a handle to a file that may have been replaced
+            m_pool.invalidate(rrdDef.getPath());
+        }
     }
 
     /**
@@ -213,6 +273,9 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
      */
     @Override
     public RrdDb openFile(final String fileName) throws Exception {
+        if (m_pool != null) {
+            return m_pool.request(fileName);
+        }
         return new RrdDb(fileName);
     }
 
@@ -256,7 +319,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
         try {
             long now = System.currentTimeMillis();
             long collectTime = (now - (now % interval)) / 1000L;
-            rrd = new RrdDb(fileName, true);
+            rrd = openFileForFetch(fileName);
             FetchData data = rrd.createFetchRequest(consolidationFunction, collectTime, collectTime).fetchData();
             LOG.debug(data.toString());
             double[] vals = data.getValues(ds);
@@ -270,11 +333,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
             throw new org.opennms.netmgt.rrd.RrdException("Exception occurred fetching data from " + fileName, e);
         } finally {
             if (rrd != null) {
-                try {
-                    rrd.close();
-                } catch (IOException e) {
-                    LOG.error("Failed to close rrd file: {}", fileName, e);
-                }
+                closeFileAfterFetch(rrd, fileName);
             }
         }
     }
@@ -284,7 +343,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     public Double fetchLastValueInRange(final String fileName, final String ds, final int interval, final int range) throws NumberFormatException, org.opennms.netmgt.rrd.RrdException {
         RrdDb rrd = null;
         try {
-        	rrd = new RrdDb(fileName, true);
+        	rrd = openFileForFetch(fileName);
          	long now = System.currentTimeMillis();
             long latestUpdateTime = (now - (now % interval)) / 1000L;
             long earliestUpdateTime = ((now - (now % interval)) - range) / 1000L;
@@ -312,15 +371,30 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
             throw new org.opennms.netmgt.rrd.RrdException("Exception occurred fetching data from " + fileName, e);
         } finally {
             if (rrd != null) {
-                try {
-                    rrd.close();
-                } catch (IOException e) {
-                    LOG.error("Failed to close rrd file: {}", fileName, e);
-                }
+                closeFileAfterFetch(rrd, fileName);
             }
         }
     }
 
+    private RrdDb openFileForFetch(final String fileName) throws IOException, RrdException {
+        if (m_pool != null) {
+            return m_pool.request(fileName);
+        }
+        return new RrdDb(fileName, true);
+    }
+
+    private void closeFileAfterFetch(final RrdDb rrd, final String fileName) {
+        try {
+            if (m_pool != null) {
+                m_pool.release(rrd);
+            } else {
+                rrd.close();
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to close rrd file: {}", fileName, e);
+        }
+    }
+
     private Color getColor(final String colorValue) {
         int rVal = Integer.parseInt(colorValue.substring(0, 2), 16);
         int gVal = Integer.parseInt(colorValue.substring(2, 4), 16);
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd.jrobin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.jrobin.core.RrdBackendFactory;
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.test.FileAnticipator;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class JRobinRrdDbPoolTest {
+
+    private FileAnticipator m_fileAnticipator;
+
+    private MetricRegistry m_metrics;
+
+    @Before
+    public void setUp() throws Exception {
+        MockLogAppender.setupLogging();
+        m_fileAnticipator = new FileAnticipator();
+        m_metrics = new MetricRegistry();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        m_fileAnticipator.deleteExpected();
+        m_fileAnticipator.tearDown();
+    }
+
+    @Test
+    public void testSharesHandles() throws Exception {
+        final JRobinRrdDbPool pool = new JRobinRrdDbPool(2, RrdBackendFactory.getFactory("FILE"), m_metrics);
+        final String path = createRrdFile("a");
+
+        final RrdDb first = pool.request(path);
+        final RrdDb second = pool.request(path);
+        assertSame(first, second);
+        assertEquals(1, pool.getOpenCount());
+        assertEquals(1, pool.getInUseCount());
+
+        pool.release(first);
+        pool.release(second);
+        assertFalse(first.isClosed());
+        assertEquals(1, pool.getOpenCount());
+        assertEquals(0, pool.getInUseCount());
+
+        assertEquals(1, m_metrics.meter("hits").getCount());
+        assertEquals(1, m_metrics.meter("misses").getCount());
+
+        pool.closeAll();
+        assertTrue(first.isClosed());
+        assertEquals(0, pool.getOpenCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        final JRobinRrdDbPool pool = new JRobinRrdDbPool(2, RrdBackendFactory.getFactory("FILE"), m_metrics);
+        final String a = createRrdFile("a");
+        final String b = createRrdFile("b");
+        final String c = createRrdFile("c");
+
+        final RrdDb dbA = pool.request(a);
+        pool.release(dbA);
+        final RrdDb dbB = pool.request(b);
+        pool.release(dbB);
+        // Use a again, so that b is the least recently used
+        pool.release(pool.request(a));
+
+        final RrdDb dbC = pool.request(c);
+        pool.release(dbC);
+
+        assertTrue(dbB.isClosed());
+        assertFalse(dbA.isClosed());
+        assertFalse(dbC.isClosed());
+        assertEquals(2, pool.getOpenCount());
+        assertEquals(1, m_metrics.meter("evictions").getCount());
+
+        pool.closeAll();
+    }
+
+    @Test
+    public void testDoesNotEvictHandlesInUse() throws Exception {
+        final JRobinRrdDbPool pool = new JRobinRrdDbPool(1, RrdBackendFactory.getFactory("FILE"), m_metrics);
+        final String a = createRrdFile("a");
+        final String b = createRrdFile("b");
+
+        final RrdDb dbA = pool.request(a);
+        final RrdDb dbB = pool.request(b);
+        assertFalse(dbA.isClosed());
+        assertFalse(dbB.isClosed());
+        assertEquals(2, pool.getInUseCount());
+
+        // b is closed on release, since a is still in use
+        pool.release(dbB);
+        assertTrue(dbB.isClosed());
+        assertFalse(dbA.isClosed());
+
+        pool.release(dbA);
+        assertFalse(dbA.isClosed());
+        assertEquals(1, pool.getOpenCount());
+
+        pool.closeAll();
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        final JRobinRrdDbPool pool = new JRobinRrdDbPool(2, RrdBackendFactory.getFactory("FILE"), m_metrics);
+        final String a = createRrdFile("a");
+
+        final RrdDb first = pool.request(a);
+        pool.invalidate(a);
+
+        // The handle stays open until it is released
+        assertFalse(first.isClosed());
+        final RrdDb second = pool.request(a);
+        assertNotSame(first, second);
+
+        pool.release(first);
+        assertTrue(first.isClosed());
+        pool.release(second);
+        assertFalse(second.isClosed());
+
+        pool.closeAll();
+    }
+
+    private String createRrdFile(String name) throws Exception {
+        final File file = m_fileAnticipator.expecting(name + ".jrb");
+        final RrdDef def = new RrdDef(file.getAbsolutePath());
+        def.setStartTime(1000);
+        def.setStep(300);
+        def.addDatasource("bar", "GAUGE", 3000, Double.NaN, Double.NaN);
+        def.addArchive("RRA:AVERAGE:0.5:1:2016");
+        new RrdDb(def).close();
+        return file.getAbsolutePath();
+    }
+}
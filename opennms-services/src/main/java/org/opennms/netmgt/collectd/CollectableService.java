@@ -63,6 +63,7 @@ import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.rrd.RrdRepository;
 import org.opennms.netmgt.scheduler.ReadyRunnable;
 import org.opennms.netmgt.scheduler.Scheduler;
+import org.opennms.netmgt.threshd.ThresholdingStage;
 import org.opennms.netmgt.threshd.ThresholdingVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -116,6 +117,12 @@ class CollectableService implements ReadyRunnable {
      * The thresholdvisitor for this collectable service; called 
      */
     private final ThresholdingVisitor m_thresholdVisitor;
+
+    /**
+     * Applies the thresholds off the collection thread, when set
+     */
+    private volatile ThresholdingStage m_thresholdingStage;
+
     /**
      * 
      */
@@ -244,6 +251,15 @@ class CollectableService implements ReadyRunnable {
 		    m_thresholdVisitor.reloadScheduledOutages();
 	}
 
+    /**
+     * <p>setThresholdingStage</p>
+     *
+     * @param thresholdingStage the stage used to apply the thresholds, or null to apply them on the collection thread.
+     */
+    public void setThresholdingStage(ThresholdingStage thresholdingStage) {
+        m_thresholdingStage = thresholdingStage;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
@@ -448,8 +464,7 @@ class CollectableService implements ReadyRunnable {
                             if (m_thresholdVisitor.isNodeInOutage()) {
                                 LOG.info("run: the threshold processing will be skipped because the node {} is on a scheduled outage.", m_nodeId);
                             } else if (m_thresholdVisitor.hasThresholds()) {
-                                m_thresholdVisitor.setCounterReset(result.ignorePersist()); // Required to reinitialize the counters.
-                                result.visit(m_thresholdVisitor);
+                                applyThresholds(result);
                             }
                         }
 
@@ -467,6 +482,33 @@ class CollectableService implements ReadyRunnable {
 		LOG.info("run: finished collection for {}/{}/{}/{}", m_nodeId, getHostAddress(), m_spec.getServiceName(), m_spec.getPackageName());
 	}
 
+    /**
+     * Hands the collection set off to the thresholding stage, or applies
+     * the thresholds on the current thread when there is no stage.
+     */
+    private void applyThresholds(CollectionSet result) {
+        final String packageName = m_spec.getPackageName();
+        final int nodeId = m_nodeId;
+        final String hostAddress = getHostAddress();
+        final String serviceName = m_spec.getServiceName();
+        final long start = System.currentTimeMillis();
+
+        Collectd.instrumentation().beginThresholding(packageName, nodeId, hostAddress, serviceName);
+        final ThresholdingStage stage = m_thresholdingStage;
+        if (stage != null && stage.submit(m_thresholdVisitor, result, result.ignorePersist(), () -> {
+            Collectd.instrumentation().endThresholding(packageName, nodeId, hostAddress, serviceName, System.currentTimeMillis() - start);
+        })) {
+            return;
+        }
+
+        try {
+            m_thresholdVisitor.setCounterReset(result.ignorePersist()); // Required to reinitialize the counters.
+            result.visit(m_thresholdVisitor);
+        } finally {
+            Collectd.instrumentation().endThresholding(packageName, nodeId, hostAddress, serviceName, System.currentTimeMillis() - start);
+        }
+    }
+
 	/**
      * Process any outstanding updates.
      * 
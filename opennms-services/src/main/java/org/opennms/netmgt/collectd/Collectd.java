@@ -76,10 +76,11 @@ import org.opennms.netmgt.model.OnmsMonitoredService;
 import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.model.events.EventUtils;
-import org.opennms.netmgt.scheduler.LegacyScheduler;
 import org.opennms.netmgt.scheduler.ReadyRunnable;
 import org.opennms.netmgt.scheduler.Scheduler;
+import org.opennms.netmgt.scheduler.SchedulerFactory;
 import org.opennms.netmgt.snmp.InetAddrUtils;
+import org.opennms.netmgt.threshd.ThresholdingStage;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xml.event.Parm;
 import org.opennms.netmgt.xml.event.Value;
@@ -127,6 +128,18 @@ public class Collectd extends AbstractServiceDaemon implements
      * Log4j category
      */
     static final String LOG4J_CATEGORY = "collectd";
+
+    /**
+     * Number of threads used to apply the thresholds, 0 applies them on the collection threads
+     */
+    static final String THRESHOLDING_THREADS_SYS_PROP = "org.opennms.netmgt.collectd.thresholding.threads";
+
+    /**
+     * Number of collection sets that can be queued per thresholding thread
+     */
+    static final String THRESHOLDING_QUEUE_SIZE_SYS_PROP = "org.opennms.netmgt.collectd.thresholding.queueSize";
+
+    private static final int DEFAULT_THRESHOLDING_QUEUE_SIZE = 1000;
     
     /**
      * Instantiated service collectors specified in config file
@@ -143,6 +156,11 @@ public class Collectd extends AbstractServiceDaemon implements
      */
     private volatile Scheduler m_scheduler;
 
+    /**
+     * Applies the thresholds of the collected data, null when disabled
+     */
+    private volatile ThresholdingStage m_thresholdingStage;
+
     /**
      * Indicates if scheduling of existing interfaces has been completed
      */
@@ -216,6 +234,13 @@ public class Collectd extends AbstractServiceDaemon implements
         
         // make sure the instrumentation gets initialized
         instrumentation();
+
+        final int thresholdingThreads = Integer.getInteger(THRESHOLDING_THREADS_SYS_PROP, Runtime.getRuntime().availableProcessors());
+        if (thresholdingThreads > 0) {
+            final int thresholdingQueueSize = Integer.getInteger(THRESHOLDING_QUEUE_SIZE_SYS_PROP, DEFAULT_THRESHOLDING_QUEUE_SIZE);
+            LOG.debug("init: Applying thresholds with {} threads", thresholdingThreads);
+            m_thresholdingStage = new ThresholdingStage(thresholdingThreads, thresholdingQueueSize);
+        }
         
         instantiateCollectors();
 
@@ -324,7 +349,7 @@ public class Collectd extends AbstractServiceDaemon implements
                 // Create a scheduler
                 try {
                     LOG.debug("init: Creating collectd scheduler");
-                    setScheduler(new LegacyScheduler("Collectd", m_collectdConfigFactory.getCollectdConfig().getThreads()));
+                    setScheduler(SchedulerFactory.createScheduler("Collectd", m_collectdConfigFactory.getCollectdConfig().getThreads()));
                 } catch (final RuntimeException e) {
                     LOG.error("init: Failed to create collectd scheduler", e);
                     throw e;
@@ -353,6 +378,10 @@ public class Collectd extends AbstractServiceDaemon implements
         getScheduler().stop();
         deinstallMessageSelectors();
 
+        if (m_thresholdingStage != null) {
+            m_thresholdingStage.close();
+        }
+
         setScheduler(null);
     }
 
@@ -526,6 +555,7 @@ public class Collectd extends AbstractServiceDaemon implements
                     m_persisterFactory,
                     m_resourceStorageDao
                 );
+                cSvc.setThresholdingStage(m_thresholdingStage);
 
                 // Add new collectable service to the collectable service list.
                 m_collectableServices.add(cSvc);
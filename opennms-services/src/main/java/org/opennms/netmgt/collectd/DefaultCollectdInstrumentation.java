@@ -111,6 +111,16 @@ public class DefaultCollectdInstrumentation implements CollectionInstrumentation
         log("collector.collect: persistDataQueueing: end: {}/{}/{}/{}", packageName, nodeId, ipAddress, svcName);
     }
 
+    @Override
+    public void beginThresholding(final String packageName, final int nodeId, final String ipAddress, final String svcName) {
+        log("thresholding: begin: {}/{}/{}/{}", packageName, nodeId, ipAddress, svcName);
+    }
+
+    @Override
+    public void endThresholding(final String packageName, final int nodeId, final String ipAddress, final String svcName, final long elapsedMillis) {
+        log("thresholding: end: {}/{}/{}/{}. took {}ms.", packageName, nodeId, ipAddress, svcName, elapsedMillis);
+    }
+
     @Override
     public void beginCollectorInitialize(final String packageName, final int nodeId, final String ipAddress, final String svcName) {
         log("collector.initialize: begin: {}/{}/{}/{}", packageName, nodeId, ipAddress, svcName);
@@ -35,8 +35,13 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
 import org.opennms.core.rpc.api.RequestRejectedException;
 import org.opennms.core.rpc.api.RequestTimedOutException;
 import org.opennms.netmgt.config.OpennmsServerConfigFactory;
@@ -67,6 +72,8 @@ import org.slf4j.LoggerFactory;
 public class DefaultPollContext implements PollContext, EventListener {
     
     private static final Logger LOG = LoggerFactory.getLogger(DefaultPollContext.class);
+    private static final boolean ASYNC_POLLING_ENABLED = Boolean.getBoolean("org.opennms.poller.async");
+    private static final boolean BATCHED_OUTAGES_ENABLED = Boolean.getBoolean("org.opennms.poller.outages.batched");
     private static final String[] UEIS = {
         // service events without node processing enable
         EventConstants.SERVICE_UNRESPONSIVE_EVENT_UEI,
@@ -87,12 +94,14 @@ public class DefaultPollContext implements PollContext, EventListener {
     
     private volatile PollerConfig m_pollerConfig;
     private volatile QueryManager m_queryManager;
+    private volatile OutageWriter m_outageWriter;
     private volatile EventIpcManager m_eventManager;
     private volatile LocationAwarePingClient m_locationAwarePingClient;
     private volatile String m_name;
     private volatile String m_localHostName;
     private volatile boolean m_listenerAdded = false;
     private final Queue<PendingPollEvent> m_pendingPollEvents = new ConcurrentLinkedQueue<>();
+    private ExecutorService m_asyncPollExecutor;
 
     /**
      * <p>getEventManager</p>
@@ -185,6 +194,20 @@ public class DefaultPollContext implements PollContext, EventListener {
         m_queryManager = queryManager;
     }
 
+    public OutageWriter getOutageWriter() {
+        return m_outageWriter;
+    }
+
+    /**
+     * Sets the writer used to queue the outages instead of writing them
+     * immediately, when enabled with org.opennms.poller.outages.batched.
+     *
+     * @param outageWriter a {@link org.opennms.netmgt.poller.OutageWriter} object.
+     */
+    public void setOutageWriter(OutageWriter outageWriter) {
+        m_outageWriter = outageWriter;
+    }
+
     public LocationAwarePingClient getLocationAwarePingClient() {
         return m_locationAwarePingClient;
     }
@@ -305,9 +328,19 @@ public class DefaultPollContext implements PollContext, EventListener {
     /** {@inheritDoc} */
     @Override
     public void openOutage(final PollableService svc, final PollEvent svcLostEvent) {
-        // Open the outage immediately
-        final Integer outageId = getQueryManager().openOutagePendingLostEventId(svc.getNodeId(),
-                svc.getIpAddr(), svc.getSvcName(), svcLostEvent.getDate());
+        final IntConsumer updateWithEventId;
+        final OutageWriter outageWriter = getOutageWriter();
+        if (BATCHED_OUTAGES_ENABLED && outageWriter != null) {
+            // Queue the outage, it is written along with the other pending outages
+            final OutageWriter.Outage outage = outageWriter.openOutage(svc.getNodeId(),
+                    svc.getIpAddr(), svc.getSvcName(), svcLostEvent.getDate());
+            updateWithEventId = eventId -> outageWriter.setLostEventId(outage, eventId);
+        } else {
+            // Open the outage immediately
+            final Integer outageId = getQueryManager().openOutagePendingLostEventId(svc.getNodeId(),
+                    svc.getIpAddr(), svc.getSvcName(), svcLostEvent.getDate());
+            updateWithEventId = eventId -> getQueryManager().updateOpenOutageWithEventId(outageId, eventId);
+        }
 
         // Defer updating the outage with the event id until we receive back
         // from the event bus
@@ -316,7 +349,7 @@ public class DefaultPollContext implements PollContext, EventListener {
             public void run() {
                 final int eventId = svcLostEvent.getEventId();
                 if (eventId > 0) {
-                    getQueryManager().updateOpenOutageWithEventId(outageId, eventId);
+                    updateWithEventId.accept(eventId);
                 } else {
                     LOG.warn("run: Failed to determine an eventId for service lost for: {} with event: {}", svc, svcLostEvent);
                 }
@@ -338,15 +371,32 @@ public class DefaultPollContext implements PollContext, EventListener {
     /** {@inheritDoc} */
     @Override
     public void resolveOutage(final PollableService svc, final PollEvent svcRegainEvent) {
-        // Resolve the outage immediately
-        final Integer outageId = getQueryManager().resolveOutagePendingRegainEventId(svc.getNodeId(),
-                svc.getIpAddr(), svc.getSvcName(), svcRegainEvent.getDate());
-
-        // There may be no outage for this particular service. This can happen when interfaces
-        // are reparented or when a node gains a new service while down.
-        if (outageId == null) {
-            LOG.info("resolveOutage: no outstanding outage for {} on {} with node id {}", svc.getSvcName(), svc.getIpAddr(), svc.getNodeId());
-            return;
+        final Runnable sendOutageResolved = () -> {
+            LOG.debug("resolveOutage: sending outageResolved event for: {} on {}", svc.getSvcName(), svc.getIpAddr());
+            sendEvent(createEvent(EventConstants.OUTAGE_RESOLVED_EVENT_UEI, svc.getNodeId(), svc.getAddress(), svc.getSvcName(), svcRegainEvent.getDate(), null));
+        };
+
+        final IntConsumer updateWithEventId;
+        final OutageWriter outageWriter = getOutageWriter();
+        final boolean batched = BATCHED_OUTAGES_ENABLED && outageWriter != null;
+        if (batched) {
+            // Queue the resolution of the outage, the outageResolved event is sent by
+            // the writer once the resolved outage is written
+            final OutageWriter.Outage outage = outageWriter.resolveOutage(svc.getNodeId(),
+                    svc.getIpAddr(), svc.getSvcName(), svcRegainEvent.getDate(), sendOutageResolved);
+            updateWithEventId = eventId -> outageWriter.setRegainedEventId(outage, eventId);
+        } else {
+            // Resolve the outage immediately
+            final Integer outageId = getQueryManager().resolveOutagePendingRegainEventId(svc.getNodeId(),
+                    svc.getIpAddr(), svc.getSvcName(), svcRegainEvent.getDate());
+
+            // There may be no outage for this particular service. This can happen when interfaces
+            // are reparented or when a node gains a new service while down.
+            if (outageId == null) {
+                LOG.info("resolveOutage: no outstanding outage for {} on {} with node id {}", svc.getSvcName(), svc.getIpAddr(), svc.getNodeId());
+                return;
+            }
+            updateWithEventId = eventId -> getQueryManager().updateResolvedOutageWithEventId(outageId, eventId);
         }
 
         // Defer updating the outage with the event id until we receive back
@@ -356,7 +406,7 @@ public class DefaultPollContext implements PollContext, EventListener {
             public void run() {
                 final int eventId = svcRegainEvent.getEventId();
                 if (eventId > 0) {
-                    getQueryManager().updateResolvedOutageWithEventId(outageId, eventId);
+                    updateWithEventId.accept(eventId);
                 } else {
                     LOG.warn("run: Failed to determine an eventId for service regained for: {} with event: {}", svc, svcRegainEvent);
                 }
@@ -368,8 +418,9 @@ public class DefaultPollContext implements PollContext, EventListener {
         else {
             r.run();
         }
-        LOG.debug("resolveOutage: sending outageResolved event for: {} on {}", svc.getSvcName(), svc.getIpAddr());
-        sendEvent(createEvent(EventConstants.OUTAGE_RESOLVED_EVENT_UEI, svc.getNodeId(), svc.getAddress(), svc.getSvcName(), svcRegainEvent.getDate(), null));
+        if (!batched) {
+            sendOutageResolved.run();
+        }
     }
 
     /* (non-Javadoc)
@@ -385,6 +436,44 @@ public class DefaultPollContext implements PollContext, EventListener {
         return getPollerConfig().isServiceUnresponsiveEnabled();
     }
 
+    /* (non-Javadoc)
+     * @see org.opennms.netmgt.poller.pollables.PollContext#isAsyncPollingEnabled()
+     */
+    /**
+     * <p>isAsyncPollingEnabled</p>
+     *
+     * @return a boolean.
+     */
+    @Override
+    public boolean isAsyncPollingEnabled() {
+        return ASYNC_POLLING_ENABLED;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The results are processed by as many threads as the poller scheduler has, so that the
+     * RPC reply threads never take the tree locks or send events. At most one poll per service
+     * is outstanding, so the number of queued results is bounded by the number of services.
+     */
+    @Override
+    public synchronized Executor getAsyncPollExecutor() {
+        if (m_asyncPollExecutor == null) {
+            final int threads = getPollerConfig().getThreads();
+            m_asyncPollExecutor = Executors.newFixedThreadPool(threads, new LogPreservingThreadFactory("Poller-AsyncResults", threads));
+        }
+        return m_asyncPollExecutor;
+    }
+
+    /**
+     * Stops the threads that process the results of the asynchronous polls.
+     */
+    public synchronized void close() {
+        if (m_asyncPollExecutor != null) {
+            m_asyncPollExecutor.shutdown();
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.opennms.netmgt.eventd.EventListener#onEvent(org.opennms.netmgt.xml.event.Event)
      */
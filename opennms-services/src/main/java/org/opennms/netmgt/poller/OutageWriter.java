@@ -0,0 +1,610 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.dao.api.EventDao;
+import org.opennms.netmgt.dao.api.MonitoredServiceDao;
+import org.opennms.netmgt.dao.api.OutageDao;
+import org.opennms.netmgt.model.OnmsMonitoredService;
+import org.opennms.netmgt.model.OnmsOutage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+
+/**
+ * Defers the outage writes of Pollerd, so that the polling threads don't wait
+ * for the database when many services change state at once.
+ *
+ * The writes are coalesced per outage: an outage that is opened and resolved
+ * before it was written is inserted once with both of its times, and the event
+ * ids are written along with the outage when they are known by then. Since there
+ * are at most a few pending writes per service, the memory used is bounded by
+ * the number of services.
+ *
+ * The pending writes are committed by a single thread, in transactions of up to
+ * batchSize writes, once that many writes are pending or every flushInterval
+ * milliseconds. If a transaction fails, its writes are retried one by one. The writes
+ * that fail again are queued and retried with the next flushes, up to
+ * {@link #MAX_WRITE_ATTEMPTS} times. The callbacks given when resolving outages are
+ * only invoked once the resolved outages are committed.
+ *
+ * The {@link org.opennms.netmgt.poller.pollables.PollableNetwork} remains the
+ * source of truth for the state of the services, nothing is read back from the
+ * pending writes. The number of pending writes and the commit latency are exposed
+ * over JMX in the org.opennms.netmgt.poller domain.
+ */
+public class OutageWriter implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(OutageWriter.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000L;
+
+    public static final int MAX_WRITE_ATTEMPTS = 3;
+
+    @Autowired
+    private MonitoredServiceDao m_monitoredServiceDao;
+
+    @Autowired
+    private OutageDao m_outageDao;
+
+    @Autowired
+    private EventDao m_eventDao;
+
+    @Autowired
+    private TransactionTemplate m_transactionTemplate;
+
+    private final int m_batchSize;
+
+    private final long m_flushIntervalMs;
+
+    private final MetricRegistry m_metrics = new MetricRegistry();
+
+    private final Timer m_commitTimer;
+
+    private final Meter m_writesMeter;
+
+    private final Object m_lock = new Object();
+
+    /**
+     * Used to make sure that the pending writes are flushed by one thread at a time,
+     * and thus committed in order.
+     */
+    private final Object m_flushLock = new Object();
+
+    // Guarded by m_lock
+    private final Set<Outage> m_dirtyOutages = new LinkedHashSet<>();
+
+    // Outages that were opened, but not written yet, guarded by m_lock
+    private final Map<ServiceKey, Outage> m_unwrittenOpenOutages = new LinkedHashMap<>();
+
+    // Guarded by m_lock
+    private Thread m_thread;
+
+    // Guarded by m_lock
+    private JmxReporter m_reporter;
+
+    // Guarded by m_lock
+    private boolean m_closed = false;
+
+    // Set when writes failed during the last flush, guarded by m_lock
+    private boolean m_backoff = false;
+
+    public OutageWriter() {
+        this(Integer.getInteger("org.opennms.poller.outages.batchSize", DEFAULT_BATCH_SIZE),
+                Long.getLong("org.opennms.poller.outages.flushInterval", DEFAULT_FLUSH_INTERVAL_MS));
+    }
+
+    /**
+     * <p>Constructor for OutageWriter.</p>
+     *
+     * @param batchSize the maximum number of writes committed in a single transaction
+     * @param flushIntervalMs how long writes can be pending before they are committed
+     */
+    public OutageWriter(int batchSize, long flushIntervalMs) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be >= 1");
+        }
+        if (flushIntervalMs < 1) {
+            throw new IllegalArgumentException("flushIntervalMs must be >= 1");
+        }
+        m_batchSize = batchSize;
+        m_flushIntervalMs = flushIntervalMs;
+
+        m_commitTimer = m_metrics.timer(MetricRegistry.name("outage-writer", "commit"));
+        m_writesMeter = m_metrics.meter(MetricRegistry.name("outage-writer", "writes"));
+        m_metrics.register(MetricRegistry.name("outage-writer", "pending"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return getPendingCount();
+            }
+        });
+    }
+
+    public void setMonitoredServiceDao(MonitoredServiceDao monitoredServiceDao) {
+        m_monitoredServiceDao = monitoredServiceDao;
+    }
+
+    public void setOutageDao(OutageDao outageDao) {
+        m_outageDao = outageDao;
+    }
+
+    public void setEventDao(EventDao eventDao) {
+        m_eventDao = eventDao;
+    }
+
+    public void setTransactionTemplate(TransactionTemplate transactionTemplate) {
+        m_transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Queues a new outage for the given service.
+     *
+     * @return a handle used to set the lost event id once it is known
+     */
+    public Outage openOutage(int nodeId, String ipAddr, String svcName, Date lostTime) {
+        LOG.info("queuing outage for {}:{}:{} @ {}", nodeId, ipAddr, svcName, lostTime);
+        final ServiceKey service = new ServiceKey(nodeId, ipAddr, svcName);
+        final Outage outage = new Outage(service, lostTime);
+        synchronized (m_lock) {
+            m_unwrittenOpenOutages.put(service, outage);
+            markDirty(outage);
+        }
+        submitted();
+        return outage;
+    }
+
+    /**
+     * Queues the resolution of the current outage of the given service.
+     *
+     * The given callback is invoked by the writer thread once the resolved outage is
+     * committed, including when the outage was opened by this writer and both were
+     * written at once. It is not invoked when the service has no outstanding outage.
+     *
+     * @return a handle used to set the regained event id once it is known
+     */
+    public Outage resolveOutage(int nodeId, String ipAddr, String svcName, Date regainedTime, Runnable onResolved) {
+        LOG.info("queuing resolution of outage for {}:{}:{} @ {}", nodeId, ipAddr, svcName, regainedTime);
+        final ServiceKey service = new ServiceKey(nodeId, ipAddr, svcName);
+        Outage outage;
+        synchronized (m_lock) {
+            outage = m_unwrittenOpenOutages.remove(service);
+            if (outage == null) {
+                outage = new Outage(service, null);
+            }
+            outage.m_regainedTime = regainedTime;
+            outage.m_onResolved = onResolved;
+            markDirty(outage);
+        }
+        submitted();
+        return outage;
+    }
+
+    /**
+     * Queues setting the lost event id on the given outage.
+     */
+    public void setLostEventId(Outage outage, int lostEventId) {
+        synchronized (m_lock) {
+            if (outage.m_missing) {
+                LOG.warn("Failed to update outage for {} with event id {}. The outage no longer exists.", outage.m_service, lostEventId);
+                return;
+            }
+            outage.m_lostEventId = lostEventId;
+            markDirty(outage);
+        }
+        submitted();
+    }
+
+    /**
+     * Queues setting the regained event id on the given outage.
+     */
+    public void setRegainedEventId(Outage outage, int regainedEventId) {
+        synchronized (m_lock) {
+            if (outage.m_missing) {
+                LOG.warn("Failed to update outage for {} with event id {}. The outage no longer exists.", outage.m_service, regainedEventId);
+                return;
+            }
+            outage.m_regainedEventId = regainedEventId;
+            markDirty(outage);
+        }
+        submitted();
+    }
+
+    /**
+     * Returns the number of writes that have not been committed yet.
+     */
+    public int getPendingCount() {
+        synchronized (m_lock) {
+            return m_dirtyOutages.size();
+        }
+    }
+
+    /**
+     * Commits all of the pending writes using the calling thread.
+     */
+    public void flush() {
+        synchronized (m_flushLock) {
+            final List<Write> writes;
+            synchronized (m_lock) {
+                writes = new ArrayList<>(m_dirtyOutages.size());
+                for (Outage outage : m_dirtyOutages) {
+                    writes.add(new OutageWrite(outage));
+                }
+                m_dirtyOutages.clear();
+            }
+
+            for (List<Write> batch : Lists.partition(writes, m_batchSize)) {
+                commit(batch);
+            }
+        }
+    }
+
+    /**
+     * Commits the remaining writes and stops the writer thread.
+     *
+     * The writes that fail are retried up to {@link #MAX_WRITE_ATTEMPTS} times.
+     */
+    @Override
+    public void close() {
+        final Thread thread;
+        synchronized (m_lock) {
+            m_closed = true;
+            thread = m_thread;
+            m_lock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (int i = 0; i < MAX_WRITE_ATTEMPTS && getPendingCount() > 0; i++) {
+            flush();
+        }
+        synchronized (m_lock) {
+            if (m_reporter != null) {
+                m_reporter.stop();
+                m_reporter = null;
+            }
+        }
+    }
+
+    private void markDirty(Outage outage) {
+        if (m_dirtyOutages.add(outage) && getPendingCount() >= m_batchSize) {
+            m_lock.notifyAll();
+        }
+    }
+
+    private void submitted() {
+        final boolean closed;
+        synchronized (m_lock) {
+            closed = m_closed;
+            if (!closed && m_thread == null) {
+                m_reporter = JmxReporter.forRegistry(m_metrics)
+                        .inDomain(getClass().getPackage().getName())
+                        .build();
+                m_reporter.start();
+
+                m_thread = new LogPreservingThreadFactory("Poller-OutageWriter", 1).newThread(this::run);
+                m_thread.setDaemon(true);
+                m_thread.start();
+            }
+        }
+        // Once closed, write through
+        if (closed) {
+            flush();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (m_lock) {
+                final long deadline = System.currentTimeMillis() + m_flushIntervalMs;
+                try {
+                    // Wait for the full interval before retrying failed writes
+                    while (!m_closed && (m_backoff || getPendingCount() < m_batchSize)) {
+                        final long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        m_lock.wait(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    LOG.warn("Outage writer was interrupted.");
+                    return;
+                }
+                if (m_closed) {
+                    // The remaining writes are committed by close()
+                    return;
+                }
+                m_backoff = false;
+            }
+
+            try {
+                flush();
+            } catch (Throwable t) {
+                LOG.error("Unexpected error while writing outages.", t);
+            }
+        }
+    }
+
+    private void commit(List<Write> batch) {
+        final Timer.Context ctx = m_commitTimer.time();
+        try {
+            m_transactionTemplate.execute(status -> {
+                for (Write write : batch) {
+                    write.apply();
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to commit {} outage writes. Retrying them individually.", batch.size(), e);
+            for (Write write : batch) {
+                try {
+                    m_transactionTemplate.execute(status -> {
+                        write.apply();
+                        return null;
+                    });
+                } catch (RuntimeException ex) {
+                    LOG.error("Failed to write {}.", write, ex);
+                    write.failed();
+                    continue;
+                }
+                write.committed();
+                m_writesMeter.mark();
+            }
+            return;
+        } finally {
+            ctx.stop();
+        }
+
+        for (Write write : batch) {
+            write.committed();
+        }
+        m_writesMeter.mark(batch.size());
+    }
+
+    private OnmsMonitoredService getService(ServiceKey service) {
+        return m_monitoredServiceDao.get(service.m_nodeId, InetAddressUtils.addr(service.m_ipAddr), service.m_svcName);
+    }
+
+    /**
+     * An outage of a service, as known by the writer.
+     *
+     * An outage without a lost time refers to the current outage of the service in
+     * the database, and is used to resolve outages that were opened before.
+     */
+    public static final class Outage {
+        private final ServiceKey m_service;
+
+        private final Date m_lostTime;
+
+        // The following fields are guarded by the writer's lock
+
+        private Date m_regainedTime;
+
+        private Runnable m_onResolved;
+
+        private Integer m_lostEventId;
+
+        private Integer m_regainedEventId;
+
+        private Integer m_outageId;
+
+        private boolean m_missing = false;
+
+        private int m_failedAttempts = 0;
+
+        private Outage(ServiceKey service, Date lostTime) {
+            m_service = service;
+            m_lostTime = lostTime;
+        }
+    }
+
+    private interface Write {
+        /**
+         * Applies the write within the current transaction.
+         */
+        void apply();
+
+        /**
+         * Invoked once the transaction in which the write was applied is committed.
+         */
+        void committed();
+
+        /**
+         * Invoked when the write could not be committed, neither in its batch nor on its own.
+         */
+        void failed();
+    }
+
+    private class OutageWrite implements Write {
+        private final Outage m_outage;
+        private final Date m_regainedTime;
+        private final Integer m_lostEventId;
+        private final Integer m_regainedEventId;
+        private final Integer m_outageId;
+
+        private Integer m_writtenOutageId;
+
+        private OutageWrite(Outage outage) {
+            // Called with the writer's lock held
+            m_outage = outage;
+            m_regainedTime = outage.m_regainedTime;
+            m_lostEventId = outage.m_lostEventId;
+            m_regainedEventId = outage.m_regainedEventId;
+            m_outageId = outage.m_outageId;
+        }
+
+        @Override
+        public void apply() {
+            m_writtenOutageId = null;
+
+            final OnmsOutage outage;
+            if (m_outageId != null) {
+                outage = m_outageDao.get(m_outageId);
+                if (outage == null) {
+                    LOG.warn("Failed to update outage {}. The outage no longer exists.", m_outageId);
+                    return;
+                }
+            } else {
+                final OnmsMonitoredService service = getService(m_outage.m_service);
+                if (service == null) {
+                    LOG.warn("Failed to write the outage for {}. The service could not be found.", m_outage.m_service);
+                    return;
+                }
+                if (m_outage.m_lostTime != null) {
+                    outage = new OnmsOutage(m_outage.m_lostTime, service);
+                } else {
+                    outage = m_outageDao.currentOutageForService(service);
+                    if (outage == null) {
+                        LOG.info("No outstanding outage for {}.", m_outage.m_service);
+                        return;
+                    }
+                }
+            }
+
+            if (m_regainedTime != null) {
+                outage.setIfRegainedService(new Timestamp(m_regainedTime.getTime()));
+            }
+            if (m_lostEventId != null) {
+                outage.setServiceLostEvent(m_eventDao.get(m_lostEventId));
+            }
+            if (m_regainedEventId != null) {
+                outage.setServiceRegainedEvent(m_eventDao.get(m_regainedEventId));
+            }
+            m_outageDao.saveOrUpdate(outage);
+            m_writtenOutageId = outage.getId();
+        }
+
+        @Override
+        public void committed() {
+            Runnable onResolved = null;
+            synchronized (m_lock) {
+                m_outage.m_failedAttempts = 0;
+                if (m_regainedTime != null && m_writtenOutageId != null) {
+                    // Only notify once, even if the outage is updated again
+                    onResolved = m_outage.m_onResolved;
+                    m_outage.m_onResolved = null;
+                }
+                if (m_writtenOutageId == null) {
+                    m_outage.m_missing = true;
+                    // Don't try to write the outage again
+                    m_dirtyOutages.remove(m_outage);
+                } else {
+                    m_outage.m_outageId = m_writtenOutageId;
+                }
+                // Once written, the outage is resolved using the database
+                m_unwrittenOpenOutages.remove(m_outage.m_service, m_outage);
+            }
+            if (onResolved != null) {
+                onResolved.run();
+            }
+        }
+
+        @Override
+        public void failed() {
+            synchronized (m_lock) {
+                m_backoff = true;
+                if (++m_outage.m_failedAttempts < MAX_WRITE_ATTEMPTS) {
+                    // Retried with the next flush, along with any changes made since
+                    m_dirtyOutages.add(m_outage);
+                    return;
+                }
+                LOG.error("Giving up on {} after {} attempts.", this, m_outage.m_failedAttempts);
+                m_outage.m_missing = true;
+                m_dirtyOutages.remove(m_outage);
+                m_unwrittenOpenOutages.remove(m_outage.m_service, m_outage);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("outage %s for %s", m_outageId, m_outage.m_service);
+        }
+    }
+
+    private static final class ServiceKey {
+        private final int m_nodeId;
+        private final String m_ipAddr;
+        private final String m_svcName;
+
+        private ServiceKey(int nodeId, String ipAddr, String svcName) {
+            m_nodeId = nodeId;
+            m_ipAddr = Objects.requireNonNull(ipAddr);
+            m_svcName = Objects.requireNonNull(svcName);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ServiceKey)) {
+                return false;
+            }
+            final ServiceKey other = (ServiceKey) obj;
+            return m_nodeId == other.m_nodeId
+                    && m_ipAddr.equals(other.m_ipAddr)
+                    && m_svcName.equals(other.m_svcName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(m_nodeId, m_ipAddr, m_svcName);
+        }
+
+        @Override
+        public String toString() {
+            return m_nodeId + ":" + m_ipAddr + ":" + m_svcName;
+        }
+    }
+}
@@ -54,6 +54,7 @@ import org.opennms.netmgt.model.OnmsIpInterface;
 import org.opennms.netmgt.model.OnmsMonitoredService;
 import org.opennms.netmgt.model.OnmsOutage;
 import org.opennms.netmgt.poller.pollables.DbPollEvent;
+import org.opennms.netmgt.poller.pollables.InFlightPollTracker;
 import org.opennms.netmgt.poller.pollables.PollEvent;
 import org.opennms.netmgt.poller.pollables.PollableNetwork;
 import org.opennms.netmgt.poller.pollables.PollableNode;
@@ -61,9 +62,9 @@ import org.opennms.netmgt.poller.pollables.PollableService;
 import org.opennms.netmgt.poller.pollables.PollableServiceConfig;
 import org.opennms.netmgt.poller.pollables.PollableVisitor;
 import org.opennms.netmgt.poller.pollables.PollableVisitorAdaptor;
-import org.opennms.netmgt.scheduler.LegacyScheduler;
 import org.opennms.netmgt.scheduler.Schedule;
 import org.opennms.netmgt.scheduler.Scheduler;
+import org.opennms.netmgt.scheduler.SchedulerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -72,6 +73,9 @@ import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+
 /**
  * <p>Poller class.</p>
  *
@@ -86,7 +90,7 @@ public class Poller extends AbstractServiceDaemon {
 
     private boolean m_initialized = false;
 
-    private LegacyScheduler m_scheduler = null;
+    private Scheduler m_scheduler = null;
 
     private PollerEventProcessor m_eventProcessor;
 
@@ -119,6 +123,12 @@ public class Poller extends AbstractServiceDaemon {
     @Autowired
     private LocationAwarePollerClient m_locationAwarePollerClient;
 
+    private final MetricRegistry m_metrics = new MetricRegistry();
+
+    private final InFlightPollTracker m_inFlightPolls = new InFlightPollTracker(m_metrics);
+
+    private JmxReporter m_reporter;
+
     public void setPersisterFactory(PersisterFactory persisterFactory) {
         m_persisterFactory = persisterFactory;
     }
@@ -273,9 +283,9 @@ public class Poller extends AbstractServiceDaemon {
     /**
      * <p>setScheduler</p>
      *
-     * @param scheduler a {@link org.opennms.netmgt.scheduler.LegacyScheduler} object.
+     * @param scheduler a {@link org.opennms.netmgt.scheduler.Scheduler} object.
      */
-    public void setScheduler(LegacyScheduler scheduler) {
+    public void setScheduler(Scheduler scheduler) {
         m_scheduler = scheduler;
     }
 
@@ -338,7 +348,7 @@ public class Poller extends AbstractServiceDaemon {
         try {
             LOG.debug("init: Creating poller scheduler");
 
-            setScheduler(new LegacyScheduler("Poller", getPollerConfig().getThreads()));
+            setScheduler(SchedulerFactory.createScheduler("Poller", getPollerConfig().getThreads()));
         } catch (RuntimeException e) {
             LOG.error("init: Failed to create poller scheduler", e);
             throw e;
@@ -362,6 +372,12 @@ public class Poller extends AbstractServiceDaemon {
             LOG.error("start: Failed to start scheduler", e);
             throw e;
         }
+
+        // Expose the number of outstanding polls per location
+        m_reporter = JmxReporter.forRegistry(m_metrics)
+                .inDomain(getClass().getPackage().getName())
+                .build();
+        m_reporter.start();
     }
 
     /**
@@ -375,6 +391,10 @@ public class Poller extends AbstractServiceDaemon {
         if(getEventProcessor()!=null) {
             getEventProcessor().close();
         }
+        if (m_reporter != null) {
+            m_reporter.stop();
+            m_reporter = null;
+        }
 
         setScheduler(null);
     }
@@ -531,7 +551,7 @@ public class Poller extends AbstractServiceDaemon {
 
         PollableService svc = getNetwork().createService(service.getNodeId(), iface.getNode().getLabel(), iface.getNode().getLocation().getLocationName(), addr, serviceName);
         PollableServiceConfig pollConfig = new PollableServiceConfig(svc, m_pollerConfig, m_pollOutagesConfig, pkg,
-                getScheduler(), m_persisterFactory, m_resourceStorageDao, m_locationAwarePollerClient);
+                getScheduler(), m_persisterFactory, m_resourceStorageDao, m_locationAwarePollerClient, m_inFlightPolls);
         svc.setPollConfig(pollConfig);
         synchronized(svc) {
             if (svc.getSchedule() == null) {
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.pollables;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opennms.netmgt.dao.api.MonitoringLocationDao;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Tracks the number of polls that were issued and have not completed yet, per location.
+ *
+ * A gauge named in-flight.&lt;location&gt; is registered the first time a location is seen.
+ *
+ * @see PollableServiceConfig#pollAsync()
+ */
+public class InFlightPollTracker {
+
+    private final MetricRegistry m_metrics;
+
+    private final ConcurrentMap<String, AtomicInteger> m_inFlight = new ConcurrentHashMap<>();
+
+    public InFlightPollTracker(MetricRegistry metrics) {
+        m_metrics = Objects.requireNonNull(metrics);
+    }
+
+    public void started(String location) {
+        getCounter(location).incrementAndGet();
+    }
+
+    public void finished(String location) {
+        getCounter(location).decrementAndGet();
+    }
+
+    public int getInFlight(String location) {
+        final AtomicInteger counter = m_inFlight.get(toKey(location));
+        return counter != null ? counter.get() : 0;
+    }
+
+    private AtomicInteger getCounter(String location) {
+        final String key = toKey(location);
+        final AtomicInteger counter = m_inFlight.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        return m_inFlight.computeIfAbsent(key, k -> {
+            final AtomicInteger c = new AtomicInteger();
+            m_metrics.register(MetricRegistry.name("in-flight", k), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return c.get();
+                }
+            });
+            return c;
+        });
+    }
+
+    private static String toKey(String location) {
+        return location != null ? location : MonitoringLocationDao.DEFAULT_MONITORING_LOCATION_ID;
+    }
+}
@@ -28,6 +28,8 @@
 
 package org.opennms.netmgt.poller.pollables;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.opennms.netmgt.poller.PollStatus;
 import org.opennms.netmgt.scheduler.Timer;
 
@@ -47,6 +49,13 @@ public interface PollConfig extends Timer {
      */
     public PollStatus poll();
 
+    /**
+     * <p>pollAsync</p>
+     *
+     * @return a {@link java.util.concurrent.CompletableFuture} completed with the poll status.
+     */
+    public CompletableFuture<PollStatus> pollAsync();
+
     /**
      * <p>getCurrentTime</p>
      *
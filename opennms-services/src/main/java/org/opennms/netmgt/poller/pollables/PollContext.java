@@ -30,6 +30,7 @@ package org.opennms.netmgt.poller.pollables;
 
 import java.net.InetAddress;
 import java.util.Date;
+import java.util.concurrent.Executor;
 
 import org.opennms.netmgt.xml.event.Event;
 
@@ -105,4 +106,18 @@ public interface PollContext {
      */
     public boolean isServiceUnresponsiveEnabled();
 
+    /**
+     * <p>isAsyncPollingEnabled</p>
+     *
+     * @return true if the scheduler threads should issue the polls without waiting for the results
+     */
+    public boolean isAsyncPollingEnabled();
+
+    /**
+     * <p>getAsyncPollExecutor</p>
+     *
+     * @return the executor that processes the results of the asynchronous polls
+     */
+    public Executor getAsyncPollExecutor();
+
 }
@@ -31,6 +31,8 @@ package org.opennms.netmgt.poller.pollables;
 import java.net.InetAddress;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.opennms.core.logging.Logging;
 import org.opennms.netmgt.events.api.EventConstants;
@@ -54,10 +56,14 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
 
     private final class PollRunner implements Runnable {
     	
+    	private final PollStatus m_result;
     	private volatile PollStatus m_pollStatus;
+    	public PollRunner(PollStatus result) {
+    	    m_result = result;
+    	}
             @Override
 		public void run() {
-		    doPoll();
+		    doPoll(m_result);
 		    getNode().processStatusChange(new Date());
 		    m_pollStatus = getStatus();
 		}
@@ -72,6 +78,8 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
     private volatile PollStatus m_oldStatus;
     private volatile Schedule m_schedule;
     private volatile long m_statusChangeTime = 0L;
+    private volatile PollStatus m_pendingResult;
+    private final AtomicBoolean m_pollInFlight = new AtomicBoolean(false);
     /**
      * <p>Constructor for PollableService.</p>
      *
@@ -187,7 +195,10 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
      */
     @Override
     public PollStatus poll() {
-        PollStatus newStatus = m_pollConfig.poll();
+        // Use the result of the asynchronous poll being processed, if any
+        final PollStatus pendingResult = m_pendingResult;
+        m_pendingResult = null;
+        PollStatus newStatus = pendingResult != null ? pendingResult : m_pollConfig.poll();
         if (!newStatus.isUnknown()) { 
             updateStatus(newStatus);
         }
@@ -218,6 +229,19 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
             return poll();
         }
     }
+
+    /**
+     * Same as {@link #doPoll()}, but the first poll of this service uses the given result,
+     * if any, instead of polling the service again.
+     */
+    private PollStatus doPoll(PollStatus result) {
+        m_pendingResult = result;
+        try {
+            return doPoll();
+        } finally {
+            m_pendingResult = null;
+        }
+    }
     
 
     
@@ -376,7 +400,15 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
      */
     @Override
     public void run() {
-        doRun(500);
+        if (getContext().isAsyncPollingEnabled()) {
+            doRunAsync().whenComplete((status, ex) -> {
+                if (ex != null) {
+                    LOG.error("Failed to process the result of the poll for {}", this, ex);
+                }
+            });
+        } else {
+            doRun(500);
+        }
     }
     
     /**
@@ -388,7 +420,52 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
     	return doRun(0);
     }
 
+    /**
+     * <p>doRunAsync</p>
+     *
+     * Issues the poll without blocking the calling thread. The status changes are processed,
+     * in the same way as {@link #doRun()}, by the executor of the poll context once the poll
+     * completes, rather than by the thread that completes it. The poll is skipped if the
+     * previous one has not completed yet.
+     *
+     * @return a future completed with the status of the service once the changes were processed
+     */
+    public CompletableFuture<PollStatus> doRunAsync() {
+        if (!m_pollInFlight.compareAndSet(false, true)) {
+            LOG.info("Skipping poll of service {}, the previous poll has not completed yet.", this);
+            return CompletableFuture.completedFuture(getStatus());
+        }
+
+        final CompletableFuture<PollStatus> future;
+        try {
+            LOG.debug("Start Asynchronous Poll of service {}", this);
+            future = m_pollConfig.pollAsync();
+        } catch (RuntimeException e) {
+            m_pollInFlight.set(false);
+            throw e;
+        }
+
+        // Log the status changes in the same context as the scheduled poll
+        final Map<String, String> mdc = Logging.getCopyOfContextMap();
+        return future.thenApplyAsync(result -> {
+            try (Logging.MDCCloseable closeable = Logging.withContextMapCloseable(mdc)) {
+                if (isDeleted()) {
+                    LOG.debug("Service {} was deleted while being polled, ignoring the result.", this);
+                    return getStatus();
+                }
+                // Wait for the tree lock rather than postponing, since the result is already here
+                return doRun(0, result);
+            } finally {
+                m_pollInFlight.set(false);
+            }
+        }, getContext().getAsyncPollExecutor());
+    }
+
     private PollStatus doRun(int timeout) {
+        return doRun(timeout, null);
+    }
+
+    private PollStatus doRun(int timeout, PollStatus result) {
         final Map<String, String> mdc = Logging.getCopyOfContextMap();
         try {
             Logging.putThreadContext("service", m_svcName);
@@ -399,7 +476,7 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
             LOG.debug("Start Scheduled Poll of service {}", this);
             PollStatus status;
             if (getContext().isNodeProcessingEnabled()) {
-                PollRunner r = new PollRunner();
+                PollRunner r = new PollRunner(result);
                 try {
                     withTreeLock(r, timeout);
                 } catch (LockUnavailable e) {
@@ -409,7 +486,7 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
                 status = r.getPollStatus();
             }
             else {
-                doPoll();
+                doPoll(result);
                 processStatusChange(new Date());
                 status = getStatus();
             }
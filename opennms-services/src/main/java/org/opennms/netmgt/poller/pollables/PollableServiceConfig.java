@@ -30,6 +30,7 @@ package org.opennms.netmgt.poller.pollables;
 
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeUnit;
 
@@ -45,6 +46,7 @@ import org.opennms.netmgt.config.poller.Service;
 import org.opennms.netmgt.dao.api.ResourceStorageDao;
 import org.opennms.netmgt.poller.LocationAwarePollerClient;
 import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.PollerResponse;
 import org.opennms.netmgt.poller.ServiceMonitor;
 import org.opennms.netmgt.scheduler.ScheduleInterval;
 import org.opennms.netmgt.scheduler.Timer;
@@ -71,6 +73,7 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
     private final LatencyStoringServiceMonitorAdaptor m_latencyStoringServiceMonitorAdaptor;
     private final InvertedStatusServiceMonitorAdaptor m_invertedStatusServiceMonitorAdaptor = new InvertedStatusServiceMonitorAdaptor();
     private final ServiceMonitor m_serviceMonitor;
+    private final InFlightPollTracker m_inFlightPolls;
 
     /**
      * <p>Constructor for PollableServiceConfig.</p>
@@ -82,6 +85,15 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
      * @param timer a {@link org.opennms.netmgt.scheduler.Timer} object.
      */
     public PollableServiceConfig(PollableService svc, PollerConfig pollerConfig, PollOutagesConfig pollOutagesConfig, Package pkg, Timer timer, PersisterFactory persisterFactory, ResourceStorageDao resourceStorageDao, LocationAwarePollerClient locationAwarePollerClient) {
+        this(svc, pollerConfig, pollOutagesConfig, pkg, timer, persisterFactory, resourceStorageDao, locationAwarePollerClient, null);
+    }
+
+    /**
+     * <p>Constructor for PollableServiceConfig.</p>
+     *
+     * @param inFlightPolls tracks the number of outstanding polls per location, may be null
+     */
+    public PollableServiceConfig(PollableService svc, PollerConfig pollerConfig, PollOutagesConfig pollOutagesConfig, Package pkg, Timer timer, PersisterFactory persisterFactory, ResourceStorageDao resourceStorageDao, LocationAwarePollerClient locationAwarePollerClient, InFlightPollTracker inFlightPolls) {
         m_service = svc;
         m_pollerConfig = pollerConfig;
         m_pollOutagesConfig = pollOutagesConfig;
@@ -91,6 +103,7 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
         m_locationAwarePollerClient = Objects.requireNonNull(locationAwarePollerClient);
         m_latencyStoringServiceMonitorAdaptor = new LatencyStoringServiceMonitorAdaptor(pollerConfig, pkg, persisterFactory, resourceStorageDao);
         m_serviceMonitor = pollerConfig.getServiceMonitor(svc.getSvcName());
+        m_inFlightPolls = inFlightPolls;
     }
 
     /**
@@ -116,53 +129,94 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
     @Override
     public PollStatus poll() {
         try {
-            final String packageName = getPackageName();
+            return pollAsync().get();
+        } catch (Throwable e) {
+            return handleException(e);
+        }
+    }
+
+    /**
+     * <p>pollAsync</p>
+     *
+     * Invokes the poll without waiting for the result. The returned future never completes
+     * exceptionally, failures are mapped to a status in the same way as {@link #poll()}.
+     *
+     * @return a {@link java.util.concurrent.CompletableFuture} completed with the poll status.
+     */
+    @Override
+    public CompletableFuture<PollStatus> pollAsync() {
+        final String location = m_service.getNodeLocation();
+        final String packageName;
+        final CompletableFuture<PollerResponse> future;
+        boolean started = false;
+        try {
+            packageName = getPackageName();
             // Use the service's configured interval as the TTL for this request
             final Long ttlInMs = m_configService.getInterval();
             LOG.debug("Polling {} with TTL {} using pkg {}",
                     m_service, ttlInMs, packageName);
 
-            PollStatus result = m_locationAwarePollerClient.poll()
+            if (m_inFlightPolls != null) {
+                m_inFlightPolls.started(location);
+                started = true;
+            }
+            future = m_locationAwarePollerClient.poll()
                 .withService(m_service)
                 .withMonitor(m_serviceMonitor)
                 .withTimeToLive(ttlInMs)
                 .withAttributes(getParameters())
                 .withAdaptor(m_latencyStoringServiceMonitorAdaptor)
                 .withAdaptor(m_invertedStatusServiceMonitorAdaptor)
-                .execute()
-                .get().getPollStatus();
+                .execute();
+        } catch (Throwable e) {
+            if (started) {
+                m_inFlightPolls.finished(location);
+            }
+            return CompletableFuture.completedFuture(handleException(e));
+        }
+
+        return future.handle((response, ex) -> {
+            if (m_inFlightPolls != null) {
+                m_inFlightPolls.finished(location);
+            }
+            if (ex != null) {
+                return handleException(ex);
+            }
+            final PollStatus result = response.getPollStatus();
             LOG.debug("Finish polling {} using pkg {} result = {}", m_service, packageName, result);
             return result;
-        } catch (Throwable e) {
-            return RpcExceptionUtils.handleException(e, new RpcExceptionHandler<PollStatus>() {
-                @Override
-                public PollStatus onInterrupted(Throwable cause) {
-                    LOG.warn("Interrupted while invoking the poll for {}."
-                            + " Marking the service as UNKNOWN.", m_service);
-                    return PollStatus.unknown("Interrupted while invoking the poll for"+m_service+". "+e);
-                }
+        });
+    }
 
-                @Override
-                public PollStatus onTimedOut(Throwable cause) {
-                    LOG.warn("No response was received when remotely invoking the poll for {}."
-                            + " Marking the service as UNKNOWN.", m_service);
-                    return PollStatus.unknown(String.format("No response received for %s. %s", m_service, cause));
-                }
+    private PollStatus handleException(Throwable e) {
+        return RpcExceptionUtils.handleException(e, new RpcExceptionHandler<PollStatus>() {
+            @Override
+            public PollStatus onInterrupted(Throwable cause) {
+                LOG.warn("Interrupted while invoking the poll for {}."
+                        + " Marking the service as UNKNOWN.", m_service);
+                return PollStatus.unknown("Interrupted while invoking the poll for"+m_service+". "+e);
+            }
 
-                @Override
-                public PollStatus onRejected(Throwable cause) {
-                    LOG.warn("The request to remotely invoke the poll for {} was rejected."
-                            + " Marking the service as UNKNOWN.", m_service);
-                    return PollStatus.unknown(String.format("Remote poll request rejected for %s. %s", m_service, cause));
-                }
+            @Override
+            public PollStatus onTimedOut(Throwable cause) {
+                LOG.warn("No response was received when remotely invoking the poll for {}."
+                        + " Marking the service as UNKNOWN.", m_service);
+                return PollStatus.unknown(String.format("No response received for %s. %s", m_service, cause));
+            }
 
-                @Override
-                public PollStatus onUnknown(Throwable cause) {
-                    LOG.error("Unexpected exception while polling {}. Marking service as DOWN", m_service, e);
-                    return PollStatus.down("Unexpected exception while polling "+m_service+". "+e);
-                }
-            });
-        }
+            @Override
+            public PollStatus onRejected(Throwable cause) {
+                LOG.warn("The request to remotely invoke the poll for {} was rejected."
+                        + " Marking the service as UNKNOWN.", m_service);
+                return PollStatus.unknown(String.format("Remote poll request rejected for %s. %s", m_service, cause));
+            }
+
+            @Override
+            public PollStatus onUnknown(Throwable cause) {
+                LOG.error("Unexpected exception while polling {}. Marking service as DOWN", m_service, e);
+                return PollStatus.down("Unexpected exception while polling "+m_service+". "+e);
+            }
+        });
     }
 
     /**
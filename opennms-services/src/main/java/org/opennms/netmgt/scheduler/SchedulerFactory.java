@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the {@link Scheduler} used by a daemon.
+ *
+ * The implementation is selected with the <code>org.opennms.&lt;daemon&gt;.scheduler</code>
+ * system property, i.e. <code>org.opennms.poller.scheduler=timingwheel</code>. The
+ * {@link LegacyScheduler} is used by default.
+ */
+public abstract class SchedulerFactory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SchedulerFactory.class);
+
+    public static final String LEGACY_SCHEDULER = "legacy";
+
+    public static final String TIMING_WHEEL_SCHEDULER = "timingwheel";
+
+    public static final String TICK_DURATION_PROPERTY = "org.opennms.scheduler.timingwheel.tickDuration";
+
+    public static final String WHEEL_SIZE_PROPERTY = "org.opennms.scheduler.timingwheel.wheelSize";
+
+    /**
+     * Creates a scheduler for the given daemon.
+     *
+     * @param parent
+     *            The name of the daemon, used to name the threads and to look up the scheduler type
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     * @return a {@link org.opennms.netmgt.scheduler.Scheduler} object.
+     */
+    public static Scheduler createScheduler(final String parent, final int maxSize) {
+        final String property = "org.opennms." + parent.toLowerCase() + ".scheduler";
+        final String type = System.getProperty(property, LEGACY_SCHEDULER);
+        if (TIMING_WHEEL_SCHEDULER.equalsIgnoreCase(type)) {
+            final long tickDuration = Long.getLong(TICK_DURATION_PROPERTY, TimingWheelScheduler.DEFAULT_TICK_DURATION);
+            final int wheelSize = Integer.getInteger(WHEEL_SIZE_PROPERTY, TimingWheelScheduler.DEFAULT_WHEEL_SIZE);
+            LOG.info("Using the timing wheel scheduler for {} with {} buckets of {}ms.", parent, wheelSize, tickDuration);
+            return new TimingWheelScheduler(parent, maxSize, tickDuration, wheelSize);
+        } else if (!LEGACY_SCHEDULER.equalsIgnoreCase(type)) {
+            LOG.warn("Unsupported value '{}' for {}, using the legacy scheduler.", type, property);
+        }
+        return new LegacyScheduler(parent, maxSize);
+    }
+}
@@ -0,0 +1,517 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.fiber.PausableFiber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * A {@link Scheduler} built on a hashed timing wheel.
+ *
+ * The {@link LegacyScheduler} scans every runnable in every interval queue
+ * to find the ones that are ready. Here, the runnables are placed in the
+ * bucket of the tick at which they expire, so scheduling is O(1) and every
+ * tick only visits a single bucket. Delays longer than the span of the wheel
+ * are handled by keeping track of the number of remaining rounds.
+ *
+ * When a runnable is rescheduled with a given interval, the start time is
+ * aligned to a phase derived from the runnable, so the start times of the
+ * tasks sharing the same interval are spread evenly over that interval and
+ * do not drift when the tasks run late.
+ *
+ * The scheduling lag, the number of scheduled tasks, the number of tasks
+ * waiting for a thread and the number of late starts are exposed over JMX.
+ */
+public class TimingWheelScheduler implements Runnable, PausableFiber, Scheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimingWheelScheduler.class);
+
+    public static final long DEFAULT_TICK_DURATION = 100;
+
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * Runnables that are not ready when they expire are checked again after this delay.
+     */
+    public static final long DEFAULT_RETRY_DELAY = 1000;
+
+    /**
+     * Starts that happen more than this many milliseconds after their scheduled time
+     * are counted as late.
+     */
+    public static final long DEFAULT_LATE_THRESHOLD = 1000;
+
+    private static class Entry {
+        private final ReadyRunnable m_runnable;
+        private final long m_startTime;
+        private long m_expiration;
+        private long m_remainingRounds;
+
+        private Entry(ReadyRunnable runnable, long startTime) {
+            m_runnable = runnable;
+            m_startTime = startTime;
+            m_expiration = startTime;
+        }
+    }
+
+    private final String m_parent;
+
+    private final long m_tickDuration;
+
+    private final List<Entry>[] m_wheel;
+
+    private final int m_mask;
+
+    /**
+     * Entries waiting to be placed in the wheel. Only the worker thread
+     * touches the wheel, so this is the only structure shared with the
+     * threads that schedule runnables.
+     */
+    private final Queue<Entry> m_pending = new ConcurrentLinkedQueue<>();
+
+    private final ExecutorService m_runner;
+
+    private final AtomicInteger m_scheduled = new AtomicInteger(0);
+
+    private final MetricRegistry m_metrics = new MetricRegistry();
+
+    private final Histogram m_lag;
+
+    private final Meter m_lateStarts;
+
+    private JmxReporter m_reporter;
+
+    private volatile boolean m_spreadStartTimes = true;
+
+    private volatile long m_retryDelay = DEFAULT_RETRY_DELAY;
+
+    private volatile long m_lateThreshold = DEFAULT_LATE_THRESHOLD;
+
+    /**
+     * The time at which the wheel started turning.
+     */
+    private volatile long m_startTime;
+
+    /**
+     * The number of ticks the wheel has processed. Only modified by the worker thread.
+     */
+    private long m_tick = 0;
+
+    /**
+     * The status for this fiber.
+     */
+    private volatile int m_status;
+
+    /**
+     * The worker thread that executes this instance.
+     */
+    private volatile Thread m_worker;
+
+    /**
+     * Used to keep track of the number of tasks that have been executed.
+     */
+    private volatile long m_numTasksExecuted = 0;
+
+    /**
+     * Constructs a new instance of the scheduler using the default tick
+     * duration and wheel size.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     */
+    public TimingWheelScheduler(final String parent, final int maxSize) {
+        this(parent, maxSize, DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Constructs a new instance of the scheduler.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     * @param tickDuration
+     *            The resolution of the wheel, in milliseconds.
+     * @param wheelSize
+     *            The number of buckets in the wheel, rounded up to the next power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheelScheduler(final String parent, final int maxSize, final long tickDuration, final int wheelSize) {
+        Assert.isTrue(tickDuration > 0, "tickDuration must be positive");
+        Assert.isTrue(wheelSize > 0 && wheelSize <= (1 << 30), "wheelSize must be between 1 and 2^30");
+
+        m_parent = parent;
+        m_tickDuration = tickDuration;
+
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        m_wheel = new List[size];
+        for (int i = 0; i < size; i++) {
+            m_wheel[i] = new ArrayList<>();
+        }
+        m_mask = size - 1;
+
+        m_status = START_PENDING;
+        m_runner = Executors.newFixedThreadPool(maxSize, new LogPreservingThreadFactory(parent, maxSize));
+        m_worker = null;
+
+        m_lag = m_metrics.histogram(MetricRegistry.name(parent, "lag"));
+        m_lateStarts = m_metrics.meter(MetricRegistry.name(parent, "late-starts"));
+        m_metrics.register(MetricRegistry.name(parent, "scheduled"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return m_scheduled.get();
+            }
+        });
+        m_metrics.register(MetricRegistry.name(parent, "queued"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return m_runner instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor)m_runner).getQueue().size() : 0;
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void schedule(long interval, final ReadyRunnable runnable) {
+        LOG.debug("schedule: Adding ready runnable {} at interval {}", runnable, interval);
+
+        final long now = getCurrentTime();
+        final long startTime = interval > 0 && m_spreadStartTimes ? getAlignedStartTime(runnable, now, interval) : now + Math.max(interval, 0);
+        m_pending.add(new Entry(runnable, startTime));
+        m_scheduled.incrementAndGet();
+    }
+
+    /**
+     * Aligns the start time of the runnable to a phase within the interval
+     * derived from the identity of the runnable. The aligned start time lies
+     * within half an interval of the requested one, so a runnable that is
+     * rescheduled with the same interval after each run keeps starting at the
+     * same offset in the interval, regardless of how late it ran.
+     */
+    static long getAlignedStartTime(ReadyRunnable runnable, long now, long interval) {
+        final long target = now + interval;
+        final long phase = Math.floorMod((long)System.identityHashCode(runnable), interval);
+        long aligned = target - Math.floorMod(target - phase, interval);
+        if (target - aligned > interval / 2) {
+            aligned += interval;
+        }
+        return aligned;
+    }
+
+    /**
+     * <p>getCurrentTime</p>
+     *
+     * @return a long.
+     */
+    @Override
+    public long getCurrentTime() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * <p>start</p>
+     */
+    @Override
+    public synchronized void start() {
+        Assert.state(m_worker == null, "The fiber has already run or is running");
+
+        m_startTime = getCurrentTime();
+        m_reporter = JmxReporter.forRegistry(m_metrics)
+                .inDomain(getClass().getPackage().getName())
+                .build();
+        m_reporter.start();
+
+        m_worker = new Thread(this, getName());
+        m_worker.start();
+        m_status = STARTING;
+
+        LOG.info("start: scheduler started");
+    }
+
+    /**
+     * <p>stop</p>
+     */
+    @Override
+    public synchronized void stop() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+
+        m_status = STOP_PENDING;
+        m_worker.interrupt();
+        m_runner.shutdown();
+        m_reporter.stop();
+
+        LOG.info("stop: scheduler stopped");
+    }
+
+    /**
+     * <p>pause</p>
+     */
+    @Override
+    public synchronized void pause() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+        Assert.state(m_status != STOPPED && m_status != STOP_PENDING, "The fiber is not running or a stop is pending");
+
+        if (m_status == PAUSED) {
+            return;
+        }
+
+        m_status = PAUSE_PENDING;
+        notifyAll();
+    }
+
+    /**
+     * <p>resume</p>
+     */
+    @Override
+    public synchronized void resume() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+        Assert.state(m_status != STOPPED && m_status != STOP_PENDING, "The fiber is not running or a stop is pending");
+
+        if (m_status == RUNNING) {
+            return;
+        }
+
+        m_status = RESUME_PENDING;
+        notifyAll();
+    }
+
+    /**
+     * <p>getStatus</p>
+     *
+     * @return a int.
+     */
+    @Override
+    public synchronized int getStatus() {
+        if (m_worker != null && m_worker.isAlive() == false) {
+            m_status = STOPPED;
+        }
+        return m_status;
+    }
+
+    /**
+     * Returns the name of this fiber.
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    @Override
+    public String getName() {
+        return m_runner.toString();
+    }
+
+    /**
+     * Returns total number of elements currently scheduled.
+     *
+     * @return the number of runnables waiting to be started
+     */
+    public int getScheduled() {
+        return m_scheduled.get();
+    }
+
+    /**
+     * Returns the pool of threads that are used to executed the runnable
+     * instances scheduled by the class' instance.
+     *
+     * @return thread pool
+     */
+    public ExecutorService getRunner() {
+        return m_runner;
+    }
+
+    /**
+     * Returns the registry holding the lag, queue depth and late start metrics.
+     */
+    public MetricRegistry getMetricRegistry() {
+        return m_metrics;
+    }
+
+    /**
+     * When enabled (the default), the start times of rescheduled runnables
+     * are spread evenly over their interval.
+     */
+    public void setSpreadStartTimes(boolean spreadStartTimes) {
+        m_spreadStartTimes = spreadStartTimes;
+    }
+
+    public void setRetryDelay(long retryDelay) {
+        m_retryDelay = retryDelay;
+    }
+
+    public void setLateThreshold(long lateThreshold) {
+        m_lateThreshold = lateThreshold;
+    }
+
+    /**
+     * The main method of the scheduler. On every tick, the pending runnables
+     * are placed in the wheel and the expired runnables of the current bucket
+     * are handed to the thread pool.
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            m_status = RUNNING;
+        }
+
+        LOG.debug("run: scheduler running, {} buckets of {}ms", m_wheel.length, m_tickDuration);
+
+        while (waitForNextTick()) {
+            transferPending();
+            expire(getCurrentTime());
+            m_tick++;
+        }
+
+        LOG.debug("run: scheduler exiting, state = STOPPED");
+        synchronized (this) {
+            m_status = STOPPED;
+        }
+    }
+
+    /**
+     * Blocks until the end of the current tick, or for as long as the scheduler is paused.
+     *
+     * @return false if the scheduler should exit
+     */
+    private synchronized boolean waitForNextTick() {
+        final long tickEnd = m_startTime + (m_tick + 1) * m_tickDuration;
+        try {
+            for (;;) {
+                if (m_status != RUNNING && m_status != PAUSED && m_status != PAUSE_PENDING && m_status != RESUME_PENDING) {
+                    LOG.debug("run: status = {}, time to exit", m_status);
+                    return false;
+                }
+
+                if (m_status == PAUSE_PENDING || m_status == PAUSED) {
+                    if (m_status == PAUSE_PENDING) {
+                        LOG.debug("run: pausing.");
+                    }
+                    m_status = PAUSED;
+                    wait();
+                    continue;
+                }
+
+                if (m_status == RESUME_PENDING) {
+                    LOG.debug("run: resuming.");
+                    m_status = RUNNING;
+                }
+
+                final long sleep = tickEnd - getCurrentTime();
+                if (sleep <= 0) {
+                    return true;
+                }
+                wait(sleep);
+            }
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private void transferPending() {
+        Entry entry;
+        while ((entry = m_pending.poll()) != null) {
+            final long expirationTick = Math.max((entry.m_expiration - m_startTime) / m_tickDuration, m_tick);
+            entry.m_remainingRounds = (expirationTick - m_tick) / m_wheel.length;
+            m_wheel[(int)(expirationTick & m_mask)].add(entry);
+        }
+    }
+
+    private void expire(long now) {
+        final List<Entry> bucket = m_wheel[(int)(m_tick & m_mask)];
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            final Entry entry = bucket.get(i);
+            if (entry.m_remainingRounds > 0) {
+                entry.m_remainingRounds--;
+                bucket.set(kept++, entry);
+            } else {
+                start(entry, now);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    private void start(Entry entry, long now) {
+        final ReadyRunnable readyRun = entry.m_runnable;
+        if (!readyRun.isReady()) {
+            // Check again later, keeping the original start time for the lag
+            entry.m_expiration = now + m_retryDelay;
+            m_pending.add(entry);
+            return;
+        }
+
+        LOG.debug("run: found ready runnable {}", readyRun);
+        m_scheduled.decrementAndGet();
+
+        final long lag = now - entry.m_startTime;
+        m_lag.update(lag);
+        if (lag > m_lateThreshold) {
+            m_lateStarts.mark();
+        }
+
+        try {
+            m_runner.execute(readyRun);
+            m_numTasksExecuted++;
+        } catch (RejectedExecutionException e) {
+            LOG.error("run: failed to start ready runnable {}", readyRun, e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getNumTasksExecuted() {
+        return m_numTasksExecuted;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + m_parent + "]";
+    }
+}
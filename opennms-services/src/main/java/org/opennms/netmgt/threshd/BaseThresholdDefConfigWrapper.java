@@ -68,10 +68,22 @@ public abstract class BaseThresholdDefConfigWrapper {
      * @throws org.opennms.netmgt.threshd.ThresholdExpressionException if any.
      */
     public static BaseThresholdDefConfigWrapper getConfigWrapper(Basethresholddef baseDef) throws ThresholdExpressionException {
+        return getConfigWrapper(null, baseDef);
+    }
+
+    /**
+     * <p>getConfigWrapper</p>
+     *
+     * @param groupName the name of the threshold group the definition belongs to, used to group the expression metrics
+     * @param baseDef a {@link org.opennms.netmgt.config.threshd.Basethresholddef} object.
+     * @return a {@link org.opennms.netmgt.threshd.BaseThresholdDefConfigWrapper} object.
+     * @throws org.opennms.netmgt.threshd.ThresholdExpressionException if any.
+     */
+    public static BaseThresholdDefConfigWrapper getConfigWrapper(String groupName, Basethresholddef baseDef) throws ThresholdExpressionException {
         if(baseDef instanceof Threshold) {
             return new ThresholdConfigWrapper((Threshold)baseDef);
         } else if(baseDef instanceof Expression) {
-            return new ExpressionConfigWrapper((Expression)baseDef);
+            return new ExpressionConfigWrapper((Expression)baseDef, groupName);
         }
         return null;
     }
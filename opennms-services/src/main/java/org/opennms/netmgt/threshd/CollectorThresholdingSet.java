@@ -104,6 +104,14 @@ public class CollectorThresholdingSet extends ThresholdingSet {
      */
     /** {@inheritDoc} */
     public List<Event> applyThresholds(CollectionResource resource, Map<String, CollectionAttribute> attributesMap, Date collectionTimestamp) {
+        return applyThresholds(resource, attributesMap, collectionTimestamp, counterReset);
+    }
+
+    /*
+     * Same as above, but with the counter reset flag of the collection set the resource belongs to,
+     * so that resources of consecutive collections can be evaluated by different threads.
+     */
+    List<Event> applyThresholds(CollectionResource resource, Map<String, CollectionAttribute> attributesMap, Date collectionTimestamp, boolean counterReset) {
         if (!isCollectionEnabled(resource)) {
             LOG.debug("applyThresholds: Ignoring resource {} because data collection is disabled for this resource.", resource);
             return new LinkedList<>();
@@ -115,7 +115,7 @@ public class DefaultThresholdsDao implements ThresholdsDao, InitializingBean {
             // See if map entry already exists for this datasource; if not, create a new one.
             if (thresh.getDsType().equals(typeName)) {
                 try {
-                    BaseThresholdDefConfigWrapper wrapper=BaseThresholdDefConfigWrapper.getConfigWrapper(thresh);
+                    BaseThresholdDefConfigWrapper wrapper=BaseThresholdDefConfigWrapper.getConfigWrapper(groupName, thresh);
                     Set<ThresholdEntity> thresholdEntitySet = thresholdMap.get(wrapper.getDatasourceExpression());
                     // Found set for this DS type?
                     if (thresholdEntitySet == null) {
@@ -159,7 +159,7 @@ public class DefaultThresholdsDao implements ThresholdsDao, InitializingBean {
                     for (final Basethresholddef thresh : getThresholdingConfigFactory().getThresholds(groupName)) {
                         BaseThresholdDefConfigWrapper newConfig = null;
                         try {
-                            newConfig = BaseThresholdDefConfigWrapper.getConfigWrapper(thresh);
+                            newConfig = BaseThresholdDefConfigWrapper.getConfigWrapper(groupName, thresh);
                         } catch (ThresholdExpressionException e) {
                             LOG.warn("fillThresholdStateMap: Could not parse threshold expression", e);
                         }
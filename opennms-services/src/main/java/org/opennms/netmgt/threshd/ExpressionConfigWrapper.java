@@ -33,6 +33,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.jexl2.ExpressionImpl;
 import org.apache.commons.jexl2.JexlEngine;
@@ -41,6 +42,12 @@ import org.opennms.netmgt.config.threshd.Expression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 /**
  * 
  * @author <a href="mailto:agalue@opennms.org">Alejandro Galue</a>
@@ -50,16 +57,50 @@ import org.slf4j.LoggerFactory;
 public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
     private static final Logger LOG = LoggerFactory.getLogger(ExpressionConfigWrapper.class);
 
+    private static final String UNKNOWN_GROUP = "unknown";
+
+    /**
+     * The engine is thread-safe and so are the expressions it creates, so a single
+     * instance is shared by all of the wrappers.
+     */
+    private static final JexlEngine EXPRESSION_ENGINE = new JexlEngine();
+
+    private static final MathBinding MATH_BINDING = new MathBinding();
+
+    /**
+     * Compiled expressions, keyed by the threshold definition they were compiled from.
+     *
+     * The keys are weak and compared by identity: the definitions are replaced when
+     * the {@link org.opennms.netmgt.config.ThresholdingConfigFactory} is reloaded, so
+     * the expressions of the previous configuration are released along with it.
+     */
+    private static final Cache<Expression, org.apache.commons.jexl2.Expression> COMPILED_EXPRESSIONS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private static final MetricRegistry METRIC_REGISTRY = new MetricRegistry();
+
     private final Expression m_expression;
     private final Collection<String> m_datasources;
+    private final Timer m_compileTimer;
+    private final Timer m_evaluateTimer;
+    private volatile org.apache.commons.jexl2.Expression m_compiledExpression;
+
     public ExpressionConfigWrapper(Expression expression) throws ThresholdExpressionException {
+        this(expression, null);
+    }
+
+    public ExpressionConfigWrapper(Expression expression, String groupName) throws ThresholdExpressionException {
         super(expression);
         m_expression = expression;
 
-        JexlEngine expressionParser = new JexlEngine();
+        final String group = groupName != null ? groupName : UNKNOWN_GROUP;
+        m_compileTimer = METRIC_REGISTRY.timer(MetricRegistry.name("expressions", group, "compile"));
+        m_evaluateTimer = METRIC_REGISTRY.timer(MetricRegistry.name("expressions", group, "evaluate"));
+
         m_datasources = new ArrayList<>();
         try {
-            ExpressionImpl e = (ExpressionImpl) expressionParser.createExpression(m_expression.getExpression());
+            ExpressionImpl e = (ExpressionImpl) getCompiledExpression();
             LOG.trace("List of Variables on the Expression: {}", e.getVariables());
             for (List<String> list : e.getVariables()) { // Requires JEXL 2.1.x
                 if (list.get(0).equalsIgnoreCase("math")) {
@@ -79,6 +120,45 @@ public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
         LOG.trace("Threshold Variables: {}", m_datasources);
     }
 
+    /**
+     * Retrieves the compiled form of the expression, compiling it if no other
+     * wrapper for the same threshold definition has done so yet.
+     */
+    private org.apache.commons.jexl2.Expression getCompiledExpression() throws Throwable {
+        final String expression = m_expression.getExpression();
+        org.apache.commons.jexl2.Expression compiledExpression = m_compiledExpression;
+        if (compiledExpression != null && compiledExpression.getExpression().equals(expression)) {
+            return compiledExpression;
+        }
+        try {
+            compiledExpression = COMPILED_EXPRESSIONS.get(m_expression, () -> compile(expression));
+            if (!compiledExpression.getExpression().equals(expression)) {
+                // The definition was modified in place, replace the stale entry
+                compiledExpression = compile(expression);
+                COMPILED_EXPRESSIONS.put(m_expression, compiledExpression);
+            }
+        } catch (ExecutionException|UncheckedExecutionException e) {
+            throw e.getCause();
+        }
+        m_compiledExpression = compiledExpression;
+        return compiledExpression;
+    }
+
+    private org.apache.commons.jexl2.Expression compile(String expression) {
+        try (Timer.Context ctx = m_compileTimer.time()) {
+            LOG.debug("Compiling threshold expression: {}", expression);
+            return EXPRESSION_ENGINE.createExpression(expression);
+        }
+    }
+
+    /**
+     * Used to expose the compile and evaluation timers of the expressions,
+     * which are grouped by threshold group.
+     */
+    public static MetricRegistry getMetricRegistry() {
+        return METRIC_REGISTRY;
+    }
+
     @Override
     public String getDatasourceExpression() {
         return m_expression.getExpression();
@@ -146,11 +226,11 @@ public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
         Map<String,Object> context = new HashMap<String,Object>();
         context.putAll(values);
         context.put("datasources", new HashMap<String, Double>(values)); // To workaround NMS-5019
-        context.put("math", new MathBinding());
+        context.put("math", MATH_BINDING);
         double result = Double.NaN;
-        try {
-            // Fetch an instance of the JEXL script engine to evaluate the script expression
-            Object resultObject = new JexlEngine().createExpression(m_expression.getExpression()).evaluate(new MapContext(context));
+        try (Timer.Context ctx = m_evaluateTimer.time()) {
+            // Evaluate the compiled expression against the current values
+            Object resultObject = getCompiledExpression().evaluate(new MapContext(context));
             result = Double.parseDouble(resultObject.toString());
         } catch (Throwable e) {
             throw new ThresholdExpressionException("Error while evaluating expression " + m_expression.getExpression() + ": " + e.getMessage(), e);
@@ -59,7 +59,8 @@ public final class ThresholdEntity implements Cloneable {
     
     //Contains a list of evaluators for each used "instance".  Is populated with the list for the "default" instance (the "null" key)
     // in the Constructor.  Note that this means we must use a null-key capable map like HashMap
-    private Map<String,List<ThresholdEvaluatorState>> m_thresholdEvaluatorStates = new HashMap<String,List<ThresholdEvaluatorState>>();
+    // The lists are created on demand by the threads evaluating the thresholds, so access to the map is synchronized on it.
+    private final Map<String,List<ThresholdEvaluatorState>> m_thresholdEvaluatorStates = new HashMap<String,List<ThresholdEvaluatorState>>();
 
     // the commands for these need to be listed in ThresholdController as well
     static {
@@ -302,21 +303,23 @@ public final class ThresholdEntity implements Cloneable {
      * @return a {@link java.util.List} object.
      */
     public List<ThresholdEvaluatorState> getThresholdEvaluatorStates(String instance) {
-        List<ThresholdEvaluatorState> result= m_thresholdEvaluatorStates.get(instance);
-        if(result==null) {
-            //There is no set of evaluators for this instance; create a list by copying the base ones
-            List<ThresholdEvaluatorState> defaultList=m_thresholdEvaluatorStates.get(null);
-          
-            //Create the new list
-            result=new LinkedList<ThresholdEvaluatorState>();
-            for(ThresholdEvaluatorState state: defaultList) {
-                result.add(state.getCleanClone());
+        synchronized (m_thresholdEvaluatorStates) {
+            List<ThresholdEvaluatorState> result= m_thresholdEvaluatorStates.get(instance);
+            if(result==null) {
+                //There is no set of evaluators for this instance; create a list by copying the base ones
+                List<ThresholdEvaluatorState> defaultList=m_thresholdEvaluatorStates.get(null);
+
+                //Create the new list
+                result=new LinkedList<ThresholdEvaluatorState>();
+                for(ThresholdEvaluatorState state: defaultList) {
+                    result.add(state.getCleanClone());
+                }
+
+                //Store the new list with the instance as the key
+                m_thresholdEvaluatorStates.put(instance == null ? null : instance.intern(), result);
             }
-            
-            //Store the new list with the instance as the key
-            m_thresholdEvaluatorStates.put(instance == null ? null : instance.intern(), result);
+            return result;
         }
-        return result;
     }
     
     /**
@@ -339,19 +342,21 @@ public final class ThresholdEntity implements Cloneable {
     }
     
     private void sendRearmForTriggeredStates() {
-        for (String instance : m_thresholdEvaluatorStates.keySet()) {
-            for (ThresholdEvaluatorState state : m_thresholdEvaluatorStates.get(instance)) {
-                if (state.isTriggered()) {
-                    Event e = state.getEventForState(Status.RE_ARMED, new Date(), Double.NaN, null);
-                    Parm p = new Parm();
-                    p.setParmName("reason");
-                    Value v = new Value();
-                    v.setContent("Configuration has been changed");
-                    p.setValue(v);
-                    e.addParm(p);
-                    LOG.info("sendRearmForTriggeredStates: sending rearm for {}", e);
-                    ThresholdingEventProxyFactory.getFactory().getProxy().add(e);
-                    state.clearState();
+        synchronized (m_thresholdEvaluatorStates) {
+            for (String instance : m_thresholdEvaluatorStates.keySet()) {
+                for (ThresholdEvaluatorState state : m_thresholdEvaluatorStates.get(instance)) {
+                    if (state.isTriggered()) {
+                        Event e = state.getEventForState(Status.RE_ARMED, new Date(), Double.NaN, null);
+                        Parm p = new Parm();
+                        p.setParmName("reason");
+                        Value v = new Value();
+                        v.setContent("Configuration has been changed");
+                        p.setValue(v);
+                        e.addParm(p);
+                        LOG.info("sendRearmForTriggeredStates: sending rearm for {}", e);
+                        ThresholdingEventProxyFactory.getFactory().getProxy().add(e);
+                        state.clearState();
+                    }
                 }
             }
         }
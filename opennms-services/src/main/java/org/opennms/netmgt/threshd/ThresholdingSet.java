@@ -39,6 +39,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -74,9 +76,17 @@ public class ThresholdingSet {
     protected ThresholdsDao m_thresholdsDao;
 
     private boolean m_initialized = false;
-    private boolean m_hasThresholds = false;
+    private volatile boolean m_hasThresholds = false;
 
     protected final List<ThresholdGroup> m_thresholdGroups = new LinkedList<>();
+
+    /**
+     * Guards {@link #m_thresholdGroups}. The thresholds of the different resources of a
+     * collection set can be applied concurrently, while the groups are only replaced
+     * on (re)initialization.
+     */
+    private final ReadWriteLock m_thresholdGroupsLock = new ReentrantReadWriteLock();
+
     protected final List<String> m_scheduledOutages = new ArrayList<>();
 
     /**
@@ -103,7 +113,8 @@ public class ThresholdingSet {
     protected void initialize() {
         final String logHeader = "initialize(nodeId=" + m_nodeId + ",ipAddr=" + m_hostAddress + ",svc=" + m_serviceName + ")";
         List<String> groupNameList = getThresholdGroupNames(m_nodeId, m_hostAddress, m_serviceName);
-        synchronized(m_thresholdGroups) {
+        m_thresholdGroupsLock.writeLock().lock();
+        try {
             m_thresholdGroups.clear();
             for (String groupName : groupNameList) {
                 try {
@@ -119,6 +130,8 @@ public class ThresholdingSet {
                 }
             }
             m_hasThresholds = !m_thresholdGroups.isEmpty();
+        } finally {
+            m_thresholdGroupsLock.writeLock().unlock();
         }
         updateScheduledOutages();
     }
@@ -147,7 +160,8 @@ public class ThresholdingSet {
         final String logHeader = "mergeThresholdGroups(nodeId=" + nodeId + ",ipAddr=" + hostAddress + ",svc=" + serviceName + ")";
         LOG.debug("{}: Begin merging operation", logHeader);
         List<String> groupNameList = getThresholdGroupNames(nodeId, hostAddress, serviceName);
-        synchronized(m_thresholdGroups) {
+        m_thresholdGroupsLock.writeLock().lock();
+        try {
             // If size differs its because some groups where deleted.
             if (groupNameList.size() != m_thresholdGroups.size()) {
                 // Deleting Groups
@@ -188,6 +202,8 @@ public class ThresholdingSet {
             m_thresholdGroups.clear();
             m_thresholdGroups.addAll(newThresholdGroupList);
             m_hasThresholds = !m_thresholdGroups.isEmpty();
+        } finally {
+            m_thresholdGroupsLock.writeLock().unlock();
         }
     }
 
@@ -212,7 +228,8 @@ public class ThresholdingSet {
      */
     public boolean hasThresholds(final String resourceTypeName, final String attributeName) {
         boolean ok = false;
-        synchronized(m_thresholdGroups) {
+        m_thresholdGroupsLock.readLock().lock();
+        try {
             for (ThresholdGroup group : m_thresholdGroups) {
                 Map<String,Set<ThresholdEntity>> entityMap = getEntityMap(group, resourceTypeName);
                 if (entityMap != null) {
@@ -230,6 +247,8 @@ public class ThresholdingSet {
                     }
                 }
             }
+        } finally {
+            m_thresholdGroupsLock.readLock().unlock();
         }
         return ok;
     }
@@ -268,7 +287,8 @@ public class ThresholdingSet {
         }
         LOG.debug("applyThresholds: Applying thresholds on {} using {} attributes.", resourceWrapper, attributesMap.size());
         Date date = new Date();
-        synchronized(m_thresholdGroups) {
+        m_thresholdGroupsLock.readLock().lock();
+        try {
             for (ThresholdGroup group : m_thresholdGroups) {
                 Map<String,Set<ThresholdEntity>> entityMap = getEntityMap(group, resourceWrapper.getResourceTypeName());
                 if (entityMap != null) {
@@ -307,6 +327,8 @@ public class ThresholdingSet {
                     }
                 }
             }
+        } finally {
+            m_thresholdGroupsLock.readLock().unlock();
         }
         return eventsList;
     }
@@ -481,8 +503,11 @@ public class ThresholdingSet {
     /** {@inheritDoc} */
     @Override
     public String toString() {
-        synchronized (m_thresholdGroups) {
+        m_thresholdGroupsLock.readLock().lock();
+        try {
             return m_thresholdGroups.toString();
+        } finally {
+            m_thresholdGroupsLock.readLock().unlock();
         }
     }
 }
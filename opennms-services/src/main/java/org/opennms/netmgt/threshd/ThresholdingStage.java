@@ -0,0 +1,385 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.threshd;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.netmgt.collection.api.CollectionAttribute;
+import org.opennms.netmgt.collection.api.CollectionResource;
+import org.opennms.netmgt.collection.api.CollectionSet;
+import org.opennms.netmgt.collection.support.AbstractCollectionSetVisitor;
+import org.opennms.netmgt.xml.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Applies the thresholds of collection sets on a fixed set of worker threads,
+ * so that the collection threads don't have to wait for them.
+ *
+ * The resources of a collection set are partitioned over the workers by their
+ * instance label, which is the key used by {@link ThresholdEntity} to track the
+ * evaluator states. All of the samples of a given resource are therefore applied
+ * by the same worker, in the order in which they were collected, while the
+ * resources of a large collection set are spread over all of the workers.
+ *
+ * Every worker has a bounded queue. When it is full, the collection thread
+ * submitting the collection set waits until there is room in the queue.
+ */
+public class ThresholdingStage implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ThresholdingStage.class);
+
+    /**
+     * How long the workers wait for a batch before checking whether
+     * or not the stage was closed.
+     */
+    private static final long POLL_TIMEOUT_MS = 1000L;
+
+    /**
+     * How long {@link #close()} waits for the workers to drain their queues.
+     */
+    private static final long CLOSE_TIMEOUT_MS = 30000L;
+
+    private final List<Worker> m_workers;
+
+    private final List<Thread> m_threads;
+
+    private final Timer m_latencyTimer;
+
+    private final Meter m_resourcesMeter;
+
+    private volatile boolean m_closed = false;
+
+    /**
+     * <p>Constructor for ThresholdingStage.</p>
+     *
+     * @param numThreads the number of worker threads
+     * @param queueSize the number of collection set batches each worker can hold
+     */
+    public ThresholdingStage(int numThreads, int queueSize) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be >= 1");
+        }
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize must be >= 1");
+        }
+
+        final MetricRegistry metrics = ExpressionConfigWrapper.getMetricRegistry();
+        m_latencyTimer = metrics.timer(MetricRegistry.name("stage", "latency"));
+        m_resourcesMeter = metrics.meter(MetricRegistry.name("stage", "resources"));
+
+        final ThreadFactory threadFactory = new LogPreservingThreadFactory("Collectd-Thresholding", Integer.MAX_VALUE);
+        m_workers = new ArrayList<>(numThreads);
+        m_threads = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            final Worker worker = new Worker(queueSize);
+            final Thread thread = threadFactory.newThread(worker);
+            thread.setDaemon(true);
+            m_workers.add(worker);
+            m_threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Queues the resources of the given collection set for thresholding.
+     *
+     * The attributes relevant to the thresholds are gathered from the collection
+     * set by the calling thread, and the thresholds are then applied by the workers.
+     *
+     * @param visitor the thresholding visitor of the collectable service
+     * @param collectionSet the collected data
+     * @param counterReset whether or not the counters must be reinitialized
+     * @param onComplete called by the last worker once all of the resources have been processed
+     * @return false if the stage is closed, in which case nothing was queued
+     */
+    public boolean submit(ThresholdingVisitor visitor, CollectionSet collectionSet, boolean counterReset, Runnable onComplete) {
+        if (m_closed) {
+            return false;
+        }
+
+        final SampleCollector collector = new SampleCollector(visitor.m_thresholdingSet);
+        collectionSet.visit(collector);
+        final List<Sample> samples = collector.getSamples();
+        m_resourcesMeter.mark(samples.size());
+
+        // Partition the samples by instance label
+        final List<List<Sample>> partitions = new ArrayList<>(m_workers.size());
+        for (int i = 0; i < m_workers.size(); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (Sample sample : samples) {
+            partitions.get(Math.floorMod(Objects.hashCode(sample.instanceLabel), m_workers.size())).add(sample);
+        }
+
+        final List<Batch> batches = new ArrayList<>(m_workers.size());
+        final Completion completion = new Completion(onComplete);
+        for (int i = 0; i < partitions.size(); i++) {
+            if (!partitions.get(i).isEmpty()) {
+                batches.add(new Batch(i, visitor.m_thresholdingSet, partitions.get(i), collector.getCollectionTimestamp(), counterReset, completion));
+            }
+        }
+        completion.setPending(batches.size());
+        if (batches.isEmpty()) {
+            completion.run();
+            return true;
+        }
+
+        for (int i = 0; i < batches.size(); i++) {
+            final Batch batch = batches.get(i);
+            try {
+                m_workers.get(batch.workerIndex).queue.put(batch);
+            } catch (InterruptedException e) {
+                LOG.warn("submit: interrupted while queuing the resources of {}, applying the remaining thresholds inline.", visitor);
+                Thread.currentThread().interrupt();
+                for (int j = i; j < batches.size(); j++) {
+                    batches.get(j).run();
+                }
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting new collection sets, and waits for the workers to exit
+     * once their queues are drained. Workers that are still busy after
+     * {@link #CLOSE_TIMEOUT_MS} are interrupted.
+     */
+    @Override
+    public void close() {
+        m_closed = true;
+
+        final long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MS;
+        try {
+            for (Thread thread : m_threads) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining > 0) {
+                    thread.join(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Thread thread : m_threads) {
+            if (thread.isAlive()) {
+                LOG.warn("close: {} did not exit within {}ms, interrupting it.", thread.getName(), CLOSE_TIMEOUT_MS);
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * The number of batches waiting to be processed.
+     */
+    public int getQueueSize() {
+        int size = 0;
+        for (Worker worker : m_workers) {
+            size += worker.queue.size();
+        }
+        return size;
+    }
+
+    /**
+     * Gathers the attributes required by the thresholds, per resource.
+     * See {@link ThresholdingVisitor#visitAttribute(CollectionAttribute)}.
+     */
+    private static class SampleCollector extends AbstractCollectionSetVisitor {
+        private final CollectorThresholdingSet m_thresholdingSet;
+        private final List<Sample> m_samples = new ArrayList<>();
+        private Date m_collectionTimestamp = new Date();
+        private Map<String, CollectionAttribute> m_attributesMap;
+
+        private SampleCollector(CollectorThresholdingSet thresholdingSet) {
+            m_thresholdingSet = thresholdingSet;
+        }
+
+        @Override
+        public void visitCollectionSet(CollectionSet set) {
+            m_collectionTimestamp = set.getCollectionTimestamp();
+        }
+
+        @Override
+        public void visitResource(CollectionResource resource) {
+            m_attributesMap = new HashMap<>();
+        }
+
+        @Override
+        public void visitAttribute(CollectionAttribute attribute) {
+            if (m_thresholdingSet.hasThresholds(attribute)) {
+                m_attributesMap.put(attribute.getName(), attribute);
+            }
+        }
+
+        @Override
+        public void completeResource(CollectionResource resource) {
+            m_samples.add(new Sample(resource, m_attributesMap));
+        }
+
+        private List<Sample> getSamples() {
+            return m_samples;
+        }
+
+        private Date getCollectionTimestamp() {
+            return m_collectionTimestamp;
+        }
+    }
+
+    private static class Sample {
+        private final CollectionResource resource;
+        private final Map<String, CollectionAttribute> attributesMap;
+        private final String instanceLabel;
+
+        private Sample(CollectionResource resource, Map<String, CollectionAttribute> attributesMap) {
+            this.resource = resource;
+            this.attributesMap = attributesMap;
+            // Same key as the one used for the evaluator states, see CollectionResourceWrapper.getInstanceLabel()
+            this.instanceLabel = resource.getInterfaceLabel();
+        }
+    }
+
+    /**
+     * Counts down the batches of a collection set.
+     */
+    private class Completion implements Runnable {
+        private final Runnable m_onComplete;
+        private final long m_submittedAt = System.nanoTime();
+        private final AtomicInteger m_pending = new AtomicInteger();
+
+        private Completion(Runnable onComplete) {
+            m_onComplete = onComplete;
+        }
+
+        private void setPending(int pending) {
+            m_pending.set(pending);
+        }
+
+        private void batchCompleted() {
+            if (m_pending.decrementAndGet() == 0) {
+                run();
+            }
+        }
+
+        @Override
+        public void run() {
+            m_latencyTimer.update(System.nanoTime() - m_submittedAt, TimeUnit.NANOSECONDS);
+            if (m_onComplete != null) {
+                m_onComplete.run();
+            }
+        }
+    }
+
+    /**
+     * The resources of a collection set that were assigned to a given worker.
+     */
+    private static class Batch implements Runnable {
+        private final int workerIndex;
+        private final CollectorThresholdingSet thresholdingSet;
+        private final List<Sample> samples;
+        private final Date collectionTimestamp;
+        private final boolean counterReset;
+        private final Completion completion;
+
+        private Batch(int workerIndex, CollectorThresholdingSet thresholdingSet, List<Sample> samples, Date collectionTimestamp, boolean counterReset, Completion completion) {
+            this.workerIndex = workerIndex;
+            this.thresholdingSet = thresholdingSet;
+            this.samples = samples;
+            this.collectionTimestamp = collectionTimestamp;
+            this.counterReset = counterReset;
+            this.completion = completion;
+        }
+
+        @Override
+        public void run() {
+            final ThresholdingEventProxy proxy = ThresholdingEventProxyFactory.getFactory().getProxy();
+            try {
+                for (Sample sample : samples) {
+                    try {
+                        final List<Event> eventList = thresholdingSet.applyThresholds(sample.resource, sample.attributesMap, collectionTimestamp, counterReset);
+                        proxy.add(eventList);
+                    } catch (Throwable t) {
+                        LOG.warn("run: failed to apply the thresholds of {} on {}", thresholdingSet, sample.resource, t);
+                    }
+                }
+                proxy.sendAllEvents();
+            } finally {
+                completion.batchCompleted();
+            }
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final BlockingQueue<Batch> queue;
+
+        private Worker(int queueSize) {
+            queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final Batch batch;
+                try {
+                    batch = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                if (batch == null) {
+                    if (m_closed) {
+                        // The queue was drained after the stage was closed
+                        return;
+                    }
+                    continue;
+                }
+
+                try {
+                    batch.run();
+                } catch (Throwable t) {
+                    LOG.error("run: unexpected error while applying thresholds", t);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.dao.api.EventDao;
+import org.opennms.netmgt.dao.api.MonitoredServiceDao;
+import org.opennms.netmgt.dao.api.OutageDao;
+import org.opennms.netmgt.model.OnmsEvent;
+import org.opennms.netmgt.model.OnmsMonitoredService;
+import org.opennms.netmgt.model.OnmsOutage;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class OutageWriterTest {
+
+    private static final String IP_ADDR = "192.168.1.1";
+
+    private final MonitoredServiceDao m_monitoredServiceDao = mock(MonitoredServiceDao.class);
+
+    private final OutageDao m_outageDao = mock(OutageDao.class);
+
+    private final EventDao m_eventDao = mock(EventDao.class);
+
+    private final OnmsMonitoredService m_service = new OnmsMonitoredService();
+
+    private final OnmsMonitoredService m_otherService = new OnmsMonitoredService();
+
+    private final AtomicInteger m_nextOutageId = new AtomicInteger(1);
+
+    private OutageWriter m_outageWriter;
+
+    @Before
+    public void setUp() {
+        final InetAddress addr = InetAddressUtils.addr(IP_ADDR);
+        when(m_monitoredServiceDao.get(eq(1), eq(addr), eq("ICMP"))).thenReturn(m_service);
+        when(m_monitoredServiceDao.get(eq(1), eq(addr), eq("HTTP"))).thenReturn(m_otherService);
+        when(m_eventDao.get(anyInt())).thenAnswer(invocation -> {
+            final OnmsEvent event = new OnmsEvent();
+            event.setId((Integer)invocation.getArguments()[0]);
+            return event;
+        });
+        // Assign ids to the new outages
+        doAnswer(invocation -> {
+            final OnmsOutage outage = (OnmsOutage)invocation.getArguments()[0];
+            if (outage.getId() == null) {
+                outage.setId(m_nextOutageId.getAndIncrement());
+            }
+            return null;
+        }).when(m_outageDao).saveOrUpdate(any(OnmsOutage.class));
+
+        // Flush explicitly
+        m_outageWriter = new OutageWriter(100, 60000);
+        m_outageWriter.setMonitoredServiceDao(m_monitoredServiceDao);
+        m_outageWriter.setOutageDao(m_outageDao);
+        m_outageWriter.setEventDao(m_eventDao);
+        m_outageWriter.setTransactionTemplate(new TransactionTemplate(mock(PlatformTransactionManager.class)));
+    }
+
+    @After
+    public void tearDown() {
+        m_outageWriter.close();
+    }
+
+    @Test
+    public void canCoalesceFlappingService() {
+        final Date lostTime = new Date(1000);
+        final Date regainedTime = new Date(2000);
+        final AtomicInteger resolved = new AtomicInteger();
+
+        final OutageWriter.Outage opened = m_outageWriter.openOutage(1, IP_ADDR, "ICMP", lostTime);
+        m_outageWriter.setLostEventId(opened, 10);
+        final OutageWriter.Outage resolvedOutage = m_outageWriter.resolveOutage(1, IP_ADDR, "ICMP", regainedTime, resolved::incrementAndGet);
+        m_outageWriter.setRegainedEventId(resolvedOutage, 11);
+
+        assertEquals(1, m_outageWriter.getPendingCount());
+
+        // Notified once the resolved outage is written
+        assertEquals(0, resolved.get());
+        m_outageWriter.flush();
+        assertEquals(1, resolved.get());
+        assertEquals(0, m_outageWriter.getPendingCount());
+
+        // A single row is written, with both times and events
+        final ArgumentCaptor<OnmsOutage> outage = ArgumentCaptor.forClass(OnmsOutage.class);
+        verify(m_outageDao, times(1)).saveOrUpdate(outage.capture());
+        assertEquals(lostTime, outage.getValue().getIfLostService());
+        assertEquals(regainedTime.getTime(), outage.getValue().getIfRegainedService().getTime());
+        assertEquals(Integer.valueOf(10), outage.getValue().getServiceLostEvent().getId());
+        assertEquals(Integer.valueOf(11), outage.getValue().getServiceRegainedEvent().getId());
+    }
+
+    @Test
+    public void canUpdateWrittenOutages() {
+        final OutageWriter.Outage opened = m_outageWriter.openOutage(1, IP_ADDR, "ICMP", new Date(1000));
+        m_outageWriter.flush();
+
+        final OnmsOutage written = new OnmsOutage(new Date(1000), m_service);
+        written.setId(1);
+        when(m_outageDao.get(1)).thenReturn(written);
+
+        // Received back from the event bus after the outage was written
+        m_outageWriter.setLostEventId(opened, 10);
+        m_outageWriter.flush();
+
+        verify(m_outageDao, times(2)).saveOrUpdate(any(OnmsOutage.class));
+        assertEquals(Integer.valueOf(10), written.getServiceLostEvent().getId());
+        assertNull(written.getIfRegainedService());
+
+        // Written outages are resolved using the database
+        final AtomicInteger resolved = new AtomicInteger();
+        when(m_outageDao.currentOutageForService(m_service)).thenReturn(written);
+        m_outageWriter.resolveOutage(1, IP_ADDR, "ICMP", new Date(2000), resolved::incrementAndGet);
+        assertEquals(0, resolved.get());
+
+        m_outageWriter.flush();
+        assertEquals(1, resolved.get());
+        assertEquals(2000, written.getIfRegainedService().getTime());
+    }
+
+    @Test
+    public void doesNotResolveMissingOutages() {
+        final AtomicInteger resolved = new AtomicInteger();
+        final OutageWriter.Outage outage = m_outageWriter.resolveOutage(1, IP_ADDR, "ICMP", new Date(2000), resolved::incrementAndGet);
+        m_outageWriter.flush();
+
+        assertEquals(0, resolved.get());
+        verify(m_outageDao, never()).saveOrUpdate(any(OnmsOutage.class));
+
+        // The event id is discarded
+        m_outageWriter.setRegainedEventId(outage, 11);
+        assertEquals(0, m_outageWriter.getPendingCount());
+    }
+
+    @Test
+    public void canRetryFailedWrites() {
+        // Writing the outages of the other service fails
+        final AtomicBoolean failing = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            final OnmsOutage outage = (OnmsOutage)invocation.getArguments()[0];
+            if (failing.get() && outage.getMonitoredService() == m_otherService) {
+                throw new IllegalStateException("Failed to write outage.");
+            }
+            outage.setId(m_nextOutageId.getAndIncrement());
+            return null;
+        }).when(m_outageDao).saveOrUpdate(any(OnmsOutage.class));
+
+        m_outageWriter.openOutage(1, IP_ADDR, "ICMP", new Date(1000));
+        m_outageWriter.openOutage(1, IP_ADDR, "HTTP", new Date(1000));
+        m_outageWriter.flush();
+
+        // Once in the batch, and once on its own
+        verify(m_outageDao, times(2)).saveOrUpdate(argThat(outageFor(m_service)));
+        verify(m_outageDao, times(2)).saveOrUpdate(argThat(outageFor(m_otherService)));
+
+        // The failed write is queued again
+        assertEquals(1, m_outageWriter.getPendingCount());
+
+        // The unwritten outage is still resolved along with its opening
+        final AtomicInteger resolved = new AtomicInteger();
+        m_outageWriter.resolveOutage(1, IP_ADDR, "HTTP", new Date(2000), resolved::incrementAndGet);
+        assertEquals(1, m_outageWriter.getPendingCount());
+
+        failing.set(false);
+        m_outageWriter.flush();
+        assertEquals(0, m_outageWriter.getPendingCount());
+        assertEquals(1, resolved.get());
+
+        final ArgumentCaptor<OnmsOutage> outage = ArgumentCaptor.forClass(OnmsOutage.class);
+        verify(m_outageDao, times(3)).saveOrUpdate(argThat(outageFor(m_otherService)));
+        verify(m_outageDao, times(5)).saveOrUpdate(outage.capture());
+        assertEquals(2000, outage.getValue().getIfRegainedService().getTime());
+        verify(m_outageDao, never()).currentOutageForService(any(OnmsMonitoredService.class));
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        doThrow(new IllegalStateException("Failed to write outage.")).when(m_outageDao).saveOrUpdate(any(OnmsOutage.class));
+
+        final OutageWriter.Outage outage = m_outageWriter.openOutage(1, IP_ADDR, "ICMP", new Date(1000));
+        for (int i = 1; i < OutageWriter.MAX_WRITE_ATTEMPTS; i++) {
+            m_outageWriter.flush();
+            assertEquals(1, m_outageWriter.getPendingCount());
+        }
+        m_outageWriter.flush();
+        assertEquals(0, m_outageWriter.getPendingCount());
+        verify(m_outageDao, times(2 * OutageWriter.MAX_WRITE_ATTEMPTS)).saveOrUpdate(any(OnmsOutage.class));
+
+        // The event id is discarded
+        m_outageWriter.setLostEventId(outage, 10);
+        assertEquals(0, m_outageWriter.getPendingCount());
+
+        // The outage is no longer considered to be unwritten, and is resolved using the database
+        m_outageWriter.resolveOutage(1, IP_ADDR, "ICMP", new Date(2000), null);
+        m_outageWriter.flush();
+        verify(m_outageDao, times(1)).currentOutageForService(m_service);
+    }
+
+    private static ArgumentMatcher<OnmsOutage> outageFor(OnmsMonitoredService service) {
+        return new ArgumentMatcher<OnmsOutage>() {
+            @Override
+            public boolean matches(Object argument) {
+                return ((OnmsOutage)argument).getMonitoredService() == service;
+            }
+        };
+    }
+}
@@ -34,6 +34,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.opennms.core.test.db.MockDatabase;
 import org.opennms.core.utils.InetAddressUtils;
@@ -56,6 +57,8 @@ public class MockPollContext implements PollContext, EventListener {
     private boolean m_nodeProcessingEnabled;
     private boolean m_pollingAllIfCritServiceUndefined;
     private boolean m_serviceUnresponsiveEnabled;
+    private boolean m_asyncPollingEnabled;
+    private Executor m_asyncPollExecutor = Runnable::run;
     private EventIpcManager m_eventMgr;
     private MockDatabase m_db;
     private MockNetwork m_mockNetwork;
@@ -172,6 +175,24 @@ public class MockPollContext implements PollContext, EventListener {
         m_serviceUnresponsiveEnabled = serviceUnresponsiveEnabled;
     }
 
+    @Override
+    public boolean isAsyncPollingEnabled() {
+        return m_asyncPollingEnabled;
+    }
+
+    public void setAsyncPollingEnabled(boolean asyncPollingEnabled) {
+        m_asyncPollingEnabled = asyncPollingEnabled;
+    }
+
+    @Override
+    public Executor getAsyncPollExecutor() {
+        return m_asyncPollExecutor;
+    }
+
+    public void setAsyncPollExecutor(Executor asyncPollExecutor) {
+        m_asyncPollExecutor = asyncPollExecutor;
+    }
+
     @Override
     public String getName() {
         return "MockPollContext";
@@ -35,6 +35,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
 
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.net.InetAddress;
@@ -46,6 +48,10 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -566,6 +572,61 @@ public class PollablesIT {
 
     }
 
+    @Test
+    public void testAsyncPoll() throws Exception {
+        m_pollContext.setAsyncPollingEnabled(true);
+
+        anticipateDown(mDot1);
+
+        mDot1Icmp.bringDown();
+
+        assertTrue(pDot1Icmp.doRunAsync().get().isDown());
+
+        verifyAnticipated();
+
+        anticipateUp(mDot1);
+
+        mDot1Icmp.bringUp();
+
+        assertTrue(pDot1Icmp.doRunAsync().get().isUp());
+
+        verifyAnticipated();
+    }
+
+    @Test
+    public void testAsyncPollResultIsProcessedByPollContextExecutor() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Poller-AsyncResults"));
+        m_pollContext.setAsyncPollingEnabled(true);
+        m_pollContext.setAsyncPollExecutor(executor);
+        try {
+            // Complete the poll ourselves, like the RPC reply thread does
+            final CompletableFuture<PollStatus> response = new CompletableFuture<>();
+            final PollableServiceConfig pollConfig = spy(new PollableServiceConfig(pDot1Icmp, m_pollerConfig, m_pollerConfig,
+                    m_pollerConfig.getPackage("TestPackage"), m_timer, m_persisterFactory, m_resourceStorageDao, m_locationAwarePollerClient));
+            doReturn(response).when(pollConfig).pollAsync();
+            pDot1Icmp.setPollConfig(pollConfig);
+
+            anticipateDown(mDot1);
+
+            mDot1Icmp.bringDown();
+
+            final CompletableFuture<PollStatus> processed = pDot1Icmp.doRunAsync();
+            final CompletableFuture<String> processedBy = processed.thenApply(status -> Thread.currentThread().getName());
+            assertFalse(processed.isDone());
+
+            final Thread replyThread = new Thread(() -> response.complete(PollStatus.down()), "RPC-Reply");
+            replyThread.start();
+            replyThread.join();
+
+            assertTrue(processed.get(10, TimeUnit.SECONDS).isDown());
+            assertEquals("Poller-AsyncResults", processedBy.get());
+
+            verifyAnticipated();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testDowntimeDelete() {
         pDot3Http.getSchedule().schedule();
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2018 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2018 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.fiber.Fiber;
+
+public class TimingWheelSchedulerTest {
+
+    private TimingWheelScheduler m_scheduler;
+
+    @Before
+    public void setUp() {
+        // Use a small wheel so that the longer delays span multiple rounds
+        m_scheduler = new TimingWheelScheduler("TimingWheelSchedulerTest", 2, 10, 8);
+        m_scheduler.setSpreadStartTimes(false);
+    }
+
+    @After
+    public void tearDown() {
+        if (m_scheduler.getStatus() != Fiber.START_PENDING) {
+            m_scheduler.stop();
+        }
+    }
+
+    @Test(timeout=30000)
+    public void canRunScheduledTasks() throws InterruptedException {
+        final long[] delays = new long[] { 0, 50, 200, 500 };
+        final CountDownLatch latch = new CountDownLatch(delays.length);
+        final Map<Long, Long> runTimes = new ConcurrentHashMap<>();
+
+        final long start = m_scheduler.getCurrentTime();
+        for (final long delay : delays) {
+            m_scheduler.schedule(delay, new ReadyRunnable() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void run() {
+                    runTimes.put(delay, m_scheduler.getCurrentTime());
+                    latch.countDown();
+                }
+            });
+        }
+        assertEquals(delays.length, m_scheduler.getScheduled());
+
+        m_scheduler.start();
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        for (final long delay : delays) {
+            assertTrue("task with delay " + delay + " ran too early", runTimes.get(delay) - start >= delay);
+        }
+        assertEquals(0, m_scheduler.getScheduled());
+        assertEquals(delays.length, m_scheduler.getNumTasksExecuted());
+        assertEquals(delays.length, m_scheduler.getMetricRegistry().histogram("TimingWheelSchedulerTest.lag").getCount());
+    }
+
+    @Test(timeout=30000)
+    public void canRetryTasksThatAreNotReady() throws InterruptedException {
+        m_scheduler.setRetryDelay(20);
+
+        final AtomicInteger readyChecks = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(1);
+        m_scheduler.schedule(0, new ReadyRunnable() {
+            @Override
+            public boolean isReady() {
+                return readyChecks.incrementAndGet() > 2;
+            }
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+
+        m_scheduler.start();
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(3, readyChecks.get());
+        assertEquals(1, m_scheduler.getNumTasksExecuted());
+    }
+
+    @Test
+    public void canSpreadStartTimesOverTheInterval() {
+        final long interval = 300000;
+        for (int i = 0; i < 1000; i++) {
+            final ReadyRunnable runnable = new ReadyRunnable() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void run() {
+                    // pass
+                }
+            };
+
+            final long now = 1500000000000L + i;
+            final long startTime = TimingWheelScheduler.getAlignedStartTime(runnable, now, interval);
+            assertTrue(Math.abs(startTime - (now + interval)) <= interval / 2);
+
+            // The next start time should land on the same offset in the interval, even when running late
+            final long nextStartTime = TimingWheelScheduler.getAlignedStartTime(runnable, startTime + 1000, interval);
+            assertEquals(startTime + interval, nextStartTime);
+        }
+    }
+}
@@ -171,4 +171,26 @@ public class ExpressionConfigWrapperTest {
         values.put("ifSpeed", 10.0);
         Assert.assertEquals(160.0, wrapper.evaluate(values), 0.0);
     }
+
+    @Test
+    public void testExpressionsAreCompiledOnce() throws Exception {
+        Expression exp = new Expression();
+        exp.setExpression("data * 2");
+        ExpressionConfigWrapper wrapper1 = new ExpressionConfigWrapper(exp, "compiled-once");
+        ExpressionConfigWrapper wrapper2 = new ExpressionConfigWrapper(exp, "compiled-once");
+        Map<String, Double> values = new HashMap<String,Double>();
+        values.put("data", 10.0);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(20.0, wrapper1.evaluate(values), 0.0);
+            Assert.assertEquals(20.0, wrapper2.evaluate(values), 0.0);
+        }
+        Assert.assertEquals(1, ExpressionConfigWrapper.getMetricRegistry().timer("expressions.compiled-once.compile").getCount());
+        Assert.assertEquals(10, ExpressionConfigWrapper.getMetricRegistry().timer("expressions.compiled-once.evaluate").getCount());
+
+        // Modifying the definition should trigger a new compilation
+        exp.setExpression("data * 3");
+        Assert.assertEquals(30.0, wrapper1.evaluate(values), 0.0);
+        Assert.assertEquals(30.0, wrapper2.evaluate(values), 0.0);
+        Assert.assertEquals(2, ExpressionConfigWrapper.getMetricRegistry().timer("expressions.compiled-once.compile").getCount());
+    }
 }
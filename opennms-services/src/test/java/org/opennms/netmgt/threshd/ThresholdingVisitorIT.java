@@ -50,6 +50,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.easymock.EasyMock;
 import org.junit.After;
@@ -353,6 +355,35 @@ public class ThresholdingVisitorIT {
         verifyEvents(0);
     }
 
+    /**
+     * Same as {@link #testTriggersGenericResource()}, but with many resources per collection
+     * set, applied by a {@link ThresholdingStage}. The triggers are only reached if the samples
+     * of every resource are evaluated in order.
+     */
+    @Test
+    public void testTriggersGenericResourceWithThresholdingStage() throws Exception {
+        initFactories("/threshd-configuration.xml","/test-thresholds-triggers.xml");
+        final int numResources = 50;
+        for (int i = 1; i <= numResources; i++) {
+            addEvent(EventConstants.LOW_THRESHOLD_EVENT_UEI, "127.0.0.1", "SNMP", 3, 10.0, 15.0, 7.0, "/opt" + i, Integer.toString(i), "hrStorageSize-hrStorageUsed", null, null, m_anticipator, m_anticipatedEvents);
+        }
+        ThresholdingVisitor visitor = createVisitor();
+
+        try (ThresholdingStage stage = new ThresholdingStage(4, 1)) {
+            final List<CountDownLatch> completions = new ArrayList<>();
+            for (long value : new long[] { 95, 96, 80, 91, 92, 93 }) {
+                final CountDownLatch completion = new CountDownLatch(1);
+                assertTrue(stage.submit(visitor, createFileSystemsCollectionSet(numResources, value, 100), false, completion::countDown));
+                completions.add(completion);
+            }
+            for (CountDownLatch completion : completions) {
+                assertTrue(completion.await(30, TimeUnit.SECONDS));
+            }
+        }
+
+        verifyEvents(0);
+    }
+
     /*
      * This test uses this files from src/test/resources:
      * - threshd-configuration.xml
@@ -1739,6 +1770,24 @@ public class ThresholdingVisitorIT {
         EasyMock.verify(agent);
     }
 
+    private CollectionSet createFileSystemsCollectionSet(int numResources, long value, long max) throws Exception {
+        SnmpCollectionAgent agent = createCollectionAgent();
+        NodeLevelResource nodeResource = new NodeLevelResource(agent.getNodeId());
+        org.opennms.netmgt.config.datacollection.ResourceType indexResourceType = createIndexResourceType(agent, "hrStorageIndex");
+        CollectionSetBuilder builder = new CollectionSetBuilder(agent);
+        for (int i = 1; i <= numResources; i++) {
+            GenericTypeResource genericResource = new GenericTypeResource(nodeResource, indexResourceType, Integer.toString(i));
+            // Creating strings.properties file
+            ResourcePath path = ResourcePath.get("snmp", "1", "hrStorageIndex", Integer.toString(i));
+            m_resourceStorageDao.setStringAttribute(path, "hrStorageType", ".1.3.6.1.2.1.25.2.1.4");
+            m_resourceStorageDao.setStringAttribute(path, "hrStorageDescr", "/opt" + i);
+            builder.withNumericAttribute(genericResource, "hd-usage", "hrStorageUsed", value, AttributeType.GAUGE)
+                .withNumericAttribute(genericResource, "hd-usage", "hrStorageSize", max, AttributeType.GAUGE)
+                .withNumericAttribute(genericResource, "hd-usage", "hrStorageAllocUnits", 1, AttributeType.GAUGE);
+        }
+        return builder.build();
+    }
+
     /*
      * Parameter expectedValue should be around 200:
      * Initial counter value is 20000 below limit.
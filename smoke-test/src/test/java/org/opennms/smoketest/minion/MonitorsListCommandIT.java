@@ -115,7 +115,9 @@ public class MonitorsListCommandIT {
             "org.opennms.netmgt.poller.monitors.CiscoIpSlaMonitor",
             "org.opennms.netmgt.poller.monitors.VmwareMonitor",
             "org.opennms.netmgt.poller.monitors.VmwareCimMonitor",
-            "org.opennms.netmgt.poller.monitors.WsManMonitor")
+            "org.opennms.netmgt.poller.monitors.WsManMonitor",
+            "org.opennms.netmgt.poller.monitors.AsyncHttpMonitor",
+            "org.opennms.netmgt.poller.monitors.AsyncTcpMonitor")
             .build();
 
     @ClassRule